@@ -0,0 +1,143 @@
+package client.clientControllers;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+import sharedModel.Commands;
+import sharedModel.Item_Elec;
+import sharedModel.ObjectWrapper;
+
+/**
+ * Load client measuring what pipelining gains. Several sessions each send a
+ * number of item searches by ID, first one at a time, waiting for every reply
+ * before the next request, then with up to a window of requests in flight.
+ * The throughput of both runs and their ratio are printed.
+ *
+ * Arguments: host, port, item ID searched, sessions, requests per session and
+ * window; every argument is optional. The item must exist, such as 1000 of
+ * the sample items.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class PipelinedLoadClient implements Commands {
+
+	private final String host;
+	private final int port;
+	private final int itemId;
+	private final int sessions;
+	private final int requests;
+
+	/**
+	 * Constructor
+	 * @param host     (String) host of the server.
+	 * @param port     (int) port of the server.
+	 * @param itemId   (int) ID of the item searched.
+	 * @param sessions (int) sessions sending requests at once.
+	 * @param requests (int) requests sent by each session.
+	 */
+	public PipelinedLoadClient(String host, int port, int itemId, int sessions, int requests) {
+		this.host = host;
+		this.port = port;
+		this.itemId = itemId;
+		this.sessions = sessions;
+		this.requests = requests;
+	}
+
+	/**
+	 * Run every session with a window of requests in flight.
+	 * @param window (int) requests a session may have unanswered, 1 to wait for
+	 *               each reply.
+	 * @return (double) replies received per second by all sessions.
+	 * @throws Exception if a session failed.
+	 */
+	public double run(int window) throws Exception {
+		ArrayList<ShopClient> clients = new ArrayList<ShopClient>(sessions);
+		for (int s = 0; s < sessions; s++) {
+			ShopClient client = new ShopClient(host, port);
+			Thread reader = new Thread(client::communicate, "load-client-" + s);
+			reader.setDaemon(true);
+			reader.start();
+			clients.add(client);
+		}
+		ArrayList<Thread> senders = new ArrayList<Thread>(sessions);
+		ArrayList<Exception> failures = new ArrayList<Exception>();
+		long start = System.nanoTime();
+		for (ShopClient client : clients) {
+			Thread sender = new Thread(() -> {
+				try {
+					this.send(client, window);
+				} catch (Exception e) {
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			});
+			senders.add(sender);
+			sender.start();
+		}
+		for (Thread sender : senders) {
+			sender.join();
+		}
+		long elapsed = System.nanoTime() - start;
+		for (ShopClient client : clients) {
+			client.close();
+		}
+		if (!failures.isEmpty()) {
+			throw failures.get(0);
+		}
+		return (double) sessions * requests * 1e9 / elapsed;
+	}
+
+	/**
+	 * Send the requests of one session, keeping at most a window of them
+	 * unanswered.
+	 * @param client (ShopClient) connected session.
+	 * @param window (int) requests the session may have unanswered.
+	 * @throws Exception if a request failed.
+	 */
+	private void send(ShopClient client, int window) throws Exception {
+		Semaphore inFlight = new Semaphore(window);
+		CompletableFuture<?>[] replies = new CompletableFuture<?>[requests];
+		for (int r = 0; r < requests; r++) {
+			inFlight.acquire();
+			replies[r] = client.sendRequest(this.search()).whenComplete((reply, e) -> inFlight.release());
+		}
+		for (CompletableFuture<?> reply : replies) {
+			ObjectWrapper answer = (ObjectWrapper) reply.get();
+			if (!DISPLAYITEM.equals(answer.getMessage()[0])) {
+				throw new IllegalStateException("Item " + itemId + " not found.");
+			}
+		}
+	}
+
+	/**
+	 * @return (ObjectWrapper) search for the item by ID.
+	 */
+	private ObjectWrapper search() {
+		Item_Elec key = new Item_Elec();
+		key.setItemID(itemId);
+		ObjectWrapper request = new ObjectWrapper();
+		request.addPassedObj(key);
+		request.setMessage(SEARCH + ID, ITEM_ELEC);
+		return request;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String host = args.length > 0 ? args[0] : "localhost";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 8088;
+		int itemId = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		int sessions = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+		int requests = args.length > 4 ? Integer.parseInt(args[4]) : 2000;
+		int window = args.length > 5 ? Integer.parseInt(args[5]) : 8;
+		PipelinedLoadClient load = new PipelinedLoadClient(host, port, itemId, sessions, requests);
+		load.run(window); // warm up both sides
+		double sequential = load.run(1);
+		double pipelined = load.run(window);
+		System.out.printf("%d sessions x %d requests%n", sessions, requests);
+		System.out.printf("one at a time: %.0f requests/s%n", sequential);
+		System.out.printf("window of %d:  %.0f requests/s (%.2fx)%n", window, pipelined, pipelined / sequential);
+	}
+}
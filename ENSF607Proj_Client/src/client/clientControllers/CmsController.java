@@ -3,6 +3,8 @@ package client.clientControllers;
 import java.awt.EventQueue;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
 import java.util.ArrayList;
 
 import javax.swing.event.ListSelectionEvent;
@@ -27,8 +29,15 @@ import sharedModel.ObjectWrapper;
  */
 public class CmsController {
 
+	private static final int PAGE_SIZE = 100; // customers requested per page of a type search
+
 	private CmsApplication app;
 	private ClientController cc;
+	// paging state of the customer type search, only used on the event dispatch thread
+	private int pageGeneration = 0; // bumped by every new search so late pages are dropped
+	private Customer lastCustomer; // last customer shown, key of the next page
+	private boolean pageLoading = false;
+	private boolean pagesDone = true;
 
 	public CmsController(ClientController cc) {
 		app = new CmsApplication();
@@ -51,6 +60,7 @@ public class CmsController {
 		this.app.addSearchAction(new searchAction());
 		this.app.addClearSearchAction(new clearSearchAction());
 		this.app.addListSelectionAction(new selectListAction());
+		this.app.addResultsScrollAction(new resultsScrollAction());
 		this.app.addClearCustInfoAction(new clearCustInfoAction());
 		this.app.addSaveCustInfoAction(new saveCustInfoAction());
 		this.app.addDeleteCustAction(new deleteCustAction());
@@ -73,6 +83,80 @@ public class CmsController {
 		}
 	}
 
+	/**
+	 * Start a customer type search. Customers are loaded a page at a time; the
+	 * first page is requested now and the following pages as the user scrolls to
+	 * the end of the results list. Runs on the event dispatch thread.
+	 * 
+	 * @param type (char) customer type being searched.
+	 */
+	private void startPaging(char type) {
+		stopPaging();
+		app.resetSearchResultText();
+		lastCustomer = new Customer(); // no last name asks for the first page
+		lastCustomer.setCustomerType(type);
+		pagesDone = false;
+		requestNextPage();
+	}
+
+	/**
+	 * Request the page of customers following the last customer shown, unless a
+	 * page is already on its way or the last page was shown. Runs on the event
+	 * dispatch thread.
+	 */
+	private void requestNextPage() {
+		if (pageLoading || pagesDone) {
+			return;
+		}
+		pageLoading = true;
+		int generation = pageGeneration;
+		ObjectWrapper request = new ObjectWrapper();
+		request.addPassedObj(lastCustomer);
+		request.addPassedObj(Integer.valueOf(PAGE_SIZE));
+		request.setMessage("SEARCHPAGE", "CUSTOMER");
+		cc.getShopClient().sendRequest(request).whenComplete((answer, e) -> {
+			Runnable runner = new Runnable() {
+				public void run() {
+					showPage(generation, e == null ? answer : null);
+				}
+			};
+			EventQueue.invokeLater(runner);
+		});
+	}
+
+	/**
+	 * Append a page of customers to the results list. Runs on the event dispatch
+	 * thread.
+	 * 
+	 * @param generation (int) generation of the search the page was requested for.
+	 * @param answer     (ObjectWrapper) the page, null if the request failed.
+	 */
+	private void showPage(int generation, ObjectWrapper answer) {
+		if (generation != pageGeneration) {
+			return; // a newer search replaced the results
+		}
+		pageLoading = false;
+		if (answer == null || !"DISPLAY".equals(answer.getMessage()[0])) {
+			pagesDone = true; // no customers after the last page
+			return;
+		}
+		ArrayList<Object> page = answer.getPassedObj();
+		for (Object o : page) {
+			app.appendSearchResultText(o.toString());
+		}
+		lastCustomer = (Customer) page.get(page.size() - 1);
+		pagesDone = page.size() < PAGE_SIZE;
+	}
+
+	/**
+	 * Stop loading pages of the customer type search.
+	 */
+	private void stopPaging() {
+		pageGeneration++;
+		pageLoading = false;
+		pagesDone = true;
+	}
+
 	/**
 	 * Updates each text field with customer info based on passed query result
 	 * 
@@ -116,9 +200,8 @@ public class CmsController {
 					break;
 				}
 				case "customerType": {
-					c.setCustomerType(searchText.charAt(0));
-					command = "SEARCHTYPE";
-					break;
+					startPaging(searchText.charAt(0));
+					return;
 				}
 				case "lName": {
 					c.setLastName(searchText);
@@ -126,6 +209,7 @@ public class CmsController {
 					break;
 				}
 				}
+				stopPaging();
 				ObjectWrapper request = new ObjectWrapper();
 				request.addPassedObj(c);
 				request.setMessage(command, "CUSTOMER");
@@ -149,6 +233,7 @@ public class CmsController {
 		@Override
 		public void actionPerformed(ActionEvent e) {
 
+			stopPaging();
 			Runnable runner = new Runnable() {
 				public void run() {
 					app.setSearchFieldText("");
@@ -160,6 +245,19 @@ public class CmsController {
 		}
 	}
 
+	/**
+	 * Internal class to load the next page of a customer type search once the
+	 * user scrolls near the end of the results list.
+	 */
+	private class resultsScrollAction implements AdjustmentListener {
+
+		@Override
+		public void adjustmentValueChanged(AdjustmentEvent e) {
+			if (!pagesDone && !pageLoading && app.isResultsScrolledToEnd())
+				requestNextPage();
+		}
+	}
+
 	/**
 	 * Internal class to handle user selection from listed options. Changes customer
 	 * info panel based on user selection from the search results pane.
@@ -3,6 +3,8 @@ package client.clientControllers;
 import java.awt.EventQueue;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
 import java.util.ArrayList;
 
 import javax.swing.event.ListSelectionEvent;
@@ -23,8 +25,15 @@ import sharedModel.*;
  */
 public class ImsController implements Commands, PrintTableConstants {
 
+	private static final int PAGE_SIZE = 100; // items requested per page while browsing all items
+
 	private ImsApplication app;
 	private ClientController cc;
+	// paging state of the all items browse, only used on the event dispatch thread
+	private int pageGeneration = 0; // bumped by every new search so late pages are dropped
+	private Item_Elec lastItem; // last item shown, key of the next page
+	private boolean pageLoading = false;
+	private boolean pagesDone = true;
 	
 	/**
 	 * Default constructor.
@@ -65,6 +74,7 @@ public class ImsController implements Commands, PrintTableConstants {
 	public void addActionListeners() {
 		this.app.addActionListeners(new ImsActions());
 		this.app.addSelectionListeners(new ImsActions());
+		this.app.addScrollListener(new ImsActions());
 	}
 	
 	/**
@@ -95,6 +105,7 @@ public class ImsController implements Commands, PrintTableConstants {
 			break;
 		}
 		}
+		this.stopPaging();
 		wrapMessage(command, ITEM_ELEC, item);
 	}
 	
@@ -103,14 +114,15 @@ public class ImsController implements Commands, PrintTableConstants {
 	 * @param objectList (ArrayList<Object>) list of objects to display.
 	 */
 	public void updateSearchResults(ArrayList<Object> objectList) {
-		for (Object o : objectList) {
-			Runnable runner = new Runnable() {
-				public void run() {
+		// one display task per chunk of results rather than per row
+		Runnable runner = new Runnable() {
+			public void run() {
+				for (Object o : objectList) {
 					app.setSearchResultText(o.toString());
 				}
-			};
-			EventQueue.invokeLater(runner);
-		}
+			}
+		};
+		EventQueue.invokeLater(runner);
 	}
 	
 	/**
@@ -130,6 +142,7 @@ public class ImsController implements Commands, PrintTableConstants {
 	 * Clear all the search fields.
 	 */
 	public void executeClearSearch() {
+		this.stopPaging();
 		this.app.setSearchItemTxt("");
 		this.app.resetSearchResultText();
 	}
@@ -146,9 +159,16 @@ public class ImsController implements Commands, PrintTableConstants {
 	
 	/**
 	 * Execute a purchase from the ImsApplication entered information
-	 * to the server database.
+	 * to the server database. Comma separated item IDs and quantities are
+	 * bought together as a cart.
 	 */
 	public void executePurchase() {
+		String[] itemIds = app.getItemIdTxt().split(",");
+		String[] qtys = app.getPurchaseQtyTxt().split(",");
+		if (itemIds.length > 1 || qtys.length > 1) {
+			executeCartPurchase(itemIds, qtys);
+			return;
+		}
 		String command = PURCHASE;
 		ArrayList<Object> purchases = new ArrayList<Object>();
 		if (StringUtils.isStrictlyNumeric(app.getItemIdTxt()) && StringUtils.isStrictlyNumeric(app.getPurchaseQtyTxt())
@@ -161,14 +181,122 @@ public class ImsController implements Commands, PrintTableConstants {
 	}
 	
 	/**
-	 * Execute a search of all items in the server database.
+	 * Execute a cart purchase of several items in one request. Each line is
+	 * bought on its own, so lines short of stock do not stop the others; the
+	 * status of every line is shown in the purchase message.
+	 * @param itemIds (String[]) item ID of each line.
+	 * @param qtys    (String[]) quantity of each line.
+	 */
+	private void executeCartPurchase(String[] itemIds, String[] qtys) {
+		ArrayList<Object> cart = new ArrayList<Object>();
+		if (itemIds.length != qtys.length || !StringUtils.isStrictlyNumeric(app.getcustIdTxt())) {
+			updatePurchaseField("Enter one quantity per item ID");
+			return;
+		}
+		cart.add(Integer.parseInt(app.getcustIdTxt()));
+		cart.add(0); // each line alone
+		for (int i = 0; i < itemIds.length; i++) {
+			String itemId = itemIds[i].trim();
+			String qty = qtys[i].trim();
+			if (!StringUtils.isStrictlyNumeric(itemId) || !StringUtils.isStrictlyNumeric(qty)) {
+				updatePurchaseField("Enter one quantity per item ID");
+				return;
+			}
+			cart.add(Integer.parseInt(itemId));
+			cart.add(Integer.parseInt(qty));
+		}
+		ObjectWrapper request = new ObjectWrapper();
+		request.addPassedObj((Object) cart);
+		request.setMessage(CART, ITEM_ELEC);
+		cc.getShopClient().sendRequest(request).whenComplete((answer, e) -> {
+			if (e != null || !CART.equals(answer.getMessage()[0])) {
+				updatePurchaseField(PFAILED);
+				return;
+			}
+			StringBuilder res = new StringBuilder();
+			ArrayList<Object> status = answer.getPassedObj();
+			for (int i = 0; i < status.size(); i++) {
+				res.append(i == 0 ? "" : ", ").append(itemIds[i].trim()).append(": ").append(status.get(i));
+			}
+			updatePurchaseField(res.toString());
+			executeSearchAll();
+		});
+	}
+
+	/**
+	 * Execute a search of all items in the server database. Items are loaded a
+	 * page at a time; the first page is requested now and the following pages
+	 * as the user scrolls to the end of the results table.
 	 */
 	public void executeSearchAll() {
-		this.app.resetSearchResultText();
-		String command = SEARCH + ALL;
-		// create temp customer object with searchable attribute set.
-		Item_Elec item = new Item_Elec();
-		wrapMessage(command, ITEM_ELEC, item);
+		Runnable runner = new Runnable() {
+			public void run() {
+				app.resetSearchResultText();
+				pageGeneration++;
+				lastItem = null;
+				pageLoading = false;
+				pagesDone = false;
+				requestNextPage();
+			}
+		};
+		EventQueue.invokeLater(runner);
+	}
+
+	/**
+	 * Request the page of items following the last item shown, unless a page
+	 * is already on its way or the last page was shown. Runs on the event
+	 * dispatch thread.
+	 */
+	private void requestNextPage() {
+		if (pageLoading || pagesDone) {
+			return;
+		}
+		pageLoading = true;
+		int generation = pageGeneration;
+		ObjectWrapper request = new ObjectWrapper();
+		request.addPassedObj(lastItem); // null asks for the first page
+		request.addPassedObj(Integer.valueOf(PAGE_SIZE));
+		request.setMessage(SEARCH + PAGE, ITEM_ELEC);
+		cc.getShopClient().sendRequest(request).whenComplete((answer, e) -> {
+			Runnable runner = new Runnable() {
+				public void run() {
+					showPage(generation, e == null ? answer : null);
+				}
+			};
+			EventQueue.invokeLater(runner);
+		});
+	}
+
+	/**
+	 * Append a page of items to the results table. Runs on the event dispatch
+	 * thread.
+	 * @param generation (int) generation of the search the page was requested for.
+	 * @param answer     (ObjectWrapper) the page, null if the request failed.
+	 */
+	private void showPage(int generation, ObjectWrapper answer) {
+		if (generation != pageGeneration) {
+			return; // a newer search replaced the results
+		}
+		pageLoading = false;
+		if (answer == null || !DISPLAYITEM.equals(answer.getMessage()[0])) {
+			pagesDone = true; // no items after the last page
+			return;
+		}
+		ArrayList<Object> page = answer.getPassedObj();
+		for (Object o : page) {
+			app.setSearchResultText(o.toString());
+		}
+		lastItem = (Item_Elec) page.get(page.size() - 1);
+		pagesDone = page.size() < PAGE_SIZE;
+	}
+
+	/**
+	 * Stop loading pages of the all items browse.
+	 */
+	private void stopPaging() {
+		pageGeneration++;
+		pageLoading = false;
+		pagesDone = true;
 	}
 	
 	/**
@@ -205,7 +333,7 @@ public class ImsController implements Commands, PrintTableConstants {
 	 * @version 1.0
 	 * @since 2020-11-26
 	 */
-	private class ImsActions implements ActionListener, ListSelectionListener {
+	private class ImsActions implements ActionListener, ListSelectionListener, AdjustmentListener {
 
 		/**
 		 * Method trigger for all action events by the ImsApplication button clicks.
@@ -244,6 +372,16 @@ public class ImsController implements Commands, PrintTableConstants {
 			};
 			EventQueue.invokeLater(runner);
 		}
+
+		/**
+		 * Method trigger for scrolling of the ImsApplication results table. Loads
+		 * the next page once the user nears the end of the results.
+		 */
+		@Override
+		public void adjustmentValueChanged(AdjustmentEvent e) {
+			if (!pagesDone && !pageLoading && app.isScrolledToEnd())
+				requestNextPage();
+		}
 	}
 	
 }
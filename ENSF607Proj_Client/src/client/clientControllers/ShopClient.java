@@ -1,20 +1,39 @@
 package client.clientControllers;
 
+import java.awt.EventQueue;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import sharedModel.Commands;
 import sharedModel.ObjectWrapper;
+import sharedModel.WireFormat;
+import sharedModel.WrapperCodec;
 
 /**
  * Main interaction point between the client controller and the server sockets.
  * Contains main communication loop responsible for sending and receiving input
  * from the server. Send and receive operations use an object wrapper and a
  * distinct list of commands (through implemented interface) to tell the server
- * what command to execute and what object to execute that command with.
+ * what command to execute and what object to execute that command with. Each
+ * wrapper is sent as a length prefixed frame (see WrapperCodec). On connect the
+ * client offers the binary wire format and falls back to serialized wrappers
+ * if the server does not answer the offer.
+ * 
+ * Every request gets a request ID and is sent without waiting for earlier
+ * replies; the server answers with the same ID, possibly out of order, and
+ * each reply completes the future returned to the caller that sent it.
+ * Large replies arrive as a stream of chunks flagged with more; after each
+ * chunk has been handed to the view the client grants the server credit for
+ * one more chunk, so the server never runs ahead of the display.
  * 
  * @author NJack & JJoorisity
  * @version 1.0
@@ -23,17 +42,44 @@ import sharedModel.ObjectWrapper;
 public class ShopClient implements Commands {
 
 	private Socket aSocket;
-	private ObjectInputStream clientIn;
-	private ObjectOutputStream clientOut;
+	private DataInputStream clientIn;
+	private DataOutputStream clientOut;
 	private ClientController clientController;
+	private WireFormat format = WireFormat.SERIALIZED;
+	private final AtomicInteger nextRequestId = new AtomicInteger();
+	private final ConcurrentHashMap<Integer, ReplyHandler> pending = new ConcurrentHashMap<Integer, ReplyHandler>();
+
+	/**
+	 * Receiver of the replies to one request.
+	 */
+	private static final class ReplyHandler {
+		private final Consumer<ObjectWrapper> onReply; // called for every chunk, may be null
+		private final CompletableFuture<ObjectWrapper> done = new CompletableFuture<ObjectWrapper>();
+
+		ReplyHandler(Consumer<ObjectWrapper> onReply) {
+			this.onReply = onReply;
+		}
+
+		void receive(ObjectWrapper answer) {
+			if (onReply != null) {
+				onReply.accept(answer);
+			}
+			if (!answer.isMore()) {
+				done.complete(answer);
+			}
+		}
+	}
 
 	public ShopClient(String serverName, int portNumber) {
 		try {
-			aSocket = new Socket(serverName, portNumber);
-			// initialize client socket
-			clientOut = new ObjectOutputStream(aSocket.getOutputStream()); // Server sending stream
-			clientIn = new ObjectInputStream(aSocket.getInputStream()); // Server receiving stream
-
+			this.connect(serverName, portNumber);
+			if (this.offerBinary()) {
+				format = WireFormat.BINARY;
+			} else {
+				this.close(); // server closed the connection, it only knows serialized frames
+				this.connect(serverName, portNumber);
+			}
+			System.out.println("Connected using " + format + " wire format.");
 		} catch (UnknownHostException uhExc) {
 			System.err.println("Server host was not found.");
 		} catch (IOException e) {
@@ -42,73 +88,182 @@ public class ShopClient implements Commands {
 	}
 
 	/**
-	 * Open communication with the server sockets.
+	 * Open the socket and its streams.
+	 * @param serverName (String) host of the server.
+	 * @param portNumber (int) port of the server.
+	 * @throws IOException if the server can not be reached.
+	 */
+	private void connect(String serverName, int portNumber) throws IOException {
+		aSocket = new Socket(serverName, portNumber);
+		// initialize client socket
+		clientOut = new DataOutputStream(new BufferedOutputStream(aSocket.getOutputStream())); // Server sending stream
+		clientIn = new DataInputStream(new BufferedInputStream(aSocket.getInputStream())); // Server receiving stream
+	}
+
+	/**
+	 * Offer the binary wire format to the server.
+	 * @return (boolean) true if the server accepted it.
+	 */
+	private boolean offerBinary() {
+		try {
+			clientOut.writeInt(WrapperCodec.BINARY_HELLO);
+			clientOut.flush();
+			return clientIn.readInt() == WrapperCodec.BINARY_HELLO;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Open communication with the server sockets. Reads replies and completes
+	 * the pending request with the same request ID.
 	 */
 	public void communicate() {
-		ObjectWrapper answer = new ObjectWrapper();
+		ObjectWrapper answer;
 
 		// client running
 		while (true) {
 			try {
-				answer = (ObjectWrapper) clientIn.readObject(); // wait for server response
-				String command = answer.getMessage()[0]; // get command from server
-				if (answer != null && !command.equals("")) {
-					System.out.println("command : " + command);
-
-					switch (command) {
-					case COMPLETE: {
-						System.out.println("Action Completed");
-						break;
-					}
-					case FAILED: {
-						System.out.println("Action Failed");
-						break;
-					}
-					case DISPLAY: {// trigger search display
-						this.clientController.getCmsController().updateSearchResults(answer.getPassedObj());
-						break;
+				answer = WrapperCodec.readFrame(clientIn, format); // wait for server response
+				int id = answer.getRequestId();
+				ReplyHandler waiting = answer.isMore() ? pending.get(id) : pending.remove(id);
+				if (waiting != null) {
+					waiting.receive(answer);
+					if (answer.isMore()) {
+						// queued behind the view updates of this chunk
+						EventQueue.invokeLater(() -> this.sendCredit(id));
 					}
-					case DISPLAYEDIT: {// trigger edit display
-						this.clientController.getCmsController().updateCustInfoPane(answer.getPassedObj());
-						break;
-					}
-					case DISPLAYITEM: {
-						this.clientController.getImsController().updateSearchResults(answer.getPassedObj());
-						break;
-					}
-					case PURCHASE: {
-						this.clientController.getImsController().updatePurchaseField(answer.getMessage()[1]);
-						this.clientController.getImsController().executeSearchAll();
-						break;
-					}
-					}
-
-				} else if (command.contentEquals("QUIT")) {
+				} else if (QUIT.equals(answer.getMessage()[0])) {
 					break;
+				} else {
+					this.handleResponse(answer); // reply without a known request ID
 				}
-				answer.resetWrapper();
-
-			} catch (ClassNotFoundException | IOException e) {
-				// TODO Auto-generated catch block
+			} catch (IOException e) {
 				e.printStackTrace();
+				break; // connection to the server lost
 			}
 
 		}
+		IOException lost = new IOException("Connection to the server closed");
+		for (ReplyHandler waiting : pending.values()) {
+			waiting.done.completeExceptionally(lost);
+		}
+		pending.clear();
 		this.close();
 	}
 
 	/**
-	 * Sends a wrapped object to the server. Waits for response from server before continuing in the communication loop above.
+	 * Default handling of a server reply: update the view matching the reply
+	 * command.
+	 * @param answer (ObjectWrapper) reply from the server.
+	 */
+	private void handleResponse(ObjectWrapper answer) {
+		String command = answer.getMessage()[0]; // get command from server
+		if (command != null && !command.equals("")) {
+			System.out.println("command : " + command);
+
+			switch (command) {
+			case COMPLETE: {
+				System.out.println("Action Completed");
+				break;
+			}
+			case FAILED: {
+				System.out.println("Action Failed");
+				break;
+			}
+			case DISPLAY: {// trigger search display
+				this.clientController.getCmsController().updateSearchResults(answer.getPassedObj());
+				break;
+			}
+			case DISPLAYEDIT: {// trigger edit display
+				this.clientController.getCmsController().updateCustInfoPane(answer.getPassedObj());
+				break;
+			}
+			case DISPLAYITEM: {
+				this.clientController.getImsController().updateSearchResults(answer.getPassedObj());
+				break;
+			}
+			case PURCHASE: {
+				this.clientController.getImsController().updatePurchaseField(answer.getMessage()[1]);
+				this.clientController.getImsController().executeSearchAll();
+				break;
+			}
+			}
+		}
+	}
+
+	/**
+	 * Sends a wrapped object to the server. The reply is handled by the
+	 * communication loop above when it arrives; other requests may be sent
+	 * meanwhile.
 	 * @param request (ObjectWrapper) object containing the request and object to be sent to the server.
 	 */
 	public void triggerOutput(ObjectWrapper request) {
+		this.sendRequest(request, this::handleResponse).exceptionally(e -> {
+			System.err.println("Request " + request.getMessage()[0] + " failed: " + e.getMessage());
+			return null;
+		});
+	}
+
+	/**
+	 * Sends a wrapped object to the server without waiting for earlier
+	 * requests to be answered.
+	 * @param request (ObjectWrapper) object containing the request and object to be sent to the server.
+	 * @return (CompletableFuture<ObjectWrapper>) completed with the server reply,
+	 *         the last chunk of a streamed reply.
+	 */
+	public CompletableFuture<ObjectWrapper> sendRequest(ObjectWrapper request) {
+		return this.sendRequest(request, null);
+	}
 
+	/**
+	 * Sends a wrapped object to the server without waiting for earlier
+	 * requests to be answered, passing every chunk of the reply to a consumer.
+	 * @param request (ObjectWrapper) object containing the request and object to be sent to the server.
+	 * @param onReply (Consumer<ObjectWrapper>) called on the communication thread for each chunk.
+	 * @return (CompletableFuture<ObjectWrapper>) completed with the last chunk of the reply.
+	 */
+	public CompletableFuture<ObjectWrapper> sendRequest(ObjectWrapper request, Consumer<ObjectWrapper> onReply) {
+		ReplyHandler handler = new ReplyHandler(onReply);
+		int id = nextRequestId.incrementAndGet();
+		if (id == 0) {
+			id = nextRequestId.incrementAndGet(); // 0 means no request ID
+		}
+		request.setRequestId(id);
+		pending.put(id, handler);
 		// send object wrapper with command
 		try {
-			clientOut.writeObject(request);
+			this.write(request);
 		} catch (IOException e) {
-			e.printStackTrace();
+			pending.remove(id);
+			handler.done.completeExceptionally(e);
 		}
+		return handler.done;
+	}
+
+	/**
+	 * Allow the server to send one more chunk of a streamed reply.
+	 * @param requestId (int) ID of the streamed request.
+	 */
+	private void sendCredit(int requestId) {
+		ObjectWrapper credit = new ObjectWrapper();
+		credit.setMessage(CREDIT, null);
+		credit.addPassedObj(Integer.valueOf(1));
+		credit.setRequestId(requestId);
+		try {
+			this.write(credit);
+		} catch (IOException e) {
+			System.err.println("Sending credit failed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Write one frame; frames from different threads are never interleaved.
+	 * @param ow (ObjectWrapper) the wrapper being sent.
+	 * @throws IOException if the connection is closed.
+	 */
+	private synchronized void write(ObjectWrapper ow) throws IOException {
+		WrapperCodec.writeFrame(clientOut, ow, format);
 	}
 
 	public void close() {
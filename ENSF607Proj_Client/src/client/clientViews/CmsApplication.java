@@ -3,6 +3,7 @@ package client.clientViews;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.awt.event.AdjustmentListener;
 
 import javax.swing.border.*;
 import javax.swing.event.ListSelectionListener;
@@ -387,6 +388,23 @@ public class CmsApplication {
 		this.resultsList.addListSelectionListener(selectListAction);
 	}
 
+	/**
+	 * Add a listener to the scroll bar of the search results list.
+	 * @param scrollAction (AdjustmentListener)
+	 */
+	public void addResultsScrollAction(AdjustmentListener scrollAction) {
+		this.scrollPane.getVerticalScrollBar().addAdjustmentListener(scrollAction);
+	}
+
+	/**
+	 * @return (boolean) true if the search results are scrolled to within half a
+	 *         screen of their end, or fit on the screen.
+	 */
+	public boolean isResultsScrolledToEnd() {
+		JScrollBar bar = this.scrollPane.getVerticalScrollBar();
+		return bar.getValue() + bar.getVisibleAmount() * 3 / 2 >= bar.getMaximum();
+	}
+
 	public void addClearCustInfoAction(ActionListener clearCustInfoAction) {
 		this.clearCustBtn.addActionListener(clearCustInfoAction);
 	}
@@ -428,6 +446,18 @@ public class CmsApplication {
 		this.listModel1.add(i, output);
 	}
 
+	/**
+	 * Appends a search result without scrolling to it, so a page loaded while the
+	 * user scrolls does not move the list.
+	 * 
+	 * @param output (String) adds items to the results list based on passed
+	 *               object.toString()
+	 */
+	@SuppressWarnings("unchecked")
+	public void appendSearchResultText(String output) {
+		this.listModel1.addElement(output);
+	}
+
 	/**
 	 * Clears all search results
 	 */
@@ -3,6 +3,7 @@ package client.clientViews;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.awt.event.AdjustmentListener;
 
 import javax.swing.border.*;
 import javax.swing.event.ListSelectionListener;
@@ -83,6 +84,23 @@ public class ImsApplication {
 		itemTable.getSelectionModel().addListSelectionListener(listener);
 	}
 
+	/**
+	 * Add a listener to the scroll bar of the search results table.
+	 * @param listener (AdjustmentListener)
+	 */
+	public void addScrollListener(AdjustmentListener listener) {
+		itemSearchPane.getVerticalScrollBar().addAdjustmentListener(listener);
+	}
+
+	/**
+	 * @return (boolean) true if the search results are scrolled to within half a
+	 *         screen of their end, or fit on the screen.
+	 */
+	public boolean isScrolledToEnd() {
+		JScrollBar bar = itemSearchPane.getVerticalScrollBar();
+		return bar.getValue() + bar.getVisibleAmount() * 3 / 2 >= bar.getMaximum();
+	}
+
 	/**
 	 * @return (JButton) the clear items button.
 	 */
@@ -221,7 +239,7 @@ public class ImsApplication {
 	public void setSearchResultText(String output) {
 		String[] split = output.trim().split(",");
 		Object[] rowData = {new Integer(Integer.parseInt(split[0])), split[1], new Integer(Integer.parseInt(split[2])), 
-				String.format("%.2f", Float.parseFloat(split[3]))};
+				split[3]}; // price already printed with two decimals
 		this.tableModel.addRow(rowData);
 		tableModel.fireTableRowsInserted(0, tableModel.getRowCount());
 	}
@@ -16,6 +16,7 @@ public interface Commands {
 	static final String NAME = "NAME";
 	static final String ALL = "ALL";
 	static final String TYPE = "TYPE";
+	static final String PAGE = "PAGE"; // keyset page: passed objects are the last row of the previous page and the page size
 	static final String DISPLAY = "DISPLAY";
 	static final String ITEM_ELEC = "ITEM_ELEC";
 	static final String ORDER = "ORDER";
@@ -23,9 +24,14 @@ public interface Commands {
 	static final String SEARCH = "SEARCH";
 	static final String DELETE = "DELETE";
 	static final String PURCHASE = "PURCHASE";
+	static final String CART = "CART"; // passed list is the customer ID, 1 for all or nothing or 0 for each line alone, then item ID and quantity pairs
+	static final String RECEIVE = "RECEIVE"; // passed list is the item ID and the quantity of a reorder received
+	static final String ADJUST = "ADJUST"; // passed list is the item ID and the stock change, negative to remove stock
 	static final String QUIT = "QUIT";
+	static final String CREDIT = "CREDIT"; // client ready for more chunks of a streamed reply
 	static final String DISPLAYEDIT = "DISPLAYEDIT";
 	static final String DISPLAYITEM = "DISPLAYITEM";
 	static final String PCOMPLETE = "Purchase Complete";
 	static final String PFAILED = "Inventory Low";
+	static final String PCANCELLED = "Purchase Cancelled"; // cart line not bought because another line failed
 }
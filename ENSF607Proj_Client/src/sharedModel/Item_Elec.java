@@ -20,15 +20,15 @@ public class Item_Elec extends Item {
 	 * @param itemID     (Integer) itemID from txt file
 	 * @param itemName   (String) item name from txt file
 	 * @param qty        (Integer qty from txt file
-	 * @param price      (Double) price from txt file
+	 * @param priceCents (long) price in cents
 	 * @param supplierID (String) of numerical supplier id
 	 * @param ptype		 (String) of powertype (AC/DC)
 	 * @param volts		 (Integer required tool voltage (120/240 etc)
 	 * @param phase		 (Integer required electrical phase (1/2/3) for tool operation
 	 */
-	public Item_Elec(int itemID, char itemType, String itemDesc, int qty, double price, int supplierID, String ptype,
+	public Item_Elec(int itemID, char itemType, String itemDesc, int qty, long priceCents, int supplierID, String ptype,
 			int volts, int phase) {
-		super(itemID, itemType, itemDesc, qty, price, supplierID);
+		super(itemID, itemType, itemDesc, qty, priceCents, supplierID);
 		this.setPowerType(ptype);
 		this.setVoltage(volts);
 		this.setPhase(phase);
@@ -15,6 +15,8 @@ public class ObjectWrapper implements Serializable {
 	private static final long serialVersionUID = 3L;
 	private String[] message = new String[2];
 	private ArrayList<Object> passedObj = new ArrayList<Object>();
+	private int requestId; // 0 when the sender does not pipeline requests
+	private boolean more; // further chunks of the same reply follow
 
 	/**
 	 * Default constructor.
@@ -40,6 +42,37 @@ public class ObjectWrapper implements Serializable {
 		this.message[1] = objectType;
 	}
 
+	/**
+	 * @return (int) ID matching a response to its request, 0 if not set.
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
+
+	/**
+	 * Set the ID matching a response to its request. Requests with an ID may be
+	 * answered out of order; the response carries the same ID.
+	 * @param requestId (int) ID chosen by the client, 0 for none.
+	 */
+	public void setRequestId(int requestId) {
+		this.requestId = requestId;
+	}
+
+	/**
+	 * @return (boolean) true if this is a chunk of a streamed reply and further
+	 *         chunks with the same request ID follow.
+	 */
+	public boolean isMore() {
+		return more;
+	}
+
+	/**
+	 * @param more (boolean) true if further chunks of the same reply follow.
+	 */
+	public void setMore(boolean more) {
+		this.more = more;
+	}
+
 	/**
 	 * Retrieve object in object wrapper arraylist.
 	 * @param i (int) index of object being retrieved.
@@ -79,6 +112,8 @@ public class ObjectWrapper implements Serializable {
 	public void resetWrapper() {
 		this.message[0] = "";
 		this.message[1] = "";
+		this.requestId = 0;
+		this.more = false;
 		passedObj.clear();
 	}
 
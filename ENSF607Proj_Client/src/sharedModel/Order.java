@@ -58,6 +58,13 @@ public class Order implements PrintTableConstants, Serializable {
 
 	}
 
+	/**
+	 * @param date (LocalDate) date of an order received from the other side.
+	 */
+	public void setDate(LocalDate date) {
+		this.date = date;
+	}
+
 	/**
 	 * Add the order lines that belong to this order.
 	 * @param orderlines (LinkedHashSet<OrderLine>) list of order lines to be added.
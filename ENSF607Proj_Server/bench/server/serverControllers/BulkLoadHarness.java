@@ -0,0 +1,146 @@
+package server.serverControllers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+
+import sharedModel.Item_Elec;
+import sharedModel.Money;
+
+/**
+ * Measures the load time of a generated item file of millions of rows with
+ * BulkLoader, against the shop database, and the rate of the row by row
+ * import it replaced on a sample of the same file.
+ *
+ * The row by row import inserts each line on its own with an auto committed
+ * insert, as DbController.initializeItemTable did before BulkLoader; at a few
+ * thousand rows per second a multi-million row file would take hours, so it
+ * only loads the first lines of the file.
+ *
+ * Arguments: rows of the file (2000000 by default) and rows of the row by row
+ * sample (20000 by default). The loaded items get IDs from FIRST_ID up and
+ * are deleted at the end, so run it against a test database initialized by
+ * DbController's main method.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class BulkLoadHarness implements DatabaseConstants, DatabaseTables {
+
+	private static final int FIRST_ID = 200000000; // above any item ID of the shop
+
+	public static void main(String[] args) throws Exception {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		int sample = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		ConnectionPool pool = new ConnectionPool();
+		pool.start();
+		DbControllerHelper helper = new DbControllerHelper();
+		Path file = Files.createTempFile("items", ".txt");
+		try {
+			generate(pool, file, rows);
+			System.out.printf("Generated %d rows, %d MB.%n", rows, Files.size(file) >> 20);
+			deleteLoaded(pool);
+
+			long start = System.nanoTime();
+			long loaded = new BulkLoader(pool, helper).loadItems(file.toString());
+			double seconds = (System.nanoTime() - start) / 1e9;
+			deleteLoaded(pool);
+
+			start = System.nanoTime();
+			int inserted = insertRowByRow(pool, helper, file, sample);
+			double sampleSeconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.printf("BulkLoader:  %d rows in %.1f s, %.0f rows/s%n", loaded, seconds, loaded / seconds);
+			System.out.printf("row by row:  %d rows in %.1f s, %.0f rows/s, %.0f s projected for %d rows%n", inserted,
+					sampleSeconds, inserted / sampleSeconds, rows * sampleSeconds / inserted, rows);
+		} finally {
+			deleteLoaded(pool);
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(Paths.get(file + ".progress"));
+			pool.close();
+		}
+	}
+
+	/**
+	 * Write a ';' delimited item file of generated items with IDs from FIRST_ID
+	 * up, supplied in turn by the suppliers of the database.
+	 * @param pool (ConnectionPool) pool of the shop database.
+	 * @param file (Path) file written.
+	 * @param rows (int) lines written.
+	 * @throws Exception if the suppliers could not be read or the file written.
+	 */
+	private static void generate(ConnectionPool pool, Path file, int rows) throws Exception {
+		ArrayList<Integer> suppliers = new ArrayList<Integer>();
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement("SELECT supplierId FROM " + SUPPLIERS);
+				ResultSet results = pStat.executeQuery()) {
+			while (results.next()) {
+				suppliers.add(results.getInt(1));
+			}
+		}
+		if (suppliers.isEmpty()) {
+			throw new IllegalStateException("The shop database holds no supplier.");
+		}
+		try (BufferedWriter out = Files.newBufferedWriter(file)) {
+			for (int i = 0; i < rows; i++) {
+				int itemId = FIRST_ID + i;
+				out.write(itemId + ";E;Loaded item " + itemId + ";" + (itemId % 100) + ";" + (itemId % 5000) / 100
+						+ ".99;" + suppliers.get(i % suppliers.size()) + ";AC;120;1");
+				out.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Insert the first lines of the item file one auto committed insert at a
+	 * time, as before BulkLoader.
+	 * @param pool   (ConnectionPool) pool of the shop database.
+	 * @param helper (DbControllerHelper) insert statement and line parser.
+	 * @param file   (Path) item file.
+	 * @param sample (int) lines inserted.
+	 * @return (int) rows inserted.
+	 * @throws Exception if the file could not be read or a row inserted.
+	 */
+	private static int insertRowByRow(ConnectionPool pool, DbControllerHelper helper, Path file, int sample)
+			throws Exception {
+		int inserted = 0;
+		try (BufferedReader in = Files.newBufferedReader(file); PooledConnection pc = pool.borrow()) {
+			String line;
+			while (inserted < sample && (line = in.readLine()) != null) {
+				Item_Elec item = (Item_Elec) helper.getItemFromTxt(line.split(";"));
+				try (PreparedStatement pStat = pc.prepareStatement(helper.insertItem())) {
+					pStat.setInt(1, item.getItemID());
+					pStat.setInt(2, item.getSupplierID());
+					pStat.setString(3, String.valueOf(item.getItemType()));
+					pStat.setString(4, item.getItemDesc());
+					pStat.setBigDecimal(5, Money.toDecimal(item.getPriceCents()));
+					pStat.setInt(6, item.getQty());
+					pStat.setString(7, item.getPowerType());
+					pStat.setInt(8, item.getVoltage());
+					pStat.setInt(9, item.getPhase());
+					inserted += pStat.executeUpdate();
+				}
+			}
+		}
+		return inserted;
+	}
+
+	/**
+	 * Delete the items loaded by the harness.
+	 * @param pool (ConnectionPool) pool of the shop database.
+	 * @throws Exception if the items could not be deleted.
+	 */
+	private static void deleteLoaded(ConnectionPool pool) throws Exception {
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement("DELETE FROM " + ITEMS + " WHERE itemId >= ?")) {
+			pStat.setInt(1, FIRST_ID);
+			pStat.executeUpdate();
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package server.serverControllers;
+
+import java.io.BufferedWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import server.serverModel.Inventory;
+import server.serverModel.MappedCatalog;
+
+/**
+ * Measures the cold start of the inventory: the time from opening the
+ * connection pool until the shared inventory holds every item, once reading
+ * the Items table and once mapping the catalog and the inventory snapshot.
+ * Each start runs in a new JVM with the heap options of this one, the way
+ * ServerController loads the inventory.
+ *
+ * Arguments: number of items, 5000000 by default. Items are bulk loaded into
+ * the Items table until it holds that many, so run it against a test database
+ * initialized by DbController's main method, from the folder the server runs
+ * in, with a heap large enough for the items, such as -Xmx3g.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class ColdStartHarness implements DatabaseConstants, DatabaseTables {
+
+	private static final String START = "--start";
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 2 && args[0].equals(START)) {
+			start(args[1].equals("snapshot"));
+			return;
+		}
+		int items = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+		fill(items);
+		startInNewJvm("table"); // no catalog or snapshot, reads the Items table and writes both
+		startInNewJvm("snapshot");
+		startInNewJvm("snapshot");
+	}
+
+	/**
+	 * Load the inventory as ServerController does and print how long it took.
+	 * @param fromSnapshot (boolean) false to delete the catalog and the
+	 *                     inventory snapshots first, so the Items table is read.
+	 * @throws Exception if the database or the journal could not be read.
+	 */
+	private static void start(boolean fromSnapshot) throws Exception {
+		if (!fromSnapshot) {
+			if (Files.isDirectory(Paths.get(JOURNAL_DIR))) {
+				InventorySnapshot.deleteBelow(Paths.get(JOURNAL_DIR), Long.MAX_VALUE);
+			}
+			Files.deleteIfExists(Paths.get(CATALOGFILE));
+		}
+		long start = System.nanoTime();
+		ConnectionPool pool = new ConnectionPool();
+		pool.start();
+		DbController db = new DbController(pool);
+		db.startJournal();
+		Inventory inventory = new Inventory();
+		MappedCatalog catalog = db.openCatalog();
+		int[] stock = catalog == null ? null : db.loadStock(catalog);
+		String source;
+		if (stock != null) {
+			inventory.setCatalog(catalog, stock);
+			source = "catalog and inventory snapshot";
+		} else {
+			db.loadSuppliers();
+			inventory.setItemList(db.loadInventory());
+			source = "Items table";
+		}
+		long elapsed = System.nanoTime() - start;
+		System.gc();
+		long heap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+		System.out.printf("%d items loaded from the %s in %d ms, heap used %d MB%n", inventory.size(), source,
+				elapsed / 1000000, heap >> 20);
+		db.close();
+	}
+
+	/**
+	 * Run one start in a new JVM with this JVM's class path and options.
+	 * @param mode (String) "table" or "snapshot".
+	 * @throws Exception if the JVM could not be started.
+	 */
+	private static void startInNewJvm(String mode) throws Exception {
+		List<String> command = new ArrayList<String>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ColdStartHarness.class.getName());
+		command.add(START);
+		command.add(mode);
+		Process process = new ProcessBuilder(command).inheritIO().start();
+		if (process.waitFor() != 0) {
+			throw new IllegalStateException("Start from the " + mode + " failed.");
+		}
+	}
+
+	/**
+	 * Bulk load generated items until the Items table holds a number of items.
+	 * Their descriptions are "Generated item " and the item ID.
+	 * @param items (int) number of items wanted.
+	 * @throws Exception if the table could not be read or loaded.
+	 */
+	static void fill(int items) throws Exception {
+		ConnectionPool pool = new ConnectionPool();
+		pool.start();
+		try {
+			int count;
+			int nextId;
+			ArrayList<Integer> suppliers = new ArrayList<Integer>();
+			try (PooledConnection pc = pool.borrow();
+					PreparedStatement pStat = pc.prepareStatement("SELECT COUNT(*), MAX(itemId) FROM " + ITEMS);
+					ResultSet results = pStat.executeQuery()) {
+				results.next();
+				count = results.getInt(1);
+				nextId = Math.max(results.getInt(2), 100000) + 1;
+			}
+			try (PooledConnection pc = pool.borrow();
+					PreparedStatement pStat = pc.prepareStatement("SELECT supplierId FROM " + SUPPLIERS);
+					ResultSet results = pStat.executeQuery()) {
+				while (results.next()) {
+					suppliers.add(results.getInt(1));
+				}
+			}
+			if (count >= items) {
+				return;
+			}
+			Path file = Files.createTempFile("items", ".txt");
+			try (BufferedWriter out = Files.newBufferedWriter(file)) {
+				for (int i = 0; i < items - count; i++) {
+					int itemId = nextId + i;
+					out.write(itemId + ";E;Generated item " + itemId + ";" + (itemId % 100) + ";" + (itemId % 5000) / 100
+							+ ".99;" + suppliers.get(itemId % suppliers.size()) + ";AC;120;1");
+					out.newLine();
+				}
+			}
+			System.out.println("Loading " + (items - count) + " items.");
+			new BulkLoader(pool, new DbControllerHelper()).loadItems(file.toString());
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(Paths.get(file + ".progress"));
+		} finally {
+			pool.close();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package server.serverControllers;
+
+import server.serverModel.Inventory;
+
+/**
+ * Measures item description search through the trigram description index of
+ * the inventory against the SQL LIKE search of DbController.queryItem(String),
+ * for searches matching about 10, 1000 and no items, and the time to build
+ * the index.
+ *
+ * Arguments: number of items, 5000000 by default. Items are bulk loaded into
+ * the Items table until it holds that many, as by ColdStartHarness, so run it
+ * against a test database initialized by DbController's main method, with a
+ * heap large enough for the items, such as -Xmx3g.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class DescriptionSearchHarness {
+
+	private static final int INDEX_SEARCHES = 100; // of each search text
+	private static final int SQL_SEARCHES = 3;
+
+	public static void main(String[] args) throws Exception {
+		int items = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+		ColdStartHarness.fill(items);
+		ConnectionPool pool = new ConnectionPool();
+		pool.start();
+		DbController db = new DbController(pool);
+		try {
+			Inventory inventory = new Inventory();
+			long start = System.nanoTime();
+			inventory.setItemList(db.queryItem());
+			System.out.printf("%d items indexed in %d ms%n", inventory.size(), (System.nanoTime() - start) / 1000000);
+
+			// the descriptions are "Generated item " and the item ID
+			for (String text : new String[] { "item 424242", "item 4242", "no such widget" }) {
+				int found = inventory.searchItems(text).size(); // warm up
+				start = System.nanoTime();
+				for (int i = 0; i < INDEX_SEARCHES; i++) {
+					found = inventory.searchItems(text).size();
+				}
+				double index = (System.nanoTime() - start) / 1e6 / INDEX_SEARCHES;
+				int sqlFound = 0;
+				start = System.nanoTime();
+				for (int i = 0; i < SQL_SEARCHES; i++) {
+					sqlFound = db.queryItem(text).size();
+				}
+				double sql = (System.nanoTime() - start) / 1e6 / SQL_SEARCHES;
+				System.out.printf("\"%s\": index %.3f ms, %d found; SQL LIKE %.1f ms, %d found%n", text, index, found,
+						sql, sqlFound);
+			}
+		} finally {
+			db.close();
+		}
+	}
+}
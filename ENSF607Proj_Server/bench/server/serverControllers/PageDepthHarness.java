@@ -0,0 +1,204 @@
+package server.serverControllers;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import sharedModel.Customer;
+
+/**
+ * Measures the latency of a SEARCHPAGE page of items and of customers at the
+ * start of the table and deep into it, read by key as DbController does and
+ * by OFFSET as a paging query without a key would, against the shop
+ * database. Read by key, a deep page should cost the same as the first one.
+ *
+ * Customers are paged by type 'R'. The pages are read through
+ * DbController.queryItemPage and DbController.queryCustomerPage; the key of a
+ * deep page is looked up before it is timed.
+ *
+ * Arguments: items, bulk loaded into the Items table first (2000000 by
+ * default), and customers, generated with IDs from FIRST_CUSTOMER_ID up and
+ * deleted at the end (1000000 by default). Run it against a test database
+ * initialized by DbController's main method.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class PageDepthHarness implements DatabaseConstants, DatabaseTables {
+
+	private static final int FIRST_CUSTOMER_ID = 900000000; // above any customer ID of the shop
+	private static final int PAGE_SIZE = 50;
+	private static final int KEY_RUNS = 200; // timed reads of a page by key
+	private static final int OFFSET_RUNS = 5; // timed reads of a page by offset
+
+	public static void main(String[] args) throws Exception {
+		int items = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		int customers = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		ColdStartHarness.fill(items);
+		ConnectionPool pool = new ConnectionPool();
+		pool.start();
+		DbController db = new DbController(pool);
+		try {
+			loadCustomers(pool, customers);
+			int itemRows = count(pool, "SELECT COUNT(*) FROM " + ITEMS);
+			int customerRows = count(pool, "SELECT COUNT(*) FROM " + CUSTOMERS + " WHERE customerType = 'R'");
+			System.out.printf("%d items, %d customers of type R, pages of %d%n", itemRows, customerRows, PAGE_SIZE);
+			for (int depth : new int[] { 0, itemRows / 2, itemRows - PAGE_SIZE }) {
+				int after = depth == 0 ? Integer.MIN_VALUE : itemIdAt(pool, depth - 1);
+				double byKey = time(KEY_RUNS, () -> db.queryItemPage(after, PAGE_SIZE).size());
+				double byOffset = time(OFFSET_RUNS, () -> offsetPage(pool,
+						"SELECT * FROM " + ITEMS + " ORDER BY itemId LIMIT ? OFFSET ?", depth));
+				System.out.printf("item page at row %9d: by key %8.3f ms, by offset %9.3f ms%n", depth, byKey, byOffset);
+			}
+			for (int depth : new int[] { 0, customerRows / 2, customerRows - PAGE_SIZE }) {
+				Customer after = depth == 0 ? null : customerAt(pool, depth - 1);
+				double byKey = time(KEY_RUNS, () -> db.queryCustomerPage('R', after, PAGE_SIZE).size());
+				double byOffset = time(OFFSET_RUNS, () -> offsetPage(pool, "SELECT * FROM " + CUSTOMERS
+						+ " WHERE customerType = 'R' ORDER BY lName, fName, customerId LIMIT ? OFFSET ?", depth));
+				System.out.printf("customer page at row %9d: by key %8.3f ms, by offset %9.3f ms%n", depth, byKey,
+						byOffset);
+			}
+		} finally {
+			try (PooledConnection pc = pool.borrow();
+					PreparedStatement pStat = pc.prepareStatement("DELETE FROM " + CUSTOMERS + " WHERE customerId >= ?")) {
+				pStat.setInt(1, FIRST_CUSTOMER_ID);
+				pStat.executeUpdate();
+			}
+			pool.close();
+		}
+	}
+
+	/**
+	 * One page read being timed.
+	 */
+	@FunctionalInterface
+	private interface PageRead {
+		int run() throws Exception;
+	}
+
+	/**
+	 * @param runs (int) timed reads, after a tenth as many reads to warm up.
+	 * @param read (PageRead) page read.
+	 * @return (double) average time of a read in milliseconds.
+	 * @throws Exception if a read failed or returned no row.
+	 */
+	private static double time(int runs, PageRead read) throws Exception {
+		for (int i = 0; i <= runs / 10; i++) {
+			if (read.run() == 0) {
+				throw new IllegalStateException("Empty page.");
+			}
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			read.run();
+		}
+		return (System.nanoTime() - start) / 1e6 / runs;
+	}
+
+	/**
+	 * @param pool  (ConnectionPool) pool of the shop database.
+	 * @param sql   (String) page query with LIMIT and OFFSET parameters.
+	 * @param depth (int) rows skipped.
+	 * @return (int) rows of the page.
+	 * @throws Exception if the page could not be read.
+	 */
+	private static int offsetPage(ConnectionPool pool, String sql, int depth) throws Exception {
+		int rows = 0;
+		try (PooledConnection pc = pool.borrow(); PreparedStatement pStat = pc.prepareStatement(sql)) {
+			pStat.setInt(1, PAGE_SIZE);
+			pStat.setInt(2, depth);
+			try (ResultSet results = pStat.executeQuery()) {
+				while (results.next()) {
+					rows++;
+				}
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * @param pool (ConnectionPool) pool of the shop database.
+	 * @param row  (int) position of the item in item ID order, from 0.
+	 * @return (int) ID of the item.
+	 * @throws Exception if the item could not be read.
+	 */
+	private static int itemIdAt(ConnectionPool pool, int row) throws Exception {
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement("SELECT itemId FROM " + ITEMS
+						+ " ORDER BY itemId LIMIT 1 OFFSET ?")) {
+			pStat.setInt(1, row);
+			try (ResultSet results = pStat.executeQuery()) {
+				results.next();
+				return results.getInt(1);
+			}
+		}
+	}
+
+	/**
+	 * @param pool (ConnectionPool) pool of the shop database.
+	 * @param row  (int) position of the customer in page order, from 0.
+	 * @return (Customer) key of the customer: its names and ID.
+	 * @throws Exception if the customer could not be read.
+	 */
+	private static Customer customerAt(ConnectionPool pool, int row) throws Exception {
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement("SELECT customerId, fName, lName FROM " + CUSTOMERS
+						+ " WHERE customerType = 'R' ORDER BY lName, fName, customerId LIMIT 1 OFFSET ?")) {
+			pStat.setInt(1, row);
+			try (ResultSet results = pStat.executeQuery()) {
+				results.next();
+				Customer key = new Customer();
+				key.setCustomerId(results.getInt(1));
+				key.setFirstName(results.getString(2));
+				key.setLastName(results.getString(3));
+				key.setCustomerType('R');
+				return key;
+			}
+		}
+	}
+
+	/**
+	 * @param pool (ConnectionPool) pool of the shop database.
+	 * @param sql  (String) count query.
+	 * @return (int) the count.
+	 * @throws Exception if the query failed.
+	 */
+	private static int count(ConnectionPool pool, String sql) throws Exception {
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(sql);
+				ResultSet results = pStat.executeQuery()) {
+			results.next();
+			return results.getInt(1);
+		}
+	}
+
+	/**
+	 * Bulk load generated customers of type R, named so that name order differs
+	 * from ID order.
+	 * @param pool      (ConnectionPool) pool of the shop database.
+	 * @param customers (int) customers loaded.
+	 * @throws Exception if the file could not be written or loaded.
+	 */
+	private static void loadCustomers(ConnectionPool pool, int customers) throws Exception {
+		Path file = Files.createTempFile("customers", ".txt");
+		try {
+			try (BufferedWriter out = Files.newBufferedWriter(file)) {
+				for (int i = 0; i < customers; i++) {
+					long scrambled = i * 7919L % customers;
+					out.write((FIRST_CUSTOMER_ID + i) + ";F" + (i % 1000) + ";L" + scrambled + ";" + i
+							+ " Main St.;T2N 1N4;403-555-0100;R");
+					out.newLine();
+				}
+			}
+			System.out.println("Loading " + customers + " customers.");
+			new BulkLoader(pool, new DbControllerHelper()).loadCustomers(file.toString());
+		} finally {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(Paths.get(file + ".progress"));
+		}
+	}
+}
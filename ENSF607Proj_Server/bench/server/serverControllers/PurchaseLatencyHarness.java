@@ -0,0 +1,181 @@
+package server.serverControllers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import server.serverModel.Inventory;
+
+/**
+ * Measures the latency of a purchase with and without the purchase journal,
+ * against the shop database.
+ *
+ * With the journal a purchase returns once DbController.executePurchase has
+ * forced it to the journal file; concurrent purchases share a force and the
+ * applier writes them to the database in batches. Without the journal every
+ * purchase commits its purchase record in its own transaction before it is
+ * answered, as it did before the journal, when the stock change was written
+ * behind the transaction.
+ *
+ * Arguments: purchasing threads and purchases per thread, both optional.
+ * Every purchase takes one unit of the first item, so all of them compete
+ * for one item; each thread buys for its own customer, in turn among the
+ * customers of the database. The journaled purchases leave the item's stock
+ * lower in the database, so run it against a test database initialized by
+ * DbController's main method.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class PurchaseLatencyHarness implements DatabaseConstants, DatabaseTables {
+
+	private static final int REMAINING = 1000; // stock left reported by each purchase, above any reorder
+
+	/**
+	 * One purchase being timed.
+	 */
+	@FunctionalInterface
+	private interface Purchase {
+		void run(int itemId, int customerId) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		ConnectionPool pool = new ConnectionPool();
+		pool.start();
+		DbController db = new DbController(pool);
+		db.startJournal();
+		int hotItem = firstItem(pool);
+		int[] customerIds = customers(pool);
+		int orderId = new Inventory().generateOrderID();
+
+		DbControllerHelper helper = new DbControllerHelper();
+		Purchase direct = (itemId, customerId) -> {
+			try (PooledConnection pc = pool.borrow();
+					PreparedStatement pStat = pc.prepareStatement(helper.insertPurchasesIgnore())) {
+				Connection conn = pc.getConnection();
+				conn.setAutoCommit(false);
+				try {
+					pStat.setInt(1, customerId);
+					pStat.setInt(2, itemId);
+					pStat.executeUpdate();
+					conn.commit();
+				} catch (SQLException e) {
+					conn.rollback();
+					throw e;
+				} finally {
+					conn.setAutoCommit(true);
+				}
+			}
+		};
+		Purchase journaled = (itemId, customerId) -> {
+			if (!db.executePurchase(itemId, 1, REMAINING, customerId, orderId)) {
+				throw new IllegalStateException("Purchase journal write failed.");
+			}
+		};
+
+		measure("warm up", direct, hotItem, customerIds, threads, perThread / 5);
+		measure("warm up", journaled, hotItem, customerIds, threads, perThread / 5);
+		measure("without journal", direct, hotItem, customerIds, threads, perThread);
+		measure("with journal", journaled, hotItem, customerIds, threads, perThread);
+		db.close();
+	}
+
+	/**
+	 * Run purchases on several threads at once and print their latency
+	 * percentiles and throughput.
+	 * @param name        (String) label of the run.
+	 * @param purchase    (Purchase) purchase being timed.
+	 * @param itemId      (int) ID of the item purchased.
+	 * @param customerIds (int[]) IDs of the customers, one per thread in turn.
+	 * @param threads     (int) threads purchasing at once.
+	 * @param perThread   (int) purchases by each thread.
+	 * @throws InterruptedException if interrupted while waiting for the threads.
+	 */
+	private static void measure(String name, Purchase purchase, int itemId, int[] customerIds, int threads,
+			int perThread) throws InterruptedException {
+		long[] latencies = new long[threads * perThread];
+		AtomicInteger failures = new AtomicInteger();
+		Thread[] workers = new Thread[threads];
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			int first = t * perThread;
+			int customerId = customerIds[t % customerIds.length];
+			workers[t] = new Thread(() -> {
+				for (int i = 0; i < perThread; i++) {
+					long begin = System.nanoTime();
+					try {
+						purchase.run(itemId, customerId);
+					} catch (Exception e) {
+						if (failures.getAndIncrement() == 0) {
+							e.printStackTrace();
+						}
+					}
+					latencies[first + i] = System.nanoTime() - begin;
+				}
+			});
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		long elapsed = System.nanoTime() - start;
+		Arrays.sort(latencies);
+		System.out.printf("%-16s %6d purchases on %d threads: p50 %.2f ms, p99 %.2f ms, max %.2f ms, %.0f purchases/s%s%n",
+				name, latencies.length, threads, percentile(latencies, 0.50), percentile(latencies, 0.99),
+				latencies[latencies.length - 1] / 1e6, latencies.length * 1e9 / elapsed,
+				failures.get() == 0 ? "" : ", " + failures.get() + " failed");
+	}
+
+	/**
+	 * @param sorted   (long[]) latencies in nanoseconds, sorted.
+	 * @param fraction (double) percentile as a fraction.
+	 * @return (double) latency at the percentile in milliseconds.
+	 */
+	private static double percentile(long[] sorted, double fraction) {
+		int at = (int) Math.ceil(fraction * sorted.length) - 1;
+		return sorted[Math.max(0, at)] / 1e6;
+	}
+
+	/**
+	 * @param pool (ConnectionPool) pool of the shop database.
+	 * @return (int) ID of the first item.
+	 * @throws Exception if the database holds no item.
+	 */
+	private static int firstItem(ConnectionPool pool) throws Exception {
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement("SELECT MIN(itemId) FROM " + ITEMS);
+				ResultSet results = pStat.executeQuery()) {
+			if (!results.next() || results.getObject(1) == null) {
+				throw new IllegalStateException("The shop database holds no item.");
+			}
+			return results.getInt(1);
+		}
+	}
+
+	/**
+	 * @param pool (ConnectionPool) pool of the shop database.
+	 * @return (int[]) IDs of every customer.
+	 * @throws Exception if the database holds no customer.
+	 */
+	private static int[] customers(ConnectionPool pool) throws Exception {
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement("SELECT customerId FROM " + CUSTOMERS);
+				ResultSet results = pStat.executeQuery()) {
+			while (results.next()) {
+				ids.add(results.getInt(1));
+			}
+		}
+		if (ids.isEmpty()) {
+			throw new IllegalStateException("The shop database holds no customer.");
+		}
+		return ids.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
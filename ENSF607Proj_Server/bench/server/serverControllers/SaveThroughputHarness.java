@@ -0,0 +1,158 @@
+package server.serverControllers;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sharedModel.Customer;
+
+/**
+ * Measures the throughput of saving customers with the single upsert of
+ * DbController.saveCustomer against the lookup followed by an insert or an
+ * update that ShopApp.saveCustomer issued before it, against the shop database.
+ *
+ * Both paths bind the customer the way DbController.saveCustomer does but
+ * leave out its row count printout. Half of the saves are new customers and
+ * half update a customer saved earlier in the run.
+ *
+ * Arguments: saving threads and saves per thread, both optional. The saved
+ * customers get IDs from FIRST_ID up and are deleted at the end, so run it
+ * against a test database initialized by DbController's main method.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class SaveThroughputHarness implements DatabaseConstants, DatabaseTables {
+
+	private static final int FIRST_ID = 900000000; // above any customer ID of the shop
+
+	/**
+	 * One save being timed.
+	 */
+	@FunctionalInterface
+	private interface Save {
+		void run(PooledConnection pc, Customer customer) throws SQLException;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		ConnectionPool pool = new ConnectionPool();
+		pool.start();
+		DbControllerHelper helper = new DbControllerHelper();
+
+		Save lookupThenWrite = (pc, customer) -> {
+			boolean exists;
+			try (PreparedStatement pStat = pc.prepareStatement(helper.queryCustomer())) {
+				pStat.setInt(1, customer.getCustomerId());
+				try (ResultSet results = pStat.executeQuery()) {
+					exists = results.next();
+				}
+			}
+			if (exists) {
+				try (PreparedStatement pStat = pc.prepareStatement("UPDATE " + CUSTOMERS
+						+ " SET fName = ?, lName = ?, address = ?, postalCode = ?, phoneNumber = ?, "
+						+ "customerType = ? WHERE customerId= ?")) {
+					pStat.setString(1, customer.getFirstName());
+					pStat.setString(2, customer.getLastName());
+					pStat.setString(3, customer.getAddress());
+					pStat.setString(4, customer.getPostalCode());
+					pStat.setString(5, customer.getPhoneNum());
+					pStat.setString(6, String.valueOf(customer.getCustomerType()));
+					pStat.setInt(7, customer.getCustomerId());
+					pStat.executeUpdate();
+				}
+			} else {
+				try (PreparedStatement pStat = pc.prepareStatement("INSERT INTO " + CUSTOMERS + " VALUES (?,?,?,?,?,?,?)")) {
+					bind(pStat, customer);
+					pStat.executeUpdate();
+				}
+			}
+		};
+		Save upsert = (pc, customer) -> {
+			try (PreparedStatement pStat = pc.prepareStatement(helper.upsertCustomer())) {
+				bind(pStat, customer);
+				pStat.executeUpdate();
+			}
+		};
+
+		try {
+			measure("warm up", lookupThenWrite, pool, threads, perThread / 5);
+			measure("warm up", upsert, pool, threads, perThread / 5);
+			measure("lookup then write", lookupThenWrite, pool, threads, perThread);
+			measure("upsert", upsert, pool, threads, perThread);
+		} finally {
+			try (PooledConnection pc = pool.borrow();
+					PreparedStatement pStat = pc.prepareStatement("DELETE FROM " + CUSTOMERS + " WHERE customerId >= ?")) {
+				pStat.setInt(1, FIRST_ID);
+				pStat.executeUpdate();
+			}
+			pool.close();
+		}
+	}
+
+	/**
+	 * Save customers on several threads at once and print the throughput.
+	 * Every run starts from no saved customer.
+	 * @param name      (String) label of the run.
+	 * @param save      (Save) save being timed.
+	 * @param pool      (ConnectionPool) pool of the shop database.
+	 * @param threads   (int) threads saving at once.
+	 * @param perThread (int) saves by each thread.
+	 * @throws Exception if the saved customers could not be deleted.
+	 */
+	private static void measure(String name, Save save, ConnectionPool pool, int threads, int perThread)
+			throws Exception {
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement("DELETE FROM " + CUSTOMERS + " WHERE customerId >= ?")) {
+			pStat.setInt(1, FIRST_ID);
+			pStat.executeUpdate();
+		}
+		AtomicInteger failures = new AtomicInteger();
+		Thread[] workers = new Thread[threads];
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			int first = FIRST_ID + t * perThread;
+			workers[t] = new Thread(() -> {
+				for (int i = 0; i < perThread; i++) {
+					// even saves add a customer, odd saves update the one added before
+					int customerId = first + i / 2;
+					Customer customer = new Customer(customerId, "Save" + i, "Harness", i + " Main St.", "T2N 1N4",
+							"403-555-0100", i % 2 == 0 ? 'R' : 'C');
+					try (PooledConnection pc = pool.borrow()) {
+						save.run(pc, customer);
+					} catch (Exception e) {
+						if (failures.getAndIncrement() == 0) {
+							e.printStackTrace();
+						}
+					}
+				}
+			});
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("%-18s %6d saves on %d threads: %.0f saves/s%s%n", name, threads * perThread, threads,
+				threads * perThread * 1e9 / elapsed, failures.get() == 0 ? "" : ", " + failures.get() + " failed");
+	}
+
+	/**
+	 * Bind every column of a customer to an INSERT of the Customers table.
+	 * @param pStat    (PreparedStatement) insert or upsert statement.
+	 * @param customer (Customer) customer saved.
+	 * @throws SQLException if a parameter could not be set.
+	 */
+	private static void bind(PreparedStatement pStat, Customer customer) throws SQLException {
+		pStat.setInt(1, customer.getCustomerId());
+		pStat.setString(2, customer.getFirstName());
+		pStat.setString(3, customer.getLastName());
+		pStat.setString(4, customer.getAddress());
+		pStat.setString(5, customer.getPostalCode());
+		pStat.setString(6, customer.getPhoneNum());
+		pStat.setString(7, String.valueOf(customer.getCustomerType()));
+	}
+}
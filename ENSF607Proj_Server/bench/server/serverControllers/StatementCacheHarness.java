@@ -0,0 +1,152 @@
+package server.serverControllers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the round trip latency of the statements of a purchase with the
+ * prepared statement cache of PooledConnection and without it, against the
+ * shop database.
+ *
+ * A purchase round trip borrows a connection and, in one transaction, reads
+ * the item, records the purchase and reads the item's order line, the
+ * statements a purchase issued before the purchase journal. Without the
+ * cache every statement is prepared on the client and closed, as before the
+ * cache; with it the statements are prepared once per connection on the
+ * server and reused. Every transaction is rolled back, so the database is
+ * left unchanged.
+ *
+ * Arguments: threads and purchases per thread, both optional. Run it against
+ * a test database initialized by DbController's main method.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class StatementCacheHarness implements DatabaseConstants, DatabaseTables {
+
+	private static final int ORDER_ID = 99999; // order whose line is read, need not exist
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+		for (boolean cached : new boolean[] { false, true, false, true }) { // first two warm up
+			ConnectionPool pool = new ConnectionPool();
+			if (!cached) {
+				pool.disableStatementCache();
+			}
+			pool.start();
+			try {
+				measure(cached ? "with cache" : "without cache", pool, threads, perThread);
+			} finally {
+				pool.close();
+			}
+		}
+	}
+
+	/**
+	 * Run purchase round trips on several threads at once and print their
+	 * latency percentiles, their throughput and the statement cache hits.
+	 * @param name      (String) label of the run.
+	 * @param pool      (ConnectionPool) started pool of the shop database.
+	 * @param threads   (int) threads purchasing at once.
+	 * @param perThread (int) purchases by each thread.
+	 * @throws Exception if the database holds no item or no customer.
+	 */
+	private static void measure(String name, ConnectionPool pool, int threads, int perThread) throws Exception {
+		int[] ids = sampleIds(pool);
+		DbControllerHelper helper = new DbControllerHelper();
+		long[] latencies = new long[threads * perThread];
+		AtomicInteger failures = new AtomicInteger();
+		Thread[] workers = new Thread[threads];
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			int first = t * perThread;
+			workers[t] = new Thread(() -> {
+				for (int i = 0; i < perThread; i++) {
+					long begin = System.nanoTime();
+					try {
+						purchase(pool, helper, ids[0], ids[1]);
+					} catch (SQLException e) {
+						if (failures.getAndIncrement() == 0) {
+							e.printStackTrace();
+						}
+					}
+					latencies[first + i] = System.nanoTime() - begin;
+				}
+			});
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		long elapsed = System.nanoTime() - start;
+		Arrays.sort(latencies);
+		System.out.printf("%-14s %6d purchases on %d threads: p50 %.3f ms, p99 %.3f ms, %.0f purchases/s, "
+				+ "%d statement cache hits, %d misses%s%n", name, latencies.length, threads,
+				latencies[latencies.length / 2 - 1] / 1e6,
+				latencies[(int) Math.ceil(latencies.length * 0.99) - 1] / 1e6, latencies.length * 1e9 / elapsed,
+				pool.getStatementCacheHits(), pool.getStatementCacheMisses(),
+				failures.get() == 0 ? "" : ", " + failures.get() + " failed");
+	}
+
+	/**
+	 * One purchase round trip, rolled back.
+	 * @param pool       (ConnectionPool) pool of the shop database.
+	 * @param helper     (DbControllerHelper) SQL text of the statements.
+	 * @param itemId     (int) ID of the item purchased.
+	 * @param customerId (int) ID of the customer purchasing.
+	 * @throws SQLException if a statement failed.
+	 */
+	private static void purchase(ConnectionPool pool, DbControllerHelper helper, int itemId, int customerId)
+			throws SQLException {
+		try (PooledConnection pc = pool.borrow()) {
+			Connection conn = pc.getConnection();
+			conn.setAutoCommit(false);
+			try {
+				try (PreparedStatement pStat = pc.prepareStatement(helper.queryItemId())) {
+					pStat.setInt(1, itemId);
+					try (ResultSet results = pStat.executeQuery()) {
+						results.next();
+					}
+				}
+				try (PreparedStatement pStat = pc.prepareStatement(helper.insertPurchases())) {
+					pStat.setInt(1, customerId);
+					pStat.setInt(2, itemId);
+					pStat.executeUpdate();
+				}
+				try (PreparedStatement pStat = pc.prepareStatement(helper.queryOrderLine())) {
+					pStat.setInt(1, itemId);
+					pStat.setInt(2, ORDER_ID);
+					try (ResultSet results = pStat.executeQuery()) {
+						results.next();
+					}
+				}
+			} finally {
+				conn.rollback();
+				conn.setAutoCommit(true);
+			}
+		}
+	}
+
+	/**
+	 * @param pool (ConnectionPool) pool of the shop database.
+	 * @return (int[]) ID of the first item and of the first customer.
+	 * @throws Exception if the database holds no item or no customer.
+	 */
+	private static int[] sampleIds(ConnectionPool pool) throws Exception {
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement("SELECT (SELECT MIN(itemId) FROM " + ITEMS
+						+ "), (SELECT MIN(customerId) FROM " + CUSTOMERS + ")");
+				ResultSet results = pStat.executeQuery()) {
+			if (!results.next() || results.getObject(1) == null || results.getObject(2) == null) {
+				throw new IllegalStateException("The shop database holds no item or no customer.");
+			}
+			return new int[] { results.getInt(1), results.getInt(2) };
+		}
+	}
+}
@@ -0,0 +1,304 @@
+package server.serverControllers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import server.serverModel.Inventory;
+import sharedModel.Customer;
+import sharedModel.Item_Elec;
+
+/**
+ * Measures item read throughput from the shared inventory and the write load
+ * purchases put on the database, with item popularity following a Zipfian
+ * distribution, against the shop database.
+ *
+ * Reader threads look items up by ID in the inventory while writer threads
+ * buy one unit of an item at a time. Each run is made twice: with the
+ * purchase journal, whose applier merges the stock changes per item and
+ * writes them in batches, and directly, with every purchase updating the
+ * item's stock and inserting its purchase record in its own transaction as
+ * before the journal. For each run the reads and purchases per second are
+ * printed with the database's insert and update statements, commits, rows
+ * written and redo log fsyncs per second, read from its global status, and the
+ * purchases that failed, such as direct purchases of a hot item chosen as a
+ * deadlock victim.
+ *
+ * Every item gets TOP_UP units through the journal before the runs, so no
+ * purchase is refused, and gets back its stock afterwards; the purchases are
+ * made by a customer saved for the run and deleted with its purchase records
+ * at the end.
+ *
+ * Arguments: Zipf exponent (1.0 by default), items, bulk loaded into the
+ * Items table first (10000 by default), seconds per run (20 by default),
+ * readers (2 by default) and writers (8 by default). Run it against a test
+ * database initialized by DbController's main method, with no server running.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class ZipfianLoadHarness implements DatabaseConstants, DatabaseTables {
+
+	private static final int CUSTOMER_ID = 900000001; // above any customer ID of the shop
+	private static final int TOP_UP = 10000000; // units added to every item for the runs
+	private static final String[] COUNTERS = { "Com_insert", "Com_update", "Com_commit", "Handler_write",
+			"Handler_update", "Innodb_os_log_fsyncs" };
+
+	/**
+	 * One purchase of one unit.
+	 */
+	@FunctionalInterface
+	private interface Purchase {
+		void run(int itemId, int remaining) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		double exponent = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+		int items = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		int readers = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+		int writers = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+		ColdStartHarness.fill(items);
+
+		ConnectionPool pool = new ConnectionPool();
+		pool.start();
+		DbController db = new DbController(pool);
+		db.startJournal();
+		db.loadSuppliers();
+		Inventory inventory = new Inventory();
+		inventory.setItemList(db.loadInventory());
+		int[] ids = new int[inventory.size()];
+		int n = 0;
+		for (Item_Elec item : inventory.getItemList()) {
+			ids[n++] = item.getItemID();
+		}
+		shuffle(ids); // popularity unrelated to item ID order
+		double[] cdf = zipf(ids.length, exponent);
+		Customer customer = new Customer(CUSTOMER_ID, "Zipf", "Harness", "1 Main St.", "T2N 1N4", "403-555-0100",
+				'R');
+		db.saveCustomer(customer);
+		int orderId = inventory.generateOrderID();
+		DbControllerHelper helper = new DbControllerHelper();
+		AtomicIntegerArray bought = new AtomicIntegerArray(ids.length);
+
+		Purchase journaled = (itemId, remaining) -> {
+			if (!db.executePurchase(itemId, 1, remaining, CUSTOMER_ID, orderId)) {
+				throw new IllegalStateException("Purchase journal write failed.");
+			}
+		};
+		Purchase direct = (itemId, remaining) -> {
+			try (PooledConnection pc = pool.borrow()) {
+				Connection conn = pc.getConnection();
+				conn.setAutoCommit(false);
+				try {
+					try (PreparedStatement pStat = pc.prepareStatement(helper.addItemQty())) {
+						pStat.setInt(1, -1);
+						pStat.setInt(2, itemId);
+						pStat.executeUpdate();
+					}
+					try (PreparedStatement pStat = pc.prepareStatement(helper.insertPurchases())) {
+						pStat.setInt(1, CUSTOMER_ID);
+						pStat.setInt(2, itemId);
+						pStat.executeUpdate();
+					}
+					conn.commit();
+				} catch (SQLException e) {
+					conn.rollback();
+					throw e;
+				} finally {
+					conn.setAutoCommit(true);
+				}
+			}
+		};
+
+		System.out.printf("%d items, Zipf exponent %.2f: the most popular item gets %.1f%% of the purchases, "
+				+ "the top 1%% of items %.1f%%%n", ids.length, exponent, cdf[0] * 100,
+				cdf[Math.max(0, ids.length / 100 - 1)] * 100);
+		int[] stock = new int[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			stock[i] = inventory.getItem(ids[i]).getQty();
+			db.executeAdjustment(ids[i], TOP_UP, inventory.adjust(ids[i], TOP_UP));
+		}
+		try {
+			run("warm up", journaled, inventory, ids, cdf, bought, pool, Math.max(1, seconds / 4), readers, writers);
+			run("with journal", journaled, inventory, ids, cdf, bought, pool, seconds, readers, writers);
+			run("direct", direct, inventory, ids, cdf, bought, pool, seconds, readers, writers);
+		} finally {
+			// the direct purchases changed the Items table without the journal; give their stock back the same way
+			try (PooledConnection pc = pool.borrow();
+					PreparedStatement pStat = pc.prepareStatement(helper.addItemQty())) {
+				for (int i = 0; i < ids.length; i++) {
+					int units = bought.get(i);
+					if (units > 0) {
+						pStat.setInt(1, units);
+						pStat.setInt(2, ids[i]);
+						pStat.executeUpdate();
+						inventory.restock(ids[i], units);
+					}
+				}
+			}
+			for (int i = 0; i < ids.length; i++) {
+				int change = stock[i] - inventory.getItem(ids[i]).getQty(); // the top up less the journaled purchases
+				db.executeAdjustment(ids[i], change, inventory.adjust(ids[i], change));
+			}
+			db.close(); // applies the journal
+			try (Connection conn = DriverManager.getConnection(DB_URL, USERNAME, PASSWORD);
+					PreparedStatement pStat = conn.prepareStatement(helper.removeCustomer())) {
+				pStat.setInt(1, CUSTOMER_ID);
+				pStat.executeUpdate(); // its purchase records are deleted with it
+			}
+		}
+	}
+
+	/**
+	 * Run readers and writers for a number of seconds and print the reads and
+	 * purchases per second and the database writes per second.
+	 * @param name      (String) label of the run.
+	 * @param purchase  (Purchase) purchase made by the writers.
+	 * @param inventory (Inventory) shared inventory.
+	 * @param ids       (int[]) item IDs, most popular first.
+	 * @param cdf       (double[]) cumulative Zipf probability of each rank.
+	 * @param bought    (AtomicIntegerArray) units bought per rank by the direct
+	 *                  purchases, given back at the end.
+	 * @param pool      (ConnectionPool) pool of the shop database.
+	 * @param seconds   (int) length of the run.
+	 * @param readers   (int) reader threads.
+	 * @param writers   (int) writer threads.
+	 * @throws Exception if the database status could not be read.
+	 */
+	private static void run(String name, Purchase purchase, Inventory inventory, int[] ids, double[] cdf,
+			AtomicIntegerArray bought, ConnectionPool pool, int seconds, int readers, int writers) throws Exception {
+		AtomicLong reads = new AtomicLong();
+		AtomicLong purchases = new AtomicLong();
+		AtomicLong failures = new AtomicLong();
+		boolean counted = name.equals("direct");
+		long end = System.nanoTime() + seconds * 1000000000L;
+		Thread[] threads = new Thread[readers + writers];
+		for (int t = 0; t < threads.length; t++) {
+			boolean reader = t < readers;
+			threads[t] = new Thread(() -> {
+				long done = 0;
+				while (System.nanoTime() < end) {
+					int rank = rank(cdf);
+					if (reader) {
+						if (inventory.getItem(ids[rank]) != null) {
+							done++;
+						}
+						continue;
+					}
+					int remaining = inventory.decrement(ids[rank], 1);
+					try {
+						purchase.run(ids[rank], remaining);
+						if (counted) {
+							bought.incrementAndGet(rank);
+						}
+						done++;
+					} catch (Exception e) {
+						inventory.restock(ids[rank], 1);
+						if (failures.getAndIncrement() == 0) {
+							System.err.println(name + " purchase of item " + ids[rank] + " failed: " + e);
+						}
+					}
+				}
+				(reader ? reads : purchases).addAndGet(done);
+			});
+		}
+		long[] before = status(pool);
+		long start = System.nanoTime();
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Thread.sleep(2 * JOURNAL_APPLY_INTERVAL_MS); // let the applier write the last batch
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		long[] after = status(pool);
+
+		StringBuilder writes = new StringBuilder();
+		for (int i = 0; i < COUNTERS.length; i++) {
+			writes.append(String.format(", %s %.0f/s", COUNTERS[i], (after[i] - before[i]) / elapsed));
+		}
+		System.out.printf("%-12s reads %.0f/s, purchases %.0f/s%s%s%n", name, reads.get() / elapsed,
+				purchases.get() / elapsed, writes, failures.get() == 0 ? "" : ", " + failures.get() + " failed");
+	}
+
+	/**
+	 * @param cdf (double[]) cumulative Zipf probability of each rank.
+	 * @return (int) rank drawn, 0 for the most popular item.
+	 */
+	private static int rank(double[] cdf) {
+		double u = ThreadLocalRandom.current().nextDouble();
+		int low = 0;
+		int high = cdf.length - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (cdf[mid] < u) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param n        (int) number of ranks.
+	 * @param exponent (double) Zipf exponent, 0 for a uniform distribution.
+	 * @return (double[]) cumulative probability of each rank.
+	 */
+	private static double[] zipf(int n, double exponent) {
+		double[] cdf = new double[n];
+		double sum = 0;
+		for (int k = 0; k < n; k++) {
+			sum += 1 / Math.pow(k + 1, exponent);
+			cdf[k] = sum;
+		}
+		for (int k = 0; k < n; k++) {
+			cdf[k] /= sum;
+		}
+		return cdf;
+	}
+
+	/**
+	 * Shuffle item IDs with a fixed seed, so every run ranks them the same.
+	 * @param ids (int[]) item IDs.
+	 */
+	private static void shuffle(int[] ids) {
+		Random random = new Random(42);
+		for (int i = ids.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = ids[i];
+			ids[i] = ids[j];
+			ids[j] = swap;
+		}
+	}
+
+	/**
+	 * @param pool (ConnectionPool) pool of the shop database.
+	 * @return (long[]) value of each of COUNTERS in the database's global status.
+	 * @throws SQLException if the status could not be read.
+	 */
+	private static long[] status(ConnectionPool pool) throws SQLException {
+		long[] values = new long[COUNTERS.length];
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement("SHOW GLOBAL STATUS");
+				ResultSet results = pStat.executeQuery()) {
+			while (results.next()) {
+				for (int i = 0; i < COUNTERS.length; i++) {
+					if (COUNTERS[i].equalsIgnoreCase(results.getString(1))) {
+						values[i] = results.getLong(2);
+					}
+				}
+			}
+		}
+		return values;
+	}
+}
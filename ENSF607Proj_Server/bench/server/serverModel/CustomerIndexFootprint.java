@@ -0,0 +1,121 @@
+package server.serverModel;
+
+import java.lang.management.ManagementFactory;
+
+import sharedModel.Customer;
+
+/**
+ * Measures the memory held by the customer ID filter and the customer index
+ * for a number of generated customers, the false positives of the filter,
+ * the time to load the index, and the time of each kind of customer search.
+ *
+ * Arguments: number of customers, 10000000 by default. Run it with a heap
+ * large enough for the index, such as -Xmx3g.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class CustomerIndexFootprint {
+
+	private static final String[] SYLLABLES = { "an", "ber", "cal", "dor", "el", "fen", "gar", "hal", "is", "jor",
+			"ka", "lin", "mor", "nel", "o", "par", "quin", "ros", "sten", "tor", "ul", "var", "wil", "xan", "yor",
+			"zel" };
+	private static final int SEARCHES = 100; // of each kind
+	private static final int FILTER_PROBES = 1000000; // unsaved customer IDs looked up
+
+	public static void main(String[] args) {
+		int customers = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+
+		long before = usedHeap();
+		CustomerIdFilter filter = new CustomerIdFilter(customers);
+		for (int id = 1; id <= customers; id++) {
+			filter.add(id);
+		}
+		long filterBytes = usedHeap() - before;
+		int falsePositives = 0;
+		for (int id = customers + 1; id <= customers + FILTER_PROBES; id++) {
+			if (filter.mightContain(id)) {
+				falsePositives++;
+			}
+		}
+
+		before = usedHeap();
+		long start = System.nanoTime();
+		CustomerIndex index = new CustomerIndex();
+		index.load(action -> {
+			for (int id = 1; id <= customers; id++) {
+				action.accept(customer(id));
+			}
+		});
+		long load = (System.nanoTime() - start) / 1000000;
+		long indexBytes = usedHeap() - before;
+
+		System.out.printf("%d customers indexed in %d ms%n", index.size(), load);
+		System.out.printf("customer index %d MB, %d bytes per customer%n", indexBytes >> 20, indexBytes / customers);
+		System.out.printf("customer ID filter %d MB, %d bits per customer, %.2f%% false positives%n",
+				filterBytes >> 20, filterBytes * 8 / customers, falsePositives * 100.0 / FILTER_PROBES);
+
+		Customer sample = customer(customers / 2);
+		String name = sample.getLastName();
+		String typo = name.substring(0, name.length() - 1) + (name.endsWith("x") ? "y" : "x");
+		search(index, "last name prefix", name.substring(0, 4));
+		search(index, "whole last name", name);
+		search(index, "phone prefix", sample.getPhoneNum().substring(0, 7));
+		search(index, "postal code", sample.getPostalCode());
+		search(index, "last name with a typo", typo);
+	}
+
+	/**
+	 * Time one kind of search and print its average.
+	 * @param index (CustomerIndex) loaded index.
+	 * @param kind  (String) label of the search.
+	 * @param text  (String) text searched.
+	 */
+	private static void search(CustomerIndex index, String kind, String text) {
+		int found = index.search(text).size(); // warm up
+		long start = System.nanoTime();
+		for (int i = 0; i < SEARCHES; i++) {
+			found = index.search(text).size();
+		}
+		System.out.printf("%-22s \"%s\": %.3f ms, %d found%n", kind, text,
+				(System.nanoTime() - start) / 1e6 / SEARCHES, found);
+	}
+
+	/**
+	 * @param id (int) customer ID.
+	 * @return (Customer) generated customer, always the same for an ID.
+	 */
+	private static Customer customer(int id) {
+		long seed = id * 0x9E3779B97F4A7C15L;
+		String first = name(seed, 2);
+		String last = name(seed >>> 20, 3);
+		String postal = "" + (char) ('A' + (int) ((seed >>> 8) & 0xFFFF) % 26) + (id % 10)
+				+ (char) ('A' + (id / 10) % 26) + " " + (id / 260) % 10 + (char) ('A' + (id / 2600) % 26)
+				+ (id / 67600) % 10;
+		String phone = String.format("%03d-%03d-%04d", 200 + (id / 10000000) % 800, (id / 10000) % 1000, id % 10000);
+		return new Customer(id, first, last, id + " Main St., Calgary", postal, phone, id % 3 == 0 ? 'C' : 'R');
+	}
+
+	/**
+	 * @param seed  (long) bits choosing the syllables.
+	 * @param parts (int) number of syllables.
+	 * @return (String) capitalized name.
+	 */
+	private static String name(long seed, int parts) {
+		StringBuilder res = new StringBuilder();
+		for (int i = 0; i < parts; i++) {
+			res.append(SYLLABLES[(int) Long.remainderUnsigned(seed >>> (i * 5), SYLLABLES.length)]);
+		}
+		res.setCharAt(0, Character.toUpperCase(res.charAt(0)));
+		return res.toString();
+	}
+
+	/**
+	 * @return (long) heap in use after a full collection.
+	 */
+	private static long usedHeap() {
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,117 @@
+package server.serverModel;
+
+import java.util.LinkedHashSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sharedModel.Item_Elec;
+
+/**
+ * JMH comparison of an item lookup by ID in the Inventory, backed by an
+ * IntItemMap, against the scan of a LinkedHashSet of items that it replaced.
+ * Each lookup asks for a random stored item ID.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class ItemLookupBenchmark {
+
+	private static final int FIRST_ID = 1000;
+
+	/**
+	 * Random item IDs among the stored ones.
+	 */
+	@State(Scope.Thread)
+	public static class Ids {
+		@Param({ "10000", "1000000", "10000000" })
+		int items;
+
+		private SplittableRandom random;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			random = new SplittableRandom(607);
+		}
+
+		int next() {
+			return FIRST_ID + random.nextInt(items);
+		}
+	}
+
+	/**
+	 * Inventory holding the items, as loaded by the server.
+	 */
+	@State(Scope.Benchmark)
+	public static class Indexed {
+		@Param({ "10000", "1000000", "10000000" })
+		int items;
+
+		Inventory inventory;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			inventory = new Inventory();
+			for (int i = 0; i < items; i++) {
+				inventory.addItems(item(FIRST_ID + i));
+			}
+		}
+	}
+
+	/**
+	 * Items in a LinkedHashSet, as the inventory held them before the index.
+	 */
+	@State(Scope.Benchmark)
+	public static class Scanned {
+		@Param({ "10000", "1000000", "10000000" })
+		int items;
+
+		LinkedHashSet<Item_Elec> set;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			set = new LinkedHashSet<Item_Elec>();
+			for (int i = 0; i < items; i++) {
+				set.add(item(FIRST_ID + i));
+			}
+		}
+	}
+
+	private static Item_Elec item(int itemId) {
+		return new Item_Elec(itemId, 'E', "Tool", 50, 1999, 8001, "AC", 120, 1);
+	}
+
+	@Benchmark
+	public Item_Elec indexLookup(Indexed state, Ids ids) {
+		return state.inventory.getItem(ids.next());
+	}
+
+	@Benchmark
+	public Item_Elec setScan(Scanned state, Ids ids) {
+		int itemId = ids.next();
+		for (Item_Elec item : state.set) {
+			if (item.getItemID() == itemId) {
+				return item;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,90 @@
+package server.serverModel;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+import sharedModel.Item_Elec;
+
+/**
+ * Measures what an item store costs the Java heap and the garbage collector:
+ * the heap and direct memory held once the items are loaded, the pause of a
+ * full collection, and the collection time during purchase traffic, which
+ * copies items and changes their stock.
+ *
+ * Arguments: "heap" for a HeapItemStore or "offheap" for an OffHeapItemStore,
+ * then the number of items, 20000000 by default. Run each store in its own
+ * JVM with the same heap limit, such as -Xmx4g; the heap store may not fit.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class ItemStoreGcHarness {
+
+	private static final int TRAFFIC = 5000000; // lookups and purchases after the load
+	private static final int FULL_COLLECTIONS = 5;
+	private static final String[] POWER_TYPES = { "AC", "DC", "Battery" };
+
+	public static void main(String[] args) {
+		boolean offHeap = args.length > 0 && args[0].equalsIgnoreCase("offheap");
+		int items = args.length > 1 ? Integer.parseInt(args[1]) : 20000000;
+		ItemStore store = offHeap ? new OffHeapItemStore(items) : new HeapItemStore();
+
+		long start = System.nanoTime();
+		long gcStart = collectionMillis();
+		for (int i = 0; i < items; i++) {
+			// a new power type string per item, as read from the database
+			store.put(new Item_Elec(i, 'E', "Widget model " + i + " blue", 50, i % 100000, 8000 + i % 500,
+					new String(POWER_TYPES[i % POWER_TYPES.length]), 120, 1));
+		}
+		long load = (System.nanoTime() - start) / 1000000;
+		long loadGc = collectionMillis() - gcStart;
+
+		System.gc();
+		long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		long direct = 0;
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if (pool.getName().equals("direct")) {
+				direct = pool.getMemoryUsed();
+			}
+		}
+		long longestFull = 0;
+		for (int k = 0; k < FULL_COLLECTIONS; k++) {
+			long pause = System.nanoTime();
+			System.gc();
+			longestFull = Math.max(longestFull, (System.nanoTime() - pause) / 1000000);
+		}
+
+		SplittableRandom random = new SplittableRandom(607);
+		start = System.nanoTime();
+		gcStart = collectionMillis();
+		for (int i = 0; i < TRAFFIC; i++) {
+			int itemId = random.nextInt(items);
+			if (store.get(itemId) == null) {
+				throw new IllegalStateException("Item " + itemId + " is missing.");
+			}
+			store.addStock(itemId, -1, 0);
+			store.addStock(itemId, 1, Integer.MIN_VALUE);
+		}
+		long traffic = (System.nanoTime() - start) / 1000000;
+		long trafficGc = collectionMillis() - gcStart;
+
+		System.out.printf("%s store, %d items: loaded in %d ms (%d ms collecting), heap %d MB, direct %d MB%n",
+				offHeap ? "Off-heap" : "Heap", items, load, loadGc, heap >> 20, direct >> 20);
+		System.out.printf("longest of %d full collections %d ms; %d purchases in %d ms (%d ms collecting)%n",
+				FULL_COLLECTIONS, longestFull, TRAFFIC, traffic, trafficGc);
+	}
+
+	/**
+	 * @return (long) total time spent collecting by every collector, in milliseconds.
+	 */
+	private static long collectionMillis() {
+		long total = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += collector.getCollectionTime();
+		}
+		return total;
+	}
+}
@@ -0,0 +1,154 @@
+package sharedModel;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compares the binary encoding of BinaryWrapperCodec with the Java
+ * serialization of WrapperCodec on the messages the server exchanges most:
+ * the bytes each message takes on the wire, the time to encode and to decode
+ * it, and the heap allocated by each encode and decode.
+ *
+ * The messages are built from fixed data, so every run measures the same
+ * bytes. Each codec encodes and decodes every message WARMUP times before
+ * the measured ITERATIONS; allocation is read from the thread's allocation
+ * counter, so run it on a HotSpot JVM.
+ *
+ * Arguments: iterations, 200000 by default.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class WireFormatHarness implements Commands {
+
+	private static final int WARMUP = 50000;
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	/**
+	 * One codec being measured.
+	 */
+	private interface Codec {
+		byte[] encode(ObjectWrapper ow) throws IOException;
+
+		ObjectWrapper decode(byte[] payload) throws IOException;
+	}
+
+	public static void main(String[] args) throws IOException {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		Codec serialized = new Codec() {
+			public byte[] encode(ObjectWrapper ow) throws IOException {
+				return WrapperCodec.encode(ow);
+			}
+
+			public ObjectWrapper decode(byte[] payload) throws IOException {
+				return WrapperCodec.decode(payload);
+			}
+		};
+		Codec binary = new Codec() {
+			public byte[] encode(ObjectWrapper ow) throws IOException {
+				return BinaryWrapperCodec.encode(ow);
+			}
+
+			public ObjectWrapper decode(byte[] payload) throws IOException {
+				return BinaryWrapperCodec.decode(payload);
+			}
+		};
+
+		ObjectWrapper search = new ObjectWrapper();
+		Item_Elec key = new Item_Elec();
+		key.setItemID(1004);
+		search.addPassedObj(key);
+		search.setMessage(SEARCH + ID, ITEM_ELEC);
+
+		ObjectWrapper item = new ObjectWrapper();
+		item.addPassedObj(item(1004));
+		item.setMessage(DISPLAYITEM, ITEM_ELEC);
+
+		ObjectWrapper customer = new ObjectWrapper();
+		customer.addPassedObj(new Customer(785, "Jane", "Doe", "12 Main St. NW, Calgary", "T2N 1N4", "403-555-0185", 'R'));
+		customer.setMessage(DISPLAY, CUSTOMER);
+
+		ObjectWrapper chunk = new ObjectWrapper();
+		for (int i = 0; i < WrapperCodec.STREAM_CHUNK_SIZE; i++) {
+			chunk.addPassedObj(item(1000 + i));
+		}
+		chunk.setMessage(DISPLAYITEM, ITEM_ELEC);
+		chunk.setMore(true);
+
+		System.out.println(System.getProperty("java.vm.name") + " " + System.getProperty("java.version") + ", "
+				+ iterations + " iterations");
+		measure("item search request", search, serialized, binary, iterations);
+		measure("item reply", item, serialized, binary, iterations);
+		measure("customer reply", customer, serialized, binary, iterations);
+		measure(WrapperCodec.STREAM_CHUNK_SIZE + " item chunk", chunk, serialized, binary,
+				Math.max(1, iterations / WrapperCodec.STREAM_CHUNK_SIZE));
+	}
+
+	/**
+	 * Measure one message with both codecs and print a line for each.
+	 * @param name       (String) label of the message.
+	 * @param ow         (ObjectWrapper) the message.
+	 * @param serialized (Codec) Java serialization.
+	 * @param binary     (Codec) binary encoding.
+	 * @param iterations (int) encodes and decodes timed.
+	 * @throws IOException if the message could not be encoded.
+	 */
+	private static void measure(String name, ObjectWrapper ow, Codec serialized, Codec binary, int iterations)
+			throws IOException {
+		run(name, "serialized", ow, serialized, Math.min(WARMUP, iterations)); // warm up
+		run(name, "binary", ow, binary, Math.min(WARMUP, iterations));
+		System.out.println(run(name, "serialized", ow, serialized, iterations));
+		System.out.println(run(name, "binary", ow, binary, iterations));
+	}
+
+	/**
+	 * @param name       (String) label of the message.
+	 * @param format     (String) label of the codec.
+	 * @param ow         (ObjectWrapper) the message.
+	 * @param codec      (Codec) codec measured.
+	 * @param iterations (int) encodes and decodes timed.
+	 * @return (String) line with the size, the time and the allocation of one
+	 *         encode and one decode.
+	 * @throws IOException if the message could not be encoded.
+	 */
+	private static String run(String name, String format, ObjectWrapper ow, Codec codec, int iterations)
+			throws IOException {
+		long thread = Thread.currentThread().getId();
+		byte[] payload = codec.encode(ow);
+		int sink = 0;
+
+		long allocated = THREADS.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			sink += codec.encode(ow).length;
+		}
+		long encodeNanos = System.nanoTime() - start;
+		long encodeBytes = THREADS.getThreadAllocatedBytes(thread) - allocated;
+
+		allocated = THREADS.getThreadAllocatedBytes(thread);
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			sink += codec.decode(payload).getPassedObj().size();
+		}
+		long decodeNanos = System.nanoTime() - start;
+		long decodeBytes = THREADS.getThreadAllocatedBytes(thread) - allocated;
+
+		if (sink == 0) {
+			throw new IllegalStateException("Nothing encoded.");
+		}
+		return String.format("%-20s %-10s %7d bytes, encode %8.0f ns %8d B allocated, decode %8.0f ns %8d B allocated",
+				name, format, payload.length, (double) encodeNanos / iterations, encodeBytes / iterations,
+				(double) decodeNanos / iterations, decodeBytes / iterations);
+	}
+
+	/**
+	 * @param id (int) item ID.
+	 * @return (Item_Elec) item with fixed fields for the ID.
+	 */
+	private static Item_Elec item(int id) {
+		return new Item_Elec(id, 'E', "Cordless drill " + id, 40 + id % 60, 3599 + id % 1000, 8000 + id % 20, "DC", 18,
+				1);
+	}
+}
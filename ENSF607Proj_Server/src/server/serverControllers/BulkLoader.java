@@ -0,0 +1,314 @@
+package server.serverControllers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import sharedModel.*;
+
+/**
+ * Bulk import of the ';' delimited item, supplier and customer files. The file
+ * is streamed in chunks of BULK_CHUNK_ROWS lines; chunks are parsed on
+ * several threads while the calling thread writes parsed chunks in file order
+ * with JDBC batching, one transaction per chunk.
+ *
+ * After every committed chunk the number of lines loaded is saved to a
+ * "<file>.progress" file, so an interrupted import resumes after the last
+ * committed chunk. Rows are inserted with INSERT IGNORE, which makes replaying
+ * a chunk committed just before a crash harmless. Load speed in rows/sec is
+ * reported as chunks are committed.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class BulkLoader implements DatabaseConstants, DatabaseTables {
+
+	private static final String PROGRESS_SUFFIX = ".progress";
+
+	private ConnectionPool pool;
+	private DbControllerHelper helper;
+
+	/**
+	 * Writes one parsed row into the batched insert statement.
+	 * @param <T> type of the parsed row.
+	 */
+	private interface RowBinder<T> {
+		void bind(PreparedStatement pStat, T row) throws SQLException;
+	}
+
+	/**
+	 * Lines of one chunk and, once parsed, its rows.
+	 * @param <T> type of the parsed rows.
+	 */
+	private static class Chunk<T> {
+		private final int lineCount;
+		private final ArrayList<T> rows;
+		private int skipped;
+
+		Chunk(int lineCount, int rowCount) {
+			this.lineCount = lineCount;
+			this.rows = new ArrayList<T>(rowCount);
+		}
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param pool   (ConnectionPool) pool lending the connection used for the import.
+	 * @param helper (DbControllerHelper) source of the insert statements and row parsers.
+	 */
+	public BulkLoader(ConnectionPool pool, DbControllerHelper helper) {
+		this.pool = pool;
+		this.helper = helper;
+	}
+
+	/**
+	 * Import the item file into the Items table.
+	 * @param filename (String) path of the item file.
+	 * @return (long) number of rows written.
+	 */
+	public long loadItems(String filename) {
+		return load(filename, helper.insertItemIgnore(), fields -> (Item_Elec) helper.getItemFromTxt(fields),
+				(pStat, item) -> {
+					pStat.setInt(1, item.getItemID());
+					pStat.setInt(2, item.getSupplierID());
+					pStat.setString(3, String.valueOf(item.getItemType()));
+					pStat.setString(4, item.getItemDesc());
+					pStat.setBigDecimal(5, Money.toDecimal(item.getPriceCents()));
+					pStat.setInt(6, item.getQty());
+					pStat.setString(7, item.getPowerType());
+					pStat.setInt(8, item.getVoltage());
+					pStat.setInt(9, item.getPhase());
+				});
+	}
+
+	/**
+	 * Import the supplier file into the Suppliers table.
+	 * @param filename (String) path of the supplier file.
+	 * @return (long) number of rows written.
+	 */
+	public long loadSuppliers(String filename) {
+		return load(filename, helper.insertSupplierIgnore(),
+				fields -> (Int_Supplier) helper.getSupplierFromTxt(fields), (pStat, supplier) -> {
+					pStat.setInt(1, supplier.getSupplierID());
+					pStat.setString(2, String.valueOf(supplier.getSupplierType()));
+					pStat.setString(3, supplier.getCompanyName());
+					pStat.setString(4, supplier.getSalesContact());
+					pStat.setString(5, supplier.getAddress());
+					pStat.setBigDecimal(6, Money.toDecimal(supplier.getImportTaxBasisPoints()));
+				});
+	}
+
+	/**
+	 * Import the customer file into the Customers table.
+	 * @param filename (String) path of the customer file.
+	 * @return (long) number of rows written.
+	 */
+	public long loadCustomers(String filename) {
+		return load(filename, helper.insertCustomerIgnore(), fields -> helper.getCustomerFromTxt(fields),
+				(pStat, customer) -> {
+					pStat.setInt(1, customer.getCustomerId());
+					pStat.setString(2, customer.getFirstName());
+					pStat.setString(3, customer.getLastName());
+					pStat.setString(4, customer.getAddress());
+					pStat.setString(5, customer.getPostalCode());
+					pStat.setString(6, customer.getPhoneNum());
+					pStat.setString(7, String.valueOf(customer.getCustomerType()));
+				});
+	}
+
+	/**
+	 * Stream a file through the parse and write pipeline.
+	 * @param filename (String) file being imported.
+	 * @param sql      (String) batched insert statement.
+	 * @param parser   (Function) converts the fields of one line into a row.
+	 * @param binder   (RowBinder) binds a row to the insert statement.
+	 * @return (long) number of rows written.
+	 */
+	private <T> long load(String filename, String sql, Function<String[], T> parser, RowBinder<T> binder) {
+		Path file = Paths.get(filename);
+		Path progress = Paths.get(filename + PROGRESS_SUFFIX);
+		long committedLines = readProgress(progress);
+		long rows = 0;
+		long skipped = 0;
+		long start = System.nanoTime();
+		ExecutorService parsers = Executors.newFixedThreadPool(BULK_PARSE_THREADS);
+		ArrayDeque<Future<Chunk<T>>> inFlight = new ArrayDeque<Future<Chunk<T>>>();
+
+		// the batch statement is prepared outside the statement cache, it is used once
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+				PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.getConnection().prepareStatement(sql)) {
+			Connection conn = pc.getConnection();
+			conn.setAutoCommit(false);
+			if (committedLines > 0) {
+				System.out.println("Resuming " + filename + " after line " + committedLines);
+				long skippedLines = 0;
+				while (skippedLines < committedLines && reader.readLine() != null) {
+					skippedLines++;
+				}
+			}
+
+			ArrayList<String> lines = new ArrayList<String>(BULK_CHUNK_ROWS);
+			String line;
+			boolean more = true;
+			while (more) {
+				line = reader.readLine();
+				if (line != null) {
+					lines.add(line);
+				} else {
+					more = false;
+				}
+				if (lines.size() == BULK_CHUNK_ROWS || (!more && !lines.isEmpty())) {
+					final ArrayList<String> toParse = lines;
+					inFlight.add(parsers.submit(() -> parseChunk(toParse, parser)));
+					lines = new ArrayList<String>(BULK_CHUNK_ROWS);
+				}
+				// write in file order, keeping a bounded number of parsed chunks in memory
+				while (!inFlight.isEmpty() && (inFlight.size() > BULK_PARSE_THREADS * 2 || !more)) {
+					Chunk<T> chunk = inFlight.poll().get();
+					writeChunk(conn, pStat, chunk, binder);
+					committedLines += chunk.lineCount;
+					rows += chunk.rows.size();
+					skipped += chunk.skipped;
+					writeProgress(progress, committedLines);
+					report(filename, rows, start);
+				}
+			}
+			conn.setAutoCommit(true);
+			Files.deleteIfExists(progress);
+		} catch (IOException | SQLException | InterruptedException | ExecutionException e) {
+			System.err.println("Bulk load of " + filename + " stopped after line " + committedLines
+					+ "; run again to resume.");
+			e.printStackTrace();
+		} finally {
+			parsers.shutdownNow();
+		}
+		if (skipped > 0) {
+			System.err.println(skipped + " malformed lines skipped in " + filename);
+		}
+		report(filename, rows, start);
+		return rows;
+	}
+
+	/**
+	 * Parse the lines of one chunk. Runs on a parser thread.
+	 * @param lines  (ArrayList<String>) raw lines of the chunk.
+	 * @param parser (Function) converts the fields of one line into a row.
+	 * @return (Chunk) the parsed chunk.
+	 */
+	private static <T> Chunk<T> parseChunk(ArrayList<String> lines, Function<String[], T> parser) {
+		Chunk<T> chunk = new Chunk<T>(lines.size(), lines.size());
+		for (String line : lines) {
+			if (line.isEmpty()) {
+				continue;
+			}
+			try {
+				chunk.rows.add(parser.apply(splitFields(line)));
+			} catch (RuntimeException e) {
+				chunk.skipped++;
+			}
+		}
+		return chunk;
+	}
+
+	/**
+	 * Split a line on ';' without the regular expression used by String.split.
+	 * @param line (String) line from the import file.
+	 * @return (String[]) fields of the line.
+	 */
+	static String[] splitFields(String line) {
+		int count = 1;
+		for (int i = 0; i < line.length(); i++) {
+			if (line.charAt(i) == ';') {
+				count++;
+			}
+		}
+		String[] fields = new String[count];
+		int from = 0;
+		for (int f = 0; f < count - 1; f++) {
+			int to = line.indexOf(';', from);
+			fields[f] = line.substring(from, to);
+			from = to + 1;
+		}
+		fields[count - 1] = line.substring(from);
+		return fields;
+	}
+
+	/**
+	 * Write one parsed chunk as a JDBC batch and commit it.
+	 * @param conn   (Connection) connection with auto commit disabled.
+	 * @param pStat  (PreparedStatement) batched insert statement.
+	 * @param chunk  (Chunk) rows being written.
+	 * @param binder (RowBinder) binds a row to the insert statement.
+	 * @throws SQLException if the batch failed; the chunk is rolled back.
+	 */
+	private static <T> void writeChunk(Connection conn, PreparedStatement pStat, Chunk<T> chunk, RowBinder<T> binder)
+			throws SQLException {
+		try {
+			for (T row : chunk.rows) {
+				binder.bind(pStat, row);
+				pStat.addBatch();
+			}
+			pStat.executeBatch();
+			conn.commit();
+		} catch (SQLException e) {
+			pStat.clearBatch();
+			conn.rollback();
+			throw e;
+		}
+	}
+
+	/**
+	 * Print the rows written so far and the load rate.
+	 * @param filename (String) file being imported.
+	 * @param rows     (long) rows written.
+	 * @param start    (long) System.nanoTime() at the start of the import.
+	 */
+	private static void report(String filename, long rows, long start) {
+		double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+		System.out.printf("%s: %d rows in %.1f s (%.0f rows/s)%n", filename, rows, seconds, rows / seconds);
+	}
+
+	/**
+	 * @param progress (Path) progress file of an import.
+	 * @return (long) lines already committed, 0 if the import starts fresh.
+	 */
+	private static long readProgress(Path progress) {
+		try {
+			if (Files.exists(progress)) {
+				return Long.parseLong(new String(Files.readAllBytes(progress), StandardCharsets.US_ASCII).trim());
+			}
+		} catch (IOException | NumberFormatException e) {
+			System.err.println("Ignoring unreadable progress file " + progress);
+		}
+		return 0;
+	}
+
+	/**
+	 * Save the number of committed lines, replacing the progress file atomically.
+	 * @param progress (Path) progress file of the import.
+	 * @param lines    (long) lines committed so far.
+	 * @throws IOException if the file could not be written.
+	 */
+	private static void writeProgress(Path progress, long lines) throws IOException {
+		Path temp = Paths.get(progress.toString() + ".tmp");
+		Files.write(temp, Long.toString(lines).getBytes(StandardCharsets.US_ASCII));
+		Files.move(temp, progress, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
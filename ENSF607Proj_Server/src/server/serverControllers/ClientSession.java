@@ -0,0 +1,290 @@
+package server.serverControllers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sharedModel.ObjectWrapper;
+import sharedModel.WireFormat;
+import sharedModel.WrapperCodec;
+
+/**
+ * Non-blocking connection to a single shop client. The server selector thread
+ * reads bytes into the session, which cuts them into length prefixed frames.
+ * Only complete requests are handed to the worker pool. Requests without a
+ * request ID run one at a time per session, so older clients see their replies
+ * in request order; requests carrying an ID are independent and up to
+ * SESSION_MAX_IN_FLIGHT of them run concurrently, answered as they finish.
+ * Responses are queued and written by whichever thread finds the socket ready.
+ *
+ * A client that opens the connection with WrapperCodec.BINARY_HELLO gets the
+ * hello echoed back and is served in the binary wire format; any other client
+ * is served with serialized wrappers.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class ClientSession implements ServerConstants {
+
+	private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+	private final SocketChannel channel;
+	private final SelectionKey key;
+	private final ExecutorService pool;
+	private final ConcurrentLinkedQueue<byte[]> requests = new ConcurrentLinkedQueue<byte[]>();
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	private final AtomicInteger inFlight = new AtomicInteger(); // concurrent requests with an ID
+	private final ArrayDeque<ByteBuffer> responses = new ArrayDeque<ByteBuffer>();
+	private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+	private ModelController modelController;
+	private volatile WireFormat format = WireFormat.SERIALIZED;
+	private boolean negotiated = false; // selector thread only
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructor
+	 *
+	 * @param channel (SocketChannel) accepted non-blocking client channel.
+	 * @param key     (SelectionKey) key of the channel in the server selector.
+	 * @param pool    (ExecutorService) worker pool executing client requests.
+	 */
+	public ClientSession(SocketChannel channel, SelectionKey key, ExecutorService pool) {
+		this.channel = channel;
+		this.key = key;
+		this.pool = pool;
+	}
+
+	/**
+	 * Assign the model controller that executes this client's requests.
+	 * @param modelController (ModelController) controller of the client's shop.
+	 */
+	public void setModelController(ModelController modelController) {
+		this.modelController = modelController;
+	}
+
+	/**
+	 * Read available bytes from the client. Called by the selector thread only.
+	 * @return (boolean) false if the client closed the connection.
+	 * @throws IOException if the channel failed or a frame is invalid.
+	 */
+	public boolean onReadable() throws IOException {
+		int count = channel.read(readBuffer);
+		if (count < 0) {
+			return false;
+		}
+		readBuffer.flip();
+		if (!negotiated && readBuffer.remaining() >= WrapperCodec.HEADER_SIZE) {
+			negotiated = true;
+			if (readBuffer.getInt(readBuffer.position()) == WrapperCodec.BINARY_HELLO) {
+				readBuffer.getInt();
+				format = WireFormat.BINARY;
+				enqueue(ByteBuffer.allocate(WrapperCodec.HEADER_SIZE).putInt(WrapperCodec.BINARY_HELLO).flip());
+			}
+		}
+		while (readBuffer.remaining() >= WrapperCodec.HEADER_SIZE) {
+			int length = readBuffer.getInt(readBuffer.position());
+			if (length <= 0 || length > WrapperCodec.MAX_FRAME_SIZE) {
+				throw new IOException("Invalid frame length " + length);
+			}
+			if (readBuffer.remaining() < WrapperCodec.HEADER_SIZE + length) {
+				break;
+			}
+			readBuffer.getInt();
+			byte[] frame = new byte[length];
+			readBuffer.get(frame);
+			requests.add(frame);
+		}
+		readBuffer.compact();
+		ensureCapacity();
+		schedule();
+		return true;
+	}
+
+	/**
+	 * Grow the read buffer when the partially read frame does not fit.
+	 */
+	private void ensureCapacity() {
+		if (readBuffer.position() < WrapperCodec.HEADER_SIZE) {
+			return;
+		}
+		int needed = WrapperCodec.HEADER_SIZE + readBuffer.getInt(0);
+		if (needed > readBuffer.capacity()) {
+			ByteBuffer larger = ByteBuffer.allocate(needed);
+			readBuffer.flip();
+			larger.put(readBuffer);
+			readBuffer = larger;
+		}
+	}
+
+	/**
+	 * Submit the session to the worker pool if requests are waiting and it is
+	 * not already running. A closed session is never submitted again.
+	 */
+	private void schedule() {
+		if (!closed && !requests.isEmpty() && scheduled.compareAndSet(false, true)) {
+			try {
+				pool.execute(this::drainRequests);
+			} catch (RejectedExecutionException e) {
+				scheduled.set(false);
+				close();
+			}
+		}
+	}
+
+	/**
+	 * Worker task, takes every queued request of this session in order. Requests
+	 * with an ID are passed to their own worker while the session is below its
+	 * in-flight limit; all others execute here.
+	 */
+	private void drainRequests() {
+		try {
+			byte[] frame;
+			while (!closed && (frame = requests.poll()) != null) {
+				ObjectWrapper request = format.decode(frame);
+				if (request.getRequestId() != 0 && inFlight.get() < SESSION_MAX_IN_FLIGHT) {
+					inFlight.incrementAndGet();
+					try {
+						pool.execute(() -> {
+							try {
+								execute(request);
+							} finally {
+								inFlight.decrementAndGet();
+							}
+						});
+					} catch (RejectedExecutionException e) {
+						inFlight.decrementAndGet();
+						execute(request);
+					}
+				} else {
+					execute(request);
+				}
+			}
+		} catch (IOException e) {
+			System.err.println(e + " Request failed in ClientSession.");
+			close();
+		} finally {
+			scheduled.set(false);
+		}
+		schedule(); // requests may have arrived after the last poll
+	}
+
+	/**
+	 * Execute one request, closing the session when the client quits or the
+	 * request fails.
+	 * @param request (ObjectWrapper) decoded client request.
+	 */
+	private void execute(ObjectWrapper request) {
+		try {
+			if (!closed && !modelController.handleRequest(request)) {
+				close();
+			}
+		} catch (RuntimeException e) {
+			System.err.println(e + " Request failed in ClientSession.");
+			close();
+		}
+	}
+
+	/**
+	 * Queue a response for the client and write as much of it as the socket
+	 * accepts right away.
+	 * @param ow (ObjectWrapper) the response being sent.
+	 */
+	public void send(ObjectWrapper ow) {
+		byte[] payload;
+		try {
+			payload = format.encode(ow);
+		} catch (IOException e) {
+			System.err.println(e + " Response failed in ClientSession.");
+			close();
+			return;
+		}
+		ByteBuffer frame = ByteBuffer.allocate(WrapperCodec.HEADER_SIZE + payload.length);
+		frame.putInt(payload.length).put(payload).flip();
+		enqueue(frame);
+	}
+
+	/**
+	 * Queue raw bytes for the client and write as much as the socket accepts.
+	 * @param bytes (ByteBuffer) bytes ready to be written.
+	 */
+	private void enqueue(ByteBuffer bytes) {
+		try {
+			synchronized (responses) {
+				if (closed) {
+					return;
+				}
+				responses.add(bytes);
+				if (!flushResponses()) {
+					key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					key.selector().wakeup();
+				}
+			}
+		} catch (IOException e) {
+			System.err.println(e + " Response failed in ClientSession.");
+			close();
+		}
+	}
+
+	/**
+	 * Continue writing queued responses. Called by the selector thread when the
+	 * socket can accept more bytes.
+	 * @throws IOException if the channel failed.
+	 */
+	public void onWritable() throws IOException {
+		synchronized (responses) {
+			if (flushResponses()) {
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+	}
+
+	/**
+	 * Write queued responses until the socket buffer is full. Caller must hold
+	 * the response lock.
+	 * @return (boolean) true if every queued response was written.
+	 * @throws IOException if the channel failed.
+	 */
+	private boolean flushResponses() throws IOException {
+		while (!responses.isEmpty()) {
+			ByteBuffer head = responses.peek();
+			channel.write(head);
+			if (head.hasRemaining()) {
+				return false;
+			}
+			responses.poll();
+		}
+		return true;
+	}
+
+	/**
+	 * Close the client connection and release the session's resources.
+	 */
+	public void close() {
+		synchronized (responses) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			responses.clear();
+		}
+		requests.clear(); // frames pipelined behind a QUIT or a failed request
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			System.err.println(e + " Client connection failed in close().");
+		}
+		if (modelController != null) {
+			modelController.close();
+		}
+		System.out.println("Client session closed.");
+	}
+}
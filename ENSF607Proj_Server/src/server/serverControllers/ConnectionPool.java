@@ -0,0 +1,532 @@
+package server.serverControllers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of database connections shared by every client session. The
+ * pool is pre-warmed at startup and lends a connection to a DbController
+ * operation for the duration of that operation only. Allows the following:
+ * - borrow with a maximum wait time when every connection is in use,
+ * - validation of connections that sat idle before they are lent again,
+ * - eviction of connections idle for too long, down to the minimum size,
+ * - leak detection for connections held longer than a threshold,
+ * - active/idle/waiter/wait time and statement cache statistics for monitoring.
+ *
+ * Uses a ReentrantLock rather than synchronized so waiting virtual threads
+ * park without pinning their carrier. The number of threads holding a
+ * connection at once can be limited below the pool size with limitBorrowers,
+ * since the MySQL driver pins the carrier of a virtual thread while it works.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class ConnectionPool implements DatabaseConstants {
+
+	private final ReentrantLock lock = new ReentrantLock(true);
+	private final Condition available = lock.newCondition();
+	private final ArrayDeque<PooledConnection> idle = new ArrayDeque<PooledConnection>(); // most recent first
+	private final HashSet<PooledConnection> active = new HashSet<PooledConnection>();
+	private ScheduledExecutorService maintenance;
+	private Semaphore permits; // one per borrowed connection, null when unlimited
+	private boolean cacheStatements = true;
+	private int total; // open connections plus connections being opened
+	private int waiters;
+	private boolean closed;
+
+	// statistics, guarded by lock
+	private long borrowCount;
+	private long waitCount;
+	private long timeoutCount;
+	private long leakCount;
+	private long totalWaitNanos;
+	private long maxWaitNanos;
+	private final LongAdder statementHits = new LongAdder();
+	private final LongAdder statementMisses = new LongAdder();
+
+	/**
+	 * Register the JDBC driver, open the minimum number of connections and
+	 * start the eviction and leak detection task.
+	 * @throws SQLException if the driver could not be registered.
+	 */
+	public void start() throws SQLException {
+		DriverManager.registerDriver(new com.mysql.cj.jdbc.Driver());
+		for (int i = 0; i < POOL_MIN_IDLE; i++) {
+			PooledConnection pc = new PooledConnection(this, openConnection());
+			lock.lock();
+			try {
+				total++;
+				idle.addFirst(pc);
+			} finally {
+				lock.unlock();
+			}
+		}
+		maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "connection-pool-maintenance");
+			t.setDaemon(true);
+			return t;
+		});
+		maintenance.scheduleWithFixedDelay(this::maintain, POOL_MAINTENANCE_INTERVAL_MS, POOL_MAINTENANCE_INTERVAL_MS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Limit the threads holding a connection at once, for the virtual thread
+	 * execution mode. A borrower waits for a permit before it takes a
+	 * connection and gives it back with the connection; waiting parks a virtual
+	 * thread, so at most that many carriers are pinned inside the driver. Must be
+	 * called before the first borrow.
+	 * @param borrowers (int) threads allowed to hold a connection at once.
+	 */
+	public void limitBorrowers(int borrowers) {
+		permits = new Semaphore(borrowers, true);
+	}
+
+	/**
+	 * Prepare every statement anew on the client, as before the statement
+	 * cache, to measure what the cache saves. Must be called before start().
+	 */
+	public void disableStatementCache() {
+		cacheStatements = false;
+	}
+
+	/**
+	 * @return (boolean) true if the connections cache their prepared statements.
+	 */
+	boolean cachesStatements() {
+		return cacheStatements;
+	}
+
+	/**
+	 * Borrow a connection, waiting up to POOL_MAX_WAIT_MS when all are in use
+	 * or every borrower permit is taken.
+	 * @return (PooledConnection) connection to be closed when the operation ends.
+	 * @throws SQLException if no connection became available in time.
+	 */
+	public PooledConnection borrow() throws SQLException {
+		long start = System.nanoTime();
+		long remaining = TimeUnit.MILLISECONDS.toNanos(POOL_MAX_WAIT_MS);
+		if (permits == null) {
+			return take(start, remaining);
+		}
+		try {
+			if (!permits.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+				lock.lock();
+				try {
+					timeoutCount++;
+					throw new SQLException("Timed out after " + POOL_MAX_WAIT_MS
+							+ " ms waiting for a database permit. " + this.statsString());
+				} finally {
+					lock.unlock();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for a database permit.", e);
+		}
+		PooledConnection pc = null;
+		try {
+			pc = take(start, remaining - (System.nanoTime() - start));
+			return pc;
+		} finally {
+			if (pc == null) {
+				permits.release();
+			}
+		}
+	}
+
+	/**
+	 * Take an idle connection or open a new one, waiting while all are in use.
+	 * @param start     (long) System.nanoTime() when the borrow began.
+	 * @param remaining (long) nanoseconds left to wait.
+	 * @return (PooledConnection) connection to be closed when the operation ends.
+	 * @throws SQLException if no connection became available in time.
+	 */
+	private PooledConnection take(long start, long remaining) throws SQLException {
+		boolean waited = false;
+		while (true) {
+			PooledConnection pc = null;
+			lock.lock();
+			try {
+				while (pc == null) {
+					if (closed) {
+						throw new SQLException("Connection pool is closed.");
+					}
+					pc = idle.pollFirst();
+					if (pc == null && total < POOL_MAX_SIZE) {
+						total++;
+						break; // open a new connection outside the lock
+					}
+					if (pc == null) {
+						if (remaining <= 0L) {
+							timeoutCount++;
+							throw new SQLException("Timed out after " + POOL_MAX_WAIT_MS
+									+ " ms waiting for a database connection. " + this.statsString());
+						}
+						waited = true;
+						waiters++;
+						try {
+							remaining = available.awaitNanos(remaining);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new SQLException("Interrupted waiting for a database connection.", e);
+						} finally {
+							waiters--;
+						}
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			if (pc == null) {
+				try {
+					pc = new PooledConnection(this, openConnection());
+				} catch (SQLException e) {
+					discard(null);
+					throw e;
+				}
+			} else if (!isValid(pc)) {
+				discard(pc);
+				continue;
+			}
+
+			Throwable trace = POOL_LEAK_THRESHOLD_MS > 0
+					? new Throwable("Connection borrowed by " + Thread.currentThread().getName())
+					: null;
+			lock.lock();
+			try {
+				pc.markBorrowed(trace);
+				active.add(pc);
+				borrowCount++;
+				if (waited) {
+					long waitNanos = System.nanoTime() - start;
+					waitCount++;
+					totalWaitNanos += waitNanos;
+					maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+				}
+			} finally {
+				lock.unlock();
+			}
+			return pc;
+		}
+	}
+
+	/**
+	 * Return a borrowed connection. Broken connections are closed and replaced
+	 * on demand.
+	 * @param pc (PooledConnection) the connection being returned.
+	 */
+	void release(PooledConnection pc) {
+		boolean healthy = pc.reset();
+		lock.lock();
+		try {
+			if (!active.remove(pc)) {
+				return; // already returned
+			}
+			if (permits != null) {
+				permits.release();
+			}
+			if (healthy && !closed) {
+				pc.markIdle();
+				idle.addFirst(pc);
+				available.signal();
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+		discard(pc);
+	}
+
+	/**
+	 * Give up a connection slot and close the connection if there is one.
+	 * @param pc (PooledConnection) connection being dropped, may be null.
+	 */
+	private void discard(PooledConnection pc) {
+		lock.lock();
+		try {
+			total--;
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+		if (pc != null) {
+			pc.closePhysical();
+		}
+	}
+
+	/**
+	 * Validate a connection that sat idle longer than POOL_VALIDATE_AFTER_MS.
+	 * @param pc (PooledConnection) connection about to be lent.
+	 * @return (boolean) true if the connection can be used.
+	 */
+	private boolean isValid(PooledConnection pc) {
+		if (System.currentTimeMillis() - pc.getLastUsedAt() < POOL_VALIDATE_AFTER_MS) {
+			return true;
+		}
+		try {
+			return pc.getConnection().isValid(POOL_VALIDATION_TIMEOUT_S);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Open a new physical connection to the shop database.
+	 * @return (Connection) the open connection.
+	 * @throws SQLException if the database could not be reached.
+	 */
+	private Connection openConnection() throws SQLException {
+		return DriverManager.getConnection(DB_URL, USERNAME, PASSWORD);
+	}
+
+	/**
+	 * Periodic task: close connections idle longer than POOL_IDLE_TIMEOUT_MS,
+	 * top the pool back up to POOL_MIN_IDLE and report suspected leaks.
+	 */
+	private void maintain() {
+		ArrayList<PooledConnection> evicted = new ArrayList<PooledConnection>();
+		ArrayList<PooledConnection> leaked = new ArrayList<PooledConnection>();
+		int missing;
+		long now = System.currentTimeMillis();
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			Iterator<PooledConnection> oldest = idle.descendingIterator();
+			while (oldest.hasNext() && total - evicted.size() > POOL_MIN_IDLE) {
+				PooledConnection pc = oldest.next();
+				if (now - pc.getLastUsedAt() < POOL_IDLE_TIMEOUT_MS) {
+					break;
+				}
+				oldest.remove();
+				evicted.add(pc);
+			}
+			total -= evicted.size();
+			if (POOL_LEAK_THRESHOLD_MS > 0) {
+				for (PooledConnection pc : active) {
+					if (!pc.isLeakReported() && now - pc.getBorrowedAt() > POOL_LEAK_THRESHOLD_MS) {
+						pc.setLeakReported();
+						leakCount++;
+						leaked.add(pc);
+					}
+				}
+			}
+			missing = Math.max(0, POOL_MIN_IDLE - total);
+			total += missing;
+		} finally {
+			lock.unlock();
+		}
+
+		for (PooledConnection pc : evicted) {
+			pc.closePhysical();
+		}
+		for (PooledConnection pc : leaked) {
+			System.err.println("Possible connection leak: connection held for "
+					+ (now - pc.getBorrowedAt()) + " ms.");
+			if (pc.getBorrowTrace() != null) {
+				pc.getBorrowTrace().printStackTrace();
+			}
+		}
+		for (int i = 0; i < missing; i++) {
+			try {
+				PooledConnection pc = new PooledConnection(this, openConnection());
+				lock.lock();
+				try {
+					idle.addFirst(pc);
+					available.signal();
+				} finally {
+					lock.unlock();
+				}
+			} catch (SQLException e) {
+				discard(null);
+				System.err.println("Connection pool refill failed: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Close every idle connection and stop lending. Borrowed connections are
+	 * closed as they are returned.
+	 */
+	public void close() {
+		ArrayList<PooledConnection> toClose;
+		lock.lock();
+		try {
+			closed = true;
+			toClose = new ArrayList<PooledConnection>(idle);
+			total -= idle.size();
+			idle.clear();
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		if (maintenance != null) {
+			maintenance.shutdownNow();
+		}
+		for (PooledConnection pc : toClose) {
+			pc.closePhysical();
+		}
+	}
+
+	/**
+	 * @return (int) connections currently lent to operations.
+	 */
+	public int getActiveCount() {
+		lock.lock();
+		try {
+			return active.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return (int) open connections waiting to be lent.
+	 */
+	public int getIdleCount() {
+		lock.lock();
+		try {
+			return idle.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return (int) threads currently waiting for a connection.
+	 */
+	public int getWaiterCount() {
+		lock.lock();
+		try {
+			return waiters;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return (long) total number of successful borrows.
+	 */
+	public long getBorrowCount() {
+		lock.lock();
+		try {
+			return borrowCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return (long) borrows that gave up after POOL_MAX_WAIT_MS.
+	 */
+	public long getTimeoutCount() {
+		lock.lock();
+		try {
+			return timeoutCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return (long) connections reported as possibly leaked.
+	 */
+	public long getLeakCount() {
+		lock.lock();
+		try {
+			return leakCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return (double) average wait in milliseconds of borrows that had to wait.
+	 */
+	public double getAverageWaitMillis() {
+		lock.lock();
+		try {
+			return waitCount == 0 ? 0.0 : totalWaitNanos / 1e6 / waitCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return (double) longest wait in milliseconds of any borrow.
+	 */
+	public double getMaxWaitMillis() {
+		lock.lock();
+		try {
+			return maxWaitNanos / 1e6;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Count a prepared statement lookup in a connection's statement cache.
+	 * @param hit (boolean) true if a cached statement was reused.
+	 */
+	void recordStatementLookup(boolean hit) {
+		if (hit) {
+			statementHits.increment();
+		} else {
+			statementMisses.increment();
+		}
+	}
+
+	/**
+	 * @return (long) prepared statements reused from a connection's cache.
+	 */
+	public long getStatementCacheHits() {
+		return statementHits.sum();
+	}
+
+	/**
+	 * @return (long) prepared statements that had to be prepared.
+	 */
+	public long getStatementCacheMisses() {
+		return statementMisses.sum();
+	}
+
+	/**
+	 * Statistics line, caller must hold the lock.
+	 * @return (String) current pool statistics.
+	 */
+	private String statsString() {
+		return String.format("Pool: active=%d idle=%d waiters=%d borrows=%d waits=%d avgWait=%.2fms maxWait=%.2fms "
+				+ "timeouts=%d leaks=%d stmtHits=%d stmtMisses=%d", active.size(), idle.size(), waiters, borrowCount,
+				waitCount, waitCount == 0 ? 0.0 : totalWaitNanos / 1e6 / waitCount, maxWaitNanos / 1e6, timeoutCount,
+				leakCount, statementHits.sum(), statementMisses.sum());
+	}
+
+	/**
+	 * @return (String) current pool statistics for monitoring output.
+	 */
+	@Override
+	public String toString() {
+		lock.lock();
+		try {
+			return statsString();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
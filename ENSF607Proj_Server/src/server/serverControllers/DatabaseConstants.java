@@ -1,4 +1,4 @@
-package server.serverControllers;
+package server.serverControllers;
 /**
  * Hold the connection information for the local mySQL database.
  * @author NJack & JJoorisity
@@ -9,9 +9,42 @@ public interface DatabaseConstants {
 	
 	// JDBC driver name and database URL
 	static final String JDBC_DRIVER = "com.mysql.cj.jdbc.Driver";
-	static final String DB_URL = "jdbc:mysql://localhost:3306/607toolshop"; // change to our DB Name
+	static final String DB_URL = "jdbc:mysql://localhost:3306/607toolshop" // change to our DB Name
+			+ "?useServerPrepStmts=true" // parse cached prepared statements once on the server
+			+ "&rewriteBatchedStatements=true"; // send JDBC batches as multi-row inserts
 
 	// Database credentials
 	static final String USERNAME = "root";
     static final String PASSWORD = "";
+
+	// Connection pool settings
+	static final int POOL_MIN_IDLE = 4; // connections opened at startup and kept open
+	static final int POOL_MAX_SIZE = 20;
+	static final long POOL_MAX_WAIT_MS = 5000; // borrow fails after waiting this long
+	static final long POOL_IDLE_TIMEOUT_MS = 5 * 60 * 1000; // idle connections above the minimum are closed
+	static final long POOL_VALIDATE_AFTER_MS = 30 * 1000; // idle connections are validated before reuse
+	static final int POOL_VALIDATION_TIMEOUT_S = 2;
+	static final long POOL_LEAK_THRESHOLD_MS = 60 * 1000; // 0 disables leak detection
+	static final long POOL_MAINTENANCE_INTERVAL_MS = 30 * 1000;
+	static final int STATEMENT_CACHE_SIZE = 32; // prepared statements kept open per connection
+
+	// Bulk import settings
+	static final int BULK_CHUNK_ROWS = 5000; // rows per batch and per transaction
+	static final int BULK_PARSE_THREADS = Runtime.getRuntime().availableProcessors();
+
+	// Customers kept in the shared customer cache
+	static final int CUSTOMER_CACHE_SIZE = 100000;
+
+	// New customers the customer ID filter is sized for beyond those loaded at startup
+	static final int CUSTOMER_FILTER_GROWTH = 1000000;
+
+	// Largest page returned by the paged item and customer queries
+	static final int PAGE_SIZE_MAX = 500;
+
+	// Journaled purchases are written to the database this often
+	static final long JOURNAL_APPLY_INTERVAL_MS = 200;
+	static final String JOURNAL_DIR = "./journal"; // local journal of purchases not yet written
+
+	// Inventory snapshots are written this often, so a restart replays a short journal tail
+	static final long INVENTORY_CHECKPOINT_INTERVAL_MS = 60 * 1000;
 }
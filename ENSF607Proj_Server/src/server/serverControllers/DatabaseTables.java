@@ -14,11 +14,14 @@ public interface DatabaseTables {
 	static final String PURCHASES = "Purchases";
 	static final String ORDERS = "Orders";
 	static final String ORDER_LINES = "Order_Lines";
+	static final String FLUSHED_SEGMENTS = "Flushed_Segments"; // purchase journal segments written to the database
+	static final String CATALOG_VERSION = "Catalog_Version"; // one row, changed with every item or supplier write
 	
 	// Text files for Mac:
 	static final String ITEMFILE = "./items.txt";
 	static final String SUPPLIERFILE = "./suppliers.txt";
 	static final String CUSTOMERFILE = "./customers.txt";
+	static final String CATALOGFILE = "./catalog.bin"; // mapped export of the Items and Suppliers tables
 	// Text files for Windows:
 //	static final String ITEMFILE = "ENSF_607_608_Project/items.txt";
 //	static final String SUPPLIERFILE = "ENSF_607_608_Project/suppliers.txt";
@@ -1,85 +1,189 @@
 package server.serverControllers;
 
-import java.sql.Connection;
-import java.sql.Driver;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import server.serverModel.MappedCatalog;
 import sharedModel.*;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.*;
+import java.time.LocalDate;
 
 /**
  * Controller used to interface between the shop model controller and shop application
  * to the mySQL database. Contains the following mySQL commands:
- * - initialize connection,
  * - create tables,
  * - drop tables,
  * - query, update, and delete among tables.
- * 
+ * One instance is shared by every client session; each operation borrows a
+ * connection from the connection pool and returns it when the operation ends.
+ * Suppliers are read once into an immutable snapshot, replaced whenever a
+ * supplier is inserted, so supplier lookups never touch the database.
+ * Every stock change goes through the purchase journal, whose inventory
+ * snapshots let a restart rebuild the stock without scanning the Items table.
+ * Item and supplier attributes are exported to a MappedCatalog file, trusted
+ * at startup only while its catalog version matches the Catalog_Version
+ * table, which every write to the Items or Suppliers table changes.
+ *
  * @author NJack & JJoorisity
  * @version 1.0
  * @since 2020-11-26
  */
 public class DbController implements DatabaseConstants, DatabaseTables {
 
-	
-	private Connection conn; 	// Object of type connection from the JDBC class that deals with connecting to
-									// the database
-	private Statement stmt; 	// object of type statement from JDBC class that enables the creation "Query
-									// statements"
-	private ResultSet rs; 		// object of type ResultSet from the JDBC class that stores the result of the
-									// query
+	private ConnectionPool pool; // shared pool lending connections to each operation
 	private DbControllerHelper helper;
+	private PurchaseJournal journal; // stock changes acknowledged but not yet written to the database
+	private final AtomicReference<SupplierSnapshot> suppliers = new AtomicReference<SupplierSnapshot>(
+			SupplierSnapshot.EMPTY);
 
 	/**
-	 * Default constructor to initialize connection with DbControllerHelper class.
+	 * Constructor to initialize connection with DbControllerHelper class.
+	 * @param pool (ConnectionPool) started pool of connections to the shop database.
 	 */
-	public DbController() {
+	public DbController(ConnectionPool pool) {
+		this.pool = pool;
 		helper = new DbControllerHelper();
 	}
 
 	/**
-	 * Initialize the connection to the shop database.
+	 * @return (ConnectionPool) the pool used by this controller, for monitoring.
 	 */
-	public void initializeConnection() {
-		try {
-			// Register JDBC driver
-			Driver driver = new com.mysql.cj.jdbc.Driver();
-			DriverManager.registerDriver(driver);
-			// Open a connection
-			conn = DriverManager.getConnection(DB_URL, USERNAME, PASSWORD);
-		} catch (SQLException e) {
-			System.out.println("Problem");
-			e.printStackTrace();
-		}
+	public ConnectionPool getPool() {
+		return pool;
 	}
 
 	/**
 	 * Close all connections to the database.
 	 */
 	public void close() {
+		if (journal != null) {
+			journal.close();
+			System.out.println(journal);
+		}
+		pool.close();
+	}
+
+	/**
+	 * Apply the stock changes journaled but not written by the previous run,
+	 * then start the purchase journal. Must be called before stock changes are
+	 * executed and before the inventory is loaded.
+	 * @return (int) number of stock changes applied from the journal.
+	 * @throws IOException  if the journal could not be read or created.
+	 * @throws SQLException if the journaled changes could not be written.
+	 */
+	public int startJournal() throws IOException, SQLException {
+		journal = new PurchaseJournal(pool, helper, this::applyEntries, JOURNAL_DIR);
+		int count = journal.recover();
+		journal.start();
+		return count;
+	}
+
+	/**
+	 * Map the catalog file and check it against the database. A current catalog
+	 * also replaces the supplier snapshot.
+	 * @return (MappedCatalog) the catalog, null if it is missing, damaged or
+	 *         older than the database's catalog version.
+	 */
+	public MappedCatalog openCatalog() {
+		MappedCatalog catalog = MappedCatalog.open(Paths.get(CATALOGFILE));
+		if (catalog == null) {
+			return null;
+		}
+		long version = this.queryCatalogVersion();
+		if (catalog.getVersion() != version) {
+			System.out.println("Catalog version " + catalog.getVersion() + " is stale, database is at " + version + ".");
+			return null;
+		}
+		suppliers.set(SupplierSnapshot.of(catalog.suppliers()));
+		return catalog;
+	}
+
+	/**
+	 * Read the stock of the catalog's items after startJournal(), from the
+	 * latest inventory snapshot with the later journal segments replayed.
+	 * @param catalog (MappedCatalog) current catalog.
+	 * @return (int[]) stock of each catalog row, null if there is no snapshot
+	 *         holding the catalog's items and loadInventory() must be used.
+	 */
+	public int[] loadStock(MappedCatalog catalog) {
+		return journal.loadStock(catalog);
+	}
+
+	/**
+	 * Read every item from the Items table after startJournal(), when the
+	 * catalog or the inventory snapshot can not be used. The items are written
+	 * as a new inventory snapshot, and exported with the suppliers of the
+	 * supplier snapshot as a new catalog, so the next start can map them. Must
+	 * be called after loadSuppliers() and before stock changes are executed.
+	 * @return (LinkedHashSet<Item_Elec>) every item.
+	 */
+	public LinkedHashSet<Item_Elec> loadInventory() {
+		long version = this.queryCatalogVersion(); // read first, a later write makes the export stale
+		LinkedHashSet<Item_Elec> items = this.queryItem();
 		try {
-			stmt.close();
-			rs.close();
-			conn.close();
+			journal.checkpoint(items);
+			if (version >= 0) {
+				MappedCatalog.write(Paths.get(CATALOGFILE), version, items, suppliers.get().values());
+			}
+		} catch (IOException e) {
+			System.err.println("Inventory snapshot or catalog export failed, the next start reads the Items table again.");
+			e.printStackTrace();
+		}
+		return items;
+	}
+
+	/**
+	 * @return (long) current catalog version of the database, -1 if it could
+	 *         not be read.
+	 */
+	private long queryCatalogVersion() {
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.getConnection().prepareStatement(helper.queryCatalogVersion());
+				ResultSet results = pStat.executeQuery()) {
+			if (results.next()) {
+				return results.getLong("version");
+			}
 		} catch (SQLException e) {
+			System.err.println("queryCatalogVersion failed.");
 			e.printStackTrace();
 		}
+		return -1;
+	}
+
+	/**
+	 * Change the catalog version after a write to the Items or Suppliers table,
+	 * making every exported catalog stale.
+	 * @param pc (PooledConnection) connection that made the write.
+	 * @throws SQLException if the update failed.
+	 */
+	private void bumpCatalogVersion(PooledConnection pc) throws SQLException {
+		try (PreparedStatement pStat = pc.prepareStatement(helper.bumpCatalogVersion())) {
+			pStat.executeUpdate();
+		}
 	}
 
 	/**
-	 * Drops all tables in the shop database, for hard reset.
+	 * Drops all tables in the shop database, for hard reset, and deletes the
+	 * inventory snapshots and the catalog, which describe the dropped items.
 	 */
 	public void resetDatabase() {
-		String sqlDropTables = "DROP TABLES PURCHASES, ITEMS, SUPPLIERS, ORDER_LINES, ORDERS, CUSTOMERS";
-		try {
-			stmt = conn.createStatement();
+		InventorySnapshot.deleteBelow(Paths.get(JOURNAL_DIR), Long.MAX_VALUE);
+		String sqlDropTables = "DROP TABLES PURCHASES, ITEMS, SUPPLIERS, ORDER_LINES, ORDERS, CUSTOMERS, FLUSHED_SEGMENTS, CATALOG_VERSION";
+		try (PooledConnection pc = pool.borrow(); Statement stmt = pc.createStatement()) {
 			stmt.executeUpdate(sqlDropTables);
-		} catch (SQLException e) {
+			Files.deleteIfExists(Paths.get(CATALOGFILE));
+		} catch (SQLException | IOException e) {
 			e.printStackTrace();
 		}
 		System.out.println("All tables deleted...");
@@ -94,7 +198,7 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 				+ " importTax DECIMAL(5,2), " + " PRIMARY KEY (supplierId))";
 
 		String sqlItems = "CREATE TABLE " + ITEMS + "(itemId INTEGER not NULL, " + " supplierId INTEGER not NULL, "
-				+ " itemType VARCHAR(1), " + " itemDesc VARCHAR(255), " + " itemPrice DECIMAL(5,2), "
+				+ " itemType VARCHAR(1), " + " itemDesc VARCHAR(255), " + " itemPrice DECIMAL(12,2), "
 				+ " itemQty INTEGER, " + " powerType VARCHAR(10), " + " V INTEGER, " + " Ph INTEGER, "
 				+ " PRIMARY KEY (itemId), "
 				+ "  CONSTRAINT FK_SuppItem FOREIGN KEY (supplierId) REFERENCES Suppliers(supplierId) ON UPDATE CASCADE ON DELETE CASCADE)";
@@ -116,14 +220,31 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 				+ " CONSTRAINT FK_PurchaseCust FOREIGN KEY (customerId) REFERENCES Customers(customerId) ON UPDATE CASCADE ON DELETE CASCADE, "
 				+ " CONSTRAINT FK_PurchaseItem FOREIGN KEY (itemId) REFERENCES Items(itemId) ON UPDATE CASCADE ON DELETE CASCADE)";
 
-		try {
-			stmt = conn.createStatement();
+		String sqlFlushed = "CREATE TABLE " + FLUSHED_SEGMENTS + "(segmentId BIGINT not NULL, "
+				+ " PRIMARY KEY (segmentId))";
+
+		String sqlCatalogVersion = "CREATE TABLE " + CATALOG_VERSION + "(id INTEGER not NULL, "
+				+ " version BIGINT not NULL, " + " PRIMARY KEY (id))";
+
+		// start from the clock so a recreated database never matches a catalog exported before
+		String sqlCatalogVersionRow = "INSERT INTO " + CATALOG_VERSION + " VALUES (1, " + System.currentTimeMillis()
+				+ ")";
+
+		// covers the customer type pages so a page is an index range scan however large the table is
+		String sqlCustomerIndex = "CREATE INDEX IX_CustTypeName ON " + CUSTOMERS
+				+ " (customerType, lName, fName, customerId)";
+
+		try (PooledConnection pc = pool.borrow(); Statement stmt = pc.createStatement()) {
 			stmt.executeUpdate(sqlSupp);
 			stmt.executeUpdate(sqlItems);
 			stmt.executeUpdate(sqlCustomer);
+			stmt.executeUpdate(sqlCustomerIndex);
 			stmt.executeUpdate(sqlPurchase);
 			stmt.executeUpdate(sqlOrder);
 			stmt.executeUpdate(sqlOrderLine);
+			stmt.executeUpdate(sqlFlushed);
+			stmt.executeUpdate(sqlCatalogVersion);
+			stmt.executeUpdate(sqlCatalogVersionRow);
 
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -132,33 +253,86 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	}
 
 	/**
-	 * Initialize the item data by reading in from a text file.
+	 * Bring the tables of a database created by an older version up to date:
+	 * widens itemPrice from DECIMAL(5,2) to DECIMAL(12,2), so prices of 1000.00
+	 * and more fit. The table is only altered when the column is narrower, as
+	 * the ALTER copies the whole table.
 	 */
-	public void initializeItemTable() {
-		ArrayList<Object> newItems = helper.importFromTxt(ITEMFILE);
-		for (Object item : newItems) {
-			this.insertItem((Item_Elec) item);
+	public void migrateTables() {
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.queryItemPricePrecision());
+				ResultSet results = pStat.executeQuery()) {
+			if (results.next() && results.getInt(1) < 12) {
+				try (Statement stmt = pc.createStatement()) {
+					stmt.executeUpdate(helper.widenItemPrice());
+				}
+				System.out.println("Items.itemPrice widened to DECIMAL(12,2)...");
+			}
+		} catch (SQLException e) {
+			System.err.println("Could not migrate the tables.");
+			e.printStackTrace();
 		}
 	}
 
 	/**
-	 * Initialize the supplier data by reading in from a text file.
+	 * Initialize the item data by bulk loading a text file.
+	 */
+	public void initializeItemTable() {
+		new BulkLoader(pool, helper).loadItems(ITEMFILE);
+		this.catalogChanged();
+	}
+
+	/**
+	 * Initialize the supplier data by bulk loading a text file.
 	 */
 	public void initializeSupplierTable() {
-		ArrayList<Object> newSuppliers = helper.importFromTxt(SUPPLIERFILE);
-		for (Object s : newSuppliers) {
-			this.insertSupplier((Int_Supplier) s);
+		new BulkLoader(pool, helper).loadSuppliers(SUPPLIERFILE);
+		this.catalogChanged();
+		loadSuppliers();
+	}
+
+	/**
+	 * Change the catalog version after a bulk load into the Items or Suppliers table.
+	 */
+	private void catalogChanged() {
+		try (PooledConnection pc = pool.borrow()) {
+			this.bumpCatalogVersion(pc);
+		} catch (SQLException e) {
+			System.err.println("Catalog version update failed.");
+			e.printStackTrace();
 		}
 	}
 
 	/**
-	 * Initialize the customer data by reading in from a text file.
+	 * Initialize the customer data by bulk loading a text file.
 	 */
 	public void initializeCustomerTable() {
-		ArrayList<Object> newCustomers = helper.importFromTxt(CUSTOMERFILE);
-		for (Object c : newCustomers) {
-			this.insertCustomer((Customer) c);
-		}
+		new BulkLoader(pool, helper).loadCustomers(CUSTOMERFILE);
+	}
+
+	/**
+	 * Build an item from the current row of an Items query.
+	 * @param results (ResultSet) result set positioned on an Items row.
+	 * @return (Item_Elec) the item stored in the row.
+	 * @throws SQLException if a column is missing.
+	 */
+	private Item_Elec readItem(ResultSet results) throws SQLException {
+		return new Item_Elec(results.getInt("itemId"), results.getString("itemType").charAt(0),
+				results.getString("itemDesc"), results.getInt("itemQty"), Money.fromDecimal(results.getBigDecimal("itemPrice")),
+				results.getInt("supplierId"), results.getString("powerType"), results.getInt("V"),
+				results.getInt("Ph"));
+	}
+
+	/**
+	 * Build a customer from the current row of a Customers query.
+	 * @param results (ResultSet) result set positioned on a Customers row.
+	 * @return (Customer) the customer stored in the row.
+	 * @throws SQLException if a column is missing.
+	 */
+	private Customer readCustomer(ResultSet results) throws SQLException {
+		return new Customer(results.getInt("customerId"), results.getString("fName"), results.getString("lName"),
+				results.getString("address"), results.getString("postalCode"), results.getString("phoneNumber"),
+				results.getString("customerType").charAt(0));
 	}
 
 	/**
@@ -166,27 +340,28 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	 * Uses the lowest class of item; a non-electric item will have null values
 	 * for the electric specific attributes.
 	 * @param item (Item_Elec) electric item used to update the database.
+	 * @return (boolean) true if the item was inserted.
 	 */
-	public void insertItem(Item_Elec item) {
-		try {
-			String query = helper.insertItem();
-			PreparedStatement pStat = conn.prepareStatement(query);
+	public boolean insertItem(Item_Elec item) {
+		try (PooledConnection pc = pool.borrow(); PreparedStatement pStat = pc.prepareStatement(helper.insertItem())) {
 			pStat.setInt(1, item.getItemID());
 			pStat.setInt(2, item.getSupplierID());
 			pStat.setString(3, String.valueOf(item.getItemType()));
 			pStat.setString(4, item.getItemDesc());
-			pStat.setDouble(5, item.getPrice());
+			pStat.setBigDecimal(5, Money.toDecimal(item.getPriceCents()));
 			pStat.setInt(6, item.getQty());
 			pStat.setString(7, item.getPowerType());
 			pStat.setInt(8, item.getVoltage());
 			pStat.setInt(9, item.getPhase());
 			int rowCount = pStat.executeUpdate();
+			this.bumpCatalogVersion(pc);
 			System.out.println("row Count = " + rowCount);
-			pStat.close();
+			return rowCount > 0;
 		} catch (SQLException e) {
 			System.err.println("insert failed with " + ITEMS + " and " + item.getItemID());
 			e.printStackTrace();
 		}
+		return false;
 	}
 
 	/**
@@ -195,24 +370,32 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	 * @return (Item_Elec) the returned searched item attributes are stored in Item_Elec object.
 	 */
 	public Item_Elec queryItem(int itemID) {
-		Item_Elec queryRes = null;
-		try {
-			String query = helper.queryItemId();
-			PreparedStatement pStat = conn.prepareStatement(query);
-			pStat.setInt(1, itemID);
-			ResultSet results = pStat.executeQuery();
-
-			if (results.next()) {
-				queryRes = new Item_Elec(results.getInt("itemId"), results.getString("itemType").charAt(0),
-						results.getString("itemDesc"), results.getInt("itemQty"), results.getDouble("itemPrice"),
-						results.getInt("supplierId"), results.getString("powerType"), results.getInt("V"),
-						results.getInt("Ph"));
-				pStat.close();
-			}
+		try (PooledConnection pc = pool.borrow()) {
+			return this.queryItem(pc, itemID);
 		} catch (SQLException e) {
 			System.err.println("queryItem by ID failed with " + itemID);
 			e.printStackTrace();
 		}
+		return null;
+	}
+
+	/**
+	 * Query an item by its item ID on a connection already borrowed by the caller.
+	 * @param pc (PooledConnection) connection of the running operation.
+	 * @param itemID (int) the ID being searched in mySQL.
+	 * @return (Item_Elec) the searched item, null if the ID does not exist.
+	 * @throws SQLException if the query failed.
+	 */
+	private Item_Elec queryItem(PooledConnection pc, int itemID) throws SQLException {
+		Item_Elec queryRes = null;
+		try (PreparedStatement pStat = pc.prepareStatement(helper.queryItemId())) {
+			pStat.setInt(1, itemID);
+			try (ResultSet results = pStat.executeQuery()) {
+				if (results.next()) {
+					queryRes = readItem(results);
+				}
+			}
+		}
 		return queryRes;
 	}
 
@@ -224,18 +407,14 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	public LinkedHashSet<Item_Elec> queryItem(String itemDesc) {
 		itemDesc = "%" + itemDesc + "%";
 		LinkedHashSet<Item_Elec> queryRes = new LinkedHashSet<Item_Elec>();
-		try {
-			String query = helper.queryItemDesc();
-			PreparedStatement pStat = conn.prepareStatement(query);
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.queryItemDesc())) {
 			pStat.setString(1, itemDesc);
-			ResultSet results = pStat.executeQuery();
-			while (results.next()) {
-				queryRes.add(new Item_Elec(results.getInt("itemId"), results.getString("itemType").charAt(0),
-						results.getString("itemDesc"), results.getInt("itemQty"), results.getDouble("itemPrice"),
-						results.getInt("supplierId"), results.getString("powerType"), results.getInt("V"),
-						results.getInt("Ph")));
+			try (ResultSet results = pStat.executeQuery()) {
+				while (results.next()) {
+					queryRes.add(readItem(results));
+				}
 			}
-			pStat.close();
 		} catch (SQLException e) {
 			System.err.println("queryItem by Desc failed with " + itemDesc);
 			e.printStackTrace();
@@ -243,23 +422,44 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 		return queryRes;
 	}
 
+	/**
+	 * Query one page of items ordered by item ID, starting after a given item ID.
+	 * The primary key index seeks straight to the page, so page cost does not grow
+	 * with the position of the page in the table.
+	 * @param afterItemId (int) item ID of the last item of the previous page, Integer.MIN_VALUE for the first page.
+	 * @param pageSize    (int) maximum number of items returned, capped at PAGE_SIZE_MAX.
+	 * @return (LinkedHashSet<Item_Elec>) the page, shorter than pageSize on the last page.
+	 */
+	public LinkedHashSet<Item_Elec> queryItemPage(int afterItemId, int pageSize) {
+		LinkedHashSet<Item_Elec> queryRes = new LinkedHashSet<Item_Elec>();
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.queryItemPage())) {
+			pStat.setInt(1, afterItemId);
+			pStat.setInt(2, Math.max(1, Math.min(pageSize, PAGE_SIZE_MAX)));
+			try (ResultSet results = pStat.executeQuery()) {
+				while (results.next()) {
+					queryRes.add(readItem(results));
+				}
+			}
+		} catch (SQLException e) {
+			System.err.println("queryItemPage failed after " + afterItemId);
+			e.printStackTrace();
+		}
+		return queryRes;
+	}
+
 	/**
 	 * Query all items stored in the database.
 	 * @return (LinkedHashSet<Item_Elec>) the returned searched items are stored in Item_Elec objects.
 	 */
 	public LinkedHashSet<Item_Elec> queryItem() {
 		LinkedHashSet<Item_Elec> queryRes = new LinkedHashSet<Item_Elec>();
-		try {
-			String query = helper.queryItemAll();
-			PreparedStatement pStat = conn.prepareStatement(query);
-			ResultSet results = pStat.executeQuery();
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.queryItemAll());
+				ResultSet results = pStat.executeQuery()) {
 			while (results.next()) {
-				queryRes.add(new Item_Elec(results.getInt("itemId"), results.getString("itemType").charAt(0),
-						results.getString("itemDesc"), results.getInt("itemQty"), results.getDouble("itemPrice"),
-						results.getInt("supplierId"), results.getString("powerType"), results.getInt("V"),
-						results.getInt("Ph")));
+				queryRes.add(readItem(results));
 			}
-			pStat.close();
 		} catch (SQLException e) {
 			System.err.println("queryItem all failed.");
 			e.printStackTrace();
@@ -273,15 +473,12 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	 * @param qty (int) the quantity of the item to be reduced.
 	 */
 	public void updateItem(int itemID, int qty) {
-		try {
-			String query = helper.updateItem();
-			PreparedStatement pStat = conn.prepareStatement(query);
+		try (PooledConnection pc = pool.borrow(); PreparedStatement pStat = pc.prepareStatement(helper.updateItem())) {
 			pStat.setInt(1, qty);
 			pStat.setInt(2, itemID);
 
 			int rowCount = pStat.executeUpdate();
 			System.out.println("row Count = " + rowCount);
-			pStat.close();
 		} catch (SQLException e) {
 			System.err.println("updateItem failed with " + itemID + " and " + qty);
 		}
@@ -298,59 +495,76 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	 * @param supplier (Int_Supplier) international supplier used to update the database.
 	 */
 	public void insertSupplier(Int_Supplier supplier) {
-		try {
-			String query = helper.insertSupplier();
-			PreparedStatement pStat = conn.prepareStatement(query);
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.insertSupplier())) {
 			pStat.setInt(1, supplier.getSupplierID());
 			pStat.setString(2, String.valueOf(supplier.getSupplierType()));
 			pStat.setString(3, supplier.getCompanyName());
 			pStat.setString(4, supplier.getSalesContact());
 			pStat.setString(5, supplier.getAddress());
-			pStat.setDouble(6, supplier.getImportTax());
+			pStat.setBigDecimal(6, Money.toDecimal(supplier.getImportTaxBasisPoints()));
 			int rowCount = pStat.executeUpdate();
+			this.bumpCatalogVersion(pc);
 			System.out.println("row Count = " + rowCount);
-			pStat.close();
+			suppliers.updateAndGet(snapshot -> snapshot.with(supplier));
 		} catch (SQLException e) {
 			System.err.println("insert failed with " + SUPPLIERS + " and " + supplier.getSupplierID());
 			e.printStackTrace();
 		}
 	}
-	
+
+	/**
+	 * Read every supplier from the database into a new snapshot and swap it in.
+	 * The previous snapshot is kept if the read fails.
+	 * @return (int) number of suppliers in the current snapshot.
+	 */
+	public int loadSuppliers() {
+		ArrayList<Int_Supplier> all = new ArrayList<Int_Supplier>();
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.getConnection().prepareStatement(helper.querySupplierAll());
+				ResultSet results = pStat.executeQuery()) {
+			while (results.next()) {
+				all.add(new Int_Supplier(results.getInt("supplierID"), results.getString("supplierType").charAt(0),
+						results.getString("supplierName"), results.getString("address"),
+						results.getString("salesContact"), Money.fromDecimal(results.getBigDecimal("importTax"))));
+			}
+			suppliers.set(SupplierSnapshot.of(all));
+		} catch (SQLException e) {
+			System.err.println("loadSuppliers failed.");
+			e.printStackTrace();
+		}
+		return suppliers.get().size();
+	}
+
+	/**
+	 * @return (SupplierSnapshot) the current supplier snapshot.
+	 */
+	public SupplierSnapshot getSuppliers() {
+		return suppliers.get();
+	}
+
 	/**
-	 * Query supplier by the supplier ID.
+	 * Query supplier by the supplier ID from the supplier snapshot.
 	 * Local suppliers are stored in an international supplier with null information for the
 	 * international attributes.
 	 * @param supplierID (int) the ID being searched.
-	 * @return (Int_supplier) returns an international supplier matching the ID.
+	 * @return (Int_supplier) returns an international supplier matching the ID, null if it does
+	 *         not exist. The supplier is shared and must not be modified.
 	 */
 	public Int_Supplier querySupplier(int supplierID) {
-		Int_Supplier queryRes = null;
-		try {
-			String query = helper.querySupplier();
-			PreparedStatement pStat = conn.prepareStatement(query);
-			pStat.setInt(1, supplierID);
-			ResultSet results = pStat.executeQuery();
-
-			if (results.next()) {
-				queryRes = new Int_Supplier(results.getInt("supplierID"), results.getString("supplierType").charAt(0),
-						results.getString("supplierName"), results.getString("salesContact"),
-						results.getString("address"), results.getDouble("importTax"));
-				pStat.close();
-			}
-		} catch (SQLException e) {
-			System.err.println("querySupplier failed with " + supplierID);
-		}
-		return queryRes;
+		return suppliers.get().get(supplierID);
 	}
 
 	/**
-	 * Insert a new customer into the database.
+	 * Insert a new customer or update an existing one with a single upsert
+	 * statement, so concurrent saves of the same customer ID never race between
+	 * a lookup and the write.
 	 * @param customer (Customer) used to update the database.
+	 * @return (boolean) true if the customer was saved.
 	 */
-	public void insertCustomer(Customer customer) {
-		try {
-			String query = helper.insertCustomer();
-			PreparedStatement pStat = conn.prepareStatement(query);
+	public boolean saveCustomer(Customer customer) {
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.upsertCustomer())) {
 			pStat.setInt(1, customer.getCustomerId());
 			pStat.setString(2, customer.getFirstName());
 			pStat.setString(3, customer.getLastName());
@@ -358,13 +572,14 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 			pStat.setString(5, customer.getPostalCode());
 			pStat.setString(6, customer.getPhoneNum());
 			pStat.setString(7, String.valueOf(customer.getCustomerType()));
-			int rowCount = pStat.executeUpdate();
+			int rowCount = pStat.executeUpdate(); // 1 inserted, 2 updated, 0 unchanged
 			System.out.println("row Count = " + rowCount);
-			pStat.close();
+			return true;
 		} catch (SQLException e) {
-			System.err.println("insert failed with " + CUSTOMERS + " and " + customer.getCustomerId());
+			System.err.println("saveCustomer failed with " + CUSTOMERS + " and " + customer.getCustomerId());
 			e.printStackTrace();
 		}
+		return false;
 	}
 
 	/**
@@ -374,17 +589,13 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	 */
 	public Customer queryCustomer(int customerID) {
 		Customer queryRes = null;
-		try {
-			String query = helper.queryCustomer();
-			PreparedStatement pStat = conn.prepareStatement(query);
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.queryCustomer())) {
 			pStat.setInt(1, customerID);
-			ResultSet results = pStat.executeQuery();
-
-			if (results.next()) {
-				queryRes = new Customer(results.getInt("customerId"), results.getString("fName"),
-						results.getString("lName"), results.getString("address"), results.getString("postalCode"),
-						results.getString("phoneNumber"), results.getString("customerType").charAt(0));
-				pStat.close();
+			try (ResultSet results = pStat.executeQuery()) {
+				if (results.next()) {
+					queryRes = readCustomer(results);
+				}
 			}
 		} catch (SQLException e) {
 			System.err.println("queryCustomer failed with " + customerID);
@@ -399,18 +610,14 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	 */
 	public LinkedHashSet<Customer> queryCustomer(char type) {
 		LinkedHashSet<Customer> queryRes = new LinkedHashSet<Customer>();
-		try {
-			String query = helper.queryCustomerType();
-			PreparedStatement pStat = conn.prepareStatement(query);
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.queryCustomerType())) {
 			pStat.setString(1, String.valueOf(type));
-			ResultSet results = pStat.executeQuery();
-
-			while (results.next()) {
-				queryRes.add(new Customer(results.getInt("customerId"), results.getString("fName"),
-						results.getString("lName"), results.getString("address"), results.getString("postalCode"),
-						results.getString("phoneNumber"), results.getString("customerType").charAt(0)));
+			try (ResultSet results = pStat.executeQuery()) {
+				while (results.next()) {
+					queryRes.add(readCustomer(results));
+				}
 			}
-			pStat.close();
 		} catch (SQLException e) {
 			System.err.println("queryCustomer failed with " + type);
 		}
@@ -418,52 +625,82 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	}
 
 	/**
-	 * Query customers by the customer last name.
-	 * @param name (String) the last name or text being searched in the database's customer last name.
-	 * @return (LinkedHashSet<Customer>) the results are stored as a list of Customer objects.
+	 * Query one page of customers of a type, ordered by last name, first name and
+	 * customer ID. Pages are read by key rather than by offset so every page costs
+	 * the same index range scan however deep the client has scrolled.
+	 * @param type     (char) the type being queried.
+	 * @param after    (Customer) last customer of the previous page, null for the first page.
+	 * @param pageSize (int) maximum number of customers returned, capped at PAGE_SIZE_MAX.
+	 * @return (LinkedHashSet<Customer>) the page, shorter than pageSize on the last page.
 	 */
-	public LinkedHashSet<Customer> queryCustomer(String name) {
+	public LinkedHashSet<Customer> queryCustomerPage(char type, Customer after, int pageSize) {
 		LinkedHashSet<Customer> queryRes = new LinkedHashSet<Customer>();
-		try {
-			String query = helper.queryCustomerName();
-			PreparedStatement pStat = conn.prepareStatement(query);
-			pStat.setString(1, name);
-			ResultSet results = pStat.executeQuery();
-
-			while (results.next()) {
-				queryRes.add(new Customer(results.getInt("customerId"), results.getString("fName"),
-						results.getString("lName"), results.getString("address"), results.getString("postalCode"),
-						results.getString("phoneNumber"), results.getString("customerType").charAt(0)));
+		int limit = Math.max(1, Math.min(pageSize, PAGE_SIZE_MAX));
+		String sql = after == null ? helper.queryCustomerTypeFirstPage() : helper.queryCustomerTypePage();
+		try (PooledConnection pc = pool.borrow(); PreparedStatement pStat = pc.prepareStatement(sql)) {
+			pStat.setString(1, String.valueOf(type));
+			if (after == null) {
+				pStat.setInt(2, limit);
+			} else {
+				pStat.setString(2, after.getLastName());
+				pStat.setString(3, after.getLastName());
+				pStat.setString(4, after.getFirstName());
+				pStat.setInt(5, after.getCustomerId());
+				pStat.setInt(6, limit);
+			}
+			try (ResultSet results = pStat.executeQuery()) {
+				while (results.next()) {
+					queryRes.add(readCustomer(results));
+				}
 			}
-			pStat.close();
 		} catch (SQLException e) {
-			System.err.println("queryCustomer failed with " + name);
+			System.err.println("queryCustomerPage failed with " + type);
+			e.printStackTrace();
 		}
 		return queryRes;
 	}
 
 	/**
-	 * Update a customer's attributes in the database.
-	 * @param customer (Customer) the new customer information to update.
+	 * Pass every customer in the database to a consumer. Rows are streamed from
+	 * the server one at a time rather than read into memory together, so the
+	 * whole table can be read however large it is.
+	 * @param action (Consumer<Customer>) called with each customer.
+	 * @throws SQLException if the customers could not be read; the customers
+	 *                      passed before the failure are only part of the table.
 	 */
-	public void updateCustomer(Customer customer) {
-		try {
-			String query = helper.updateCustomer();
-			PreparedStatement pStat = conn.prepareStatement(query);
-			pStat.setString(1, customer.getFirstName());
-			pStat.setString(2, customer.getLastName());
-			pStat.setString(3, customer.getAddress());
-			pStat.setString(4, customer.getPostalCode());
-			pStat.setString(5, customer.getPhoneNum());
-			pStat.setString(6, String.valueOf(customer.getCustomerType()));
-			pStat.setInt(7, customer.getCustomerId());
-			int rowCount = pStat.executeUpdate();
-			System.out.println("row Count = " + rowCount);
-			pStat.close();
+	public void forEachCustomer(Consumer<Customer> action) throws SQLException {
+		// the streaming statement is prepared outside the statement cache, it is used once
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.getConnection().prepareStatement(helper.queryCustomerAll(),
+						ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			pStat.setFetchSize(Integer.MIN_VALUE); // MySQL driver streams rows for this fetch size
+			try (ResultSet results = pStat.executeQuery()) {
+				while (results.next()) {
+					action.accept(readCustomer(results));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Query customers by the customer last name.
+	 * @param name (String) the last name or text being searched in the database's customer last name.
+	 * @return (LinkedHashSet<Customer>) the results are stored as a list of Customer objects.
+	 */
+	public LinkedHashSet<Customer> queryCustomer(String name) {
+		LinkedHashSet<Customer> queryRes = new LinkedHashSet<Customer>();
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.queryCustomerName())) {
+			pStat.setString(1, name);
+			try (ResultSet results = pStat.executeQuery()) {
+				while (results.next()) {
+					queryRes.add(readCustomer(results));
+				}
+			}
 		} catch (SQLException e) {
-			System.err.println("updateCustomer failed with " + customer + e);
-			
+			System.err.println("queryCustomer failed with " + name);
 		}
+		return queryRes;
 	}
 
 	/**
@@ -471,57 +708,64 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	 * @param customer (Customer) the customer to be removed.
 	 */
 	public void removeCustomer(Customer customer) {
-		try {
-			String query = helper.removeCustomer();
-			PreparedStatement pStat = conn.prepareStatement(query);
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.removeCustomer())) {
 			pStat.setInt(1, customer.getCustomerId());
 			int rowCount = pStat.executeUpdate();
 			System.out.println("row Count = " + rowCount);
-			pStat.close();
 		} catch (SQLException e) {
 			System.err.println("removeCustomer failed with " + customer);
 		}
 	}
 
 	/**
-	 * Query an order by the order ID.
+	 * Query an order by the order ID. The order, its order lines and the ordered
+	 * items are read with a single join; supplier names come from the supplier
+	 * snapshot.
 	 * @param orderId (int) the order ID of the order being searched.
-	 * @param mc (ModelController) access to the model to store items from order lines.
+	 * @param mc (ModelController) access to the model of the requesting session.
 	 * @return (Order) the order searched.
 	 */
 	public Order queryOrder(int orderId, ModelController mc) {
 		Order queryRes = null;
-		try {
-			String query = helper.queryOrder();
-			PreparedStatement pStat = conn.prepareStatement(query);
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.queryOrderWithLines())) {
 			pStat.setInt(1, orderId);
-			ResultSet results = pStat.executeQuery();
-
-			if (results.next()) {
-				queryRes = new Order(results.getInt("orderId"));
-				pStat.close();
-				queryRes.setOrderLines(this.queryAllOrderLines(queryRes.getOrderID(), mc));
+			try (ResultSet results = pStat.executeQuery()) {
+				LinkedHashSet<OrderLine> lines = new LinkedHashSet<OrderLine>();
+				SupplierSnapshot snapshot = suppliers.get();
+				while (results.next()) {
+					if (queryRes == null) {
+						queryRes = new Order(results.getInt("orderId"));
+					}
+					results.getInt("itemId");
+					if (results.wasNull()) {
+						continue; // order without lines
+					}
+					lines.add(new OrderLine(results.getInt("itemId"), results.getInt("orderQty"),
+							snapshot.getCompanyName(results.getInt("supplierId"))));
+				}
+				if (queryRes != null) {
+					queryRes.setOrderLines(lines);
+				}
 			}
-			
+
 		} catch (SQLException e) {
 			System.err.println("queryOrder failed with " + orderId);
 		}
 		return queryRes;
 	}
-	
+
 	/**
 	 * Insert a new order into the database.
 	 * @param order (Order) the new order being added.
 	 */
 	public void insertOrder(Order order) {
-		try {
-			String query = helper.insertOrder();
-			PreparedStatement pStat = conn.prepareStatement(query);
+		try (PooledConnection pc = pool.borrow(); PreparedStatement pStat = pc.prepareStatement(helper.insertOrder())) {
 			pStat.setInt(1, order.getOrderID());
 			pStat.setDate(2, Date.valueOf(order.getDate()));
 			int rowCount = pStat.executeUpdate();
 			System.out.println("row Count = " + rowCount);
-			pStat.close();
 		} catch (SQLException e) {
 			System.err.println("insert failed with " + CUSTOMERS + " and " + order.getOrderID());
 			e.printStackTrace();
@@ -534,15 +778,13 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	 * @param orderID (int) the order ID linked to this order line.
 	 */
 	public void insertOrderLine(OrderLine ol, int orderID) {
-		try {
-			String query = helper.insertOrderLine();
-			PreparedStatement pStat = conn.prepareStatement(query);
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.insertOrderLine())) {
 			pStat.setInt(1, ol.getItemId());
 			pStat.setInt(2, orderID);
 			pStat.setInt(3, ol.getOrderQty());
 			int rowCount = pStat.executeUpdate();
 			System.out.println("row Count = " + rowCount);
-			pStat.close();
 		} catch (SQLException e) {
 			System.err.println("insert failed with " + ORDER_LINES + " and " + orderID + " and " + ol.getItemId());
 			e.printStackTrace();
@@ -557,76 +799,242 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	 * @param orderID (int) the order ID of the order line being updated.
 	 */
 	public void updateOrderLine(OrderLine ol, int qty, int orderID) {
-		try {
-			String query = helper.updateOrderLine();
-			PreparedStatement pStat = conn.prepareStatement(query);
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.updateOrderLine())) {
 			pStat.setInt(2, ol.getItemId());
 			pStat.setInt(3, orderID);
 			pStat.setInt(1, ol.getOrderQty() + qty);
 			int rowCount = pStat.executeUpdate();
 			System.out.println("row Count = " + rowCount);
-			pStat.close();
 		} catch (SQLException e) {
 			System.err.println("updateOrderLine failed with " + ol.getItemId() + " and " + orderID);
 		}
 	}
 
 	/**
-	 * Query a specific order line.
+	 * Query a specific order line, named after its item's supplier in the supplier snapshot.
 	 * @param itemId (int) the item ID of the specified order line.
 	 * @param orderId (int) the order ID of the specified order line.
 	 * @return (OrderLine) returns the searched order line.
 	 */
 	public OrderLine queryOrderLine(int itemId, int orderId) {
 		OrderLine queryRes = null;
-		try {
-			String query = helper.queryOrderLine();
-			PreparedStatement pStat = conn.prepareStatement(query);
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.queryOrderLineDetail())) {
 			pStat.setInt(1, itemId);
 			pStat.setInt(2, orderId);
-			ResultSet results = pStat.executeQuery();
-
-			if (results.next()) {
-				Item_Elec tempItem = this.queryItem(results.getInt("itemId"));
-				Int_Supplier tempSupp = this.querySupplier(tempItem.getSupplierID());
-				queryRes = new OrderLine(results.getInt("itemId"), results.getInt("orderQty"),
-						tempSupp.getCompanyName());
-				pStat.close();
+			try (ResultSet results = pStat.executeQuery()) {
+				if (results.next()) {
+					queryRes = new OrderLine(results.getInt("itemId"), results.getInt("orderQty"),
+							suppliers.get().getCompanyName(results.getInt("supplierId")));
+				}
 			}
 		} catch (SQLException e) {
 			System.err.println("queryOrderLine failed with " + itemId + " and " + orderId);
 		}
 		return queryRes;
 	}
-	
+
+	/**
+	 * Execute a purchase: journal it and return once it is on disk. The caller
+	 * has already checked the customer in the customer cache and taken the stock
+	 * from the shared inventory, which holds the live stock of every item. The
+	 * purchase journal's applier then writes the stock change, the purchase
+	 * record and any reorder line to the database with other purchases.
+	 * @param itemID (int) item ID being purchased.
+	 * @param qty (int) quantity being purchased, must be positive.
+	 * @param remaining (int) stock of the item left in the inventory after this purchase.
+	 * @param customerID (int) customer ID making the purchase.
+	 * @param orderID (int) ID of the daily order receiving reorder lines.
+	 * @return (boolean) true if the purchase was journaled.
+	 */
+	public boolean executePurchase(int itemID, int qty, int remaining, int customerID, int orderID) {
+		if (qty <= 0) {
+			return false;
+		}
+		return this.journalPurchase(Arrays.asList(new PurchaseJournal.Entry(customerID, itemID, qty, remaining, orderID)));
+	}
+
+	/**
+	 * Execute the lines of a cart purchase: journal them together and return once
+	 * they are on disk, as for a single purchase.
+	 * @param customerID (int) customer ID making the purchase.
+	 * @param itemIDs (int[]) item ID of each line.
+	 * @param qtys (int[]) quantity of each line, positive.
+	 * @param remaining (int[]) stock of each line's item left in the inventory after the line.
+	 * @param orderID (int) ID of the daily order receiving reorder lines.
+	 * @return (boolean) true if every line was journaled, false if none was.
+	 */
+	public boolean executeCart(int customerID, int[] itemIDs, int[] qtys, int[] remaining, int orderID) {
+		ArrayList<PurchaseJournal.Entry> lines = new ArrayList<PurchaseJournal.Entry>(itemIDs.length);
+		for (int i = 0; i < itemIDs.length; i++) {
+			lines.add(new PurchaseJournal.Entry(customerID, itemIDs[i], qtys[i], remaining[i], orderID));
+		}
+		return lines.isEmpty() || this.journalPurchase(lines);
+	}
+
+	/**
+	 * Record stock of an item received from a reorder. The caller has already
+	 * added the stock to the shared inventory.
+	 * @param itemID (int) item ID received.
+	 * @param qty (int) quantity received, must be positive.
+	 * @param remaining (int) stock of the item in the inventory after the receipt.
+	 * @return (boolean) true if the receipt was journaled.
+	 */
+	public boolean executeReceipt(int itemID, int qty, int remaining) {
+		if (qty <= 0) {
+			return false;
+		}
+		return this.journalPurchase(Arrays.asList(
+				new PurchaseJournal.Entry(PurchaseJournal.Entry.RECEIPT, 0, itemID, qty, remaining, 0)));
+	}
+
+	/**
+	 * Record a manual correction of an item's stock, such as after a count. The
+	 * caller has already changed the stock in the shared inventory.
+	 * @param itemID (int) item ID corrected.
+	 * @param change (int) change of the stock, negative to remove stock.
+	 * @param remaining (int) stock of the item in the inventory after the change.
+	 * @return (boolean) true if the adjustment was journaled.
+	 */
+	public boolean executeAdjustment(int itemID, int change, int remaining) {
+		if (change == 0) {
+			return false;
+		}
+		return this.journalPurchase(Arrays.asList(
+				new PurchaseJournal.Entry(PurchaseJournal.Entry.ADJUSTMENT, 0, itemID, change, remaining, 0)));
+	}
+
 	/**
-	 * Query all order lines for a specific order.
-	 * @param orderId (int) the order ID being searched.
-	 * @param mc (ModelController) access to the current model controller to update the local
-	 * inventory with the items from each order line.
-	 * @return (LinkedHashSet<OrderLine>) a list of all order lines matching the order ID.
+	 * @param lines (List<PurchaseJournal.Entry>) lines changed together.
+	 * @return (boolean) true if the lines are on disk.
 	 */
-	private LinkedHashSet<OrderLine> queryAllOrderLines(int orderId, ModelController mc) {
-		LinkedHashSet<OrderLine> queryRes = new LinkedHashSet<OrderLine>();
+	private boolean journalPurchase(List<PurchaseJournal.Entry> lines) {
 		try {
-			String query = helper.queryAllOrderLine();
-			PreparedStatement pStat = conn.prepareStatement(query);
-			pStat.setInt(1, orderId);
-			ResultSet results = pStat.executeQuery();
+			journal.append(lines);
+			return true;
+		} catch (IOException e) {
+			System.err.println("Purchase journal write failed for item " + lines.get(0).itemId);
+			e.printStackTrace();
+			return false;
+		}
+	}
 
-			mc.getShop().getInventory().clearItems();
-			while (results.next()) {
-				Item_Elec tempItem = this.queryItem(results.getInt("itemId"));
-				mc.getShop().getInventory().addItems(tempItem);;
-				Int_Supplier tempSupp = this.querySupplier(tempItem.getSupplierID());
-				queryRes.add(
-						new OrderLine(results.getInt("itemId"), results.getInt("orderQty"), tempSupp.getCompanyName()));
+	/**
+	 * Write journaled stock changes inside the journal's apply transaction. The
+	 * stock changes are merged per item and written in item ID order. The
+	 * purchase records are inserted as one batch, and the items whose stock fell
+	 * below Item.ORDERQTYLIMIT through a purchase are added to their daily
+	 * order; an existing order line only grows by the purchases that left the
+	 * stock below the limit. Purchases of customers removed since they were journaled are
+	 * skipped.
+	 * @param pc (PooledConnection) connection holding the open transaction.
+	 * @param entries (List<PurchaseJournal.Entry>) stock changes in journal order.
+	 * @throws SQLException if a statement failed.
+	 */
+	private void applyEntries(PooledConnection pc, List<PurchaseJournal.Entry> entries) throws SQLException {
+		// per order and item: quantity bought below the reorder limit and lowest stock left
+		TreeMap<Long, int[]> bought = new TreeMap<Long, int[]>();
+		TreeMap<Integer, Integer> stockChange = new TreeMap<Integer, Integer>();
+		try (PreparedStatement pStat = pc.prepareStatement(helper.insertPurchasesIgnore())) {
+			for (PurchaseJournal.Entry e : entries) {
+				stockChange.merge(e.itemId, e.stockChange(), Integer::sum);
+				if (e.type != PurchaseJournal.Entry.PURCHASE) {
+					continue;
+				}
+				pStat.setInt(1, e.customerId);
+				pStat.setInt(2, e.itemId);
+				pStat.addBatch();
+				long key = ((long) e.orderId << 32) | (e.itemId & 0xFFFFFFFFL);
+				int reordered = e.remaining < Item.ORDERQTYLIMIT ? e.qty : 0; // only these grow an existing line
+				int[] line = bought.get(key);
+				if (line == null) {
+					bought.put(key, new int[] { reordered, e.remaining });
+				} else {
+					line[0] += reordered;
+					line[1] = Math.min(line[1], e.remaining);
+				}
+			}
+			pStat.executeBatch();
+		}
+		try (PreparedStatement pStat = pc.prepareStatement(helper.addItemQty())) {
+			for (Map.Entry<Integer, Integer> change : stockChange.entrySet()) {
+				pStat.setInt(1, change.getValue());
+				pStat.setInt(2, change.getKey());
+				pStat.addBatch();
+			}
+			pStat.executeBatch();
+		}
+		int[] reorderIDs = new int[bought.size()];
+		int[] reorderQtys = new int[bought.size()];
+		int[] newLineQtys = new int[bought.size()];
+		int reorders = 0;
+		int orderID = 0;
+		for (Map.Entry<Long, int[]> line : bought.entrySet()) {
+			int lineOrder = (int) (line.getKey() >> 32);
+			if (reorders > 0 && lineOrder != orderID) {
+				this.addToOrder(pc, Arrays.copyOf(reorderIDs, reorders), Arrays.copyOf(reorderQtys, reorders),
+						Arrays.copyOf(newLineQtys, reorders), orderID);
+				reorders = 0;
+			}
+			orderID = lineOrder;
+			if (line.getValue()[1] < Item.ORDERQTYLIMIT) {
+				reorderIDs[reorders] = line.getKey().intValue();
+				reorderQtys[reorders] = line.getValue()[0];
+				newLineQtys[reorders] = Item.ORDERQTYLIMIT - line.getValue()[1];
+				reorders++;
+			}
+		}
+		if (reorders > 0) {
+			this.addToOrder(pc, Arrays.copyOf(reorderIDs, reorders), Arrays.copyOf(reorderQtys, reorders),
+					Arrays.copyOf(newLineQtys, reorders), orderID);
+		}
+	}
+
+	/**
+	 * Add items to the daily order, creating the order and their lines as needed.
+	 * An existing line grows by the purchased quantity; a new line orders the
+	 * item back up to the reorder limit. The line updates and the line inserts
+	 * are each sent as one batch.
+	 * @param pc (PooledConnection) connection holding the open transaction.
+	 * @param itemIDs (int[]) distinct item IDs being reordered.
+	 * @param qtys (int[]) quantity purchased of each item, added to an existing line.
+	 * @param newLineQtys (int[]) quantity of each item's line if it is new.
+	 * @param orderID (int) ID of the daily order.
+	 * @throws SQLException if a statement failed.
+	 */
+	private void addToOrder(PooledConnection pc, int[] itemIDs, int[] qtys, int[] newLineQtys, int orderID)
+			throws SQLException {
+		try (PreparedStatement pStat = pc.prepareStatement(helper.insertOrderIfAbsent())) {
+			pStat.setInt(1, orderID);
+			pStat.setDate(2, Date.valueOf(LocalDate.now()));
+			pStat.executeUpdate();
+		}
+		int[] counts;
+		try (PreparedStatement pStat = pc.prepareStatement(helper.addOrderLineQty())) {
+			for (int i = 0; i < itemIDs.length; i++) {
+				pStat.setInt(1, qtys[i]);
+				pStat.setInt(2, itemIDs[i]);
+				pStat.setInt(3, orderID);
+				pStat.addBatch();
+			}
+			counts = pStat.executeBatch();
+		}
+		boolean inserts = false;
+		try (PreparedStatement pStat = pc.prepareStatement(helper.insertOrderLine())) {
+			for (int i = 0; i < itemIDs.length; i++) {
+				if (counts[i] == 0) { // no line for the item yet
+					pStat.setInt(1, itemIDs[i]);
+					pStat.setInt(2, orderID);
+					pStat.setInt(3, newLineQtys[i]);
+					pStat.addBatch();
+					inserts = true;
+				}
+			}
+			if (inserts) {
+				pStat.executeBatch();
 			}
-			pStat.close();
-		} catch (SQLException e) {
-			System.err.println("queryAllOrderLine failed with " + orderId);
 		}
-		return queryRes;
 	}
 
 	/**
@@ -635,28 +1043,28 @@ public class DbController implements DatabaseConstants, DatabaseTables {
 	 * @param customerID (int) the customer ID assigned to the purchase.
 	 */
 	public void insertPurchases(int itemID, int customerID) {
-		try {
-			String query = helper.insertPurchases();
-			PreparedStatement pStat = conn.prepareStatement(query);
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.insertPurchases())) {
 			pStat.setInt(1, customerID);
 			pStat.setInt(2, itemID);
 			int rowCount = pStat.executeUpdate();
 			System.out.println("row Count = " + rowCount);
-			pStat.close();
 		} catch (SQLException e) {
 			System.err.println("insertPurchases failed with " + customerID + " and " + itemID);
 			e.printStackTrace();
 		}
 
 	}
-	
-	public static void main(String[] args) throws IOException {
-		DbController myDB = new DbController();
-		myDB.initializeConnection();
+
+	public static void main(String[] args) throws IOException, SQLException {
+		ConnectionPool pool = new ConnectionPool();
+		pool.start();
+		DbController myDB = new DbController(pool);
 		myDB.resetDatabase();
 		myDB.createTable();
 		myDB.initializeCustomerTable();
 		myDB.initializeSupplierTable();
 		myDB.initializeItemTable();
+		myDB.close();
 	}
 }
@@ -54,7 +54,7 @@ public class DbControllerHelper implements DatabaseTables {
 	 */
 	public Item getItemFromTxt(String fileInfo[]) {
 		return new Item_Elec(Integer.parseInt(fileInfo[0]), fileInfo[1].charAt(0), fileInfo[2],
-				Integer.parseInt(fileInfo[3]), Double.parseDouble(fileInfo[4]), Integer.parseInt(fileInfo[5]),
+				Integer.parseInt(fileInfo[3]), Money.parse(fileInfo[4]), Integer.parseInt(fileInfo[5]),
 				fileInfo[6], Integer.parseInt(fileInfo[7]), Integer.parseInt(fileInfo[8]));
 	}
 
@@ -65,7 +65,7 @@ public class DbControllerHelper implements DatabaseTables {
 	 */
 	public Supplier getSupplierFromTxt(String fileInfo[]) {
 		return new Int_Supplier(Integer.parseInt(fileInfo[0]), fileInfo[1].charAt(0), fileInfo[2], fileInfo[3],
-				fileInfo[4], Double.parseDouble(fileInfo[5]));
+				fileInfo[4], Money.parse(fileInfo[5]));
 	}
 
 	/**
@@ -79,12 +79,14 @@ public class DbControllerHelper implements DatabaseTables {
 	}
 
 	/**
-	 * Update an entry in the Customers table.
+	 * Insert an entry in the Customers table, or update every column of the entry
+	 * if the customer ID already exists.
 	 * @return (String) prepared statement.
 	 */
-	public String updateCustomer() {
-		return ("UPDATE " + CUSTOMERS + " SET fName = ?, lName = ?, address = ?, postalCode = ?, phoneNumber = ?, "
-				+ "customerType = ? WHERE customerId= ?");
+	public String upsertCustomer() {
+		return ("INSERT INTO " + CUSTOMERS + " VALUES (?,?,?,?,?,?,?) ON DUPLICATE KEY UPDATE fName = VALUES(fName), "
+				+ "lName = VALUES(lName), address = VALUES(address), postalCode = VALUES(postalCode), "
+				+ "phoneNumber = VALUES(phoneNumber), customerType = VALUES(customerType)");
 	}
 
 	/**
@@ -103,6 +105,36 @@ public class DbControllerHelper implements DatabaseTables {
 		return ("SELECT * FROM " + CUSTOMERS + " WHERE customerType = ? ORDER BY lName, fName");
 	}
 
+	/**
+	 * Query the first page of the Customers table by customer type, ordered by name.
+	 * @return (String) prepared statement.
+	 */
+	public String queryCustomerTypeFirstPage() {
+		return ("SELECT * FROM " + CUSTOMERS + " WHERE customerType = ? ORDER BY lName, fName, customerId LIMIT ?");
+	}
+
+	/**
+	 * Query the next page of the Customers table by customer type, starting after
+	 * the last name, first name and customer ID of the previous page's last row.
+	 * MariaDB does not seek an index with a row comparison, so the last name is
+	 * also bounded on its own and the type and name index is forced: the page
+	 * is then a range scan from the key instead of a walk from the first
+	 * customer of the type.
+	 * @return (String) prepared statement.
+	 */
+	public String queryCustomerTypePage() {
+		return ("SELECT * FROM " + CUSTOMERS + " FORCE INDEX (IX_CustTypeName) WHERE customerType = ? AND lName >= ? "
+				+ "AND (lName, fName, customerId) > (?, ?, ?) ORDER BY lName, fName, customerId LIMIT ?");
+	}
+
+	/**
+	 * Query all customers in Customers table.
+	 * @return (String) prepared statement.
+	 */
+	public String queryCustomerAll() {
+		return ("SELECT * FROM " + CUSTOMERS);
+	}
+
 	/**
 	 * Query Customers table by customer last name.
 	 * @return (String) prepared statement.
@@ -112,11 +144,11 @@ public class DbControllerHelper implements DatabaseTables {
 	}
 
 	/**
-	 * Insert an entry in the Customers table.
+	 * Insert an entry in the Customers table, skipping customer IDs that already exist.
 	 * @return (String) prepared statement.
 	 */
-	public String insertCustomer() {
-		return ("INSERT INTO " + CUSTOMERS + " VALUES (?,?,?,?,?,?,?)");
+	public String insertCustomerIgnore() {
+		return ("INSERT IGNORE INTO " + CUSTOMERS + " VALUES (?,?,?,?,?,?,?)");
 	}
 
 	/**
@@ -135,6 +167,14 @@ public class DbControllerHelper implements DatabaseTables {
 		return ("INSERT INTO " + ITEMS + " VALUES (?,?,?,?,?,?,?,?,?)");
 	}
 
+	/**
+	 * Insert an entry in the Items table, skipping item IDs that already exist.
+	 * @return (String) prepared statement.
+	 */
+	public String insertItemIgnore() {
+		return ("INSERT IGNORE INTO " + ITEMS + " VALUES (?,?,?,?,?,?,?,?,?)");
+	}
+
 	/**
 	 * Query Items table by item ID.
 	 * @return (String) prepared statement.
@@ -159,6 +199,14 @@ public class DbControllerHelper implements DatabaseTables {
 		return ("SELECT * FROM " + ITEMS);
 	}
 
+	/**
+	 * Query the page of the Items table following an item ID, ordered by item ID.
+	 * @return (String) prepared statement.
+	 */
+	public String queryItemPage() {
+		return ("SELECT * FROM " + ITEMS + " WHERE itemId > ? ORDER BY itemId LIMIT ?");
+	}
+
 	/**
 	 * Update an entry in the Items table.
 	 * @return (String) prepared statement.
@@ -167,6 +215,72 @@ public class DbControllerHelper implements DatabaseTables {
 		return ("UPDATE " + ITEMS + " SET itemQty = ? WHERE itemId = ?");
 	}
 
+	/**
+	 * Add to the quantity of an entry in the Items table; a negative amount
+	 * removes stock.
+	 * @return (String) prepared statement.
+	 */
+	public String addItemQty() {
+		return ("UPDATE " + ITEMS + " SET itemQty = itemQty + ? WHERE itemId = ?");
+	}
+
+	/**
+	 * Insert an entry in the Flushed_Segments table.
+	 * @return (String) prepared statement.
+	 */
+	public String insertFlushedSegment() {
+		return ("INSERT INTO " + FLUSHED_SEGMENTS + " VALUES (?)");
+	}
+
+	/**
+	 * Query every entry of the Flushed_Segments table.
+	 * @return (String) prepared statement.
+	 */
+	public String queryFlushedSegments() {
+		return ("SELECT segmentId FROM " + FLUSHED_SEGMENTS);
+	}
+
+	/**
+	 * Query the catalog version.
+	 * @return (String) formatted SQL command.
+	 */
+	public String queryCatalogVersion() {
+		return ("SELECT version FROM " + CATALOG_VERSION + " WHERE id = 1");
+	}
+
+	/**
+	 * Change the catalog version after a write to the Items or Suppliers table.
+	 * @return (String) formatted SQL command.
+	 */
+	public String bumpCatalogVersion() {
+		return ("UPDATE " + CATALOG_VERSION + " SET version = version + 1 WHERE id = 1");
+	}
+
+	/**
+	 * Delete the entries of the Flushed_Segments table below a segment number.
+	 * @return (String) prepared statement.
+	 */
+	public String pruneFlushedSegments() {
+		return ("DELETE FROM " + FLUSHED_SEGMENTS + " WHERE segmentId < ?");
+	}
+
+	/**
+	 * Query the precision of the itemPrice column of the Items table.
+	 * @return (String) formatted SQL command.
+	 */
+	public String queryItemPricePrecision() {
+		return ("SELECT NUMERIC_PRECISION FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE()"
+				+ " AND TABLE_NAME = '" + ITEMS + "' AND COLUMN_NAME = 'itemPrice'");
+	}
+
+	/**
+	 * Widen the itemPrice column of an Items table created as DECIMAL(5,2).
+	 * @return (String) formatted SQL command.
+	 */
+	public String widenItemPrice() {
+		return ("ALTER TABLE " + ITEMS + " MODIFY itemPrice DECIMAL(12,2)");
+	}
+
 //	public String removeItem() {
 //		return ("DELETE FROM " + ITEMS + " WHERE itemId = ?");
 //	}
@@ -180,11 +294,19 @@ public class DbControllerHelper implements DatabaseTables {
 	}
 
 	/**
-	 * Query Suppliers table by supplier ID.
+	 * Insert an entry in the Suppliers table, skipping supplier IDs that already exist.
 	 * @return (String) prepared statement.
 	 */
-	public String querySupplier() {
-		return ("SELECT * FROM " + SUPPLIERS + " WHERE supplierId = ?");
+	public String insertSupplierIgnore() {
+		return ("INSERT IGNORE INTO " + SUPPLIERS + " VALUES (?,?,?,?,?,?)");
+	}
+
+	/**
+	 * Query every entry of the Suppliers table.
+	 * @return (String) prepared statement.
+	 */
+	public String querySupplierAll() {
+		return ("SELECT * FROM " + SUPPLIERS);
 	}
 	
 	/**
@@ -202,6 +324,14 @@ public class DbControllerHelper implements DatabaseTables {
 	public String insertOrder() {
 		return ("INSERT INTO " + ORDERS + " VALUES (?,?)");
 	}
+
+	/**
+	 * Insert an entry in the Orders table unless the order ID already exists.
+	 * @return (String) prepared statement.
+	 */
+	public String insertOrderIfAbsent() {
+		return ("INSERT IGNORE INTO " + ORDERS + " VALUES (?,?)");
+	}
 	
 	/**
 	 * Update an entry in the Order_Lines table.
@@ -211,6 +341,14 @@ public class DbControllerHelper implements DatabaseTables {
 		return ("UPDATE " + ORDER_LINES + " SET orderQty = ? WHERE itemId = ? AND orderId= ?");
 	}
 
+	/**
+	 * Add to the quantity of an entry in the Order_Lines table.
+	 * @return (String) prepared statement.
+	 */
+	public String addOrderLineQty() {
+		return ("UPDATE " + ORDER_LINES + " SET orderQty = orderQty + ? WHERE itemId = ? AND orderId = ?");
+	}
+
 	/**
 	 * Query Order_Lines table by item ID and order ID.
 	 * @return (String) prepared statement.
@@ -227,6 +365,27 @@ public class DbControllerHelper implements DatabaseTables {
 		return ("SELECT * FROM " + ORDER_LINES + " WHERE orderId = ?");
 	}
 
+	/**
+	 * Query an order with all of its order lines and the ordered items in one
+	 * statement. An order without lines returns a single row with null line
+	 * columns.
+	 * @return (String) prepared statement.
+	 */
+	public String queryOrderWithLines() {
+		return ("SELECT o.orderId, ol.orderQty, i.* FROM " + ORDERS + " o LEFT JOIN " + ORDER_LINES
+				+ " ol ON ol.orderId = o.orderId LEFT JOIN " + ITEMS + " i ON i.itemId = ol.itemId"
+				+ " WHERE o.orderId = ?");
+	}
+
+	/**
+	 * Query an order line with its item's supplier ID by item ID and order ID.
+	 * @return (String) prepared statement.
+	 */
+	public String queryOrderLineDetail() {
+		return ("SELECT ol.itemId, ol.orderQty, i.supplierId FROM " + ORDER_LINES + " ol JOIN " + ITEMS
+				+ " i ON i.itemId = ol.itemId WHERE ol.itemId = ? AND ol.orderId = ?");
+	}
+
 	/**
 	 * Insert an entry in the Order_Lines table.
 	 * @return (String) prepared statement.
@@ -244,4 +403,13 @@ public class DbControllerHelper implements DatabaseTables {
 
 	}
 
+	/**
+	 * Insert an entry in the Purchases table, skipping entries whose customer or
+	 * item no longer exists.
+	 * @return (String) prepared statement.
+	 */
+	public String insertPurchasesIgnore() {
+		return ("INSERT IGNORE INTO " + PURCHASES + " VALUES (?,?)");
+	}
+
 }
\ No newline at end of file
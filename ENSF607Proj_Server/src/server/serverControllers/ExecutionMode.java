@@ -0,0 +1,55 @@
+package server.serverControllers;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Thread model used by the server to execute client requests, picked at
+ * startup.
+ * - PLATFORM: fixed pool of platform worker threads.
+ * - VIRTUAL: a new virtual thread for every client session that has requests
+ * waiting, so the number of busy sessions is not capped by the pool size.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public enum ExecutionMode implements ServerConstants {
+	PLATFORM, VIRTUAL;
+
+	/**
+	 * Create the executor running client sessions in this mode. Virtual threads
+	 * are looked up reflectively so the server still builds and runs on JDKs
+	 * without them, falling back to the platform pool.
+	 * @return (ExecutorService) executor for client requests.
+	 */
+	public ExecutorService createExecutor() {
+		if (this == VIRTUAL) {
+			try {
+				Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService) factory.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				System.err.println("Virtual threads are not supported by this JDK, using platform threads.");
+			}
+		}
+		return Executors.newFixedThreadPool(WORKER_THREADS);
+	}
+
+	/**
+	 * Parse the mode from a startup argument, ignoring case.
+	 * @param name (String) mode name, null for the default mode.
+	 * @return (ExecutionMode) matching mode, PLATFORM if the name is unknown.
+	 */
+	public static ExecutionMode parse(String name) {
+		if (name != null) {
+			for (ExecutionMode mode : values()) {
+				if (mode.name().equalsIgnoreCase(name.trim())) {
+					return mode;
+				}
+			}
+			System.err.println("Unknown execution mode " + name + ", using " + PLATFORM + ".");
+		}
+		return PLATFORM;
+	}
+}
@@ -0,0 +1,316 @@
+package server.serverControllers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+import server.serverModel.MappedCatalog;
+import sharedModel.Item_Elec;
+
+/**
+ * Checkpoint of the stock of every item, written to a compact binary file in
+ * the journal directory. A snapshot covers the journal segments up to its
+ * segment number: its stock levels include every purchase, receipt and
+ * adjustment of those segments, so a restart reads the stock from the
+ * snapshot and replays only the later segments instead of scanning the Items
+ * table.
+ *
+ * The file is a header (magic, version, covered segment, item count, body
+ * length and a CRC32C of the body) followed by one record per item: its item
+ * ID and stock. The other item attributes live in the MappedCatalog. A snapshot is written to a temporary
+ * file, forced and then moved into place, so a crash never leaves a partial
+ * snapshot under its final name. Reading memory-maps the file and checks the
+ * header and checksum before any record is trusted.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+final class InventorySnapshot {
+
+	private static final String PREFIX = "inventory-";
+	private static final String SUFFIX = ".snapshot";
+	private static final int MAGIC = 0x494E5653; // "INVS"
+	private static final int VERSION = 2; // version 1 also held the item attributes
+	private static final int HEADER_BYTES = 32;
+	private static final int RECORD_BYTES = 8; // item ID and stock
+	private static final int QTY_OFFSET = 4;
+	private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+	private final Path file;
+	private final MappedByteBuffer body;
+	private final long segment;
+	private final int count;
+
+	/**
+	 * @param file    (Path) snapshot file.
+	 * @param body    (MappedByteBuffer) mapped records, validated.
+	 * @param segment (long) last journal segment covered.
+	 * @param count   (int) number of items.
+	 */
+	private InventorySnapshot(Path file, MappedByteBuffer body, long segment, int count) {
+		this.file = file;
+		this.body = body;
+		this.segment = segment;
+		this.count = count;
+	}
+
+	/**
+	 * @return (long) number of the last journal segment the snapshot covers.
+	 */
+	long getSegment() {
+		return segment;
+	}
+
+	/**
+	 * @return (int) number of items in the snapshot.
+	 */
+	int size() {
+		return count;
+	}
+
+	/**
+	 * Map the latest snapshot of a directory.
+	 * @param dir (Path) journal directory.
+	 * @return (InventorySnapshot) latest snapshot, null if there is none or it
+	 *         fails validation.
+	 * @throws IOException if the directory could not be listed.
+	 */
+	static InventorySnapshot load(Path dir) throws IOException {
+		TreeMap<Long, Path> files = list(dir);
+		if (files.isEmpty()) {
+			return null;
+		}
+		Path latest = files.lastEntry().getValue();
+		try (FileChannel channel = FileChannel.open(latest, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+				System.err.println("Inventory snapshot " + latest + " has an unusable size of " + size + " bytes.");
+				return null;
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+			}
+			header.flip();
+			if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+				System.err.println("Inventory snapshot " + latest + " is not a version " + VERSION + " snapshot.");
+				return null;
+			}
+			long coveredSegment = header.getLong();
+			int itemCount = header.getInt();
+			int checksum = header.getInt();
+			long bodyBytes = header.getLong();
+			if (bodyBytes != size - HEADER_BYTES || bodyBytes != (long) itemCount * RECORD_BYTES) {
+				System.err.println("Inventory snapshot " + latest + " is truncated.");
+				return null;
+			}
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, bodyBytes);
+			CRC32C crc = new CRC32C();
+			crc.update(mapped.duplicate());
+			if ((int) crc.getValue() != checksum) {
+				System.err.println("Inventory snapshot " + latest + " failed its checksum.");
+				return null;
+			}
+			return new InventorySnapshot(latest, mapped, coveredSegment, itemCount);
+		}
+	}
+
+	/**
+	 * Read the stock of every item with journaled stock changes applied,
+	 * without building the items.
+	 * @param catalog (MappedCatalog) catalog whose rows receive the stock.
+	 * @param changes (Map<Integer, Integer>) stock change per item ID since the snapshot.
+	 * @return (int[]) stock of each catalog row, null if the snapshot and the
+	 *         catalog do not hold the same items.
+	 */
+	int[] stock(MappedCatalog catalog, Map<Integer, Integer> changes) {
+		if (catalog.itemCount() != count) {
+			return null;
+		}
+		int[] res = new int[count];
+		int row = 0; // both are usually in item ID order
+		for (int i = 0; i < count; i++) {
+			int itemId = body.getInt(i * RECORD_BYTES);
+			int qty = body.getInt(i * RECORD_BYTES + QTY_OFFSET) + changes.getOrDefault(itemId, 0);
+			row = row < count && catalog.itemId(row) == itemId ? row : catalog.findItem(itemId);
+			if (row < 0) {
+				return null;
+			}
+			res[row++] = qty;
+		}
+		return res;
+	}
+
+	/**
+	 * Write a new snapshot holding this snapshot's items with journaled stock
+	 * changes applied; this snapshot is unchanged.
+	 * @param dir        (Path) journal directory.
+	 * @param newSegment (long) last journal segment the new snapshot covers.
+	 * @param changes    (Map<Integer, Integer>) stock change per item ID since this snapshot.
+	 * @return (InventorySnapshot) the new snapshot, mapped.
+	 * @throws IOException if the snapshot could not be written.
+	 */
+	InventorySnapshot advance(Path dir, long newSegment, Map<Integer, Integer> changes) throws IOException {
+		return write(dir, newSegment, count, out -> {
+			for (int i = 0; i < count; i++) {
+				int itemId = body.getInt(i * RECORD_BYTES);
+				int qty = body.getInt(i * RECORD_BYTES + QTY_OFFSET) + changes.getOrDefault(itemId, 0);
+				out.reserve();
+				out.buf.putInt(itemId).putInt(qty);
+			}
+		});
+	}
+
+	/**
+	 * Write the first snapshot from items read from the database.
+	 * @param dir        (Path) journal directory.
+	 * @param newSegment (long) last journal segment the items include.
+	 * @param items      (Collection<Item_Elec>) every item.
+	 * @return (InventorySnapshot) the new snapshot, mapped.
+	 * @throws IOException if the snapshot could not be written.
+	 */
+	static InventorySnapshot write(Path dir, long newSegment, Collection<Item_Elec> items) throws IOException {
+		return write(dir, newSegment, items.size(), out -> {
+			for (Item_Elec item : items) {
+				out.reserve();
+				out.buf.putInt(item.getItemID()).putInt(item.getQty());
+			}
+		});
+	}
+
+	/**
+	 * Delete the snapshot files older than a segment number, and their
+	 * unfinished temporary files.
+	 * @param dir   (Path) journal directory.
+	 * @param below (long) segment number of the oldest snapshot kept.
+	 */
+	static void deleteBelow(Path dir, long below) {
+		try {
+			for (Map.Entry<Long, Path> old : list(dir).headMap(below).entrySet()) {
+				Files.deleteIfExists(old.getValue());
+			}
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX + ".tmp")) {
+				for (Path tmp : stream) {
+					Files.deleteIfExists(tmp);
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Old inventory snapshots could not be deleted, retried at the next checkpoint.");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Records appended to a snapshot being written, flushed to its file when
+	 * the buffer fills.
+	 */
+	private static final class Output {
+		private final FileChannel channel;
+		private final CRC32C crc = new CRC32C();
+		private final ByteBuffer buf = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+		private long written;
+
+		Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Make room for the next record.
+		 * @throws IOException if the buffered records could not be written.
+		 */
+		void reserve() throws IOException {
+			if (buf.remaining() < RECORD_BYTES) {
+				flush();
+			}
+		}
+
+		void flush() throws IOException {
+			buf.flip();
+			crc.update(buf.duplicate());
+			written += buf.remaining();
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+			buf.clear();
+		}
+	}
+
+	/**
+	 * Writes the records of a snapshot.
+	 */
+	@FunctionalInterface
+	private interface Records {
+		void writeTo(Output out) throws IOException;
+	}
+
+	/**
+	 * Write a snapshot to a temporary file, force it and move it to its final
+	 * name, then map it.
+	 * @param dir        (Path) journal directory.
+	 * @param newSegment (long) last journal segment covered.
+	 * @param itemCount  (int) number of records written.
+	 * @param records    (Records) writes the records.
+	 * @return (InventorySnapshot) the new snapshot, mapped.
+	 * @throws IOException if the snapshot could not be written.
+	 */
+	private static InventorySnapshot write(Path dir, long newSegment, int itemCount, Records records)
+			throws IOException {
+		Path target = dir.resolve(PREFIX + newSegment + SUFFIX);
+		Path tmp = dir.resolve(PREFIX + newSegment + SUFFIX + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			Output out = new Output(channel);
+			channel.position(HEADER_BYTES);
+			records.writeTo(out);
+			out.flush();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putInt(MAGIC).putInt(VERSION).putLong(newSegment).putInt(itemCount)
+					.putInt((int) out.crc.getValue()).putLong(out.written).flip();
+			channel.position(0);
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			channel.force(true);
+		}
+		Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+		try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ)) {
+			return new InventorySnapshot(target,
+					channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, channel.size() - HEADER_BYTES),
+					newSegment, itemCount);
+		}
+	}
+
+	/**
+	 * @param dir (Path) journal directory.
+	 * @return (TreeMap<Long, Path>) snapshot files by covered segment.
+	 * @throws IOException if the directory could not be listed.
+	 */
+	private static TreeMap<Long, Path> list(Path dir) throws IOException {
+		TreeMap<Long, Path> files = new TreeMap<Long, Path>();
+		if (!Files.isDirectory(dir)) {
+			return files;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+			for (Path file : stream) {
+				String name = file.getFileName().toString();
+				files.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), file);
+			}
+		}
+		return files;
+	}
+
+	@Override
+	public String toString() {
+		return "Inventory snapshot " + file.getFileName() + ": " + count + " items up to journal segment " + segment;
+	}
+}
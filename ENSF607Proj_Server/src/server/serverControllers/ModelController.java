@@ -1,50 +1,55 @@
 package server.serverControllers;
 
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-
 import server.serverModel.*;
+import sharedModel.ObjectWrapper;
 
 /**
  * Master controller of shop business logic packages, initialized by the server
  * controller. Connects the database controller to the shop back end.
- * 
+ *
  * @author NJack & JJoorisity
  * @version 1.0
  * @since 2020-11-26
  */
-public class ModelController implements Runnable, DatabaseTables {
+public class ModelController implements DatabaseTables {
 	private DbController dbController;
 	private ShopApp shop;
-	private ObjectInputStream clientIn;
-	private ObjectOutputStream clientOut;
+	private ClientSession session;
 
 	/**
 	 * Constructor
-	 * 
-	 * @param clientIn     (ObjectInputStream) client input stream.
-	 * @param clientOut    (ObjectOutputStream) client output stream.
+	 *
+	 * @param session      (ClientSession) connection to the client.
 	 * @param dbController (DbController) controller used to connect to mySQL
 	 *                     database
 	 * @param shop         (ShopApp) connection to shop back end.
 	 */
-	public ModelController(ObjectInputStream clientIn, ObjectOutputStream clientOut, DbController dbController,
-			ShopApp shop) {
+	public ModelController(ClientSession session, DbController dbController, ShopApp shop) {
 		this.dbController = dbController;
 		this.shop = shop;
-		this.clientIn = clientIn;
-		this.clientOut = clientOut;
+		this.session = session;
 	}
 
 	/**
-	 * Runnable interface method, initialize connection with the client through to
-	 * the shop back end.
+	 * Pass a complete client request through to the shop back end. Called by a
+	 * worker thread of the server. Requests answered from memory run without
+	 * limit; in the virtual thread mode the connection pool limits the requests
+	 * inside JDBC at once.
+	 * @param request (ObjectWrapper) the request read from the client.
+	 * @return (boolean) false if the client asked to end the session.
 	 */
-	@Override
-	public void run() {
-		this.shop.runShop();
+	public boolean handleRequest(ObjectWrapper request) {
+		return this.shop.handleRequest(request);
 	}
-	
+
+	/**
+	 * Send a response back to the client.
+	 * @param response (ObjectWrapper) the response being sent.
+	 */
+	public void sendResponse(ObjectWrapper response) {
+		this.session.send(response);
+	}
+
 	/**
 	 * Returns internal shop attribute for setup and use
 	 * @return (ShopApp) returns shopApp being controllered but this controller
@@ -52,13 +57,6 @@ public class ModelController implements Runnable, DatabaseTables {
 	public ShopApp getShop() {
 		return this.shop;
 	}
-	
-	/**
-	 * Sets the inventory of shop to current Database Contents
-	 */
-	public void initShop() {
-		this.shop.getInventory().setItemList(this.dbController.queryItem());
-	}
 
 	/**
 	 * @return (DbController) current database controller.
@@ -68,17 +66,11 @@ public class ModelController implements Runnable, DatabaseTables {
 	}
 
 	/**
-	 * @return (ObjectInputStream) current client input stream.
+	 * Release the resources held for the client. The database controller is
+	 * shared by every session and stays open.
 	 */
-	public ObjectInputStream getInputStream() {
-		return clientIn;
-	}
-
-	/**
-	 * @return (ObjectOutputStream) current client output stream.
-	 */
-	public ObjectOutputStream getOutputStream() {
-		return clientOut;
+	public void close() {
+		this.shop.close();
 	}
 
 	public ModelController(DbController dbController, ShopApp shop) {
@@ -86,6 +78,6 @@ public class ModelController implements Runnable, DatabaseTables {
 		this.shop = shop;
 	}
 
-	
+
 
 }
@@ -0,0 +1,258 @@
+package server.serverControllers;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.mysql.cj.jdbc.JdbcConnection;
+
+/**
+ * Database connection borrowed from the ConnectionPool for the duration of one
+ * DbController operation. Closing it returns the connection to the pool, so it
+ * is meant to be used in a try-with-resources block.
+ *
+ * Prepared statements are cached per physical connection, keyed by the SQL
+ * text from DbControllerHelper, in least recently used order. Callers close
+ * statements as usual; closing a cached statement only clears its parameters
+ * so the next operation on this connection reuses it without preparing again.
+ * Cached statements are really closed when evicted or when the connection is
+ * closed by the pool.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class PooledConnection implements AutoCloseable {
+
+	private final ConnectionPool pool;
+	private final Connection conn;
+	private long lastUsedAt;
+	private long borrowedAt;
+	private Throwable borrowTrace;
+	private boolean leakReported;
+	private final LinkedHashMap<String, CachedStatement> statements;
+
+	/**
+	 * Constructor
+	 *
+	 * @param pool (ConnectionPool) pool owning the connection.
+	 * @param conn (Connection) physical connection to the database.
+	 */
+	PooledConnection(ConnectionPool pool, Connection conn) {
+		this.pool = pool;
+		this.conn = conn;
+		this.lastUsedAt = System.currentTimeMillis();
+		this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+				if (size() > DatabaseConstants.STATEMENT_CACHE_SIZE) {
+					eldest.getValue().evict();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get a prepared statement for the SQL text, preparing it on first use on
+	 * this connection. If the cached statement is still open in an enclosing
+	 * call, a separate uncached statement is returned. A pool whose cache is
+	 * disabled gets a statement prepared on the client every time.
+	 * @param sql (String) statement text from DbControllerHelper.
+	 * @return (PreparedStatement) statement to be closed when the caller is done.
+	 * @throws SQLException if the statement could not be prepared.
+	 */
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		if (!pool.cachesStatements()) {
+			pool.recordStatementLookup(false);
+			return conn.unwrap(JdbcConnection.class).clientPrepareStatement(sql);
+		}
+		CachedStatement cached = statements.get(sql);
+		if (cached == null) {
+			pool.recordStatementLookup(false);
+			cached = new CachedStatement(conn.prepareStatement(sql));
+			statements.put(sql, cached);
+		} else if (cached.inUse) {
+			pool.recordStatementLookup(false);
+			return conn.prepareStatement(sql);
+		} else {
+			pool.recordStatementLookup(true);
+		}
+		cached.inUse = true;
+		return cached.view;
+	}
+
+	/**
+	 * Create a plain statement on this connection.
+	 * @return (Statement) the statement.
+	 * @throws SQLException if the statement could not be created.
+	 */
+	public Statement createStatement() throws SQLException {
+		return conn.createStatement();
+	}
+
+	/**
+	 * @return (Connection) the physical connection, for transaction control.
+	 */
+	public Connection getConnection() {
+		return conn;
+	}
+
+	/**
+	 * Return the connection to the pool.
+	 */
+	@Override
+	public void close() {
+		pool.release(this);
+	}
+
+	/**
+	 * Record the borrow time and the borrowing call stack.
+	 * @param trace (Throwable) call stack of the borrower, null if not tracked.
+	 */
+	void markBorrowed(Throwable trace) {
+		borrowedAt = System.currentTimeMillis();
+		borrowTrace = trace;
+		leakReported = false;
+	}
+
+	/**
+	 * Record the time the connection went back to the idle list.
+	 */
+	void markIdle() {
+		lastUsedAt = System.currentTimeMillis();
+		borrowTrace = null;
+	}
+
+	/**
+	 * Restore the default connection state before it is reused.
+	 * @return (boolean) false if the connection is broken and must be discarded.
+	 */
+	boolean reset() {
+		try {
+			if (conn.isClosed()) {
+				return false;
+			}
+			for (CachedStatement cached : statements.values()) {
+				if (cached.inUse) {
+					cached.release(); // left open by the caller
+				}
+			}
+			if (!conn.getAutoCommit()) {
+				conn.rollback(); // discard work left by a failed operation
+				conn.setAutoCommit(true);
+			}
+			return true;
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Close the cached statements and the physical connection.
+	 */
+	void closePhysical() {
+		Iterator<CachedStatement> cached = statements.values().iterator();
+		while (cached.hasNext()) {
+			cached.next().evict();
+			cached.remove();
+		}
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			System.err.println("Closing pooled connection failed: " + e.getMessage());
+		}
+	}
+
+	long getLastUsedAt() {
+		return lastUsedAt;
+	}
+
+	long getBorrowedAt() {
+		return borrowedAt;
+	}
+
+	Throwable getBorrowTrace() {
+		return borrowTrace;
+	}
+
+	boolean isLeakReported() {
+		return leakReported;
+	}
+
+	void setLeakReported() {
+		leakReported = true;
+	}
+
+	/**
+	 * Prepared statement kept open in the cache. Callers get a proxy view whose
+	 * close() returns the statement to the cache instead of closing it.
+	 */
+	private static class CachedStatement implements InvocationHandler {
+		private final PreparedStatement statement;
+		private final PreparedStatement view;
+		private boolean inUse;
+		private boolean evicted;
+
+		CachedStatement(PreparedStatement statement) {
+			this.statement = statement;
+			this.view = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				release();
+				return null;
+			case "isClosed":
+				return !inUse || statement.isClosed();
+			default:
+				try {
+					return method.invoke(statement, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		}
+
+		/**
+		 * Return the statement to the cache, closing it if it was evicted while
+		 * in use.
+		 */
+		void release() throws SQLException {
+			inUse = false;
+			if (evicted) {
+				statement.close();
+			} else {
+				statement.clearParameters();
+			}
+		}
+
+		/**
+		 * Remove the statement from the cache, closing it once it is not in use.
+		 */
+		void evict() {
+			evicted = true;
+			if (!inUse) {
+				try {
+					statement.close();
+				} catch (SQLException e) {
+					System.err.println("Closing cached statement failed: " + e.getMessage());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,608 @@
+package server.serverControllers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import server.serverModel.MappedCatalog;
+import sharedModel.Item_Elec;
+
+/**
+ * Append-only journal of every stock change on local disk: purchases, receipts
+ * of reordered items and manual adjustments. A change is acknowledged once its
+ * entries are forced to disk, not once the database has them; a background
+ * applier writes the journaled changes to the Items, Purchases and Order_Lines
+ * tables every JOURNAL_APPLY_INTERVAL_MS in one batched transaction.
+ *
+ * Appends use group commit: each change writes its entries to the journal
+ * file, then waits for a force covering them. Only one force runs at a time,
+ * and it covers every entry written before it started, so concurrent changes
+ * share one fsync instead of paying one each. Every entry carries a CRC32 of
+ * its fields; reading stops at the first entry that fails it, which drops a
+ * record torn by a crash. When a force fails, every change it should have
+ * covered is refused: the file is cut back to the last durable entry, those
+ * entries are dropped and the journal takes no more appends.
+ *
+ * The journal is split into segments, one per apply: the applier closes the
+ * current segment, writes the entries of every closed segment and records the
+ * segment numbers in the Flushed_Segments table in the same transaction. At
+ * startup, recover() applies the segments left by a crash that the table does
+ * not list, so each change reaches the database exactly once.
+ *
+ * Applied segments are kept until an InventorySnapshot covers them. Every
+ * INVENTORY_CHECKPOINT_INTERVAL_MS the applier writes a new snapshot from the
+ * previous one and the stock changes applied since, then deletes the segments
+ * it covers; their Flushed_Segments entries are pruned by the next apply. A
+ * restart maps the latest snapshot and replays only the later segments, so the
+ * stock is rebuilt without reading the Items table.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class PurchaseJournal implements DatabaseConstants, DatabaseTables {
+
+	private static final String SEGMENT_PREFIX = "purchases-";
+	private static final String SEGMENT_SUFFIX = ".journal";
+	private static final int ENTRY_BYTES = 28; // six fields and their checksum
+	private static final int CHECKED_BYTES = 24;
+
+	/**
+	 * One stock change of an item. The stock left is the inventory's stock of
+	 * the item right after the change, which decides the reorder of a purchase.
+	 */
+	public static final class Entry {
+		public static final int PURCHASE = 0; // a customer bought qty
+		public static final int RECEIPT = 1; // qty of a reorder arrived
+		public static final int ADJUSTMENT = 2; // stock changed by qty, which may be negative
+
+		final int type;
+		final int customerId;
+		final int itemId;
+		final int qty;
+		final int remaining;
+		final int orderId;
+
+		/**
+		 * @param customerId (int) customer ID making the purchase.
+		 * @param itemId     (int) item ID being purchased.
+		 * @param qty        (int) quantity purchased.
+		 * @param remaining  (int) stock of the item left after the purchase.
+		 * @param orderId    (int) ID of the daily order receiving reorder lines.
+		 */
+		public Entry(int customerId, int itemId, int qty, int remaining, int orderId) {
+			this(PURCHASE, customerId, itemId, qty, remaining, orderId);
+		}
+
+		/**
+		 * @param type       (int) PURCHASE, RECEIPT or ADJUSTMENT.
+		 * @param customerId (int) customer ID making a purchase, 0 otherwise.
+		 * @param itemId     (int) item ID whose stock changes.
+		 * @param qty        (int) quantity purchased or received, or stock change of an adjustment.
+		 * @param remaining  (int) stock of the item left after the change.
+		 * @param orderId    (int) ID of the daily order receiving reorder lines.
+		 */
+		public Entry(int type, int customerId, int itemId, int qty, int remaining, int orderId) {
+			this.type = type;
+			this.customerId = customerId;
+			this.itemId = itemId;
+			this.qty = qty;
+			this.remaining = remaining;
+			this.orderId = orderId;
+		}
+
+		/**
+		 * @return (int) change of the item's stock.
+		 */
+		int stockChange() {
+			return type == PURCHASE ? -qty : qty;
+		}
+	}
+
+	/**
+	 * Writes journaled stock changes to the database.
+	 */
+	@FunctionalInterface
+	interface Applier {
+		/**
+		 * @param pc      (PooledConnection) connection holding the open transaction.
+		 * @param entries (List<Entry>) stock changes in journal order.
+		 * @throws SQLException if a statement failed.
+		 */
+		void apply(PooledConnection pc, List<Entry> entries) throws SQLException;
+	}
+
+	private final ConnectionPool pool;
+	private final DbControllerHelper helper;
+	private final Applier applier;
+	private final Path dir;
+
+	private final ReentrantLock lock = new ReentrantLock(); // guards the open segment and the sync state
+	private final Condition synced = lock.newCondition();
+	private FileChannel journal;
+	private long segment; // number of the open segment
+	private ArrayList<Entry> entries = new ArrayList<Entry>(); // of the open segment
+	private long written; // appends written to the journal file
+	private long durable; // appends covered by a completed force
+	private long durableBytes; // length of the open segment covered by a completed force
+	private int durableEntries; // entries of the open segment covered by a completed force
+	private boolean syncing; // a force is running
+	private IOException failure; // a force failed, the journal takes no more appends
+
+	private final TreeMap<Long, ArrayList<Entry>> closed = new TreeMap<Long, ArrayList<Entry>>(); // applier only
+	private long appliedSegment; // last segment written to the database
+	private InventorySnapshot snapshot; // latest checkpoint, null until the first one
+	private long deletedThrough; // segment files up to this one are deleted
+	private final HashMap<Integer, Integer> sinceSnapshot = new HashMap<Integer, Integer>(); // stock change per item ID
+	private long lastCheckpoint = System.currentTimeMillis();
+	private ScheduledExecutorService applierThread;
+
+	private final LongAdder appended = new LongAdder();
+	private final LongAdder forces = new LongAdder();
+	private final LongAdder applied = new LongAdder();
+
+	/**
+	 * Constructor
+	 * @param pool    (ConnectionPool) started pool of connections to the shop database.
+	 * @param helper  (DbControllerHelper) statements of the shop database.
+	 * @param applier (Applier) writes journaled changes inside the apply transaction.
+	 * @param dir     (String) directory holding the journal segments.
+	 */
+	PurchaseJournal(ConnectionPool pool, DbControllerHelper helper, Applier applier, String dir) {
+		this.pool = pool;
+		this.helper = helper;
+		this.applier = applier;
+		this.dir = Paths.get(dir);
+	}
+
+	/**
+	 * Map the latest inventory snapshot, delete the segments it covers and apply
+	 * the later segments left by the previous run that were not written to the
+	 * database. The stock changes of every segment after the snapshot are kept
+	 * for loadStock(). Must run before the inventory is read.
+	 * @return (int) number of stock changes applied.
+	 * @throws IOException  if the journal could not be read.
+	 * @throws SQLException if the changes could not be written.
+	 */
+	public synchronized int recover() throws IOException, SQLException {
+		Files.createDirectories(dir);
+		snapshot = InventorySnapshot.load(dir);
+		long covered = snapshot == null ? 0 : snapshot.getSegment();
+		TreeMap<Long, Path> files = new TreeMap<Long, Path>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : stream) {
+				long s = segmentOf(file);
+				if (snapshot != null && s <= covered) {
+					Files.delete(file); // the snapshot already holds its changes
+				} else {
+					files.put(s, file);
+				}
+			}
+		}
+		HashSet<Long> flushed = new HashSet<Long>();
+		long last = Math.max(covered, files.isEmpty() ? 0 : files.lastKey());
+		try (PooledConnection pc = pool.borrow();
+				PreparedStatement pStat = pc.prepareStatement(helper.queryFlushedSegments());
+				ResultSet results = pStat.executeQuery()) {
+			while (results.next()) {
+				flushed.add(results.getLong("segmentId"));
+				last = Math.max(last, results.getLong("segmentId"));
+			}
+		}
+		segment = last + 1; // never reuse the number of a listed segment
+		for (Map.Entry<Long, Path> file : files.entrySet()) {
+			ArrayList<Entry> segmentEntries = read(file.getValue());
+			if (flushed.contains(file.getKey())) {
+				this.addChanges(segmentEntries);
+				appliedSegment = file.getKey();
+			} else {
+				closed.put(file.getKey(), segmentEntries);
+			}
+		}
+		deletedThrough = covered;
+		int count = closed.isEmpty() ? 0 : apply();
+		appliedSegment = Math.max(covered, files.isEmpty() ? 0 : files.lastKey());
+		return count;
+	}
+
+	/**
+	 * @param catalog (MappedCatalog) catalog of the items.
+	 * @return (int[]) stock of each catalog row, from the snapshot mapped by
+	 *         recover() and the stock changes of the later segments; null if
+	 *         there is no valid snapshot or it does not hold the catalog's items,
+	 *         and the items must be read from the database.
+	 */
+	public synchronized int[] loadStock(MappedCatalog catalog) {
+		return snapshot == null ? null : snapshot.stock(catalog, sinceSnapshot);
+	}
+
+	/**
+	 * Write the first inventory snapshot from items read from the database after
+	 * recover(), then delete the segments it covers.
+	 * @param items (LinkedHashSet<Item_Elec>) every item, as stored in the database.
+	 * @throws IOException if the snapshot could not be written.
+	 */
+	public synchronized void checkpoint(LinkedHashSet<Item_Elec> items) throws IOException {
+		snapshot = InventorySnapshot.write(dir, appliedSegment, items);
+		this.afterCheckpoint();
+	}
+
+	/**
+	 * Open a new journal segment and start applying every JOURNAL_APPLY_INTERVAL_MS.
+	 * @throws IOException if the segment could not be created.
+	 */
+	public void start() throws IOException {
+		lock.lock();
+		try {
+			journal = open(segment);
+		} finally {
+			lock.unlock();
+		}
+		applierThread = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "purchase-journal-applier");
+			t.setDaemon(true);
+			return t;
+		});
+		applierThread.scheduleWithFixedDelay(this::applyClosed, JOURNAL_APPLY_INTERVAL_MS,
+				JOURNAL_APPLY_INTERVAL_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Journal the lines of one purchase or stock change. Returns once they are
+	 * on disk; they reach the database with the next apply.
+	 * @param lines (List<Entry>) lines changed together.
+	 * @throws IOException if the journal could not be written or forced; the
+	 *                     purchase must then be refused.
+	 */
+	public void append(List<Entry> lines) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(lines.size() * ENTRY_BYTES);
+		CRC32 crc = new CRC32();
+		for (Entry e : lines) {
+			buf.putInt(e.type).putInt(e.customerId).putInt(e.itemId).putInt(e.qty).putInt(e.remaining).putInt(e.orderId);
+			crc.reset();
+			crc.update(buf.array(), buf.position() - CHECKED_BYTES, CHECKED_BYTES);
+			buf.putInt((int) crc.getValue());
+		}
+		buf.flip();
+		long mine;
+		lock.lock();
+		try {
+			if (failure != null) {
+				throw new IOException("Purchase journal failed earlier.", failure);
+			}
+			long start = journal.position();
+			try {
+				while (buf.hasRemaining()) {
+					journal.write(buf);
+				}
+			} catch (IOException e) {
+				journal.truncate(start); // keep later entries aligned
+				throw e;
+			}
+			entries.addAll(lines);
+			mine = ++written;
+		} finally {
+			lock.unlock();
+		}
+		appended.add(lines.size());
+		awaitDurable(mine);
+	}
+
+	/**
+	 * Wait until an append is covered by a force. The first waiter finding no
+	 * force running starts one for everything written so far; the others wait
+	 * for it and return if it covered them.
+	 * @param mine (long) number of the append.
+	 * @throws IOException if the force failed.
+	 */
+	private void awaitDurable(long mine) throws IOException {
+		lock.lock();
+		try {
+			while (durable < mine) {
+				if (failure != null) {
+					throw new IOException("Purchase journal force failed.", failure);
+				}
+				if (syncing) {
+					synced.awaitUninterruptibly();
+					continue;
+				}
+				syncing = true;
+				long target = written;
+				long targetBytes = journal.position();
+				int targetEntries = entries.size();
+				FileChannel channel = journal;
+				IOException failed = null;
+				lock.unlock();
+				try {
+					channel.force(false);
+					forces.increment();
+				} catch (IOException e) {
+					failed = e;
+				} finally {
+					lock.lock();
+					syncing = false;
+					synced.signalAll();
+				}
+				if (failed == null) {
+					durable = Math.max(durable, target);
+					durableBytes = targetBytes;
+					durableEntries = targetEntries;
+				} else {
+					this.rollBack(failed);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Refuse every append not covered by a completed force after a force failed.
+	 * The page cache state is unknown after a failed force, so the open segment
+	 * is cut back to its durable length and the refused entries are dropped:
+	 * their callers answer the change as failed, and neither the applier nor
+	 * recover() may write them. Called holding the lock.
+	 * @param e (IOException) failure of the force.
+	 */
+	private void rollBack(IOException e) {
+		failure = e;
+		entries.subList(durableEntries, entries.size()).clear();
+		written = durable;
+		try {
+			journal.truncate(durableBytes);
+			journal.force(true);
+		} catch (IOException t) {
+			System.err.println("Purchase journal " + segmentPath(segment) + " could not be cut back to "
+					+ durableBytes + " bytes; cut it before the next start.");
+			t.printStackTrace();
+		}
+	}
+
+	/**
+	 * Close the open segment and apply the entries of every closed segment in one
+	 * transaction. Segments that fail to be applied are kept and retried by the
+	 * next apply. Runs on the applier thread, and once more on close.
+	 */
+	synchronized void applyClosed() {
+		try {
+			lock.lock();
+			try {
+				if (!entries.isEmpty()) {
+					while (syncing) {
+						synced.awaitUninterruptibly();
+					}
+					if (durable < written) {
+						try {
+							journal.force(false);
+							forces.increment();
+						} catch (IOException e) {
+							this.rollBack(e); // the durable entries are closed by the next apply
+							throw e;
+						} finally {
+							synced.signalAll();
+						}
+						durable = written;
+					}
+					journal.close();
+					closed.put(segment, entries);
+					entries = new ArrayList<Entry>();
+					journal = open(++segment);
+					durableBytes = 0;
+					durableEntries = 0;
+				}
+			} finally {
+				lock.unlock();
+			}
+			if (!closed.isEmpty()) {
+				apply();
+			}
+			if (System.currentTimeMillis() - lastCheckpoint >= INVENTORY_CHECKPOINT_INTERVAL_MS) {
+				this.advanceSnapshot();
+			}
+		} catch (IOException | SQLException e) {
+			System.err.println("Purchase journal apply failed, " + closed.size() + " segments kept for retry.");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write a new inventory snapshot covering every applied segment, unless no
+	 * segment was applied since the last one. Runs on the applier thread.
+	 * @throws IOException if the snapshot could not be written; the segments
+	 *                     are kept and the next checkpoint covers them.
+	 */
+	private void advanceSnapshot() throws IOException {
+		lastCheckpoint = System.currentTimeMillis();
+		if (snapshot != null && appliedSegment > snapshot.getSegment()) {
+			snapshot = snapshot.advance(dir, appliedSegment, sinceSnapshot);
+			this.afterCheckpoint();
+		}
+	}
+
+	/**
+	 * Forget the stock changes held by the new snapshot and delete the segment
+	 * files and older snapshots it replaces.
+	 * @throws IOException if a segment could not be deleted; recover() deletes
+	 *                     it on the next start.
+	 */
+	private void afterCheckpoint() throws IOException {
+		sinceSnapshot.clear();
+		lastCheckpoint = System.currentTimeMillis();
+		InventorySnapshot.deleteBelow(dir, snapshot.getSegment());
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : stream) {
+				if (segmentOf(file) <= snapshot.getSegment()) {
+					Files.delete(file);
+				}
+			}
+		}
+		deletedThrough = snapshot.getSegment();
+	}
+
+	/**
+	 * @param segmentEntries (List<Entry>) entries applied to the database.
+	 */
+	private void addChanges(List<Entry> segmentEntries) {
+		for (Entry e : segmentEntries) {
+			sinceSnapshot.merge(e.itemId, e.stockChange(), Integer::sum);
+		}
+	}
+
+	/**
+	 * Write the entries of the closed segments and list the segments as flushed,
+	 * in one transaction.
+	 * @return (int) number of stock changes applied.
+	 * @throws SQLException if the transaction failed; the segments are kept.
+	 */
+	private int apply() throws SQLException {
+		ArrayList<Entry> all = new ArrayList<Entry>();
+		for (ArrayList<Entry> segmentEntries : closed.values()) {
+			all.addAll(segmentEntries);
+		}
+		try (PooledConnection pc = pool.borrow()) {
+			Connection conn = pc.getConnection();
+			conn.setAutoCommit(false);
+			try {
+				applier.apply(pc, all);
+				try (PreparedStatement pStat = pc.prepareStatement(helper.insertFlushedSegment())) {
+					for (long s : closed.keySet()) {
+						pStat.setLong(1, s);
+						pStat.addBatch();
+					}
+					pStat.executeBatch();
+				}
+				// segment files covered by a snapshot are never read again
+				try (PreparedStatement pStat = pc.prepareStatement(helper.pruneFlushedSegments())) {
+					pStat.setLong(1, deletedThrough + 1);
+					pStat.executeUpdate();
+				}
+				conn.commit();
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(true);
+			}
+		}
+		this.addChanges(all);
+		appliedSegment = closed.lastKey();
+		closed.clear();
+		applied.add(all.size());
+		return all.size();
+	}
+
+	/**
+	 * Stop the applier, apply the remaining changes, write a last inventory
+	 * snapshot and close the journal. The last segment file is left behind only
+	 * if its changes could not be applied.
+	 */
+	public void close() {
+		if (applierThread == null) {
+			return;
+		}
+		applierThread.shutdown();
+		try {
+			applierThread.awaitTermination(POOL_MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.applyClosed();
+		synchronized (this) {
+			try {
+				this.advanceSnapshot();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		lock.lock();
+		try {
+			journal.close();
+			if (entries.isEmpty()) {
+				Files.deleteIfExists(segmentPath(segment));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param file (Path) journal segment.
+	 * @return (ArrayList<Entry>) entries of the segment up to the first one
+	 *         failing its checksum.
+	 * @throws IOException if the segment could not be read.
+	 */
+	private static ArrayList<Entry> read(Path file) throws IOException {
+		ArrayList<Entry> res = new ArrayList<Entry>();
+		ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+		CRC32 crc = new CRC32();
+		while (buf.remaining() >= ENTRY_BYTES) {
+			crc.reset();
+			crc.update(buf.array(), buf.position(), CHECKED_BYTES);
+			Entry e = new Entry(buf.getInt(), buf.getInt(), buf.getInt(), buf.getInt(), buf.getInt(), buf.getInt());
+			if (buf.getInt() != (int) crc.getValue()) {
+				System.err.println("Purchase journal " + file + " cut at a damaged entry.");
+				break;
+			}
+			res.add(e);
+		}
+		return res;
+	}
+
+	/**
+	 * @param s (long) segment number.
+	 * @return (FileChannel) new segment opened for appending.
+	 * @throws IOException if the segment could not be created.
+	 */
+	private FileChannel open(long s) throws IOException {
+		return FileChannel.open(segmentPath(s), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * @param file (Path) journal segment.
+	 * @return (long) number of the segment.
+	 */
+	private static long segmentOf(Path file) {
+		String name = file.getFileName().toString();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	/**
+	 * @param s (long) segment number.
+	 * @return (Path) file of the segment.
+	 */
+	private Path segmentPath(long s) {
+		return dir.resolve(SEGMENT_PREFIX + s + SEGMENT_SUFFIX);
+	}
+
+	@Override
+	public String toString() {
+		return "Purchase journal: " + appended.sum() + " stock changes in " + forces.sum() + " forces, "
+				+ applied.sum() + " applied" + (snapshot == null ? "" : ", " + snapshot);
+	}
+}
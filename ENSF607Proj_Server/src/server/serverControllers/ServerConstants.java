@@ -0,0 +1,28 @@
+package server.serverControllers;
+
+/**
+ * Hold the network and threading settings of the shop server.
+ * @author NJack & JJoorisity
+ * @version	1.0
+ * @since 2020-11-26
+ */
+public interface ServerConstants {
+
+	// Server address
+	static final String SERVER_HOST = "localhost";
+	static final int SERVER_PORT = 8088;
+	static final int BACKLOG = 1024; // pending connections queued by the OS
+
+	// Worker threads executing complete client requests
+	static final int WORKER_THREADS = 10;
+	// Requests with a request ID one session may have executing at once
+	static final int SESSION_MAX_IN_FLIGHT = 8;
+
+	// Thread model switch, set with -Dshop.executionMode=virtual or the first program argument
+	static final String EXECUTION_MODE_PROPERTY = "shop.executionMode";
+	// Keep the items in off-heap columns, set with -Dshop.offHeapItems=true for catalogs too large for the heap
+	static final String OFF_HEAP_ITEMS_PROPERTY = "shop.offHeapItems";
+	// Threads allowed to hold a database connection at once in virtual mode; the MySQL
+	// driver blocks inside synchronized code, which pins the carrier thread of a virtual thread.
+	static final int JDBC_PERMITS = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+}
@@ -1,70 +1,172 @@
 package server.serverControllers;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.sql.SQLException;
+import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
+import server.serverModel.CustomerCache;
+import server.serverModel.CustomerIdFilter;
+import server.serverModel.CustomerIndex;
+import server.serverModel.Inventory;
+import server.serverModel.MappedCatalog;
+import server.serverModel.OffHeapItemStore;
 import server.serverModel.ShopApp;
 
 /**
- * Server class to run shop inventory server Client classes.
- * 
+ * Server class to run shop inventory server Client classes. A single selector
+ * thread accepts clients and reads their requests; complete requests are
+ * executed by a small worker pool so idle clients do not hold a thread.
+ *
  * @author NJack & JJoorisity
  * @version 1.0
  * @since 2020-11-06
  */
-public class ServerController {
-	private Socket clientSocket;
-	private ServerSocket serverSocket;
-	private ObjectInputStream clientIn;
-	private ObjectOutputStream clientOut;
+public class ServerController implements ServerConstants {
+	private ServerSocketChannel serverChannel;
+	private Selector selector;
 	private ExecutorService pool;
+	private ConnectionPool connectionPool;
+	private DbController myDB; // shared by every client session
+	private Inventory inventory; // shared by every client session
+	private CustomerIndex customerIndex; // shared by every client session
+	private CustomerCache customerCache; // shared by every client session
+	private CustomerIdFilter customerIds; // shared by every client session
 
 	/**
-	 * Initialize the serverSocket and thread pool.
+	 * Initialize the database connection pool, shared inventory, customer index,
+	 * customer ID filter and customer cache, server channel, selector and worker
+	 * pool.
+	 * @param mode (ExecutionMode) thread model used to execute client requests.
+	 * @throws IOException  if the journal, catalog or server channel could not be opened.
+	 * @throws SQLException if the database could not be read; the server must not
+	 *                      start with a partial inventory or customer index.
 	 */
-	public ServerController() {
+	public ServerController(ExecutionMode mode) throws IOException, SQLException {
 		try {
-			serverSocket = new ServerSocket(8088, 0, InetAddress.getByName("localhost"));
-			pool = Executors.newFixedThreadPool(10);
-		} catch (IOException e) {
-			e.printStackTrace();
+			connectionPool = new ConnectionPool();
+			if (mode == ExecutionMode.VIRTUAL) {
+				connectionPool.limitBorrowers(JDBC_PERMITS);
+			}
+			connectionPool.start();
+			myDB = new DbController(connectionPool);
+			myDB.migrateTables();
+			System.out.println("Purchase journal replayed " + myDB.startJournal() + " stock changes.");
+			long loadStart = System.nanoTime();
+			inventory = Boolean.getBoolean(OFF_HEAP_ITEMS_PROPERTY) ? new Inventory(new OffHeapItemStore())
+					: new Inventory();
+			MappedCatalog catalog = myDB.openCatalog();
+			int[] stock = catalog == null ? null : myDB.loadStock(catalog);
+			if (stock != null) {
+				inventory.setCatalog(catalog, stock);
+				System.out.println(catalog + " mapped.");
+				Thread indexer = new Thread(inventory::indexDescriptions, "description-indexer");
+				indexer.setDaemon(true);
+				indexer.start();
+			} else {
+				System.out.println("Supplier snapshot loaded with " + myDB.loadSuppliers() + " suppliers.");
+				inventory.setItemList(myDB.loadInventory());
+			}
+			System.out.println("Inventory loaded with " + inventory.size() + " items in "
+					+ (System.nanoTime() - loadStart) / 1000000 + " ms.");
+			customerIndex = new CustomerIndex();
+			customerIndex.load(myDB::forEachCustomer);
+			System.out.println("Customer index loaded with " + customerIndex.size() + " customers.");
+			customerIds = new CustomerIdFilter(customerIndex.size() + DatabaseConstants.CUSTOMER_FILTER_GROWTH);
+			customerIndex.forEachId(customerIds::add);
+			System.out.println(customerIds);
+			customerCache = new CustomerCache(DatabaseConstants.CUSTOMER_CACHE_SIZE);
+			selector = Selector.open();
+			serverChannel = ServerSocketChannel.open();
+			serverChannel.bind(new InetSocketAddress(InetAddress.getByName(SERVER_HOST), SERVER_PORT), BACKLOG);
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+			pool = mode.createExecutor();
+			System.out.println("Server running in " + mode + " execution mode.");
+		} catch (IOException | SQLException e) {
+			System.err.println("Server startup failed.");
+			if (myDB != null) {
+				myDB.close(); // apply the journaled changes before stopping
+			}
+			throw e;
 		}
 	}
 
 	/**
-	 * Run server and allow communication with client package. Initialize model/DB
-	 * controller and shop application for every connected client.
+	 * Run server and allow communication with client package. Accepts new
+	 * clients and dispatches socket events to their sessions.
 	 */
 	public void runServer() {
 
-		while (true) {
+		while (selector.isOpen()) {
 			try {
-				clientSocket = serverSocket.accept();
-
-				System.out.println("Server has accepted a connection.");
-
-				clientOut = new ObjectOutputStream(clientSocket.getOutputStream());
-				clientIn = new ObjectInputStream(clientSocket.getInputStream());
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						acceptClient();
+					} else {
+						handleClient(key);
+					}
+				}
+			} catch (IOException e) {
+				System.err.println(e + " Server connection failed in runServer().");
+			}
+		}
+	}
 
-				DbController myDB = new DbController();
-				myDB.initializeConnection();
-				ShopApp myShop = new ShopApp();
+	/**
+	 * Accept a pending client and initialize model/DB controller and shop
+	 * application for the connected client.
+	 * @throws IOException if the client could not be registered.
+	 */
+	private void acceptClient() throws IOException {
+		SocketChannel clientChannel = serverChannel.accept();
+		if (clientChannel == null) {
+			return;
+		}
+		clientChannel.configureBlocking(false);
+		SelectionKey clientKey = clientChannel.register(selector, SelectionKey.OP_READ);
+		System.out.println("Server has accepted a connection.");
 
-				ModelController newShop = new ModelController(clientIn, clientOut, myDB, myShop);
-				myShop.setModelController(newShop);
+		ClientSession session = new ClientSession(clientChannel, clientKey, pool);
+		ShopApp myShop = new ShopApp(inventory, customerIndex, customerCache, customerIds);
 
-				pool.execute(newShop);
-				System.out.println("Shop model active.");
+		ModelController newShop = new ModelController(session, myDB, myShop);
+		myShop.setModelController(newShop);
+		session.setModelController(newShop);
+		clientKey.attach(session);
+		System.out.println("Shop model active. " + connectionPool);
+	}
 
-			} catch (IOException e) {
-				System.err.println(e.getStackTrace() + " Server connection failed in runServer().");
+	/**
+	 * Pass a read or write event to the client session owning the key.
+	 * @param key (SelectionKey) the ready client key.
+	 */
+	private void handleClient(SelectionKey key) {
+		ClientSession session = (ClientSession) key.attachment();
+		try {
+			if (key.isReadable() && !session.onReadable()) {
+				session.close();
+				return;
 			}
+			if (key.isValid() && key.isWritable()) {
+				session.onWritable();
+			}
+		} catch (IOException e) {
+			System.err.println(e + " Client connection failed in handleClient().");
+			session.close();
 		}
 	}
 
@@ -73,20 +175,25 @@ public class ServerController {
 	 */
 	public void close() {
 		try {
-			clientSocket.close();
+			selector.close();
+			serverChannel.close();
 			pool.shutdown();
+			System.out.println(customerCache);
+			myDB.close();
 		} catch (IOException e) {
-			System.err.println(e.getStackTrace() + " Server connection failed in close().");
+			System.err.println(e + " Server connection failed in close().");
 		}
 	}
 
 	/**
 	 * Main server run method. Initiates server based on hard coded port number and server name.
-	 * @param args (null)
+	 * @param args (String[]) optional execution mode, "platform" (default) or "virtual".
 	 * @throws IOException
+	 * @throws SQLException if the database could not be read at startup.
 	 */
-	public static void main(String[] args) throws IOException {
-		ServerController myServer = new ServerController();
+	public static void main(String[] args) throws IOException, SQLException {
+		String mode = args.length > 0 ? args[0] : System.getProperty(EXECUTION_MODE_PROPERTY);
+		ServerController myServer = new ServerController(ExecutionMode.parse(mode));
 		myServer.runServer();
 		myServer.close();
 	}
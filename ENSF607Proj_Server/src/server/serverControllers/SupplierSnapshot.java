@@ -0,0 +1,96 @@
+package server.serverControllers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import sharedModel.Int_Supplier;
+
+/**
+ * Immutable copy of the Suppliers table, keyed by supplier ID. Suppliers
+ * rarely change, so the database controller reads them once and answers
+ * supplier lookups from the current snapshot; a change builds a new snapshot
+ * which replaces the old one atomically. Readers never lock and always see a
+ * complete snapshot. The suppliers are copies and must not be modified.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public final class SupplierSnapshot {
+
+	static final SupplierSnapshot EMPTY = new SupplierSnapshot(new HashMap<Integer, Int_Supplier>());
+
+	private final Map<Integer, Int_Supplier> suppliers;
+
+	/**
+	 * @param suppliers (Map<Integer, Int_Supplier>) suppliers by ID, owned by the snapshot.
+	 */
+	private SupplierSnapshot(Map<Integer, Int_Supplier> suppliers) {
+		this.suppliers = suppliers;
+	}
+
+	/**
+	 * @param suppliers (Collection<Int_Supplier>) every supplier.
+	 * @return (SupplierSnapshot) snapshot holding copies of the suppliers.
+	 */
+	static SupplierSnapshot of(Collection<Int_Supplier> suppliers) {
+		HashMap<Integer, Int_Supplier> map = new HashMap<Integer, Int_Supplier>(suppliers.size() * 2);
+		for (Int_Supplier supplier : suppliers) {
+			map.put(supplier.getSupplierID(), copyOf(supplier));
+		}
+		return new SupplierSnapshot(map);
+	}
+
+	/**
+	 * @param supplier (Int_Supplier) supplier added or changed.
+	 * @return (SupplierSnapshot) new snapshot holding this snapshot's suppliers and
+	 *         a copy of the supplier; this snapshot is unchanged.
+	 */
+	SupplierSnapshot with(Int_Supplier supplier) {
+		HashMap<Integer, Int_Supplier> map = new HashMap<Integer, Int_Supplier>(suppliers);
+		map.put(supplier.getSupplierID(), copyOf(supplier));
+		return new SupplierSnapshot(map);
+	}
+
+	/**
+	 * @param supplierId (int) ID of the supplier.
+	 * @return (Int_Supplier) the supplier, null if it does not exist.
+	 */
+	public Int_Supplier get(int supplierId) {
+		return suppliers.get(supplierId);
+	}
+
+	/**
+	 * @param supplierId (int) ID of the supplier.
+	 * @return (String) company name of the supplier, null if it does not exist.
+	 */
+	public String getCompanyName(int supplierId) {
+		Int_Supplier supplier = suppliers.get(supplierId);
+		return supplier == null ? null : supplier.getCompanyName();
+	}
+
+	/**
+	 * @return (Collection<Int_Supplier>) every supplier, not to be modified.
+	 */
+	Collection<Int_Supplier> values() {
+		return Collections.unmodifiableCollection(suppliers.values());
+	}
+
+	/**
+	 * @return (int) number of suppliers.
+	 */
+	public int size() {
+		return suppliers.size();
+	}
+
+	/**
+	 * @param supplier (Int_Supplier) supplier being stored.
+	 * @return (Int_Supplier) copy of the supplier.
+	 */
+	private static Int_Supplier copyOf(Int_Supplier supplier) {
+		return new Int_Supplier(supplier.getSupplierID(), supplier.getSupplierType(), supplier.getCompanyName(),
+				supplier.getAddress(), supplier.getSalesContact(), supplier.getImportTaxBasisPoints());
+	}
+}
@@ -0,0 +1,153 @@
+package server.serverModel;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import sharedModel.Customer;
+
+/**
+ * Bounded cache of customers by customer ID, shared by every client session.
+ * Reads go through the cache and load misses from the database; saves and
+ * removals drop the cached customer once they have written the database, so
+ * the next read loads the committed row. Caching the saved customer instead
+ * could keep the older of two concurrent saves, as the cache writes would not
+ * be ordered like the database writes.
+ *
+ * The cache is split into segments by customer ID, each an access ordered
+ * LinkedHashMap evicting its least recently used customer once full, so
+ * sessions touching different customers rarely wait on the same lock. Misses
+ * are loaded outside the segment lock; a load that raced with a save or
+ * removal of the same segment is returned but not cached. Hit, miss and
+ * eviction counts are kept for monitoring.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class CustomerCache {
+
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * One lock's worth of the cache.
+	 */
+	private final class Segment extends LinkedHashMap<Integer, Customer> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+		private long writes; // bumped by every invalidation, guarded by this
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Customer> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param capacity (int) maximum number of customers cached.
+	 */
+	public CustomerCache(int capacity) {
+		int perSegment = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(perSegment);
+		}
+	}
+
+	/**
+	 * Return a customer from the cache, loading and caching it on a miss.
+	 * Customers that do not exist are not cached.
+	 * @param customerId (int) ID of the customer.
+	 * @param loader     (IntFunction<Customer>) reads a customer from the
+	 *                   database, returning null if it does not exist.
+	 * @return (Customer) the customer, null if it does not exist.
+	 */
+	public Customer get(int customerId, IntFunction<Customer> loader) {
+		Segment segment = segmentOf(customerId);
+		long writes;
+		synchronized (segment) {
+			Customer cached = segment.get(customerId);
+			if (cached != null) {
+				hits.increment();
+				return cached;
+			}
+			writes = segment.writes;
+		}
+		misses.increment();
+		Customer loaded = loader.apply(customerId);
+		if (loaded != null) {
+			synchronized (segment) {
+				if (segment.writes == writes) {
+					segment.put(customerId, loaded);
+				}
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * Drop a customer just saved to or removed from the database. A load of the
+	 * customer that started before is returned to its reader but not cached.
+	 * @param customerId (int) ID of the saved or removed customer.
+	 */
+	public void invalidate(int customerId) {
+		Segment segment = segmentOf(customerId);
+		synchronized (segment) {
+			segment.writes++;
+			segment.remove(customerId);
+		}
+	}
+
+	/**
+	 * @return (long) number of reads answered from the cache.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return (long) number of reads that went to the database.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return (long) number of customers evicted to make room.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @param customerId (int) ID of a customer.
+	 * @return (Segment) segment holding the customer.
+	 */
+	private Segment segmentOf(int customerId) {
+		int h = customerId * 0x9E3779B9;
+		return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+	}
+
+	@Override
+	public String toString() {
+		long h = getHits();
+		long m = getMisses();
+		return String.format("Customer cache: %d hits, %d misses (%.1f%% hit rate), %d evictions", h, m,
+				h + m == 0 ? 0.0 : 100.0 * h / (h + m), getEvictions());
+	}
+}
@@ -0,0 +1,93 @@
+package server.serverModel;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over the IDs of saved customers, shared by every client session.
+ * A customer ID never added is reported absent with about a 1% chance of a
+ * false positive while the filter holds no more IDs than it was sized for, so
+ * lookups of new customer IDs are answered without the cache or the database.
+ * A customer ID added is always reported present; removed customers can not be
+ * taken out and simply fall through to the normal lookup.
+ *
+ * Bits are set with compare-and-set on an AtomicLongArray, so adds and lookups
+ * never lock.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class CustomerIdFilter {
+
+	private static final int BITS_PER_ID = 10;
+	private static final int HASHES = 7; // best count for 10 bits per ID
+
+	private final AtomicLongArray words;
+	private final int mask; // bit count minus one, a power of two
+
+	/**
+	 * Constructor
+	 * @param expected (int) number of customer IDs the filter is sized for.
+	 */
+	public CustomerIdFilter(int expected) {
+		long bits = Math.max(64L, (long) Math.max(1, expected) * BITS_PER_ID);
+		bits = Math.min(1L << 31, Long.highestOneBit(bits - 1) << 1);
+		this.words = new AtomicLongArray((int) (bits >>> 6));
+		this.mask = (int) (bits - 1);
+	}
+
+	/**
+	 * Record a saved customer ID.
+	 * @param customerId (int) ID of the customer.
+	 */
+	public void add(int customerId) {
+		long h = mix(customerId);
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32) | 1;
+		for (int i = 0; i < HASHES; i++) {
+			int bit = (h1 + i * h2) & mask;
+			long set = 1L << bit;
+			int w = bit >>> 6;
+			long old = words.get(w);
+			while ((old & set) == 0 && !words.compareAndSet(w, old, old | set)) {
+				old = words.get(w);
+			}
+		}
+	}
+
+	/**
+	 * @param customerId (int) ID of a customer.
+	 * @return (boolean) false if the customer ID was never added, true if it may
+	 *         have been.
+	 */
+	public boolean mightContain(int customerId) {
+		long h = mix(customerId);
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32) | 1;
+		for (int i = 0; i < HASHES; i++) {
+			int bit = (h1 + i * h2) & mask;
+			if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Spread the bits of a customer ID over a long; the two halves seed the
+	 * double hashing of the bit positions.
+	 * @param customerId (int) ID of a customer.
+	 * @return (long) hash of the ID.
+	 */
+	private static long mix(int customerId) {
+		long z = customerId * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	@Override
+	public String toString() {
+		return "Customer ID filter: " + ((long) mask + 1) + " bits, " + HASHES + " hashes";
+	}
+}
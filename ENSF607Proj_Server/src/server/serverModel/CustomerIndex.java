@@ -0,0 +1,707 @@
+package server.serverModel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import sharedModel.Customer;
+
+/**
+ * In-memory customer search over last name, first name, phone number and
+ * postal code. A search text matches a customer if a normalized field equals
+ * it, starts with it or, for names, is one edit (insert, delete or substitute
+ * a character) away from it.
+ *
+ * Each customer is kept as one packed UTF-8 record in an IntItemMap keyed by
+ * customer ID, about 60 bytes for a typical customer. Every searchable key
+ * has a sorted int array of customer IDs ordered by the normalized field, so a
+ * prefix is a binary search followed by a range walk. Names also have an array
+ * sorted by the reversed name: a name one edit away from a text shares either
+ * the first half of the text or the last half, so the fuzzy search walks two
+ * prefix ranges instead of every customer. Keys are normalized when compared,
+ * never stored, which keeps the memory per customer at the packed record plus
+ * one int per sorted array.
+ *
+ * Saving a customer moves its entries in the sorted arrays, an array copy per
+ * key; bulk loads append and sort once.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class CustomerIndex {
+
+	public static final int MAX_RESULTS = 500; // customers returned by one search
+	private static final int MIN_FUZZY_LENGTH = 3; // shorter texts are only matched as prefixes
+	public static final int FUZZY_SCAN_LIMIT = 20000; // entries checked per fuzzy range
+	private static final int MAX_FIELD_BYTES = 254;
+
+	// fields of a packed record, each a length byte and UTF-8 bytes, then the type byte
+	private static final int FIRST = 0;
+	private static final int LAST = 1;
+	private static final int ADDRESS = 2;
+	private static final int POSTAL = 3;
+	private static final int PHONE = 4;
+	private static final int FIELDS = 5;
+	private static final int NULL_FIELD = 0xFF;
+
+	// normalization of a key, ASCII letters are always folded to lower case
+	private static final int TEXT = 0;
+	private static final int DIGITS = 1; // digits only
+	private static final int ALNUM = 2; // letters and digits only
+
+	// match ranks, best first
+	private static final int EXACT = 0;
+	private static final int PREFIX = 1;
+	private static final int FUZZY = 2;
+
+	/**
+	 * Searchable keys, each with its own sorted array.
+	 */
+	private enum Key {
+		LAST_NAME(LAST, TEXT, false), LAST_NAME_REVERSED(LAST, TEXT, true), FIRST_NAME(FIRST, TEXT, false),
+		FIRST_NAME_REVERSED(FIRST, TEXT, true), PHONE_NUMBER(PHONE, DIGITS, false), POSTAL_CODE(POSTAL, ALNUM, false);
+
+		private final int field;
+		private final int norm;
+		private final boolean reversed;
+
+		Key(int field, int norm, boolean reversed) {
+			this.field = field;
+			this.norm = norm;
+			this.reversed = reversed;
+		}
+	}
+
+	private static final Key[] KEYS = Key.values();
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final IntItemMap<byte[]> records = new IntItemMap<byte[]>();
+	private int[][] sorted = new int[KEYS.length][16]; // customer IDs in key order, one array per key
+	private int size;
+
+	/**
+	 * Passes every customer to a consumer, such as DbController::forEachCustomer.
+	 * @param <E> (Exception) failure of the source.
+	 */
+	@FunctionalInterface
+	public interface Source<E extends Exception> {
+		/**
+		 * @param action (Consumer<Customer>) called with each customer.
+		 * @throws E if the customers could not be read.
+		 */
+		void forEach(Consumer<Customer> action) throws E;
+	}
+
+	/**
+	 * Replace the indexed customers with the customers passed by a source. The
+	 * customers are appended and each key is sorted once, in parallel. If the
+	 * source fails the index is left empty, never holding part of the customers.
+	 * @param source (Source) passes every customer to the consumer it is given.
+	 * @throws E if the source failed.
+	 */
+	public <E extends Exception> void load(Source<E> source) throws E {
+		lock.writeLock().lock();
+		try {
+			records.clear();
+			sorted = new int[KEYS.length][16];
+			size = 0;
+			source.forEach(customer -> {
+				if (records.put(customer.getCustomerId(), pack(customer)) == null) {
+					ensureCapacity(size + 1);
+					for (int k = 0; k < KEYS.length; k++) {
+						sorted[k][size] = customer.getCustomerId();
+					}
+					size++;
+				}
+			});
+			IntStream.range(0, KEYS.length).parallel().forEach(k -> sortKey(KEYS[k]));
+		} catch (Exception e) {
+			records.clear();
+			sorted = new int[KEYS.length][16];
+			size = 0;
+			throw e;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Add a customer, or replace the indexed fields of a saved customer.
+	 * @param customer (Customer) the customer saved.
+	 */
+	public void put(Customer customer) {
+		byte[] record = pack(customer);
+		byte[] buffer = new byte[2 * (MAX_FIELD_BYTES + 1)];
+		lock.writeLock().lock();
+		try {
+			int id = customer.getCustomerId();
+			byte[] previous = records.get(id);
+			if (previous != null) {
+				for (Key key : KEYS) {
+					removeAt(key, find(key, id, previous, buffer));
+				}
+				size--;
+			}
+			ensureCapacity(size + 1);
+			records.put(id, record);
+			for (Key key : KEYS) {
+				insertAt(key, -find(key, id, record, buffer) - 1, id);
+			}
+			size++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove a customer.
+	 * @param customerId (int) ID of the customer removed.
+	 */
+	public void remove(int customerId) {
+		byte[] buffer = new byte[2 * (MAX_FIELD_BYTES + 1)];
+		lock.writeLock().lock();
+		try {
+			byte[] previous = records.get(customerId);
+			if (previous == null) {
+				return;
+			}
+			for (Key key : KEYS) {
+				removeAt(key, find(key, customerId, previous, buffer));
+			}
+			size--;
+			records.remove(customerId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Pass the ID of every indexed customer to an action, in last name order.
+	 * @param action (IntConsumer) receives each customer ID.
+	 */
+	public void forEachId(IntConsumer action) {
+		lock.readLock().lock();
+		try {
+			int[] ids = sorted[0];
+			for (int i = 0; i < size; i++) {
+				action.accept(ids[i]);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return (int) number of customers indexed.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Search the customers by last name, first name, phone number and postal
+	 * code. Exact matches come first, then prefix matches, then names one edit
+	 * away; each group is sorted by last name, first name and customer ID. At
+	 * most MAX_RESULTS customers are returned; when more match, each field
+	 * contributes its first matches in its own order.
+	 *
+	 * Names one edit away are only looked for among the first FUZZY_SCAN_LIMIT
+	 * names sharing the first half of the text, and among the first
+	 * FUZZY_SCAN_LIMIT sharing its last half. When more names share a half, as
+	 * with a short text over millions of customers, some names one edit away
+	 * are not returned; exact and prefix matches are never cut this way.
+	 * @param text (String) search text.
+	 * @return (ArrayList<Customer>) the matching customers, best first.
+	 */
+	public ArrayList<Customer> search(String text) {
+		HashMap<Integer, Integer> ranks = new HashMap<Integer, Integer>();
+		byte[] buffer = new byte[MAX_FIELD_BYTES + 1];
+		String trimmed = text == null ? "" : text.trim();
+		lock.readLock().lock();
+		try {
+			if (!trimmed.isEmpty()) {
+				for (Key key : KEYS) {
+					byte[] query = normalize(trimmed, key);
+					if (query.length == 0 || (key.reversed && query.length < MIN_FUZZY_LENGTH)) {
+						continue;
+					}
+					if (!key.reversed) {
+						collectPrefix(key, query, ranks, buffer);
+					}
+					if (key.norm == TEXT && query.length >= MIN_FUZZY_LENGTH) {
+						// forward keys cover edits in the second half, reversed keys edits in the first
+						int half = key.reversed ? query.length - query.length / 2 : query.length / 2;
+						collectFuzzy(key, query, half, ranks, buffer);
+					}
+				}
+			}
+			ArrayList<Customer> res = new ArrayList<Customer>(ranks.size());
+			for (Map.Entry<Integer, Integer> hit : ranks.entrySet()) {
+				res.add(unpack(hit.getKey(), records.get(hit.getKey())));
+			}
+			res.sort((a, b) -> {
+				int cmp = Integer.compare(ranks.get(a.getCustomerId()), ranks.get(b.getCustomerId()));
+				if (cmp == 0) {
+					cmp = String.CASE_INSENSITIVE_ORDER.compare(String.valueOf(a.getLastName()),
+							String.valueOf(b.getLastName()));
+				}
+				if (cmp == 0) {
+					cmp = String.CASE_INSENSITIVE_ORDER.compare(String.valueOf(a.getFirstName()),
+							String.valueOf(b.getFirstName()));
+				}
+				return cmp != 0 ? cmp : Integer.compare(a.getCustomerId(), b.getCustomerId());
+			});
+			return res.size() > MAX_RESULTS ? new ArrayList<Customer>(res.subList(0, MAX_RESULTS)) : res;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Record the customers whose key starts with the query.
+	 * @param key    (Key) key being searched.
+	 * @param query  (byte[]) normalized search text.
+	 * @param ranks  (HashMap<Integer, Integer>) best rank found per customer ID.
+	 * @param buffer (byte[]) scratch space for normalized keys.
+	 */
+	private void collectPrefix(Key key, byte[] query, HashMap<Integer, Integer> ranks, byte[] buffer) {
+		int[] ids = sorted[key.ordinal()];
+		int found = 0;
+		for (int i = lowerBound(key, query, query.length, buffer); i < size && found < MAX_RESULTS; i++) {
+			int len = normalized(records.get(ids[i]), key, buffer, 0);
+			if (!startsWith(buffer, len, query, query.length)) {
+				break;
+			}
+			record(ranks, ids[i], len == query.length ? EXACT : PREFIX);
+			found++;
+		}
+	}
+
+	/**
+	 * Record the customers whose key is one edit away from the query, walking
+	 * the range of keys starting with the first part of the query.
+	 * @param key    (Key) key being searched.
+	 * @param query  (byte[]) normalized search text, reversed for reversed keys.
+	 * @param shared (int) length of the query prefix every match shares.
+	 * @param ranks  (HashMap<Integer, Integer>) best rank found per customer ID.
+	 * @param buffer (byte[]) scratch space for normalized keys.
+	 */
+	private void collectFuzzy(Key key, byte[] query, int shared, HashMap<Integer, Integer> ranks, byte[] buffer) {
+		int[] ids = sorted[key.ordinal()];
+		int found = 0;
+		int start = lowerBound(key, query, shared, buffer);
+		int end = Math.min(size, start + FUZZY_SCAN_LIMIT);
+		for (int i = start; i < end && found < MAX_RESULTS; i++) {
+			int len = normalized(records.get(ids[i]), key, buffer, 0);
+			if (!startsWith(buffer, len, query, shared)) {
+				break;
+			}
+			if (withinOneEdit(buffer, len, query)) {
+				record(ranks, ids[i], len == query.length && startsWith(buffer, len, query, len) ? EXACT : FUZZY);
+				found++;
+			}
+		}
+	}
+
+	/**
+	 * @param ranks      (HashMap<Integer, Integer>) best rank found per customer ID.
+	 * @param customerId (int) customer matched.
+	 * @param rank       (int) rank of this match.
+	 */
+	private static void record(HashMap<Integer, Integer> ranks, int customerId, int rank) {
+		ranks.merge(customerId, rank, Math::min);
+	}
+
+	/**
+	 * @param key    (Key) key being searched.
+	 * @param query  (byte[]) normalized search text.
+	 * @param length (int) number of query bytes compared.
+	 * @param buffer (byte[]) scratch space for normalized keys.
+	 * @return (int) position of the first entry whose key is not below the query.
+	 */
+	private int lowerBound(Key key, byte[] query, int length, byte[] buffer) {
+		int[] ids = sorted[key.ordinal()];
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			int len = normalized(records.get(ids[mid]), key, buffer, 0);
+			if (compare(buffer, 0, len, query, 0, length) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Binary search for a customer's entry in a key array.
+	 * @param key    (Key) key array searched.
+	 * @param id     (int) customer ID.
+	 * @param record (byte[]) packed record the entry was sorted by.
+	 * @param buffer (byte[]) scratch space for two normalized keys.
+	 * @return (int) position of the entry, or -(insertion point) - 1 if absent.
+	 */
+	private int find(Key key, int id, byte[] record, byte[] buffer) {
+		int[] ids = sorted[key.ordinal()];
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compareEntries(key, ids[mid], records.get(ids[mid]), id, record, buffer);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * @param key (Key) key array being changed.
+	 * @param at  (int) position of the entry removed, ignored if negative.
+	 */
+	private void removeAt(Key key, int at) {
+		if (at >= 0) {
+			int[] ids = sorted[key.ordinal()];
+			System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+		}
+	}
+
+	/**
+	 * Insert an entry into a key array that has room for one more entry.
+	 * @param key (Key) key array being changed.
+	 * @param at  (int) position of the new entry.
+	 * @param id  (int) customer ID.
+	 */
+	private void insertAt(Key key, int at, int id) {
+		int[] ids = sorted[key.ordinal()];
+		System.arraycopy(ids, at, ids, at + 1, size - at);
+		ids[at] = id;
+	}
+
+	/**
+	 * @param capacity (int) number of entries every key array must hold.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > sorted[0].length) {
+			int grown = Math.max(capacity, sorted[0].length + (sorted[0].length >> 1));
+			for (int k = 0; k < KEYS.length; k++) {
+				sorted[k] = Arrays.copyOf(sorted[k], grown);
+			}
+		}
+	}
+
+	/**
+	 * Sort the entries of a key array with a merge sort, as int arrays can not be
+	 * sorted with a comparator. The first seven key bytes and the key length are
+	 * packed into a long per entry up front, so most comparisons compare two
+	 * longs instead of decoding two records.
+	 * @param key (Key) key array being sorted.
+	 */
+	private void sortKey(Key key) {
+		int[] ids = sorted[key.ordinal()];
+		byte[] buffer = new byte[2 * (MAX_FIELD_BYTES + 1)];
+		long[] prefixes = new long[size];
+		for (int i = 0; i < size; i++) {
+			prefixes[i] = prefixOf(records.get(ids[i]), key, buffer);
+		}
+		int[] fromIds = ids;
+		long[] fromPrefixes = prefixes;
+		int[] toIds = new int[size];
+		long[] toPrefixes = new long[size];
+		for (int width = 1; width < size; width <<= 1) {
+			for (int left = 0; left < size; left += 2 * width) {
+				int mid = Math.min(left + width, size);
+				int right = Math.min(left + 2 * width, size);
+				int i = left;
+				int j = mid;
+				for (int out = left; out < right; out++) {
+					if (j >= right || (i < mid && comparePrefixed(key, fromPrefixes[i], fromIds[i], fromPrefixes[j],
+							fromIds[j], buffer) <= 0)) {
+						toPrefixes[out] = fromPrefixes[i];
+						toIds[out] = fromIds[i++];
+					} else {
+						toPrefixes[out] = fromPrefixes[j];
+						toIds[out] = fromIds[j++];
+					}
+				}
+			}
+			int[] swapIds = fromIds;
+			fromIds = toIds;
+			toIds = swapIds;
+			long[] swapPrefixes = fromPrefixes;
+			fromPrefixes = toPrefixes;
+			toPrefixes = swapPrefixes;
+		}
+		if (fromIds != ids) {
+			System.arraycopy(fromIds, 0, ids, 0, size);
+		}
+	}
+
+	/**
+	 * @param record (byte[]) packed record.
+	 * @param key    (Key) key being read.
+	 * @param buffer (byte[]) scratch space for the normalized key.
+	 * @return (long) the first seven bytes of the normalized key, zero padded,
+	 *         followed by a byte holding the key length.
+	 */
+	private static long prefixOf(byte[] record, Key key, byte[] buffer) {
+		int len = normalized(record, key, buffer, 0);
+		long prefix = 0;
+		for (int i = 0; i < 7; i++) {
+			prefix = (prefix << 8) | (i < len ? buffer[i] & 0xFF : 0);
+		}
+		return (prefix << 8) | Math.min(len, 0xFF);
+	}
+
+	/**
+	 * Order two entries by their packed prefixes, decoding the records only when
+	 * both keys are longer than the prefix and share its seven bytes.
+	 * @return (int) negative, zero or positive as the first entry sorts before,
+	 *         with or after the second.
+	 */
+	private int comparePrefixed(Key key, long prefixA, int idA, long prefixB, int idB, byte[] buffer) {
+		if ((prefixA >>> 8) == (prefixB >>> 8) && (prefixA & 0xFF) > 7 && (prefixB & 0xFF) > 7) {
+			return compareEntries(key, idA, records.get(idA), idB, records.get(idB), buffer);
+		}
+		int cmp = Long.compareUnsigned(prefixA, prefixB);
+		return cmp != 0 ? cmp : Integer.compare(idA, idB);
+	}
+
+	/**
+	 * Order two entries by normalized key, then by customer ID.
+	 * @return (int) negative, zero or positive as the first entry sorts before,
+	 *         with or after the second.
+	 */
+	private static int compareEntries(Key key, int idA, byte[] recordA, int idB, byte[] recordB, byte[] buffer) {
+		int offset = MAX_FIELD_BYTES + 1;
+		int lenA = normalized(recordA, key, buffer, 0);
+		int lenB = normalized(recordB, key, buffer, offset);
+		int cmp = compare(buffer, 0, lenA, buffer, offset, lenB);
+		return cmp != 0 ? cmp : Integer.compare(idA, idB);
+	}
+
+	/**
+	 * Unsigned lexicographic comparison of two byte ranges.
+	 * @return (int) negative, zero or positive.
+	 */
+	private static int compare(byte[] a, int fromA, int lenA, byte[] b, int fromB, int lenB) {
+		int n = Math.min(lenA, lenB);
+		for (int i = 0; i < n; i++) {
+			int cmp = (a[fromA + i] & 0xFF) - (b[fromB + i] & 0xFF);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return lenA - lenB;
+	}
+
+	/**
+	 * @return (boolean) true if the first length bytes of the query start the key.
+	 */
+	private static boolean startsWith(byte[] key, int keyLen, byte[] query, int length) {
+		return keyLen >= length && compare(key, 0, length, query, 0, length) == 0;
+	}
+
+	/**
+	 * @param key    (byte[]) normalized key.
+	 * @param keyLen (int) length of the key.
+	 * @param query  (byte[]) normalized search text.
+	 * @return (boolean) true if at most one insert, delete or substitution turns
+	 *         the key into the query.
+	 */
+	private static boolean withinOneEdit(byte[] key, int keyLen, byte[] query) {
+		int diff = keyLen - query.length;
+		if (diff < -1 || diff > 1) {
+			return false;
+		}
+		int i = 0;
+		int j = 0;
+		boolean edited = false;
+		while (i < keyLen && j < query.length) {
+			if (key[i] == query[j]) {
+				i++;
+				j++;
+			} else if (edited) {
+				return false;
+			} else {
+				edited = true;
+				if (diff > 0) {
+					i++;
+				} else if (diff < 0) {
+					j++;
+				} else {
+					i++;
+					j++;
+				}
+			}
+		}
+		return !edited || (i == keyLen && j == query.length);
+	}
+
+	/**
+	 * Write the normalized key of a record.
+	 * @param record (byte[]) packed record.
+	 * @param key    (Key) key being read.
+	 * @param out    (byte[]) receives the key.
+	 * @param from   (int) position in out of the first key byte.
+	 * @return (int) length of the key.
+	 */
+	private static int normalized(byte[] record, Key key, byte[] out, int from) {
+		int pos = fieldStart(record, key.field);
+		int len = record[pos] & 0xFF;
+		if (len == NULL_FIELD) {
+			return 0;
+		}
+		pos++;
+		int n = 0;
+		for (int i = 0; i < len; i++) {
+			int b = fold(record[key.reversed ? pos + len - 1 - i : pos + i] & 0xFF, key.norm);
+			if (b >= 0) {
+				out[from + n++] = (byte) b;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @param text (String) search text.
+	 * @param key  (Key) key the text is compared with.
+	 * @return (byte[]) the text normalized like the key.
+	 */
+	private static byte[] normalize(String text, Key key) {
+		byte[] utf8 = truncate(text.getBytes(StandardCharsets.UTF_8));
+		byte[] res = new byte[utf8.length];
+		int n = 0;
+		for (int i = 0; i < utf8.length; i++) {
+			int b = fold(utf8[key.reversed ? utf8.length - 1 - i : i] & 0xFF, key.norm);
+			if (b >= 0) {
+				res[n++] = (byte) b;
+			}
+		}
+		return Arrays.copyOf(res, n);
+	}
+
+	/**
+	 * @param b    (int) unsigned byte.
+	 * @param norm (int) normalization applied.
+	 * @return (int) the byte folded to lower case, -1 if the normalization drops it.
+	 */
+	private static int fold(int b, int norm) {
+		if (b >= 'A' && b <= 'Z') {
+			b += 'a' - 'A';
+		}
+		switch (norm) {
+		case DIGITS:
+			return b >= '0' && b <= '9' ? b : -1;
+		case ALNUM:
+			return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || b >= 0x80 ? b : -1;
+		default:
+			return b;
+		}
+	}
+
+	/**
+	 * @param record (byte[]) packed record.
+	 * @param field  (int) field being located.
+	 * @return (int) position of the field's length byte.
+	 */
+	private static int fieldStart(byte[] record, int field) {
+		int pos = 0;
+		for (int f = 0; f < field; f++) {
+			int len = record[pos] & 0xFF;
+			pos += 1 + (len == NULL_FIELD ? 0 : len);
+		}
+		return pos;
+	}
+
+	/**
+	 * @param customer (Customer) customer being stored.
+	 * @return (byte[]) packed record of the customer.
+	 */
+	private static byte[] pack(Customer customer) {
+		byte[][] fields = new byte[FIELDS][];
+		fields[FIRST] = bytesOf(customer.getFirstName());
+		fields[LAST] = bytesOf(customer.getLastName());
+		fields[ADDRESS] = bytesOf(customer.getAddress());
+		fields[POSTAL] = bytesOf(customer.getPostalCode());
+		fields[PHONE] = bytesOf(customer.getPhoneNum());
+		int length = FIELDS + 1;
+		for (byte[] field : fields) {
+			length += field == null ? 0 : field.length;
+		}
+		byte[] record = new byte[length];
+		int pos = 0;
+		for (byte[] field : fields) {
+			if (field == null) {
+				record[pos++] = (byte) NULL_FIELD;
+			} else {
+				record[pos++] = (byte) field.length;
+				System.arraycopy(field, 0, record, pos, field.length);
+				pos += field.length;
+			}
+		}
+		record[pos] = (byte) customer.getCustomerType();
+		return record;
+	}
+
+	/**
+	 * @param customerId (int) ID of the customer.
+	 * @param record     (byte[]) packed record of the customer.
+	 * @return (Customer) the customer rebuilt from the record.
+	 */
+	private static Customer unpack(int customerId, byte[] record) {
+		String[] fields = new String[FIELDS];
+		int pos = 0;
+		for (int f = 0; f < FIELDS; f++) {
+			int len = record[pos++] & 0xFF;
+			if (len != NULL_FIELD) {
+				fields[f] = new String(record, pos, len, StandardCharsets.UTF_8);
+				pos += len;
+			}
+		}
+		return new Customer(customerId, fields[FIRST], fields[LAST], fields[ADDRESS], fields[POSTAL], fields[PHONE],
+				(char) (record[pos] & 0xFF));
+	}
+
+	/**
+	 * @param value (String) field value.
+	 * @return (byte[]) UTF-8 bytes of the value cut to MAX_FIELD_BYTES, null for null.
+	 */
+	private static byte[] bytesOf(String value) {
+		return value == null ? null : truncate(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param utf8 (byte[]) UTF-8 bytes.
+	 * @return (byte[]) the bytes cut to at most MAX_FIELD_BYTES, before the
+	 *         character that does not fit whole.
+	 */
+	private static byte[] truncate(byte[] utf8) {
+		if (utf8.length <= MAX_FIELD_BYTES) {
+			return utf8;
+		}
+		int end = MAX_FIELD_BYTES;
+		while (end > 0 && (utf8[end] & 0xC0) == 0x80) {
+			end--; // the first byte cut off continues a character, cut that character too
+		}
+		return Arrays.copyOf(utf8, end);
+	}
+}
@@ -0,0 +1,225 @@
+package server.serverModel;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trigram inverted index over item descriptions. Every run of three characters
+ * of a lower cased description maps to a posting list of the IDs of the items
+ * containing it, kept as a sorted int array. A search intersects the posting
+ * lists of the search text's trigrams, starting from the shortest, so its cost
+ * depends on how rare the text is rather than on the number of items.
+ *
+ * Trigrams are folded into an int key, so two trigrams may share a posting
+ * list; candidates must therefore be checked against the description by the
+ * caller. Text shorter than a trigram can not use the index.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class DescriptionIndex {
+
+	static final int GRAM = 3; // characters per indexed run
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final IntItemMap<Postings> postings = new IntItemMap<Postings>();
+
+	/**
+	 * Sorted set of item IDs sharing a trigram.
+	 */
+	private static final class Postings {
+		private int[] ids = new int[4];
+		private int size;
+
+		/**
+		 * @param id (int) item ID being added, appended directly when it is the largest.
+		 */
+		void add(int id) {
+			int at = size;
+			if (size > 0 && ids[size - 1] >= id) {
+				at = Arrays.binarySearch(ids, 0, size, id);
+				if (at >= 0) {
+					return;
+				}
+				at = -at - 1;
+			}
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+			}
+			System.arraycopy(ids, at, ids, at + 1, size - at);
+			ids[at] = id;
+			size++;
+		}
+
+		/**
+		 * @param id (int) item ID being removed.
+		 */
+		void remove(int id) {
+			int at = Arrays.binarySearch(ids, 0, size, id);
+			if (at >= 0) {
+				System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+				size--;
+			}
+		}
+
+		/**
+		 * Keep the IDs of a sorted array that are also in this list. Each ID is
+		 * found by galloping forward from the previous one, so a short array costs
+		 * a few probes per ID however long this list is.
+		 * @param res   (int[]) sorted IDs, compacted in place.
+		 * @param count (int) number of IDs used in res.
+		 * @return (int) number of IDs kept.
+		 */
+		int retainAll(int[] res, int count) {
+			int kept = 0;
+			int from = 0;
+			for (int i = 0; i < count && from < size; i++) {
+				int id = res[i];
+				int step = 1;
+				int to = from;
+				while (to < size && ids[to] < id) {
+					from = to + 1;
+					to += step;
+					step <<= 1;
+				}
+				int at = Arrays.binarySearch(ids, from, Math.min(to + 1, size), id);
+				if (at >= 0) {
+					res[kept++] = id;
+					from = at + 1;
+				} else {
+					from = -at - 1;
+				}
+			}
+			return kept;
+		}
+	}
+
+	/**
+	 * Index the description of an item.
+	 * @param itemId (int) ID of the item.
+	 * @param desc   (String) description of the item, may be null.
+	 */
+	public void add(int itemId, String desc) {
+		int[] grams = gramsOf(desc);
+		lock.writeLock().lock();
+		try {
+			for (int gram : grams) {
+				Postings list = postings.get(gram);
+				if (list == null) {
+					list = new Postings();
+					postings.put(gram, list);
+				}
+				list.add(itemId);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove the description of an item from the index.
+	 * @param itemId (int) ID of the item.
+	 * @param desc   (String) description the item was indexed with, may be null.
+	 */
+	public void remove(int itemId, String desc) {
+		int[] grams = gramsOf(desc);
+		lock.writeLock().lock();
+		try {
+			for (int gram : grams) {
+				Postings list = postings.get(gram);
+				if (list != null) {
+					list.remove(itemId);
+					if (list.size == 0) {
+						postings.remove(gram);
+					}
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove every description from the index.
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			postings.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Find the items whose description may contain a text.
+	 * @param text (String) text being searched, case is ignored.
+	 * @return (int[]) sorted IDs of the candidate items, a superset of the items
+	 *         containing the text; null if the text is too short for the index.
+	 */
+	public int[] candidates(String text) {
+		if (text == null || text.length() < GRAM) {
+			return null;
+		}
+		int[] grams = gramsOf(text);
+		if (grams.length == 0) {
+			return null;
+		}
+		lock.readLock().lock();
+		try {
+			Postings[] lists = new Postings[grams.length];
+			for (int g = 0; g < grams.length; g++) {
+				lists[g] = postings.get(grams[g]);
+				if (lists[g] == null) {
+					return new int[0];
+				}
+			}
+			Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+			int[] res = Arrays.copyOf(lists[0].ids, lists[0].size);
+			int count = res.length;
+			// intersect with longer and longer lists while the result keeps shrinking
+			for (int g = 1; g < lists.length && count > 0; g++) {
+				count = lists[g].retainAll(res, count);
+			}
+			return Arrays.copyOf(res, count);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param desc (String) text being indexed or searched.
+	 * @return (int[]) distinct trigram keys of the lower cased text.
+	 */
+	private static int[] gramsOf(String desc) {
+		if (desc == null || desc.length() < GRAM) {
+			return new int[0];
+		}
+		String text = desc.toLowerCase();
+		int[] grams = new int[text.length() - GRAM + 1];
+		for (int i = 0; i < grams.length; i++) {
+			grams[i] = key(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2));
+		}
+		Arrays.sort(grams);
+		int distinct = 0;
+		for (int i = 0; i < grams.length; i++) {
+			if (distinct == 0 || grams[distinct - 1] != grams[i]) {
+				grams[distinct++] = grams[i];
+			}
+		}
+		return Arrays.copyOf(grams, distinct);
+	}
+
+	/**
+	 * Fold three characters into an int. Characters beyond the first 1024 code
+	 * points share keys with others, which only widens the candidates.
+	 * @param a (char) first character.
+	 * @param b (char) second character.
+	 * @param c (char) third character.
+	 * @return (int) trigram key.
+	 */
+	private static int key(char a, char b, char c) {
+		return ((a & 0x3FF) << 20) | ((b & 0x3FF) << 10) | (c & 0x3FF);
+	}
+}
@@ -0,0 +1,150 @@
+package server.serverModel;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sharedModel.Item_Elec;
+
+/**
+ * Item store keeping one entry object per item in an IntItemMap by item ID,
+ * giving O(1) lookup without boxing while keeping load order for display.
+ * Lookups do not lock; each stock level is an atomic counter.
+ *
+ * Entries loaded from a MappedCatalog hold the item's position in the mapped
+ * file instead of the item, which is only read from the mapping when it is
+ * asked for.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+final class HeapItemStore implements ItemStore {
+
+	private final IntItemMap<StockEntry> items = new IntItemMap<StockEntry>();
+
+	/**
+	 * Stored item description with its live stock level. The item itself is
+	 * never modified once stored; its quantity field is ignored. An entry read
+	 * from a catalog holds no item, only the item's row in the catalog.
+	 */
+	private static final class StockEntry {
+		private final Item_Elec item; // null for a catalog row
+		private final MappedCatalog catalog;
+		private final int row;
+		private final AtomicInteger qty;
+
+		StockEntry(Item_Elec item) {
+			this.item = item;
+			this.catalog = null;
+			this.row = -1;
+			this.qty = new AtomicInteger(item.getQty());
+		}
+
+		StockEntry(MappedCatalog catalog, int row, int qty) {
+			this.item = null;
+			this.catalog = catalog;
+			this.row = row;
+			this.qty = new AtomicInteger(qty);
+		}
+
+		int id() {
+			return item == null ? catalog.itemId(row) : item.getItemID();
+		}
+
+		String desc() {
+			return item == null ? catalog.itemDesc(row) : item.getItemDesc();
+		}
+
+		/**
+		 * @return (Item_Elec) copy of the item holding the current stock level.
+		 */
+		Item_Elec snapshot() {
+			if (item == null) {
+				return catalog.item(row, qty.get());
+			}
+			return new Item_Elec(item.getItemID(), item.getItemType(), item.getItemDesc(), qty.get(),
+					item.getPriceCents(), item.getSupplierID(), item.getPowerType(), item.getVoltage(), item.getPhase());
+		}
+	}
+
+	@Override
+	public int size() {
+		return items.size();
+	}
+
+	@Override
+	public Item_Elec get(int itemId) {
+		StockEntry entry = items.get(itemId);
+		return entry == null ? null : entry.snapshot();
+	}
+
+	@Override
+	public String desc(int itemId) {
+		StockEntry entry = items.get(itemId);
+		return entry == null ? null : entry.desc();
+	}
+
+	@Override
+	public boolean contains(int itemId) {
+		return items.containsKey(itemId);
+	}
+
+	@Override
+	public void put(Item_Elec item) {
+		items.put(item.getItemID(), new StockEntry(item));
+	}
+
+	@Override
+	public boolean remove(int itemId) {
+		return items.remove(itemId) != null;
+	}
+
+	@Override
+	public void clear() {
+		items.clear();
+	}
+
+	@Override
+	public void load(MappedCatalog catalog, int[] stock) {
+		items.clear();
+		for (int row = 0; row < catalog.itemCount(); row++) {
+			items.put(catalog.itemId(row), new StockEntry(catalog, row, stock[row]));
+		}
+	}
+
+	@Override
+	public int addStock(int itemId, int change, int floor) {
+		StockEntry entry = items.get(itemId);
+		if (entry == null) {
+			return -1;
+		}
+		int current;
+		do {
+			current = entry.qty.get();
+			if (current + change < floor) {
+				return -1;
+			}
+		} while (!entry.qty.compareAndSet(current, current + change));
+		return current + change;
+	}
+
+	@Override
+	public int[] ids() {
+		ArrayList<StockEntry> entries = items.values();
+		int[] res = new int[entries.size()];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = entries.get(i).id();
+		}
+		return res;
+	}
+
+	@Override
+	public int scan(int from, int max, ArrayList<? super Item_Elec> into) {
+		ArrayList<StockEntry> entries = new ArrayList<StockEntry>(Math.min(max, 1024));
+		int next = items.scan(from, max, null, entries);
+		for (StockEntry entry : entries) {
+			into.add(entry.snapshot());
+		}
+		return next;
+	}
+}
@@ -0,0 +1,377 @@
+package server.serverModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/**
+ * Map from int keys to values that keeps insertion order and never boxes its
+ * keys. Entries are appended to parallel key/value arrays in insertion order;
+ * an open addressing table with linear probing holds the position of each
+ * entry in those arrays, so lookup, add and remove are O(1).
+ *
+ * Lookups run under an optimistic StampedLock read and only fall back to a
+ * read lock if a writer changed the map meanwhile; writers take the write
+ * lock. Removed entries leave a hole in the ordered arrays until enough holes
+ * accumulate to compact them.
+ *
+ * @param <V> type of the values.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class IntItemMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+	private static final int EMPTY = 0; // free index slot, positions are stored plus one
+
+	private final StampedLock lock = new StampedLock();
+	private int[] keys; // insertion ordered
+	private Object[] values; // insertion ordered, null where an entry was removed
+	private int[] index; // open addressing table of entry positions + 1
+	private int used; // positions taken in keys/values, including holes
+	private int size; // live entries
+
+	/**
+	 * Constructor. Create an empty map.
+	 */
+	public IntItemMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Constructor. Create an empty map sized for an expected number of entries.
+	 * @param expected (int) number of entries the map should hold without growing.
+	 */
+	public IntItemMap(int expected) {
+		int capacity = Math.max(MIN_CAPACITY, expected);
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+		this.index = new int[tableSizeFor(capacity)];
+	}
+
+	/**
+	 * @param key (int) key being searched.
+	 * @return (V) value stored for the key, null if absent.
+	 */
+	public V get(int key) {
+		long stamp = lock.tryOptimisticRead();
+		V value = find(key);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				value = find(key);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * @param key (int) key being searched.
+	 * @return (boolean) true if the key is stored.
+	 */
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Store a value, replacing the value of an existing key in place so the key
+	 * keeps its position in insertion order.
+	 * @param key   (int) key of the entry.
+	 * @param value (V) value of the entry, not null.
+	 * @return (V) the value replaced, null if the key is new.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new NullPointerException("IntItemMap does not store null values");
+		}
+		long stamp = lock.writeLock();
+		try {
+			int slot = slotOf(key);
+			if (slot >= 0) {
+				int pos = index[slot] - 1;
+				V previous = (V) values[pos];
+				values[pos] = value;
+				return previous;
+			}
+			if (used == keys.length) {
+				growEntries();
+			}
+			if ((used + 1) * 4L > index.length * 3L) {
+				rehash(tableSizeFor(used + 1));
+			}
+			keys[used] = key;
+			values[used] = value;
+			used++;
+			size++;
+			insertIndex(key, used);
+			return null;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param key (int) key of the entry being removed.
+	 * @return (V) the value removed, null if the key was absent.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		long stamp = lock.writeLock();
+		try {
+			int slot = slotOf(key);
+			if (slot < 0) {
+				return null;
+			}
+			int pos = index[slot] - 1;
+			V previous = (V) values[pos];
+			values[pos] = null;
+			size--;
+			deleteSlot(slot);
+			if (used > MIN_CAPACITY && size < used / 2) {
+				compact();
+			}
+			return previous;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Remove every entry.
+	 */
+	public void clear() {
+		long stamp = lock.writeLock();
+		try {
+			keys = new int[MIN_CAPACITY];
+			values = new Object[MIN_CAPACITY];
+			index = new int[tableSizeFor(MIN_CAPACITY)];
+			used = 0;
+			size = 0;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @return (int) number of entries.
+	 */
+	public int size() {
+		long stamp = lock.tryOptimisticRead();
+		int res = size;
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				res = size;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @return (ArrayList<V>) the values in insertion order.
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayList<V> values() {
+		long stamp = lock.readLock();
+		try {
+			ArrayList<V> res = new ArrayList<V>(size);
+			for (int pos = 0; pos < used; pos++) {
+				if (values[pos] != null) {
+					res.add((V) values[pos]);
+				}
+			}
+			return res;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Collect values in insertion order starting at a cursor position, for
+	 * reading the map in chunks. Positions move when removals compact the map,
+	 * so a scan running across a compaction may skip or repeat entries.
+	 * @param from   (int) cursor returned by the previous scan, 0 to start.
+	 * @param max    (int) maximum number of values collected.
+	 * @param filter (Predicate) values to collect, null for all.
+	 * @param into   (ArrayList) receives the values.
+	 * @return (int) cursor of the next scan, -1 once the end was reached.
+	 */
+	@SuppressWarnings("unchecked")
+	public int scan(int from, int max, Predicate<? super V> filter, ArrayList<? super V> into) {
+		long stamp = lock.readLock();
+		try {
+			int pos = from;
+			int collected = 0;
+			while (pos < used && collected < max) {
+				V value = (V) values[pos++];
+				if (value != null && (filter == null || filter.test(value))) {
+					into.add(value);
+					collected++;
+				}
+			}
+			return pos < used ? pos : -1;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Probe for a key. May run without a lock, in which case the fields can be
+	 * changed by a writer at any time; bounds are checked so a torn read only
+	 * gives a wrong answer, which the caller discards after validation.
+	 * @param key (int) key being searched.
+	 * @return (V) value stored for the key, null if absent.
+	 */
+	@SuppressWarnings("unchecked")
+	private V find(int key) {
+		int[] index = this.index;
+		int[] keys = this.keys;
+		Object[] values = this.values;
+		int mask = index.length - 1;
+		int slot = hash(key) & mask;
+		for (int probes = 0; probes < index.length; probes++) {
+			int entry = index[slot];
+			if (entry == EMPTY) {
+				return null;
+			}
+			int pos = entry - 1;
+			if (pos < keys.length && pos < values.length && keys[pos] == key) {
+				return (V) values[pos];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * @param key (int) key being searched, caller holds the write lock.
+	 * @return (int) index slot holding the key, -1 if absent.
+	 */
+	private int slotOf(int key) {
+		int mask = index.length - 1;
+		int slot = hash(key) & mask;
+		while (index[slot] != EMPTY) {
+			if (keys[index[slot] - 1] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Place an entry position in the first free slot of its probe sequence.
+	 * @param key   (int) key of the entry.
+	 * @param entry (int) position of the entry plus one.
+	 */
+	private void insertIndex(int key, int entry) {
+		int mask = index.length - 1;
+		int slot = hash(key) & mask;
+		while (index[slot] != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		index[slot] = entry;
+	}
+
+	/**
+	 * Free an index slot, shifting later entries of the probe run back so no
+	 * tombstones are needed.
+	 * @param slot (int) slot being freed.
+	 */
+	private void deleteSlot(int slot) {
+		int mask = index.length - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (index[next] != EMPTY) {
+			int home = hash(keys[index[next] - 1]) & mask;
+			// move the entry back if its home slot is not between the hole and it
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				index[hole] = index[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		index[hole] = EMPTY;
+	}
+
+	/**
+	 * Double the ordered entry arrays. The old arrays are left untouched for
+	 * readers that still hold them.
+	 */
+	private void growEntries() {
+		int capacity = keys.length * 2;
+		keys = Arrays.copyOf(keys, capacity);
+		values = Arrays.copyOf(values, capacity);
+	}
+
+	/**
+	 * Rebuild the index table at a new size.
+	 * @param tableSize (int) new table size, a power of two.
+	 */
+	private void rehash(int tableSize) {
+		int[] rebuilt = new int[tableSize];
+		int mask = tableSize - 1;
+		for (int pos = 0; pos < used; pos++) {
+			if (values[pos] != null) {
+				int slot = hash(keys[pos]) & mask;
+				while (rebuilt[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				rebuilt[slot] = pos + 1;
+			}
+		}
+		index = rebuilt;
+	}
+
+	/**
+	 * Close the holes left by removed entries and rebuild the index.
+	 */
+	private void compact() {
+		int capacity = Math.max(MIN_CAPACITY, size * 2);
+		int[] newKeys = new int[capacity];
+		Object[] newValues = new Object[capacity];
+		int live = 0;
+		for (int pos = 0; pos < used; pos++) {
+			if (values[pos] != null) {
+				newKeys[live] = keys[pos];
+				newValues[live] = values[pos];
+				live++;
+			}
+		}
+		keys = newKeys;
+		values = newValues;
+		used = live;
+		rehash(tableSizeFor(capacity));
+	}
+
+	/**
+	 * @param entries (int) number of entries the table must hold.
+	 * @return (int) power of two table size keeping the load below 3/4.
+	 */
+	private static int tableSizeFor(int entries) {
+		long needed = entries * 4L / 3 + 1;
+		int size = MIN_CAPACITY;
+		while (size < needed) {
+			size <<= 1;
+		}
+		return size;
+	}
+
+	/**
+	 * Spread the key bits so sequential item IDs do not form long probe runs.
+	 * @param key (int) key being hashed.
+	 * @return (int) mixed hash.
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
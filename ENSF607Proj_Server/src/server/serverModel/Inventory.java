@@ -5,6 +5,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 import sharedModel.*;
 
@@ -14,32 +16,94 @@ import sharedModel.*;
  * order and order lines. - printing of inventory items. - decrement of items
  * being purchased.
  * 
+ * One inventory is loaded when the server starts and is shared by every client
+ * session. Items are kept by item ID in an ItemStore, in load order for
+ * display: a HeapItemStore by default, or an OffHeapItemStore for catalogs too
+ * large for the Java heap. Lookups do not lock; each stock level is changed by
+ * compare-and-set, so concurrent purchases of the same item are settled
+ * without locking and stock can never go below zero. Callers receive copies
+ * of the stored items, never the stored items themselves.
+ * 
+ * Item descriptions are indexed by a DescriptionIndex kept in step with every
+ * add and removal, so description searches only check the items sharing the
+ * search text's trigrams instead of every item.
+ * 
+ * The items can also be loaded from a MappedCatalog, as the store reads it.
+ * Their descriptions are indexed afterwards by indexDescriptions(); until then
+ * searches check every item.
+ * 
  * @author NJack & JJoorisity
  * @version 1.0
  * @since 2020-11-26
  */
 public class Inventory implements PrintTableConstants, Commands {
 
-	private LinkedHashSet<Item_Elec> itemList;
+	private final ItemStore items;
+	private final DescriptionIndex descIndex = new DescriptionIndex();
+	private volatile boolean indexed = true; // every description is in descIndex
 	private Order order;
 
 	/**
-	 * Constructor. Create an empty LinkedHashSet of items.
+	 * Constructor. Create an empty inventory keeping its items on the heap.
 	 */
 	public Inventory() {
-		this.itemList = new LinkedHashSet<Item_Elec>();
+		this(new HeapItemStore());
+	}
+
+	/**
+	 * Constructor. Create an empty inventory backed by an item store.
+	 * @param items (ItemStore) empty store receiving the items.
+	 */
+	public Inventory(ItemStore items) {
+		this.items = items;
+	}
+
+	/**
+	 * @param items (LinkedHashSet<Item>) replace the stored items with a new
+	 *              LinkedHashSet of items.
+	 */
+	public synchronized void setItemList(LinkedHashSet<Item_Elec> items) {
+		this.clearItems();
+		for (Item_Elec item : items) {
+			this.addItems(item);
+		}
+	}
+
+	/**
+	 * Replace the stored items with the rows of a catalog, in catalog order.
+	 * Descriptions are not indexed until indexDescriptions() runs.
+	 * 
+	 * @param catalog (MappedCatalog) validated catalog.
+	 * @param stock   (int[]) stock of each catalog row.
+	 */
+	public synchronized void setCatalog(MappedCatalog catalog, int[] stock) {
+		this.clearItems();
+		this.indexed = false;
+		this.items.load(catalog, stock);
 	}
 
 	/**
-	 * @param items (LinkedHashSet<Item>) assign a new LinkedHashSet of items to
-	 *              inventory.
+	 * Index the descriptions of the items stored by setCatalog(). Adds and
+	 * removals wait for it to finish.
 	 */
-	public void setItemList(LinkedHashSet<Item_Elec> items) {
-		this.itemList = items;
+	public synchronized void indexDescriptions() {
+		if (this.indexed) {
+			return;
+		}
+		this.descIndex.clear();
+		for (int itemId : this.items.ids()) {
+			this.descIndex.add(itemId, this.items.desc(itemId));
+		}
+		this.indexed = true;
 	}
 
+	/**
+	 * @return (LinkedHashSet<Item_Elec>) copies of all items, in load order.
+	 */
 	public LinkedHashSet<Item_Elec> getItemList() {
-		return this.itemList;
+		ArrayList<Item_Elec> copies = new ArrayList<Item_Elec>(this.items.size());
+		this.items.scan(0, Integer.MAX_VALUE, copies);
+		return new LinkedHashSet<Item_Elec>(copies);
 	}
 
 	public void setOrder(Order temp) {
@@ -51,54 +115,219 @@ public class Inventory implements PrintTableConstants, Commands {
 	}
 
 	/**
-	 * @param items (LinkedHashSet<Item>) assign a new LinkedHashSet of items to
-	 *              inventory.
+	 * @param item (Item_Elec) add an item to the inventory, replacing a stored
+	 *             item with the same ID in its current position.
+	 */
+	public synchronized void addItems(Item_Elec item) {
+		boolean replaced = this.items.contains(item.getItemID());
+		String previousDesc = replaced ? this.items.desc(item.getItemID()) : null;
+		this.items.put(item);
+		if (!replaced || !String.valueOf(previousDesc).equals(String.valueOf(item.getItemDesc()))) {
+			this.descIndex.remove(item.getItemID(), previousDesc);
+			this.descIndex.add(item.getItemID(), item.getItemDesc());
+		}
+	}
+
+	/**
+	 * Remove an item from the inventory.
+	 * 
+	 * @param itemId (int) ID of the item being removed.
+	 * @return (boolean) true if the item was in the inventory.
+	 */
+	public synchronized boolean removeItem(int itemId) {
+		String previousDesc = this.items.desc(itemId);
+		if (!this.items.remove(itemId)) {
+			return false;
+		}
+		this.descIndex.remove(itemId, previousDesc);
+		return true;
+	}
+
+	/**
+	 * Remove all items from the inventory.
 	 */
-	public void addItems(Item_Elec item) {
-		this.itemList.add(item);
+	public synchronized void clearItems() {
+		this.items.clear();
+		this.descIndex.clear();
+		this.indexed = true;
 	}
 
 	/**
-	 * @param items (LinkedHashSet<Item>) assign a new LinkedHashSet of items to
-	 *              inventory.
+	 * @return (int) number of items in the inventory.
 	 */
-	public void clearItems() {
-		this.itemList.clear();
+	public int size() {
+		return this.items.size();
 	}
 
 	/**
 	 * Searches and returns an Item in the inventory list.
 	 * 
 	 * @param itemId (int) ItemId to be searched for
-	 * @return (Item) returns item matching the passed ID
+	 * @return (Item) copy of the item matching the passed ID, null if not found
+	 */
+	public Item_Elec getItem(int itemId) {
+		return this.items.get(itemId);
+	}
+
+	/**
+	 * Search items by description, ignoring case, like the SQL LIKE search it
+	 * replaces. Results are ranked as described in findItemIds().
+	 * 
+	 * @param itemDesc (String) text contained in the item description, null for
+	 *                 all items.
+	 * @return (LinkedHashSet<Item_Elec>) copies of the matching items.
 	 */
-	private Item_Elec getItem(int itemId) {
-		for (Item_Elec temp : this.itemList) {
-			if (temp.getItemID() == itemId) {
-				return temp;
+	public LinkedHashSet<Item_Elec> searchItems(String itemDesc) {
+		if (itemDesc == null) {
+			return this.getItemList();
+		}
+		int[] matches = this.findItemIds(itemDesc);
+		LinkedHashSet<Item_Elec> res = new LinkedHashSet<Item_Elec>(matches.length * 2);
+		for (int itemId : matches) {
+			Item_Elec item = this.items.get(itemId);
+			if (item != null) {
+				res.add(item);
 			}
 		}
-		return null;
+		return res;
 	}
 
 	/**
-	 * Decrease quantity of item in inventory user input value.
+	 * Search items by description, ignoring case. Items whose description is the
+	 * search text come first, then those starting with it, then those with a
+	 * word starting with it, then the rest; ties go to the shorter description
+	 * and then the lower item ID. The description index narrows the items
+	 * checked; text too short for the index is checked against every item.
 	 * 
-	 * @param item (Item_Elec) the item being purchased.
-	 * @param qty  (int) the quantity of being purchased.
-	 * @return (boolean) true if purchase was successful.
+	 * @param itemDesc (String) text contained in the item description.
+	 * @return (int[]) IDs of the matching items, best match first.
 	 */
-	public boolean decrement(Item_Elec item, int qty) {
-		if (item == null) {
-			return false;
+	public int[] findItemIds(String itemDesc) {
+		String needle = itemDesc.toLowerCase();
+		int[] candidates = this.indexed ? this.descIndex.candidates(needle) : null;
+		if (candidates == null) {
+			candidates = this.items.ids();
+		}
+		// rank once per match, sorting packed rank, length and ID keys
+		long[] keys = new long[candidates.length];
+		int count = 0;
+		for (int itemId : candidates) {
+			String desc = this.items.desc(itemId);
+			int rank = rank(desc, needle);
+			if (rank >= 0) {
+				long length = Math.min(desc.length(), 0xFFFFF);
+				keys[count++] = ((long) rank << 52) | (length << 32) | ((itemId & 0xFFFFFFFFL) ^ 0x80000000L);
+			}
+		}
+		Arrays.sort(keys, 0, count);
+		int[] res = new int[count];
+		for (int i = 0; i < count; i++) {
+			res[i] = (int) (keys[i] ^ 0x80000000L);
+		}
+		return res;
+	}
+
+	/**
+	 * @param desc   (String) description of the item being ranked, may be null.
+	 * @param needle (String) lower cased search text.
+	 * @return (int) 0 for the whole description, 1 for a prefix, 2 for the start
+	 *         of a word, 3 for any other match, -1 if the description does not
+	 *         contain the text.
+	 */
+	private static int rank(String desc, String needle) {
+		if (desc == null) {
+			return -1;
+		}
+		// regionMatches ignores case without copying the description
+		int last = desc.length() - needle.length();
+		int rank = -1;
+		for (int at = 0; at <= last && rank != 2; at++) {
+			if (desc.regionMatches(true, at, needle, 0, needle.length())) {
+				if (at == 0) {
+					return last == 0 ? 0 : 1;
+				}
+				rank = Character.isLetterOrDigit(desc.charAt(at - 1)) ? 3 : 2;
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * Copy the next chunk of items, in load order, for a reply streamed to the
+	 * client.
+	 * 
+	 * @param from (int) cursor returned by the previous call, 0 to start.
+	 * @param max  (int) maximum number of items copied.
+	 * @param into (ArrayList<Object>) receives the copied items.
+	 * @return (int) cursor of the next chunk, -1 once all items were read.
+	 */
+	public int scanItems(int from, int max, ArrayList<Object> into) {
+		return this.items.scan(from, max, into);
+	}
+
+	/**
+	 * Decrease quantity of item in inventory user input value. Competing
+	 * purchases retry the compare-and-set until one of them sees too little
+	 * stock.
+	 * 
+	 * @param itemId (int) the ID of the item being purchased.
+	 * @param qty    (int) the quantity of being purchased.
+	 * @return (int) the quantity left after the purchase, -1 if the purchase
+	 *         was refused.
+	 */
+	public int decrement(int itemId, int qty) {
+		if (qty <= 0) {
+			return -1;
 		}
 		// check to see if item inventory is high enough to allow purchase.
-		if (item.getQty() - qty >= 0) {
-			item.setQty(item.getQty() - qty);
-			return true;
-		} else {
-			return false;
+		return this.items.addStock(itemId, -qty, 0);
+	}
+
+	/**
+	 * Change the quantity of an item by a receipt or a manual correction.
+	 * Competing changes retry the compare-and-set as decrement() does.
+	 *
+	 * @param itemId (int) the ID of the item.
+	 * @param change (int) the quantity added, negative to remove stock.
+	 * @return (int) the quantity after the change, -1 if the item does not
+	 *         exist or the change would leave less than zero.
+	 */
+	public int adjust(int itemId, int change) {
+		return this.items.addStock(itemId, change, 0);
+	}
+
+	/**
+	 * Remove up to a quantity of an item, never leaving less than zero. Used to
+	 * undo stock added by adjust() when the change could not be journaled;
+	 * purchases may already have taken part of the added stock.
+	 *
+	 * @param itemId (int) the ID of the item.
+	 * @param qty    (int) the quantity being removed.
+	 * @return (int) the quantity removed, less than qty if the stock ran out.
+	 */
+	public int withdraw(int itemId, int qty) {
+		while (qty > 0) {
+			Item_Elec item = this.items.get(itemId);
+			int take = item == null ? 0 : Math.min(item.getQty(), qty);
+			if (take <= 0) {
+				return 0;
+			}
+			if (this.items.addStock(itemId, -take, 0) >= 0) {
+				return take;
+			}
 		}
+		return 0;
+	}
+
+	/**
+	 * Return stock taken by decrement(), used when the purchase could not be
+	 * written to the database.
+	 * 
+	 * @param itemId (int) the ID of the item.
+	 * @param qty    (int) the quantity being returned.
+	 */
+	public void restock(int itemId, int qty) {
+		this.items.addStock(itemId, qty, Integer.MIN_VALUE);
 	}
 
 	/**
@@ -121,7 +350,7 @@ public class Inventory implements PrintTableConstants, Commands {
 		res += TABLEBREAK;
 		res += "| Tool Name       | Tool ID | Quantity | Price ($)     |\n";
 		res += TABLEBREAK;
-		for (Item_Elec item : this.itemList) {
+		for (Item_Elec item : this.getItemList()) {
 			res += item.toString();
 		}
 		res += TABLEBREAK;
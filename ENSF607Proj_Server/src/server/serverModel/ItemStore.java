@@ -0,0 +1,94 @@
+package server.serverModel;
+
+import java.util.ArrayList;
+
+import sharedModel.Item_Elec;
+
+/**
+ * Storage behind an Inventory: the items by item ID in load order, each with
+ * a live stock level. A store never hands out what it stores; get() and scan()
+ * build Item_Elec copies holding the current stock.
+ *
+ * HeapItemStore keeps one object per item and is the default. OffHeapItemStore
+ * keeps the items in off-heap columns for catalogs too large for the Java heap.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public interface ItemStore {
+
+	/**
+	 * @return (int) number of items stored.
+	 */
+	int size();
+
+	/**
+	 * @param itemId (int) ID of the item.
+	 * @return (Item_Elec) copy of the item holding its current stock, null if
+	 *         absent.
+	 */
+	Item_Elec get(int itemId);
+
+	/**
+	 * @param itemId (int) ID of the item.
+	 * @return (String) description of the item, null if absent or it has none.
+	 */
+	String desc(int itemId);
+
+	/**
+	 * @param itemId (int) ID of the item.
+	 * @return (boolean) true if the item is stored.
+	 */
+	boolean contains(int itemId);
+
+	/**
+	 * Store an item with its quantity as stock, replacing a stored item with the
+	 * same ID in its current position.
+	 * @param item (Item_Elec) item being stored.
+	 */
+	void put(Item_Elec item);
+
+	/**
+	 * @param itemId (int) ID of the item being removed.
+	 * @return (boolean) true if the item was stored.
+	 */
+	boolean remove(int itemId);
+
+	/**
+	 * Remove every item.
+	 */
+	void clear();
+
+	/**
+	 * Replace the stored items with the rows of a catalog, in catalog order.
+	 * @param catalog (MappedCatalog) validated catalog.
+	 * @param stock   (int[]) stock of each catalog row.
+	 */
+	void load(MappedCatalog catalog, int[] stock);
+
+	/**
+	 * Change the stock of an item by compare-and-set, so competing changes
+	 * retry until one of them would pass the floor.
+	 * @param itemId (int) ID of the item.
+	 * @param change (int) quantity added, negative to remove stock.
+	 * @param floor  (int) lowest stock the change may leave.
+	 * @return (int) stock after the change, -1 if the item is absent or the
+	 *         change was refused.
+	 */
+	int addStock(int itemId, int change, int floor);
+
+	/**
+	 * @return (int[]) IDs of every item, in load order.
+	 */
+	int[] ids();
+
+	/**
+	 * Copy the next chunk of items, in load order.
+	 * @param from (int) cursor returned by the previous scan, 0 to start.
+	 * @param max  (int) maximum number of items copied.
+	 * @param into (ArrayList) receives the copies.
+	 * @return (int) cursor of the next scan, -1 once the end was reached.
+	 */
+	int scan(int from, int max, ArrayList<? super Item_Elec> into);
+}
@@ -0,0 +1,88 @@
+package server.serverModel;
+
+import java.util.ArrayList;
+
+import server.serverControllers.ModelController;
+import sharedModel.*;
+
+/**
+ * Item search reply streamed to a client in chunks of STREAM_CHUNK_SIZE items.
+ * A search for all items reads the inventory chunk by chunk through a cursor;
+ * a description search ranks the IDs of the matching items once and copies
+ * the items of each chunk as it is sent, so neither side holds the whole
+ * result at once. Flow control is credit based: the stream sends
+ * STREAM_WINDOW chunks up front and then one more chunk for every CREDIT
+ * message the client sends after displaying a chunk. Every chunk but the last
+ * is flagged with more.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class ItemStream implements Commands {
+
+	private final Inventory inventory;
+	private final ModelController modelController;
+	private final int requestId;
+	private final String itemDesc; // null streams every item
+	private int[] matches; // ranked IDs of a description search, found on the first grant
+	private int cursor = 0;
+	private int credit = 0;
+	private boolean sentAny = false;
+	private boolean finished = false;
+
+	/**
+	 * Constructor
+	 *
+	 * @param inventory       (Inventory) inventory being read.
+	 * @param modelController (ModelController) sends the chunks to the client.
+	 * @param requestId       (int) ID of the search request.
+	 * @param itemDesc        (String) description filter, null for all items.
+	 */
+	public ItemStream(Inventory inventory, ModelController modelController, int requestId, String itemDesc) {
+		this.inventory = inventory;
+		this.modelController = modelController;
+		this.requestId = requestId;
+		this.itemDesc = itemDesc;
+	}
+
+	/**
+	 * Allow more chunks to be sent and send them.
+	 * @param chunks (int) number of additional chunks the client can accept.
+	 * @return (boolean) true once the last chunk was sent.
+	 */
+	public synchronized boolean grant(int chunks) {
+		credit += chunks;
+		while (credit > 0 && !finished) {
+			ArrayList<Object> items = new ArrayList<Object>(WrapperCodec.STREAM_CHUNK_SIZE);
+			if (itemDesc == null) {
+				cursor = inventory.scanItems(cursor, WrapperCodec.STREAM_CHUNK_SIZE, items);
+				finished = cursor < 0;
+			} else {
+				if (matches == null) {
+					matches = inventory.findItemIds(itemDesc);
+				}
+				while (cursor < matches.length && items.size() < WrapperCodec.STREAM_CHUNK_SIZE) {
+					Item_Elec item = inventory.getItem(matches[cursor++]);
+					if (item != null) { // skip items removed since the search
+						items.add(item);
+					}
+				}
+				finished = cursor == matches.length;
+			}
+			ObjectWrapper ow = new ObjectWrapper();
+			if (items.isEmpty() && !sentAny) {
+				ow.setMessage(FAILED, ITEM_ELEC); // nothing matched
+			} else {
+				ow.setMessage(DISPLAYITEM, ITEM_ELEC);
+				ow.addPassedObj(items);
+			}
+			ow.setRequestId(requestId);
+			ow.setMore(!finished);
+			modelController.sendResponse(ow);
+			sentAny = true;
+			credit--;
+		}
+		return finished;
+	}
+}
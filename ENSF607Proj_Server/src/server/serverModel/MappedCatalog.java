@@ -0,0 +1,385 @@
+package server.serverModel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.zip.CRC32C;
+
+import sharedModel.Int_Supplier;
+import sharedModel.Item_Elec;
+
+/**
+ * Read-only export of the Items and Suppliers tables in a fixed-layout binary
+ * file, memory-mapped and read in place. Each item and supplier is a fixed
+ * size record, so a row is found by its position: items are sorted by item ID
+ * and found by a binary search over the mapping, and only the item asked for
+ * is built into an Item_Elec. Strings are kept in a UTF-8 heap after the
+ * records and referenced by offset and length.
+ *
+ * The file holds item attributes but not stock, which changes with every
+ * purchase and is kept by the inventory. Its header carries the file format
+ * version, the catalog version of the database it was exported from and a
+ * CRC32C of everything after the header; open() refuses a file failing
+ * either check and the caller compares the catalog version with the
+ * database's before trusting the file.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public final class MappedCatalog {
+
+	private static final int MAGIC = 0x49434154; // "ICAT"
+	private static final int FORMAT = 2; // format 1 held prices and taxes as doubles
+	private static final int HEADER_BYTES = 48;
+	private static final int ITEM_BYTES = 40;
+	private static final int SUPPLIER_BYTES = 32;
+	private static final int NULL_STRING = 0xFFFF;
+	private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+	// item record: ID, supplier ID, voltage, phase, price, type, description, power type
+	private static final int I_ID = 0;
+	private static final int I_SUPPLIER = 4;
+	private static final int I_VOLTS = 8;
+	private static final int I_PHASE = 12;
+	private static final int I_PRICE = 16; // long cents
+	private static final int I_TYPE = 24;
+	private static final int I_DESC_LEN = 26;
+	private static final int I_DESC = 28;
+	private static final int I_POWER = 32;
+	private static final int I_POWER_LEN = 36;
+
+	// supplier record: ID, type, import tax, company name, address, sales contact
+	private static final int S_ID = 0;
+	private static final int S_TYPE = 4;
+	private static final int S_NAME_LEN = 6;
+	private static final int S_TAX = 8; // long basis points
+	private static final int S_NAME = 16;
+	private static final int S_ADDRESS = 20;
+	private static final int S_CONTACT = 24;
+	private static final int S_ADDRESS_LEN = 28;
+	private static final int S_CONTACT_LEN = 30;
+
+	private final MappedByteBuffer map; // whole file, read with absolute gets only
+	private final long version;
+	private final int itemCount;
+	private final int supplierCount;
+	private final int suppliersAt;
+	private final int heapAt;
+
+	/**
+	 * @param map           (MappedByteBuffer) validated file.
+	 * @param version       (long) catalog version exported.
+	 * @param itemCount     (int) number of item records.
+	 * @param supplierCount (int) number of supplier records.
+	 */
+	private MappedCatalog(MappedByteBuffer map, long version, int itemCount, int supplierCount) {
+		this.map = map;
+		this.version = version;
+		this.itemCount = itemCount;
+		this.supplierCount = supplierCount;
+		this.suppliersAt = HEADER_BYTES + itemCount * ITEM_BYTES;
+		this.heapAt = suppliersAt + supplierCount * SUPPLIER_BYTES;
+	}
+
+	/**
+	 * Map a catalog file and check its format and checksum.
+	 * @param file (Path) catalog file.
+	 * @return (MappedCatalog) the catalog, null if the file is missing, too
+	 *         large to map or fails a check.
+	 */
+	public static MappedCatalog open(Path file) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+				System.err.println("Catalog " + file + " has an unusable size of " + size + " bytes.");
+				return null;
+			}
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (map.getInt(0) != MAGIC || map.getInt(4) != FORMAT) {
+				System.err.println("Catalog " + file + " is not a format " + FORMAT + " catalog.");
+				return null;
+			}
+			long version = map.getLong(8);
+			int items = map.getInt(16);
+			int suppliers = map.getInt(20);
+			long heapBytes = map.getLong(24);
+			int checksum = map.getInt(32);
+			if (items < 0 || suppliers < 0
+					|| HEADER_BYTES + (long) items * ITEM_BYTES + (long) suppliers * SUPPLIER_BYTES + heapBytes != size) {
+				System.err.println("Catalog " + file + " is truncated.");
+				return null;
+			}
+			CRC32C crc = new CRC32C();
+			crc.update(map.duplicate().position(HEADER_BYTES));
+			if ((int) crc.getValue() != checksum) {
+				System.err.println("Catalog " + file + " failed its checksum.");
+				return null;
+			}
+			return new MappedCatalog(map, version, items, suppliers);
+		} catch (IOException e) {
+			System.err.println("Catalog " + file + " could not be mapped.");
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * @return (long) catalog version of the database the file was exported from.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return (int) number of items.
+	 */
+	public int itemCount() {
+		return itemCount;
+	}
+
+	/**
+	 * @param row (int) position of the item, 0 to itemCount() - 1.
+	 * @return (int) item ID of the row.
+	 */
+	public int itemId(int row) {
+		return map.getInt(itemAt(row) + I_ID);
+	}
+
+	/**
+	 * @param itemId (int) item ID being searched.
+	 * @return (int) position of the item, -1 if the catalog does not hold it.
+	 */
+	public int findItem(int itemId) {
+		int low = 0;
+		int high = itemCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int id = itemId(mid);
+			if (id < itemId) {
+				low = mid + 1;
+			} else if (id > itemId) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param row (int) position of the item.
+	 * @return (String) description of the item, may be null.
+	 */
+	public String itemDesc(int row) {
+		int at = itemAt(row);
+		return string(map.getInt(at + I_DESC), map.getShort(at + I_DESC_LEN));
+	}
+
+	/**
+	 * @param row (int) position of the item.
+	 * @param qty (int) current stock of the item.
+	 * @return (Item_Elec) new item holding the row and the stock.
+	 */
+	public Item_Elec item(int row, int qty) {
+		int at = itemAt(row);
+		return new Item_Elec(map.getInt(at + I_ID), map.getChar(at + I_TYPE),
+				string(map.getInt(at + I_DESC), map.getShort(at + I_DESC_LEN)), qty, map.getLong(at + I_PRICE),
+				map.getInt(at + I_SUPPLIER), string(map.getInt(at + I_POWER), map.getShort(at + I_POWER_LEN)),
+				map.getInt(at + I_VOLTS), map.getInt(at + I_PHASE));
+	}
+
+	/**
+	 * @return (ArrayList<Int_Supplier>) new copies of every supplier.
+	 */
+	public ArrayList<Int_Supplier> suppliers() {
+		ArrayList<Int_Supplier> res = new ArrayList<Int_Supplier>(supplierCount);
+		for (int row = 0; row < supplierCount; row++) {
+			int at = suppliersAt + row * SUPPLIER_BYTES;
+			res.add(new Int_Supplier(map.getInt(at + S_ID), map.getChar(at + S_TYPE),
+					string(map.getInt(at + S_NAME), map.getShort(at + S_NAME_LEN)),
+					string(map.getInt(at + S_ADDRESS), map.getShort(at + S_ADDRESS_LEN)),
+					string(map.getInt(at + S_CONTACT), map.getShort(at + S_CONTACT_LEN)), map.getLong(at + S_TAX)));
+		}
+		return res;
+	}
+
+	/**
+	 * Export items and suppliers to a catalog file. The file is written under a
+	 * temporary name, forced and moved over the previous catalog, so readers
+	 * never see a partial file.
+	 * @param file      (Path) catalog file.
+	 * @param version   (long) catalog version of the database the rows were read at.
+	 * @param items     (Collection<Item_Elec>) every item; stock is not exported.
+	 * @param suppliers (Collection<Int_Supplier>) every supplier.
+	 * @throws IOException if the file could not be written.
+	 */
+	public static void write(Path file, long version, Collection<Item_Elec> items,
+			Collection<Int_Supplier> suppliers) throws IOException {
+		Item_Elec[] sorted = items.toArray(new Item_Elec[0]);
+		Arrays.sort(sorted, Comparator.comparingInt(Item_Elec::getItemID));
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			Output out = new Output(channel);
+			channel.position(HEADER_BYTES);
+			// records first, then the heap their offsets point into
+			long heap = 0;
+			for (Item_Elec item : sorted) {
+				byte[] desc = bytes(item.getItemDesc());
+				byte[] power = bytes(item.getPowerType());
+				ByteBuffer buf = out.reserve(ITEM_BYTES);
+				int at = buf.position();
+				buf.putInt(at + I_ID, item.getItemID()).putInt(at + I_SUPPLIER, item.getSupplierID())
+						.putInt(at + I_VOLTS, item.getVoltage()).putInt(at + I_PHASE, item.getPhase())
+						.putLong(at + I_PRICE, item.getPriceCents()).putChar(at + I_TYPE, item.getItemType());
+				heap = putRef(buf, at + I_DESC, at + I_DESC_LEN, desc, heap);
+				heap = putRef(buf, at + I_POWER, at + I_POWER_LEN, power, heap);
+				buf.position(at + ITEM_BYTES);
+			}
+			for (Int_Supplier supplier : suppliers) {
+				ByteBuffer buf = out.reserve(SUPPLIER_BYTES);
+				int at = buf.position();
+				buf.putInt(at + S_ID, supplier.getSupplierID()).putChar(at + S_TYPE, supplier.getSupplierType())
+						.putLong(at + S_TAX, supplier.getImportTaxBasisPoints());
+				heap = putRef(buf, at + S_NAME, at + S_NAME_LEN, bytes(supplier.getCompanyName()), heap);
+				heap = putRef(buf, at + S_ADDRESS, at + S_ADDRESS_LEN, bytes(supplier.getAddress()), heap);
+				heap = putRef(buf, at + S_CONTACT, at + S_CONTACT_LEN, bytes(supplier.getSalesContact()), heap);
+				buf.position(at + SUPPLIER_BYTES);
+			}
+			long records = HEADER_BYTES + (long) sorted.length * ITEM_BYTES + (long) suppliers.size() * SUPPLIER_BYTES;
+			if (records + heap > Integer.MAX_VALUE) {
+				throw new IOException("Catalog of " + (records + heap) + " bytes is too large to map.");
+			}
+			for (Item_Elec item : sorted) {
+				out.put(bytes(item.getItemDesc()));
+				out.put(bytes(item.getPowerType()));
+			}
+			for (Int_Supplier supplier : suppliers) {
+				out.put(bytes(supplier.getCompanyName()));
+				out.put(bytes(supplier.getAddress()));
+				out.put(bytes(supplier.getSalesContact()));
+			}
+			out.flush();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putInt(MAGIC).putInt(FORMAT).putLong(version).putInt(sorted.length).putInt(suppliers.size())
+					.putLong(heap).putInt((int) out.crc.getValue()).position(HEADER_BYTES);
+			header.flip();
+			channel.position(0);
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			channel.force(true);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Bytes written to a catalog file, checksummed as they are flushed.
+	 */
+	private static final class Output {
+		private final FileChannel channel;
+		private final CRC32C crc = new CRC32C();
+		private final ByteBuffer buf = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+
+		Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * @param bytes (int) size of the next record.
+		 * @return (ByteBuffer) buffer with room for the record at its position.
+		 * @throws IOException if the buffered bytes could not be written.
+		 */
+		ByteBuffer reserve(int bytes) throws IOException {
+			if (buf.remaining() < bytes) {
+				flush();
+			}
+			return buf;
+		}
+
+		/**
+		 * @param bytes (byte[]) string bytes appended to the heap, null for none.
+		 * @throws IOException if the buffered bytes could not be written.
+		 */
+		void put(byte[] bytes) throws IOException {
+			for (int from = 0; bytes != null && from < bytes.length;) {
+				if (!buf.hasRemaining()) {
+					flush();
+				}
+				int n = Math.min(buf.remaining(), bytes.length - from);
+				buf.put(bytes, from, n);
+				from += n;
+			}
+		}
+
+		void flush() throws IOException {
+			buf.flip();
+			crc.update(buf.duplicate());
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+			buf.clear();
+		}
+	}
+
+	/**
+	 * @param buf      (ByteBuffer) buffer holding the record.
+	 * @param offsetAt (int) buffer index of the string's heap offset.
+	 * @param lengthAt (int) buffer index of the string's length.
+	 * @param bytes    (byte[]) string bytes, null for a null string.
+	 * @param heap     (long) heap bytes used by the previous strings.
+	 * @return (long) heap bytes used including this string.
+	 * @throws IOException if the string is too long for its length field.
+	 */
+	private static long putRef(ByteBuffer buf, int offsetAt, int lengthAt, byte[] bytes, long heap)
+			throws IOException {
+		if (bytes != null && bytes.length >= NULL_STRING) {
+			throw new IOException("Catalog string of " + bytes.length + " bytes is too long.");
+		}
+		buf.putInt(offsetAt, (int) heap);
+		buf.putShort(lengthAt, (short) (bytes == null ? NULL_STRING : bytes.length));
+		return heap + (bytes == null ? 0 : bytes.length);
+	}
+
+	private static byte[] bytes(String s) {
+		return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param offset (int) heap offset of the string.
+	 * @param length (short) stored length, NULL_STRING for null.
+	 * @return (String) the string decoded from the mapping.
+	 */
+	private String string(int offset, short length) {
+		int n = Short.toUnsignedInt(length);
+		if (n == NULL_STRING) {
+			return null;
+		}
+		byte[] bytes = new byte[n];
+		map.duplicate().position(heapAt + offset).get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private int itemAt(int row) {
+		return HEADER_BYTES + row * ITEM_BYTES;
+	}
+
+	@Override
+	public String toString() {
+		return "Catalog version " + version + ": " + itemCount + " items, " + supplierCount + " suppliers";
+	}
+}
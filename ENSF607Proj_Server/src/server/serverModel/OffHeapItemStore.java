@@ -0,0 +1,639 @@
+package server.serverModel;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+
+import sharedModel.Item_Elec;
+
+/**
+ * Item store keeping the items in off-heap columns, for catalogs of tens of
+ * millions of items. Each attribute is a column in its own direct buffer,
+ * indexed by row: item ID, stock, price in cents, supplier ID, voltage, phase,
+ * item type, power type and the position of the description in a packed UTF-8
+ * description heap. Power types are few, so a row holds a one byte code into a
+ * small table of them. An open addressing table with linear probing, also
+ * off-heap, holds the row of each item ID.
+ *
+ * The Java heap holds only the buffer objects whatever the number of items, so
+ * the garbage collector has nothing to trace; Item_Elec copies are built only
+ * when an item is handed to a caller. The columns take about 44 bytes per item
+ * plus its description, counted against -XX:MaxDirectMemorySize.
+ *
+ * Locking follows IntItemMap: lookups run under an optimistic StampedLock read
+ * and fall back to a read lock, writers take the write lock, and stock changes
+ * hold the read lock so a compare-and-set never lands in a column a writer is
+ * copying. Removed and replaced rows leave holes until enough accumulate to
+ * compact the columns.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public final class OffHeapItemStore implements ItemStore {
+
+	// Columns, by position in Columns.data
+	private static final int ID = 0;
+	private static final int STOCK = 1;
+	private static final int PRICE = 2; // long cents
+	private static final int SUPPLIER = 3;
+	private static final int VOLTS = 4;
+	private static final int PHASE = 5;
+	private static final int TYPE = 6; // char
+	private static final int POWER = 7; // byte code into powerTypes, 0 for none
+	private static final int DESC = 8; // offset in the description heap
+	private static final int DESC_LEN = 9; // UTF-8 bytes, -1 for no description
+	private static final int LIVE = 10; // byte, 0 once removed
+	private static final int[] WIDTHS = { 4, 4, 8, 4, 4, 4, 2, 1, 4, 4, 1 };
+
+	private static final int MIN_CAPACITY = 1024;
+	private static final int MIN_HEAP_BYTES = 1 << 16;
+	private static final int MAX_HEAP_BYTES = Integer.MAX_VALUE - 8;
+	private static final int EXPECTED_DESC_BYTES = 32; // initial heap room per expected item
+	private static final int MAX_POWER_TYPES = 255;
+	private static final int EMPTY = 0; // free index slot, rows are stored plus one
+	private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class,
+			ByteOrder.nativeOrder());
+
+	private final StampedLock lock = new StampedLock();
+	private Columns columns;
+	private ByteBuffer descs; // packed UTF-8 descriptions
+	private String[] powerTypes = { null }; // by code, replaced when a type is added
+	private int descUsed; // bytes taken in descs
+	private long descGarbage; // bytes of replaced and removed descriptions
+	private int used; // rows taken, including removed rows
+	private int size; // live rows
+
+	/**
+	 * Column buffers and the index table sized for a number of rows, replaced
+	 * as a whole when the store grows or compacts.
+	 */
+	private static final class Columns {
+		final int capacity;
+		final ByteBuffer[] data;
+		final ByteBuffer index; // open addressing table of rows + 1
+		final int mask;
+
+		Columns(int capacity) {
+			this.capacity = capacity;
+			this.data = new ByteBuffer[WIDTHS.length];
+			for (int col = 0; col < WIDTHS.length; col++) {
+				data[col] = allocate((long) capacity * WIDTHS[col]);
+			}
+			int tableSize = tableSizeFor(capacity);
+			this.index = allocate(tableSize * 4L);
+			this.mask = tableSize - 1;
+		}
+	}
+
+	/**
+	 * Constructor. Create an empty store.
+	 */
+	public OffHeapItemStore() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Constructor. Create an empty store sized for an expected number of items.
+	 * @param expected (int) number of items the store should hold without growing.
+	 */
+	public OffHeapItemStore(int expected) {
+		reset(expected);
+	}
+
+	@Override
+	public int size() {
+		long stamp = lock.tryOptimisticRead();
+		int res = size;
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				res = size;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return res;
+	}
+
+	@Override
+	public Item_Elec get(int itemId) {
+		return read(itemId, this::itemOf);
+	}
+
+	@Override
+	public String desc(int itemId) {
+		return read(itemId, this::descOf);
+	}
+
+	@Override
+	public boolean contains(int itemId) {
+		return read(itemId, id -> find(columns, id) >= 0 ? Boolean.TRUE : null) != null;
+	}
+
+	@Override
+	public void put(Item_Elec item) {
+		long stamp = lock.writeLock();
+		try {
+			store(item);
+			compactIfSparse();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public boolean remove(int itemId) {
+		long stamp = lock.writeLock();
+		try {
+			Columns c = columns;
+			int slot = slotOf(c, itemId);
+			if (slot < 0) {
+				return false;
+			}
+			int row = c.index.getInt(slot * 4) - 1;
+			c.data[LIVE].put(row, (byte) 0);
+			descGarbage += Math.max(0, c.data[DESC_LEN].getInt(row * 4));
+			deleteSlot(c, slot);
+			size--;
+			compactIfSparse();
+			return true;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public void clear() {
+		long stamp = lock.writeLock();
+		try {
+			reset(MIN_CAPACITY);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public void load(MappedCatalog catalog, int[] stock) {
+		long stamp = lock.writeLock();
+		try {
+			reset(catalog.itemCount());
+			for (int row = 0; row < catalog.itemCount(); row++) {
+				store(catalog.item(row, stock[row]));
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public int addStock(int itemId, int change, int floor) {
+		long stamp = lock.readLock();
+		try {
+			Columns c = columns;
+			int row = find(c, itemId);
+			if (row < 0) {
+				return -1;
+			}
+			ByteBuffer stock = c.data[STOCK];
+			int at = row * 4;
+			int current;
+			do {
+				current = (int) INTS.getVolatile(stock, at);
+				if (current + change < floor) {
+					return -1;
+				}
+			} while (!INTS.compareAndSet(stock, at, current, current + change));
+			return current + change;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public int[] ids() {
+		long stamp = lock.readLock();
+		try {
+			Columns c = columns;
+			int[] res = new int[size];
+			int count = 0;
+			for (int row = 0; row < used; row++) {
+				if (c.data[LIVE].get(row) != 0) {
+					res[count++] = c.data[ID].getInt(row * 4);
+				}
+			}
+			return res;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public int scan(int from, int max, ArrayList<? super Item_Elec> into) {
+		long stamp = lock.readLock();
+		try {
+			Columns c = columns;
+			int row = from;
+			int collected = 0;
+			while (row < used && collected < max) {
+				if (c.data[LIVE].get(row) != 0) {
+					into.add(itemAt(c, row));
+					collected++;
+				}
+				row++;
+			}
+			return row < used ? row : -1;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Run a lookup under an optimistic read, repeating it under the read lock
+	 * if a writer changed the store meanwhile.
+	 * @param itemId (int) ID of the item.
+	 * @param reader (IntFunction) the lookup.
+	 * @return (T) result of the lookup.
+	 */
+	private <T> T read(int itemId, IntFunction<T> reader) {
+		long stamp = lock.tryOptimisticRead();
+		T res = reader.apply(itemId);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				res = reader.apply(itemId);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @param itemId (int) ID of the item.
+	 * @return (Item_Elec) copy of the item, null if absent.
+	 */
+	private Item_Elec itemOf(int itemId) {
+		Columns c = columns;
+		int row = find(c, itemId);
+		return row < 0 ? null : itemAt(c, row);
+	}
+
+	/**
+	 * @param itemId (int) ID of the item.
+	 * @return (String) description of the item, null if absent or it has none.
+	 */
+	private String descOf(int itemId) {
+		Columns c = columns;
+		int row = find(c, itemId);
+		return row < 0 ? null : descAt(c, row);
+	}
+
+	/**
+	 * Build a copy of a row. May run without a lock; a torn read gives a wrong
+	 * item, which the caller discards after validation.
+	 * @param c   (Columns) columns read.
+	 * @param row (int) row of the item.
+	 * @return (Item_Elec) copy of the item holding its current stock.
+	 */
+	private Item_Elec itemAt(Columns c, int row) {
+		String[] types = powerTypes;
+		int code = c.data[POWER].get(row) & 0xFF;
+		return new Item_Elec(c.data[ID].getInt(row * 4), c.data[TYPE].getChar(row * 2), descAt(c, row),
+				(int) INTS.getVolatile(c.data[STOCK], row * 4), c.data[PRICE].getLong(row * 8),
+				c.data[SUPPLIER].getInt(row * 4), code < types.length ? types[code] : null,
+				c.data[VOLTS].getInt(row * 4), c.data[PHASE].getInt(row * 4));
+	}
+
+	/**
+	 * Decode the description of a row, checking its bounds so a torn read
+	 * only gives a wrong answer.
+	 * @param c   (Columns) columns read.
+	 * @param row (int) row of the item.
+	 * @return (String) description, null if the row has none.
+	 */
+	private String descAt(Columns c, int row) {
+		ByteBuffer heap = descs;
+		int offset = c.data[DESC].getInt(row * 4);
+		int length = c.data[DESC_LEN].getInt(row * 4);
+		if (length < 0 || offset < 0 || (long) offset + length > heap.capacity()) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		heap.get(offset, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Probe for an item ID. May run without a lock, in which case the rows can
+	 * be changed by a writer at any time; rows are checked against the column
+	 * capacity so a torn read only gives a wrong answer.
+	 * @param c      (Columns) columns searched.
+	 * @param itemId (int) ID of the item.
+	 * @return (int) row of the item, -1 if absent.
+	 */
+	private static int find(Columns c, int itemId) {
+		int slot = hash(itemId) & c.mask;
+		for (int probes = 0; probes <= c.mask; probes++) {
+			int entry = c.index.getInt(slot * 4);
+			if (entry == EMPTY) {
+				return -1;
+			}
+			int row = entry - 1;
+			if (row < c.capacity && c.data[ID].getInt(row * 4) == itemId) {
+				return row;
+			}
+			slot = (slot + 1) & c.mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Write an item to its row, appending a row for a new item ID. Caller
+	 * holds the write lock.
+	 * @param item (Item_Elec) item being stored.
+	 */
+	private void store(Item_Elec item) {
+		int itemId = item.getItemID();
+		int slot = slotOf(columns, itemId);
+		int row;
+		if (slot >= 0) {
+			row = columns.index.getInt(slot * 4) - 1;
+			descGarbage += Math.max(0, columns.data[DESC_LEN].getInt(row * 4));
+		} else {
+			if (used == columns.capacity) {
+				rebuild(columns.capacity * 2);
+			}
+			row = used++;
+			size++;
+			insertIndex(columns, itemId, row + 1);
+		}
+		int power = powerCode(item.getPowerType());
+		long descAt = appendDesc(item.getItemDesc());
+		Columns c = columns;
+		c.data[ID].putInt(row * 4, itemId);
+		c.data[STOCK].putInt(row * 4, item.getQty());
+		c.data[PRICE].putLong(row * 8, item.getPriceCents());
+		c.data[SUPPLIER].putInt(row * 4, item.getSupplierID());
+		c.data[VOLTS].putInt(row * 4, item.getVoltage());
+		c.data[PHASE].putInt(row * 4, item.getPhase());
+		c.data[TYPE].putChar(row * 2, item.getItemType());
+		c.data[POWER].put(row, (byte) power);
+		c.data[DESC].putInt(row * 4, (int) (descAt >>> 32));
+		c.data[DESC_LEN].putInt(row * 4, (int) descAt);
+		c.data[LIVE].put(row, (byte) 1);
+	}
+
+	/**
+	 * Append a description to the heap, growing it when full.
+	 * @param desc (String) description, may be null.
+	 * @return (long) offset in the high and length in the low 32 bits, length
+	 *         -1 for no description.
+	 */
+	private long appendDesc(String desc) {
+		if (desc == null) {
+			return 0xFFFFFFFFL;
+		}
+		byte[] bytes = desc.getBytes(StandardCharsets.UTF_8);
+		if ((long) descUsed + bytes.length > descs.capacity()) {
+			long needed = (long) descUsed + bytes.length;
+			if (needed > MAX_HEAP_BYTES) {
+				throw new IllegalStateException("Off-heap description heap is full at " + descUsed + " bytes.");
+			}
+			ByteBuffer grown = allocate(Math.min(MAX_HEAP_BYTES, Math.max(needed, descs.capacity() * 2L)));
+			grown.put(descs.duplicate().position(0).limit(descUsed));
+			descs = grown;
+		}
+		int offset = descUsed;
+		descs.put(offset, bytes);
+		descUsed += bytes.length;
+		return ((long) offset << 32) | bytes.length;
+	}
+
+	/**
+	 * @param powerType (String) power type, may be null.
+	 * @return (int) code of the power type, added to the table if new.
+	 */
+	private int powerCode(String powerType) {
+		if (powerType == null) {
+			return 0;
+		}
+		for (int code = 1; code < powerTypes.length; code++) {
+			if (powerType.equals(powerTypes[code])) {
+				return code;
+			}
+		}
+		if (powerTypes.length > MAX_POWER_TYPES) {
+			throw new IllegalStateException("Off-heap item store holds at most " + MAX_POWER_TYPES + " power types.");
+		}
+		String[] added = Arrays.copyOf(powerTypes, powerTypes.length + 1);
+		added[powerTypes.length] = powerType;
+		powerTypes = added;
+		return powerTypes.length - 1;
+	}
+
+	/**
+	 * Compact the rows once removals leave more holes than items, or the
+	 * descriptions once more than half the heap is garbage.
+	 */
+	private void compactIfSparse() {
+		if ((used > MIN_CAPACITY && size < used / 2) || descGarbage > Math.max(MIN_HEAP_BYTES, descUsed / 2)) {
+			rebuild(Math.max(MIN_CAPACITY, size * 2));
+		}
+	}
+
+	/**
+	 * Copy the live rows to new columns, dropping holes, and rebuild the index.
+	 * The description heap is rewritten if it holds garbage. The old buffers
+	 * are left untouched for readers that still hold them.
+	 * @param capacity (int) rows of the new columns, at least the live rows.
+	 */
+	private void rebuild(int capacity) {
+		Columns old = columns;
+		Columns c = new Columns(capacity);
+		ByteBuffer oldDescs = descs;
+		boolean rewriteDescs = descGarbage > 0;
+		if (rewriteDescs) {
+			descs = allocate(Math.max(MIN_HEAP_BYTES, descUsed - descGarbage));
+			descUsed = 0;
+			descGarbage = 0;
+		}
+		if (used == size) {
+			for (int col = 0; col < WIDTHS.length; col++) {
+				c.data[col].put(old.data[col].duplicate().position(0).limit(used * WIDTHS[col]));
+			}
+		} else {
+			int live = 0;
+			for (int row = 0; row < used; row++) {
+				if (old.data[LIVE].get(row) != 0) {
+					for (int col = 0; col < WIDTHS.length; col++) {
+						copy(old.data[col], row, c.data[col], live, WIDTHS[col]);
+					}
+					live++;
+				}
+			}
+		}
+		used = size;
+		for (int row = 0; row < used; row++) {
+			if (rewriteDescs) {
+				int length = c.data[DESC_LEN].getInt(row * 4);
+				if (length >= 0) {
+					byte[] bytes = new byte[length];
+					oldDescs.get(c.data[DESC].getInt(row * 4), bytes);
+					descs.put(descUsed, bytes);
+					c.data[DESC].putInt(row * 4, descUsed);
+					descUsed += length;
+				}
+			}
+			insertIndex(c, c.data[ID].getInt(row * 4), row + 1);
+		}
+		columns = c;
+	}
+
+	/**
+	 * Copy one value of a column between rows.
+	 * @param from    (ByteBuffer) column copied from.
+	 * @param fromRow (int) row copied.
+	 * @param to      (ByteBuffer) column copied to.
+	 * @param toRow   (int) row written.
+	 * @param width   (int) bytes per value.
+	 */
+	private static void copy(ByteBuffer from, int fromRow, ByteBuffer to, int toRow, int width) {
+		switch (width) {
+		case 1:
+			to.put(toRow, from.get(fromRow));
+			break;
+		case 2:
+			to.putChar(toRow * 2, from.getChar(fromRow * 2));
+			break;
+		case 4:
+			to.putInt(toRow * 4, from.getInt(fromRow * 4));
+			break;
+		default:
+			to.putLong(toRow * 8, from.getLong(fromRow * 8));
+		}
+	}
+
+	/**
+	 * Replace every buffer with empty ones. Caller holds the write lock or is
+	 * the constructor.
+	 * @param expected (int) number of items the columns should hold.
+	 */
+	private void reset(int expected) {
+		columns = new Columns(Math.max(MIN_CAPACITY, expected));
+		descs = allocate(Math.min(MAX_HEAP_BYTES, Math.max(MIN_HEAP_BYTES, (long) expected * EXPECTED_DESC_BYTES)));
+		powerTypes = new String[] { null };
+		descUsed = 0;
+		descGarbage = 0;
+		used = 0;
+		size = 0;
+	}
+
+	/**
+	 * @param c      (Columns) columns searched, caller holds the write lock.
+	 * @param itemId (int) ID of the item.
+	 * @return (int) index slot holding the item, -1 if absent.
+	 */
+	private static int slotOf(Columns c, int itemId) {
+		int slot = hash(itemId) & c.mask;
+		int entry;
+		while ((entry = c.index.getInt(slot * 4)) != EMPTY) {
+			if (c.data[ID].getInt((entry - 1) * 4) == itemId) {
+				return slot;
+			}
+			slot = (slot + 1) & c.mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Place a row in the first free slot of its probe sequence.
+	 * @param c      (Columns) columns whose index is updated.
+	 * @param itemId (int) ID of the item.
+	 * @param entry  (int) row of the item plus one.
+	 */
+	private static void insertIndex(Columns c, int itemId, int entry) {
+		int slot = hash(itemId) & c.mask;
+		while (c.index.getInt(slot * 4) != EMPTY) {
+			slot = (slot + 1) & c.mask;
+		}
+		c.index.putInt(slot * 4, entry);
+	}
+
+	/**
+	 * Free an index slot, shifting later rows of the probe run back so no
+	 * tombstones are needed.
+	 * @param c    (Columns) columns whose index is updated.
+	 * @param slot (int) slot being freed.
+	 */
+	private static void deleteSlot(Columns c, int slot) {
+		int hole = slot;
+		int next = (hole + 1) & c.mask;
+		int entry;
+		while ((entry = c.index.getInt(next * 4)) != EMPTY) {
+			int home = hash(c.data[ID].getInt((entry - 1) * 4)) & c.mask;
+			// move the row back if its home slot is not between the hole and it
+			if (((next - home) & c.mask) >= ((next - hole) & c.mask)) {
+				c.index.putInt(hole * 4, entry);
+				hole = next;
+			}
+			next = (next + 1) & c.mask;
+		}
+		c.index.putInt(hole * 4, EMPTY);
+	}
+
+	/**
+	 * @param bytes (long) size of the buffer.
+	 * @return (ByteBuffer) zeroed direct buffer in native byte order.
+	 */
+	private static ByteBuffer allocate(long bytes) {
+		if (bytes > MAX_HEAP_BYTES) {
+			throw new IllegalStateException("Off-heap item column of " + bytes + " bytes is over the 2 GB limit.");
+		}
+		return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * @param entries (int) number of rows the table must hold.
+	 * @return (int) power of two table size keeping the load below 3/4.
+	 */
+	private static int tableSizeFor(int entries) {
+		long needed = entries * 4L / 3 + 1;
+		int size = MIN_CAPACITY;
+		while (size < needed) {
+			size <<= 1;
+		}
+		return size;
+	}
+
+	/**
+	 * Spread the key bits so sequential item IDs do not form long probe runs.
+	 * @param key (int) key being hashed.
+	 * @return (int) mixed hash.
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public String toString() {
+		long stamp = lock.readLock();
+		try {
+			long columnBytes = tableSizeFor(columns.capacity) * 4L;
+			for (int width : WIDTHS) {
+				columnBytes += (long) columns.capacity * width;
+			}
+			return "Off-heap item store: " + size + " items in " + (columnBytes >> 20) + " MB of columns and "
+					+ (descs.capacity() >> 20) + " MB of descriptions";
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+}
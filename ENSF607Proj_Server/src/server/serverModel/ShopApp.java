@@ -2,16 +2,16 @@ package server.serverModel;
 
 import sharedModel.*;
 
-import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import server.serverControllers.ModelController;
 
 /**
  * Back end connection point to model controller. Handles all interactions with
  * the inventory and sharedModel package to the database controller and client.
  * - executes a client purchase. - customer modification commands. - provides
- * access to sharedModel classes for client queries. - runs communication loop
- * with client and ModelController
+ * access to sharedModel classes for client queries. - executes
+ * requests from the client through the ModelController
  * 
  * @author NJack & JJoorisity
  * @version 1.0
@@ -21,12 +21,27 @@ public class ShopApp implements Commands {
 
 	private ModelController modelController;
 	private Inventory inventory;
+	private CustomerIndex customerIndex;
+	private CustomerCache customerCache;
+	private CustomerIdFilter customerIds;
+	private final ConcurrentHashMap<Integer, ItemStream> streams = new ConcurrentHashMap<Integer, ItemStream>();
 
 	/**
-	 * Constructor: initialize inventory class.
+	 * Constructor
+	 * @param inventory     (Inventory) inventory shared by every client session.
+	 * @param customerIndex (CustomerIndex) customer search index shared by every
+	 *                      client session.
+	 * @param customerCache (CustomerCache) customer cache shared by every client
+	 *                      session.
+	 * @param customerIds   (CustomerIdFilter) filter of saved customer IDs shared
+	 *                      by every client session.
 	 */
-	public ShopApp() {
-		this.inventory = new Inventory();
+	public ShopApp(Inventory inventory, CustomerIndex customerIndex, CustomerCache customerCache,
+			CustomerIdFilter customerIds) {
+		this.inventory = inventory;
+		this.customerIndex = customerIndex;
+		this.customerCache = customerCache;
+		this.customerIds = customerIds;
 	}
 
 	/**
@@ -38,25 +53,45 @@ public class ShopApp implements Commands {
 	}
 
 	/**
-	 * @return (Inventory) access local inventory object.
+	 * @return (Inventory) access shared inventory object.
 	 */
 	public Inventory getInventory() {
 		return this.inventory;
 	}
 
 	/**
-	 * Save new or modify existing customer. If customer id is not found in
-	 * database: create new else update.
+	 * Save new or modify existing customer with a single upsert. The customer ID
+	 * is added to the ID filter before the write, so no lookup can miss a saved
+	 * customer. The cached customer is dropped after the write, so the next
+	 * read loads the row last committed, whichever of two concurrent saves of
+	 * the customer committed last, and the index is updated with the saved
+	 * customer.
 	 * @param customer (Customer) the customer being adjusted
 	 * @return (boolean) returns true that change was successful.
 	 */
 	public boolean saveCustomer(Customer customer) {
-		if (modelController.getDbController().queryCustomer(customer.getCustomerId()) == null) {
-			modelController.getDbController().insertCustomer(customer);
-		} else {
-			modelController.getDbController().updateCustomer(customer);
+		this.customerIds.add(customer.getCustomerId());
+		boolean success = modelController.getDbController().saveCustomer(customer);
+		if (success) {
+			this.customerCache.invalidate(customer.getCustomerId());
+			this.customerIndex.put(customer);
 		}
-		return true;
+		return success;
+	}
+
+	/**
+	 * Insert a new item into the shop database, then into the shared inventory,
+	 * whose description index picks it up, so description searches find it
+	 * right away.
+	 * @param item (Item_Elec) the new item.
+	 * @return (boolean) true if the item was inserted.
+	 */
+	public boolean saveItem(Item_Elec item) {
+		boolean success = modelController.getDbController().insertItem(item);
+		if (success) {
+			this.getInventory().addItems(item);
+		}
+		return success;
 	}
 
 	/**
@@ -65,8 +100,10 @@ public class ShopApp implements Commands {
 	 * @return (boolean) true if removal was successful.
 	 */
 	public boolean removeCustomer(Customer customer) {
-		if (modelController.getDbController().queryCustomer(customer.getCustomerId()) != null) {
+		if (this.queryCustomer(customer.getCustomerId()) != null) {
 			modelController.getDbController().removeCustomer(customer);
+			this.customerCache.invalidate(customer.getCustomerId());
+			this.customerIndex.remove(customer.getCustomerId());
 			return true;
 		}
 		return false;
@@ -83,73 +120,184 @@ public class ShopApp implements Commands {
 	}
 
 	/**
-	 * Query a list of customers by customer last name.
-	 * @param name (String) last name of customers being searched.
-	 * @return (LinkedHashSet<Customer>) list of customers returned from mySQL
-	 *         query.
+	 * Search customers by last name, first name, phone number or postal code in
+	 * the shared customer index. Partial names and names one typo away match
+	 * too, so no database query is needed. Matches one typo away are looked for
+	 * among at most CustomerIndex.FUZZY_SCAN_LIMIT names per half of the text,
+	 * so some may be missing when that many names share a half.
+	 * @param name (String) text being searched.
+	 * @return (ArrayList<Customer>) matching customers, best match first.
 	 */
-	public LinkedHashSet<Customer> queryCustomer(String name) {
-		return modelController.getDbController().queryCustomer(name);
+	public ArrayList<Customer> queryCustomer(String name) {
+		return this.customerIndex.search(name);
 	}
 
 	/**
-	 * Query a customers by customer id.
+	 * Query a customers by customer id, through the shared customer cache. IDs
+	 * the customer ID filter has never seen are answered without a lookup.
 	 * @param id (int) id of customer being searched.
 	 * @return (Customer) customer returned from query.
 	 */
 	public Customer queryCustomer(int id) {
-		return modelController.getDbController().queryCustomer(id);
+		if (!this.customerIds.mightContain(id)) {
+			return null;
+		}
+		return this.customerCache.get(id, modelController.getDbController()::queryCustomer);
+	}
+
+	/**
+	 * Query one page of customers of a type, ordered by name.
+	 * @param type     (char) type of customer being searched.
+	 * @param after    (Customer) last customer of the previous page, null for the first page.
+	 * @param pageSize (int) maximum number of customers returned.
+	 * @return (LinkedHashSet<Customer>) the page, shorter than pageSize on the last page.
+	 */
+	public LinkedHashSet<Customer> queryCustomerPage(char type, Customer after, int pageSize) {
+		return modelController.getDbController().queryCustomerPage(type, after, pageSize);
 	}
 
 	/**
 	 * Execute a purchase by a customer for a specified quantity of an item.
+	 * The customer is looked up in the customer cache, so purchases by unknown
+	 * customers are refused without touching the stock. The stock is then taken
+	 * from the shared inventory, which refuses the purchase if too little is
+	 * left. The purchase is then written to the purchase journal and answered
+	 * once it is on disk; the database receives it with the journal's next
+	 * batch. If the journal fails the stock is returned to the inventory.
 	 * Returns a object message indicating successful purchase.
 	 * @param itemID     (int) id of item that was purchased.
 	 * @param qty        (int) quantity purchased of item.
 	 * @param customerID (int) id of customer executing the purchase.
+	 * @return (ObjectWrapper) response to the client.
 	 */
-	public void executePurchase(int itemID, int qty, int customerID) {
-		Item_Elec item = modelController.getDbController().queryItem(itemID);
-		boolean success = false;
+	public ObjectWrapper executePurchase(int itemID, int qty, int customerID) {
 		ObjectWrapper ow = new ObjectWrapper();
-		if (this.getInventory().decrement(item, qty)
-				&& modelController.getDbController().queryCustomer(customerID) != null) {
-			modelController.getDbController().updateItem(itemID, item.getQty()); // updates Item in db with new qty
-			this.updateOrders(item, qty);
-			modelController.getDbController().insertPurchases(itemID, customerID);
-			success = true;
+		int remaining = this.queryCustomer(customerID) != null ? this.getInventory().decrement(itemID, qty) : -1;
+		boolean success = remaining >= 0;
+		if (success) {
+			success = modelController.getDbController().executePurchase(itemID, qty, remaining, customerID,
+					this.getInventory().generateOrderID());
+			if (!success) {
+				this.getInventory().restock(itemID, qty);
+			}
 		}
 		if (success)
 			ow.setMessage(PURCHASE, PCOMPLETE);
 		else
 			ow.setMessage(PURCHASE, PFAILED);
-		try {
-			this.modelController.getOutputStream().writeObject(ow);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		return ow;
 	}
 
 	/**
-	 * Update the daily order with any new items that need to be ordered.
-	 * @param item (Item_Elec) item that needs to be ordered.
-	 * @param qty  (int) quantity of item that needs to be ordered.
+	 * Execute a cart purchase by a customer: many lines of an item ID and a
+	 * quantity bought together. The stock of each line is taken from the shared
+	 * inventory, which settles which lines can be bought; those lines are then
+	 * written to the purchase journal together, and their stock is returned if
+	 * it fails. In all or nothing mode a line failing cancels every other line.
+	 * The response carries the status of each line in request order: PCOMPLETE,
+	 * PFAILED, or PCANCELLED for a line dropped because another line failed.
+	 * @param customerID   (int) id of customer executing the purchase.
+	 * @param allOrNothing (boolean) true if no line is bought unless every line
+	 *                     is.
+	 * @param itemIDs      (int[]) id of the item of each line.
+	 * @param qtys         (int[]) quantity purchased on each line.
+	 * @return (ObjectWrapper) response to the client.
 	 */
-	private void updateOrders(Item_Elec item, int qty) {
-		if (item.getQty() < item.ORDERQTYLIMIT) {
-			int i = this.getInventory().generateOrderID();
-			Order temp = this.modelController.getDbController().queryOrder(i, this.modelController);
-			if (temp == null) {
-				temp = new Order(i);
-				modelController.getDbController().insertOrder(temp);
+	public ObjectWrapper executeCart(int customerID, boolean allOrNothing, int[] itemIDs, int[] qtys) {
+		int lines = itemIDs.length;
+		String[] status = new String[lines];
+		Arrays.fill(status, PFAILED);
+		boolean[] taken = new boolean[lines];
+		int[] remaining = new int[lines];
+		int takenCount = 0;
+		boolean known = this.queryCustomer(customerID) != null; // every line fails otherwise
+		for (int i = 0; known && i < lines; i++) {
+			remaining[i] = this.getInventory().decrement(itemIDs[i], qtys[i]);
+			taken[i] = remaining[i] >= 0;
+			if (taken[i]) {
+				takenCount++;
+			} else if (allOrNothing) {
+				// return the stock already taken and cancel the lines around the failed one
+				for (int j = 0; j < lines; j++) {
+					if (taken[j]) {
+						this.getInventory().restock(itemIDs[j], qtys[j]);
+					}
+					status[j] = j == i ? PFAILED : PCANCELLED;
+				}
+				takenCount = 0;
+				break;
 			}
+		}
+		if (takenCount > 0) {
+			int[] ids = new int[takenCount];
+			int[] amounts = new int[takenCount];
+			int[] left = new int[takenCount];
+			for (int i = 0, t = 0; i < itemIDs.length; i++) {
+				if (taken[i]) {
+					ids[t] = itemIDs[i];
+					left[t] = remaining[i];
+					amounts[t++] = qtys[i];
+				}
+			}
+			boolean committed = modelController.getDbController().executeCart(customerID, ids, amounts, left,
+					this.getInventory().generateOrderID());
+			for (int i = 0; i < itemIDs.length; i++) {
+				if (taken[i]) {
+					if (committed) {
+						status[i] = PCOMPLETE;
+					} else {
+						this.getInventory().restock(itemIDs[i], qtys[i]);
+					}
+				}
+			}
+		}
+		ObjectWrapper ow = new ObjectWrapper();
+		boolean complete = true;
+		for (String s : status) {
+			ow.addPassedObj(s);
+			complete &= PCOMPLETE.equals(s);
+		}
+		ow.setMessage(CART, complete ? PCOMPLETE : PFAILED);
+		return ow;
+	}
 
-			updateOrderLines(item, temp.getOrderID(), qty);
+	/**
+	 * Change the stock of an item by a receipt of reordered stock or a manual
+	 * correction. The shared inventory is changed first and the change is then
+	 * written to the purchase journal, as for a purchase; if the journal fails
+	 * the inventory is changed back. Stock added by the change may already be
+	 * bought, so it is only taken back down to zero and the shortfall is
+	 * reported.
+	 * @param command (String) RECEIVE or ADJUST.
+	 * @param itemID  (int) id of the item.
+	 * @param change  (int) quantity received, positive, or stock change of an
+	 *                adjustment.
+	 * @return (ObjectWrapper) response to the client.
+	 */
+	public ObjectWrapper changeStock(String command, int itemID, int change) {
+		ObjectWrapper ow = new ObjectWrapper();
+		boolean receipt = command.equals(RECEIVE);
+		int remaining = receipt && change <= 0 ? -1 : this.getInventory().adjust(itemID, change);
+		boolean success = remaining >= 0;
+		if (success) {
+			success = receipt ? modelController.getDbController().executeReceipt(itemID, change, remaining)
+					: modelController.getDbController().executeAdjustment(itemID, change, remaining);
+			if (!success && change < 0) {
+				this.getInventory().restock(itemID, -change);
+			} else if (!success) {
+				int shortfall = change - this.getInventory().withdraw(itemID, change);
+				if (shortfall > 0) {
+					System.err.println(command + " of " + change + " for item " + itemID + " failed, " + shortfall
+							+ " already sold could not be taken back.");
+				}
+			}
 		}
+		ow.setMessage(command, success ? COMPLETE : FAILED);
+		return ow;
 	}
 
 	/**
-	 * Return a supplier from the database based on the passed ID
+	 * Return a supplier from the supplier snapshot based on the passed ID
 	 * @param supplierID (int) 4 digit supplier ID to return
 	 * @return (Supplier) retunrs single queried supplier or null if ID does not
 	 *         match DB
@@ -158,60 +306,61 @@ public class ShopApp implements Commands {
 		return this.modelController.getDbController().querySupplier(supplierID);
 	}
 
-	/**
-	 * Update the daily order's orderlines by adding a new line or updating existing
-	 * line's quantity.
-	 * @param item    (Item_Elec) item that needs to be ordered.
-	 * @param orderId (int) order id that the orderline is being added to.
-	 * @param qty     (int) quantity of item needing to be ordered.
-	 */
-	public void updateOrderLines(Item_Elec item, int orderId, int qty) {
-		OrderLine templine = this.modelController.getDbController().queryOrderLine(item.getItemID(), orderId);
-
-		if (templine == null) {
-			Item_Elec tempItem = this.queryItem(item.getItemID());
-			Int_Supplier tempSupp = this.querySupplier(tempItem.getSupplierID());
-			modelController.getDbController().insertOrderLine(
-					new OrderLine(item.getItemID(), item.ORDERQTYLIMIT - item.getQty(), tempSupp.getCompanyName()),
-					orderId);
-		} else {
-			modelController.getDbController().updateOrderLine(templine, qty, orderId);
-		}
-	}
-
 	/**
 	 * Query an item by the item name/description.
 	 * @param itemDesc (String) description of item being searched.
 	 * @return (LinkedHashSet<Item_Elec>) list of items matching the item
-	 *         description.
+	 *         description, read from the shared inventory.
 	 */
 	public LinkedHashSet<Item_Elec> queryItem(String itemDesc) {
-		return modelController.getDbController().queryItem(itemDesc);
+		return this.getInventory().searchItems(itemDesc);
 	}
 
 	/**
-	 * Query all items listed in the database
+	 * Query all items listed in the shared inventory.
 	 * @return (LinkedHashSet<Item_Elec>) list of all items.
 	 */
 	public LinkedHashSet<Item_Elec> queryItem() {
-		return modelController.getDbController().queryItem();
+		return this.getInventory().getItemList();
 	}
 
 	/**
-	 * Query an item from the database by its id.
+	 * Query one page of items ordered by item id. The database picks the items
+	 * of the page, but stock changes only reach it when the purchase journal is
+	 * applied, so each item is replaced by its copy in the shared inventory,
+	 * which holds the current stock.
+	 * @param afterItemId (int) id of the last item of the previous page,
+	 *                    Integer.MIN_VALUE for the first page.
+	 * @param pageSize    (int) maximum number of items returned.
+	 * @return (LinkedHashSet<Item_Elec>) the page, shorter than pageSize on the
+	 *         last page.
+	 */
+	public LinkedHashSet<Item_Elec> queryItemPage(int afterItemId, int pageSize) {
+		LinkedHashSet<Item_Elec> rows = modelController.getDbController().queryItemPage(afterItemId, pageSize);
+		LinkedHashSet<Item_Elec> page = new LinkedHashSet<Item_Elec>(rows.size() * 2);
+		for (Item_Elec row : rows) {
+			Item_Elec current = this.getInventory().getItem(row.getItemID());
+			page.add(current == null ? row : current);
+		}
+		return page;
+	}
+
+	/**
+	 * Query an item from the shared inventory by its id.
 	 * @param itemId (int) id of item being searched.
 	 * @return (Item_Elec) item matching the item id.
 	 */
 	public Item_Elec queryItem(int itemId) {
-		return modelController.getDbController().queryItem(itemId);
+		return this.getInventory().getItem(itemId);
 	}
 
 	/**
 	 * Delete a specified object from the database.
 	 * Case for Customer.
 	 * @param request (ObjectWrapper) specified object to be removed.
+	 * @return (ObjectWrapper) response to the client.
 	 */
-	private void deleteObject(ObjectWrapper request) {
+	private ObjectWrapper deleteObject(ObjectWrapper request) {
 		String type = request.getMessage()[1];
 		ObjectWrapper ow = new ObjectWrapper();
 		boolean success = false;
@@ -225,20 +374,16 @@ public class ShopApp implements Commands {
 			ow.setMessage(COMPLETE, null);
 		else
 			ow.setMessage(FAILED, null);
-		try {
-			this.modelController.getOutputStream().writeObject(ow);
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		return ow;
 	}
 
 	/**
 	 * Save the specified object in the appropriate table in the database.
-	 * Case for Customer.
+	 * Case for Customer or a new Item_Elec.
 	 * @param request (ObjectWrapper) object to be saved.
+	 * @return (ObjectWrapper) response to the client.
 	 */
-	private void saveObject(ObjectWrapper request) {
+	private ObjectWrapper saveObject(ObjectWrapper request) {
 		String type = request.getMessage()[1];
 		ObjectWrapper ow = new ObjectWrapper();
 		boolean success = false;
@@ -246,25 +391,24 @@ public class ShopApp implements Commands {
 		case CUSTOMER:
 			success = this.saveCustomer((Customer) request.getPassedObj(0));
 			break;
-		// case "ITEM_ELEC": this.saveItem((Item_Elec)request.getPassedObj(0));
+		case ITEM_ELEC:
+			success = this.saveItem((Item_Elec) request.getPassedObj(0));
+			break;
 		}
 		if (success)
 			ow.setMessage(COMPLETE, null);
 		else
 			ow.setMessage(FAILED, null);
-		try {
-			this.modelController.getOutputStream().writeObject(ow);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		return ow;
 	}
 
 	/**
 	 * Search a specific object in the database.
 	 * Case for Customer, Item_Elec, or Order.
 	 * @param request (ObjectWrapper) Object to be searched.
+	 * @return (ObjectWrapper) response to the client.
 	 */
-	private void searchObject(ObjectWrapper request) {
+	private ObjectWrapper searchObject(ObjectWrapper request) {
 		String type = request.getMessage()[1];
 		String command = request.getMessage()[0];
 		ArrayList<Object> searchObject = new ArrayList<Object>();
@@ -272,7 +416,11 @@ public class ShopApp implements Commands {
 		switch (type) {
 		case CUSTOMER: {
 			Customer c = (Customer) request.getPassedObj(0);
-			if (command.equals(ID) || command.contains(ID)) {
+			if (command.contains(PAGE)) {
+				// a key without a last name asks for the first page
+				searchObject.addAll(this.queryCustomerPage(c.getCustomerType(), c.getLastName() == null ? null : c,
+						(Integer) request.getPassedObj(1)));
+			} else if (command.equals(ID) || command.contains(ID)) {
 				searchObject.add(this.queryCustomer(c.getCustomerId()));
 				if (command.contains("EDIT")) {
 					ow.setMessage(DISPLAYEDIT, CUSTOMER); // special case for customer edit pane
@@ -295,7 +443,15 @@ public class ShopApp implements Commands {
 
 		case ITEM_ELEC: {
 			Item_Elec item = (Item_Elec) request.getPassedObj(0);
-			if (command.contains(ID))
+			if (command.contains(PAGE)) {
+				// a null key asks for the first page
+				searchObject.addAll(this.queryItemPage(item == null ? Integer.MIN_VALUE : item.getItemID(),
+						(Integer) request.getPassedObj(1)));
+			} else if (request.getRequestId() != 0 && !command.contains(ID)) {
+				// pipelining clients receive name and ALL searches in chunks
+				this.streamItems(request.getRequestId(), command.contains(NAME) ? item.getItemDesc() : null);
+				return null;
+			} else if (command.contains(ID))
 				searchObject.add(this.queryItem(item.getItemID()));
 			else if (command.contains(NAME))
 				searchObject.addAll(this.queryItem(item.getItemDesc()));
@@ -318,14 +474,43 @@ public class ShopApp implements Commands {
 			break;
 		}
 		}
-		try {
-			ow.addPassedObj(searchObject);
-			this.modelController.getOutputStream().writeObject(ow);
-		} catch (IOException e) {
-			e.printStackTrace();
+		ow.addPassedObj(searchObject);
+		return ow;
+	}
+
+	/**
+	 * Start streaming an item search to the client. The first chunks are sent
+	 * right away, the rest as the client grants credit.
+	 * @param requestId (int) ID of the search request.
+	 * @param itemDesc  (String) description filter, null for all items.
+	 */
+	private void streamItems(int requestId, String itemDesc) {
+		ItemStream stream = new ItemStream(this.getInventory(), this.modelController, requestId, itemDesc);
+		streams.put(requestId, stream);
+		if (stream.grant(WrapperCodec.STREAM_WINDOW)) {
+			streams.remove(requestId);
+		}
+	}
+
+	/**
+	 * Continue a streamed reply the client is ready to receive more of.
+	 * @param request (ObjectWrapper) CREDIT message carrying the stream's request
+	 *                ID and the number of chunks granted.
+	 */
+	private void grantCredit(ObjectWrapper request) {
+		ItemStream stream = streams.get(request.getRequestId());
+		if (stream != null && stream.grant((Integer) request.getPassedObj(0))) {
+			streams.remove(request.getRequestId());
 		}
 	}
 
+	/**
+	 * Drop the streamed replies still waiting for credit, once the client is gone.
+	 */
+	public void close() {
+		streams.clear();
+	}
+
 	/**
 	 * Calls a print of the daily order.
 	 * @return (String) the print success message.
@@ -345,43 +530,69 @@ public class ShopApp implements Commands {
 	}
 
 	/**
-	 * Run method to generate communication between the client and server.
+	 * Execute a single client request. Called by a server worker thread once the
+	 * complete request has been read from the client; requests of one client
+	 * may execute concurrently. The response carries the request ID so the
+	 * client can match it to the request.
+	 * @param request (ObjectWrapper) the request sent by the client.
+	 * @return (boolean) false if the client asked to end the session.
 	 */
-	public void runShop() {
-		try {
-			while (true) {
-				ObjectWrapper request = (ObjectWrapper) this.modelController.getInputStream().readObject();
-				String command = request.getMessage()[0];
-				if (command.contains(SEARCH)) {
-					this.searchObject(request); // search not save
-				} else if (command.contentEquals(QUIT)) {
-					break;
-				} else if (request != null && !command.equals("")) {
-					System.out.println("command : " + command);
-
-					switch (command) {
-					case SAVE: {
-						this.saveObject(request);
-						break;
-					}
-					case DELETE: {
-						this.deleteObject(request);
-						break;
-					}
-					case PURCHASE: {
-						ArrayList<Integer> purchase = (ArrayList<Integer>) request.getPassedObj(0);
-						this.executePurchase(purchase.get(0), purchase.get(1), purchase.get(2));
-						break;
-					}
+	@SuppressWarnings("unchecked")
+	public boolean handleRequest(ObjectWrapper request) {
+		String command = request.getMessage()[0];
+		if (command == null || command.equals("")) {
+			return true;
+		}
+		ObjectWrapper response = null;
+		if (command.contains(SEARCH)) {
+			response = this.searchObject(request); // search not save
+		} else if (command.contentEquals(QUIT)) {
+			return false;
+		} else if (command.equals(CREDIT)) {
+			this.grantCredit(request); // no reply, the stream answers with chunks
+		} else {
+			System.out.println("command : " + command);
 
-					}
+			switch (command) {
+			case SAVE: {
+				response = this.saveObject(request);
+				break;
+			}
+			case DELETE: {
+				response = this.deleteObject(request);
+				break;
+			}
+			case PURCHASE: {
+				ArrayList<Integer> purchase = (ArrayList<Integer>) request.getPassedObj(0);
+				response = this.executePurchase(purchase.get(0), purchase.get(1), purchase.get(2));
+				break;
+			}
+			case CART: {
+				ArrayList<Integer> cart = (ArrayList<Integer>) request.getPassedObj(0);
+				int lines = (cart.size() - 2) / 2;
+				int[] itemIDs = new int[lines];
+				int[] qtys = new int[lines];
+				for (int i = 0; i < lines; i++) {
+					itemIDs[i] = cart.get(2 + 2 * i);
+					qtys[i] = cart.get(3 + 2 * i);
 				}
-				request.resetWrapper();
+				response = this.executeCart(cart.get(0), cart.get(1) != 0, itemIDs, qtys);
+				break;
+			}
+			case RECEIVE:
+			case ADJUST: {
+				ArrayList<Integer> change = (ArrayList<Integer>) request.getPassedObj(0);
+				response = this.changeStock(command, change.get(0), change.get(1));
+				break;
 			}
-		} catch (ClassNotFoundException | IOException ex) {
-			System.err.println(ex.getStackTrace());
-		}
 
+			}
+		}
+		if (response != null) {
+			response.setRequestId(request.getRequestId());
+			this.modelController.sendResponse(response);
+		}
+		return true;
 	}
 
 }
@@ -0,0 +1,467 @@
+package sharedModel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Compact binary encoding of object wrappers, used instead of Java
+ * serialization once both sides agree on it at connect time (see WireFormat).
+ *
+ * A payload is the command and object type, each as a one byte opcode for the
+ * known Commands strings or opcode 0 followed by the literal string, then the
+ * request ID and a flags byte, then the number of passed objects and each object behind a one byte tag. Items,
+ * customers, orders and order lines are written field by field; other
+ * serializable objects fall back to an embedded Java serialization blob.
+ * Ints, counts and string lengths are variable length integers, so small IDs
+ * and quantities take one or two bytes; prices are variable length cents.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class BinaryWrapperCodec implements Commands {
+
+	// message opcodes, position in the table is the opcode sent on the wire
+	private static final String[] OPCODES = { null, "", CUSTOMER, COMPLETE, FAILED, ID, NAME, ALL, TYPE, DISPLAY,
+			ITEM_ELEC, ORDER, SAVE, SEARCH, DELETE, PURCHASE, QUIT, DISPLAYEDIT, DISPLAYITEM, PCOMPLETE, PFAILED,
+			SEARCH + ID, SEARCH + NAME, SEARCH + TYPE, SEARCH + ALL, SEARCH + ID + "EDIT", SEARCH + ORDER,
+			SEARCH + PAGE, CART, RECEIVE, ADJUST };
+	private static final int LITERAL = 0;
+	private static final int NULL_MESSAGE = 255;
+	private static final int FLAG_MORE = 1;
+	private static final HashMap<String, Integer> OPCODE_OF = new HashMap<String, Integer>();
+
+	// tags of passed objects
+	private static final int TAG_NULL = 0;
+	private static final int TAG_INT = 1;
+	private static final int TAG_STRING = 2;
+	private static final int TAG_ITEM_ELEC = 3;
+	private static final int TAG_CUSTOMER = 4;
+	private static final int TAG_ORDER = 5;
+	private static final int TAG_ORDER_LINE = 6;
+	private static final int TAG_LIST = 7;
+	private static final int TAG_SERIALIZED = 8;
+
+	static {
+		for (int op = 1; op < OPCODES.length; op++) {
+			OPCODE_OF.put(OPCODES[op], op);
+		}
+	}
+
+	private BinaryWrapperCodec() {
+	}
+
+	/**
+	 * Encode an object wrapper into a frame payload.
+	 * @param ow (ObjectWrapper) the wrapper being sent.
+	 * @return (byte[]) encoded payload without the length header.
+	 * @throws IOException if a passed object can not be encoded.
+	 */
+	public static byte[] encode(ObjectWrapper ow) throws IOException {
+		Writer out = new Writer(256);
+		writeMessage(out, ow.getMessage()[0]);
+		writeMessage(out, ow.getMessage()[1]);
+		writeVarInt(out, ow.getRequestId());
+		out.writeByte(ow.isMore() ? FLAG_MORE : 0);
+		ArrayList<Object> passed = ow.getPassedObj();
+		writeVarInt(out, passed.size());
+		for (Object o : passed) {
+			writeObject(out, o);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decode a frame payload back into an object wrapper.
+	 * @param payload (byte[]) frame payload without the length header.
+	 * @return (ObjectWrapper) the wrapper that was sent.
+	 * @throws IOException if the payload is not a valid wrapper.
+	 */
+	public static ObjectWrapper decode(byte[] payload) throws IOException {
+		Reader in = new Reader(payload);
+		ObjectWrapper ow = new ObjectWrapper();
+		String command = readMessage(in);
+		String type = readMessage(in);
+		ow.setMessage(command, type);
+		ow.setRequestId(readVarInt(in));
+		ow.setMore((in.readUnsignedByte() & FLAG_MORE) != 0);
+		int count = readLength(in);
+		for (int i = 0; i < count; i++) {
+			ow.addPassedObj(readObject(in));
+		}
+		return ow;
+	}
+
+	private static void writeMessage(Writer out, String message) throws IOException {
+		if (message == null) {
+			out.writeByte(NULL_MESSAGE);
+			return;
+		}
+		Integer op = OPCODE_OF.get(message);
+		if (op != null) {
+			out.writeByte(op);
+		} else {
+			out.writeByte(LITERAL);
+			writeString(out, message);
+		}
+	}
+
+	private static String readMessage(Reader in) throws IOException {
+		int op = in.readUnsignedByte();
+		if (op == NULL_MESSAGE) {
+			return null;
+		}
+		if (op == LITERAL) {
+			return readString(in);
+		}
+		if (op >= OPCODES.length) {
+			throw new IOException("Unknown message opcode " + op);
+		}
+		return OPCODES[op];
+	}
+
+	/**
+	 * Write one passed object behind its tag.
+	 * @param out (Writer) payload being written.
+	 * @param o   (Object) the object, may be null.
+	 * @throws IOException if the object is neither known nor serializable.
+	 */
+	private static void writeObject(Writer out, Object o) throws IOException {
+		if (o == null) {
+			out.writeByte(TAG_NULL);
+		} else if (o instanceof Integer) {
+			out.writeByte(TAG_INT);
+			writeSignedVarInt(out, (Integer) o);
+		} else if (o instanceof String) {
+			out.writeByte(TAG_STRING);
+			writeString(out, (String) o);
+		} else if (o.getClass() == Item_Elec.class) {
+			out.writeByte(TAG_ITEM_ELEC);
+			writeItem(out, (Item_Elec) o);
+		} else if (o.getClass() == Customer.class) {
+			out.writeByte(TAG_CUSTOMER);
+			writeCustomer(out, (Customer) o);
+		} else if (o.getClass() == Order.class) {
+			out.writeByte(TAG_ORDER);
+			writeOrder(out, (Order) o);
+		} else if (o.getClass() == OrderLine.class) {
+			out.writeByte(TAG_ORDER_LINE);
+			writeOrderLine(out, (OrderLine) o);
+		} else if (o instanceof List) {
+			List<?> list = (List<?>) o;
+			out.writeByte(TAG_LIST);
+			writeVarInt(out, list.size());
+			for (Object element : list) {
+				writeObject(out, element);
+			}
+		} else {
+			ByteArrayOutputStream blob = new ByteArrayOutputStream();
+			try (ObjectOutputStream objectOut = new ObjectOutputStream(blob)) {
+				objectOut.writeObject(o);
+			}
+			out.writeByte(TAG_SERIALIZED);
+			writeVarInt(out, blob.size());
+			out.write(blob.toByteArray());
+		}
+	}
+
+	/**
+	 * Read one tagged passed object.
+	 * @param in (Reader) payload being read.
+	 * @return (Object) the object, may be null.
+	 * @throws IOException if the tag or the object is invalid.
+	 */
+	private static Object readObject(Reader in) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_INT:
+			return readSignedVarInt(in);
+		case TAG_STRING:
+			return readString(in);
+		case TAG_ITEM_ELEC:
+			return readItem(in);
+		case TAG_CUSTOMER:
+			return readCustomer(in);
+		case TAG_ORDER:
+			return readOrder(in);
+		case TAG_ORDER_LINE:
+			return readOrderLine(in);
+		case TAG_LIST: {
+			int size = readLength(in);
+			ArrayList<Object> list = new ArrayList<Object>(Math.min(size, 1024));
+			for (int i = 0; i < size; i++) {
+				list.add(readObject(in));
+			}
+			return list;
+		}
+		case TAG_SERIALIZED: {
+			byte[] blob = new byte[readLength(in)];
+			in.readFully(blob);
+			try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(blob))) {
+				return objectIn.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Unknown class in binary frame", e);
+			}
+		}
+		default:
+			throw new IOException("Unknown object tag " + tag);
+		}
+	}
+
+	private static void writeItem(Writer out, Item_Elec item) throws IOException {
+		writeSignedVarInt(out, item.getItemID());
+		writeVarInt(out, item.getItemType());
+		writeString(out, item.getItemDesc());
+		writeSignedVarInt(out, item.getQty());
+		writeSignedVarLong(out, item.getPriceCents());
+		writeSignedVarInt(out, item.getSupplierID());
+		writeString(out, item.getPowerType());
+		writeSignedVarInt(out, item.getVoltage());
+		writeSignedVarInt(out, item.getPhase());
+	}
+
+	private static Item_Elec readItem(Reader in) throws IOException {
+		int itemID = readSignedVarInt(in);
+		char itemType = (char) readVarInt(in);
+		String itemDesc = readString(in);
+		int qty = readSignedVarInt(in);
+		long priceCents = readSignedVarLong(in);
+		int supplierID = readSignedVarInt(in);
+		String powerType = readString(in);
+		int voltage = readSignedVarInt(in);
+		int phase = readSignedVarInt(in);
+		return new Item_Elec(itemID, itemType, itemDesc, qty, priceCents, supplierID, powerType, voltage, phase);
+	}
+
+	private static void writeCustomer(Writer out, Customer c) throws IOException {
+		writeSignedVarInt(out, c.getCustomerId());
+		writeString(out, c.getFirstName());
+		writeString(out, c.getLastName());
+		writeString(out, c.getAddress());
+		writeString(out, c.getPostalCode());
+		writeString(out, c.getPhoneNum());
+		writeVarInt(out, c.getCustomerType());
+	}
+
+	private static Customer readCustomer(Reader in) throws IOException {
+		int id = readSignedVarInt(in);
+		String first = readString(in);
+		String last = readString(in);
+		String address = readString(in);
+		String postalCode = readString(in);
+		String phoneNum = readString(in);
+		char type = (char) readVarInt(in);
+		return new Customer(id, first, last, address, postalCode, phoneNum, type);
+	}
+
+	private static void writeOrder(Writer out, Order order) throws IOException {
+		writeSignedVarInt(out, order.getOrderID());
+		writeSignedVarInt(out, (int) order.getDate().toEpochDay());
+		writeVarInt(out, order.getOrderLines().size());
+		for (OrderLine line : order.getOrderLines()) {
+			writeOrderLine(out, line);
+		}
+	}
+
+	private static Order readOrder(Reader in) throws IOException {
+		Order order = new Order(readSignedVarInt(in));
+		order.setDate(LocalDate.ofEpochDay(readSignedVarInt(in)));
+		int count = readLength(in);
+		LinkedHashSet<OrderLine> lines = new LinkedHashSet<OrderLine>();
+		for (int i = 0; i < count; i++) {
+			lines.add(readOrderLine(in));
+		}
+		order.setOrderLines(lines);
+		return order;
+	}
+
+	private static void writeOrderLine(Writer out, OrderLine line) throws IOException {
+		writeSignedVarInt(out, line.getItemId());
+		writeSignedVarInt(out, line.getOrderQty());
+		writeString(out, line.getSupplierName());
+	}
+
+	private static OrderLine readOrderLine(Reader in) throws IOException {
+		int itemId = readSignedVarInt(in);
+		int qty = readSignedVarInt(in);
+		return new OrderLine(itemId, qty, readString(in));
+	}
+
+	/**
+	 * Write a nullable string as its UTF-8 byte count plus one (0 for null)
+	 * followed by the bytes.
+	 */
+	private static void writeString(Writer out, String s) {
+		if (s == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, utf8.length + 1);
+		out.write(utf8);
+	}
+
+	private static String readString(Reader in) throws IOException {
+		int length = readLength(in) - 1;
+		if (length < 0) {
+			return null;
+		}
+		return in.readUtf8(length);
+	}
+
+	/**
+	 * Write an int as unsigned 7 bit groups, low group first.
+	 */
+	private static void writeVarInt(Writer out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(Reader in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+
+	/**
+	 * Read a count or byte length, rejecting values longer than the payload.
+	 */
+	private static int readLength(Reader in) throws IOException {
+		int value = readVarInt(in);
+		if (value < 0 || value > in.remaining() + 1) {
+			throw new IOException("Invalid length " + value);
+		}
+		return value;
+	}
+
+	/**
+	 * Write an int that may be negative, zigzag encoded so -1 takes one byte.
+	 */
+	private static void writeSignedVarInt(Writer out, int value) {
+		writeVarInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	private static int readSignedVarInt(Reader in) throws IOException {
+		int value = readVarInt(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Write a long that may be negative as zigzag encoded 7 bit groups, so a
+	 * price in cents takes two or three bytes.
+	 */
+	private static void writeSignedVarLong(Writer out, long value) {
+		long zigzag = (value << 1) ^ (value >> 63);
+		while ((zigzag & ~0x7FL) != 0) {
+			out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+			zigzag >>>= 7;
+		}
+		out.writeByte((int) zigzag);
+	}
+
+	private static long readSignedVarLong(Reader in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return (value >>> 1) ^ -(value & 1);
+			}
+		}
+		throw new IOException("Malformed variable length long");
+	}
+
+	/**
+	 * Growable output buffer. Used instead of a DataOutputStream over a
+	 * ByteArrayOutputStream, whose synchronized writes cost a lock per field.
+	 */
+	private static final class Writer {
+		private byte[] buf;
+		private int pos;
+
+		Writer(int capacity) {
+			this.buf = new byte[capacity];
+		}
+
+		void writeByte(int b) {
+			if (pos == buf.length) {
+				buf = Arrays.copyOf(buf, buf.length * 2);
+			}
+			buf[pos++] = (byte) b;
+		}
+
+		void write(byte[] bytes) {
+			if (pos + bytes.length > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + bytes.length));
+			}
+			System.arraycopy(bytes, 0, buf, pos, bytes.length);
+			pos += bytes.length;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(buf, pos);
+		}
+	}
+
+	/**
+	 * Input cursor over a received payload.
+	 */
+	private static final class Reader {
+		private final byte[] buf;
+		private int pos;
+
+		Reader(byte[] buf) {
+			this.buf = buf;
+		}
+
+		int remaining() {
+			return buf.length - pos;
+		}
+
+		int readUnsignedByte() throws EOFException {
+			if (pos >= buf.length) {
+				throw new EOFException("Truncated binary frame");
+			}
+			return buf[pos++] & 0xFF;
+		}
+
+		void readFully(byte[] bytes) throws EOFException {
+			if (bytes.length > remaining()) {
+				throw new EOFException("Truncated binary frame");
+			}
+			System.arraycopy(buf, pos, bytes, 0, bytes.length);
+			pos += bytes.length;
+		}
+
+		String readUtf8(int length) throws EOFException {
+			if (length > remaining()) {
+				throw new EOFException("Truncated binary frame");
+			}
+			String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+			pos += length;
+			return s;
+		}
+	}
+}
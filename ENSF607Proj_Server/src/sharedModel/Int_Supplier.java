@@ -10,28 +10,31 @@ package sharedModel;
  */
 public class Int_Supplier extends Supplier {
 
-	double importTax;
+	long importTaxBasisPoints; // hundredths of a percent
 
 	public Int_Supplier(int supplierID, char supplierType, String companyName, String address, String salesContact,
-			double importTax) {
+			long importTaxBasisPoints) {
 		super(supplierID, supplierType, companyName, address, salesContact);
-		this.setImportTax(importTax);
+		this.setImportTaxBasisPoints(importTaxBasisPoints);
 	}
 
-	public double getImportTax() {
-		return importTax;
+	/**
+	 * @return (long) import tax rate in hundredths of a percent.
+	 */
+	public long getImportTaxBasisPoints() {
+		return importTaxBasisPoints;
 	}
 
-	public void setImportTax(double importTax) {
-		this.importTax = importTax;
+	public void setImportTaxBasisPoints(long importTaxBasisPoints) {
+		this.importTaxBasisPoints = importTaxBasisPoints;
 	}
 
 	@Override
 	public String toString() {
 
-		String leftAlignFormat = "| %-15s | %-7d | %-8d | %-9.2f | %-9.2f |%n";
+		String leftAlignFormat = "| %-15s | %-7s | %-8s | %-9s | %-9s |%n";
 		String res = String.format(leftAlignFormat, this.getSupplierID(), this.getCompanyName(), this.getAddress(),
-				this.getSalesContact(), this.getImportTax());
+				this.getSalesContact(), Money.format(this.getImportTaxBasisPoints()));
 		return res;
 	}
 
@@ -1,5 +1,9 @@
 package sharedModel;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.sql.PreparedStatement;
 import java.util.Objects;
@@ -15,14 +19,25 @@ import java.util.Objects;
 
 public class Item implements PrintTableConstants, Serializable {
 
-	private static final long serialVersionUID = 2L;
+	private static final long serialVersionUID = 2L; // serialized form unchanged, see serialPersistentFields
 	protected int itemID;
 	protected char itemType;
 	protected String itemDesc;
 	protected int qty;
-	protected double price;
+	protected long priceCents;
 	protected int supplierID;
-	public final int ORDERQTYLIMIT = 40;
+	public static final int ORDERQTYLIMIT = 40; // stock level below which an item is reordered
+
+	/**
+	 * Serialized form of version 2, from before prices were held in cents, so
+	 * that clients still using the serialized wire format exchange items with
+	 * this one: the price travels as a double and the reorder limit as an
+	 * instance field.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = { new ObjectStreamField("itemID", int.class),
+			new ObjectStreamField("itemType", char.class), new ObjectStreamField("itemDesc", String.class),
+			new ObjectStreamField("qty", int.class), new ObjectStreamField("price", double.class),
+			new ObjectStreamField("supplierID", int.class), new ObjectStreamField("ORDERQTYLIMIT", int.class) };
 
 	/**
 	 * Constructor, requires all inputs to be initialized
@@ -30,15 +45,15 @@ public class Item implements PrintTableConstants, Serializable {
 	 * @param itemID     integer itemID from txt file
 	 * @param itemName   String item name from txt file
 	 * @param qty        integer qty from txt file
-	 * @param price      double price from txt file
+	 * @param priceCents long price in cents
 	 * @param supplierID String of numerical supplier id
 	 */
-	public Item(int itemID, char itemType, String itemDesc, int qty, double price, int supplierID) {
+	public Item(int itemID, char itemType, String itemDesc, int qty, long priceCents, int supplierID) {
 		this.setItemID(itemID);
 		this.setItemType(itemType);
 		this.setItemDesc(itemDesc);
 		this.setQty(qty);
-		this.setPrice(price);
+		this.setPriceCents(priceCents);
 		this.setSupplierID(supplierID);
 
 	}
@@ -74,12 +89,15 @@ public class Item implements PrintTableConstants, Serializable {
 		this.qty = qty;
 	}
 
-	public double getPrice() {
-		return price;
+	/**
+	 * @return (long) price in cents.
+	 */
+	public long getPriceCents() {
+		return priceCents;
 	}
 
-	public void setPrice(double price) {
-		this.price = price;
+	public void setPriceCents(long priceCents) {
+		this.priceCents = priceCents;
 	}
 
 	public int getSupplierID() {
@@ -98,6 +116,40 @@ public class Item implements PrintTableConstants, Serializable {
 		this.itemType = itemType;
 	}
 
+	/**
+	 * Write the item in its version 2 serialized form.
+	 * @param out (ObjectOutputStream) stream written.
+	 * @throws IOException if the stream could not be written.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("itemID", itemID);
+		fields.put("itemType", itemType);
+		fields.put("itemDesc", itemDesc);
+		fields.put("qty", qty);
+		fields.put("price", priceCents / 100.0);
+		fields.put("supplierID", supplierID);
+		fields.put("ORDERQTYLIMIT", ORDERQTYLIMIT);
+		out.writeFields();
+	}
+
+	/**
+	 * Read an item written in its version 2 serialized form, rounding the price
+	 * to the nearest cent.
+	 * @param in (ObjectInputStream) stream read.
+	 * @throws IOException            if the stream could not be read.
+	 * @throws ClassNotFoundException if a class of the stream is unknown.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		itemID = fields.get("itemID", 0);
+		itemType = fields.get("itemType", '\0');
+		itemDesc = (String) fields.get("itemDesc", null);
+		qty = fields.get("qty", 0);
+		priceCents = Math.round(fields.get("price", 0.0) * 100);
+		supplierID = fields.get("supplierID", 0);
+	}
+
 	/**
 	 * {@inheritDoc} To string returns a line representation of the item delimited
 	 * by commas
@@ -105,7 +157,7 @@ public class Item implements PrintTableConstants, Serializable {
 	@Override
 	public String toString() {
 		String res = String.valueOf(getItemID()) + "," + this.getItemDesc() + "," + String.valueOf(this.getQty()) + ","
-				+ String.valueOf(this.getPrice());
+				+ Money.format(this.getPriceCents());
 		return res;
 
 	}
@@ -0,0 +1,71 @@
+package sharedModel;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point amounts with two decimals held in a long: prices in cents and
+ * import tax rates in hundredths of a percent (basis points). Sums and
+ * products of amounts are exact long arithmetic; this class only converts at
+ * the edges, from text files and DECIMAL columns and to printed text.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public final class Money {
+
+	public static final int SCALE = 2; // digits after the decimal point
+
+	private Money() {
+	}
+
+	/**
+	 * @param text (String) decimal amount such as 35.50, rounded half up past
+	 *             two decimals.
+	 * @return (long) amount in hundredths.
+	 * @throws NumberFormatException if the text is not a decimal number or is
+	 *                               out of range.
+	 */
+	public static long parse(String text) {
+		return fromDecimal(new BigDecimal(text.trim()));
+	}
+
+	/**
+	 * @param value (BigDecimal) amount read from a DECIMAL column, may be null.
+	 * @return (long) amount in hundredths, 0 for null like ResultSet.getDouble().
+	 * @throws ArithmeticException if the amount does not fit in a long.
+	 */
+	public static long fromDecimal(BigDecimal value) {
+		if (value == null) {
+			return 0;
+		}
+		return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	/**
+	 * @param hundredths (long) amount in hundredths.
+	 * @return (BigDecimal) exact amount for a DECIMAL column.
+	 */
+	public static BigDecimal toDecimal(long hundredths) {
+		return BigDecimal.valueOf(hundredths, SCALE);
+	}
+
+	/**
+	 * @param hundredths (long) amount in hundredths.
+	 * @return (String) amount with two decimals, such as 35.50 or -0.05.
+	 */
+	public static String format(long hundredths) {
+		long units = Math.abs(hundredths / 100);
+		int fraction = (int) Math.abs(hundredths % 100);
+		StringBuilder res = new StringBuilder(24);
+		if (hundredths < 0) {
+			res.append('-');
+		}
+		res.append(units).append('.');
+		if (fraction < 10) {
+			res.append('0');
+		}
+		return res.append(fraction).toString();
+	}
+}
@@ -0,0 +1,57 @@
+package sharedModel;
+
+import java.io.IOException;
+
+/**
+ * Payload encoding used on a connection. A new client opens the connection by
+ * sending WrapperCodec.BINARY_HELLO instead of a frame length; a server that
+ * understands it answers with the same 4 bytes and both sides then use the
+ * BINARY encoding. Connections that start directly with a frame keep the
+ * original SERIALIZED encoding, so older clients continue to work.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public enum WireFormat {
+
+	/** Java serialization of the whole object wrapper. */
+	SERIALIZED {
+		@Override
+		public byte[] encode(ObjectWrapper ow) throws IOException {
+			return WrapperCodec.encode(ow);
+		}
+
+		@Override
+		public ObjectWrapper decode(byte[] payload) throws IOException {
+			return WrapperCodec.decode(payload);
+		}
+	},
+
+	/** Compact opcode and field encoding of BinaryWrapperCodec. */
+	BINARY {
+		@Override
+		public byte[] encode(ObjectWrapper ow) throws IOException {
+			return BinaryWrapperCodec.encode(ow);
+		}
+
+		@Override
+		public ObjectWrapper decode(byte[] payload) throws IOException {
+			return BinaryWrapperCodec.decode(payload);
+		}
+	};
+
+	/**
+	 * @param ow (ObjectWrapper) the wrapper being sent.
+	 * @return (byte[]) frame payload without the length header.
+	 * @throws IOException if the wrapper can not be encoded.
+	 */
+	public abstract byte[] encode(ObjectWrapper ow) throws IOException;
+
+	/**
+	 * @param payload (byte[]) frame payload without the length header.
+	 * @return (ObjectWrapper) the wrapper that was sent.
+	 * @throws IOException if the payload is not a valid wrapper.
+	 */
+	public abstract ObjectWrapper decode(byte[] payload) throws IOException;
+}
@@ -0,0 +1,112 @@
+package sharedModel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Converts object wrappers to and from the length prefixed frames sent between
+ * the client and server. Every frame is a 4 byte payload length followed by the
+ * payload, so the server can collect complete requests without blocking. The
+ * payload encoding is chosen per connection (see WireFormat); the methods
+ * without a WireFormat use Java serialization.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class WrapperCodec {
+
+	public static final int HEADER_SIZE = 4;
+	public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+	public static final int BINARY_HELLO = 0x54534231; // "TSB1", larger than any valid frame length
+	public static final int STREAM_CHUNK_SIZE = 256; // objects per chunk of a streamed reply
+	public static final int STREAM_WINDOW = 4; // chunks sent before the client grants credit
+
+	private WrapperCodec() {
+	}
+
+	/**
+	 * Serialize an object wrapper into a frame payload. A fresh object stream is
+	 * used for every message so no back reference table is kept between requests.
+	 * @param ow (ObjectWrapper) the wrapper being sent.
+	 * @return (byte[]) serialized payload without the length header.
+	 * @throws IOException if the wrapper contents are not serializable.
+	 */
+	public static byte[] encode(ObjectWrapper ow) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(ow);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Deserialize a frame payload back into an object wrapper.
+	 * @param payload (byte[]) frame payload without the length header.
+	 * @return (ObjectWrapper) the wrapper that was sent.
+	 * @throws IOException if the payload is not a valid wrapper.
+	 */
+	public static ObjectWrapper decode(byte[] payload) throws IOException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+			return (ObjectWrapper) in.readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("Invalid object wrapper frame", e);
+		}
+	}
+
+	/**
+	 * Write a complete frame to a blocking stream.
+	 * @param out (DataOutputStream) stream connected to the other side.
+	 * @param ow  (ObjectWrapper) the wrapper being sent.
+	 * @throws IOException if the stream is closed.
+	 */
+	public static void writeFrame(DataOutputStream out, ObjectWrapper ow) throws IOException {
+		writeFrame(out, ow, WireFormat.SERIALIZED);
+	}
+
+	/**
+	 * Write a complete frame to a blocking stream.
+	 * @param out    (DataOutputStream) stream connected to the other side.
+	 * @param ow     (ObjectWrapper) the wrapper being sent.
+	 * @param format (WireFormat) payload encoding of the connection.
+	 * @throws IOException if the stream is closed.
+	 */
+	public static void writeFrame(DataOutputStream out, ObjectWrapper ow, WireFormat format) throws IOException {
+		byte[] payload = format.encode(ow);
+		out.writeInt(payload.length);
+		out.write(payload);
+		out.flush();
+	}
+
+	/**
+	 * Read a complete frame from a blocking stream.
+	 * @param in (DataInputStream) stream connected to the other side.
+	 * @return (ObjectWrapper) the wrapper that was received.
+	 * @throws IOException if the stream is closed or the frame is invalid.
+	 */
+	public static ObjectWrapper readFrame(DataInputStream in) throws IOException {
+		return readFrame(in, WireFormat.SERIALIZED);
+	}
+
+	/**
+	 * Read a complete frame from a blocking stream.
+	 * @param in     (DataInputStream) stream connected to the other side.
+	 * @param format (WireFormat) payload encoding of the connection.
+	 * @return (ObjectWrapper) the wrapper that was received.
+	 * @throws IOException if the stream is closed or the frame is invalid.
+	 */
+	public static ObjectWrapper readFrame(DataInputStream in, WireFormat format) throws IOException {
+		int length = in.readInt();
+		if (length <= 0 || length > MAX_FRAME_SIZE) {
+			throw new IOException("Invalid frame length " + length);
+		}
+		byte[] payload = new byte[length];
+		in.readFully(payload);
+		return format.decode(payload);
+	}
+}
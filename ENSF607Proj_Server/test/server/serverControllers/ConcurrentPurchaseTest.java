@@ -0,0 +1,244 @@
+package server.serverControllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import sharedModel.Commands;
+import sharedModel.Item_Elec;
+import sharedModel.ObjectWrapper;
+import sharedModel.WireFormat;
+import sharedModel.WrapperCodec;
+
+/**
+ * Many client sessions buying the same item from one server at once, in the
+ * execution mode chosen with -Dshop.executionMode. Every session pipelines
+ * its purchases, so requests of one session also run concurrently. Exactly
+ * the stock of the item must be sold, the stock must end at zero, and the
+ * journal must leave the same stock in the database once the server stops.
+ *
+ * Needs the database initialized by DbController's main method; the test is
+ * skipped when the database can not be reached.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class ConcurrentPurchaseTest implements DatabaseConstants, DatabaseTables, ServerConstants, Commands {
+
+	private static final int SESSIONS = 64;
+	private static final int PURCHASES_PER_SESSION = 25;
+	private static final int STOCK = 500; // less than the 1600 units asked for
+
+	/**
+	 * Blocking client session reading replies on its own thread and matching
+	 * them to requests by request ID.
+	 */
+	private static final class Session implements AutoCloseable {
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		private final AtomicInteger nextRequestId = new AtomicInteger();
+		private final ConcurrentHashMap<Integer, CompletableFuture<ObjectWrapper>> pending = new ConcurrentHashMap<Integer, CompletableFuture<ObjectWrapper>>();
+
+		Session() throws IOException {
+			socket = new Socket(SERVER_HOST, SERVER_PORT);
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out.writeInt(WrapperCodec.BINARY_HELLO);
+			out.flush();
+			if (in.readInt() != WrapperCodec.BINARY_HELLO) {
+				throw new IOException("Server refused the binary wire format.");
+			}
+			Thread reader = new Thread(this::read, "test-session-reader");
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		private void read() {
+			try {
+				while (true) {
+					ObjectWrapper reply = WrapperCodec.readFrame(in, WireFormat.BINARY);
+					CompletableFuture<ObjectWrapper> waiting = pending.remove(reply.getRequestId());
+					if (waiting != null) {
+						waiting.complete(reply);
+					}
+				}
+			} catch (IOException e) {
+				for (CompletableFuture<ObjectWrapper> waiting : pending.values()) {
+					waiting.completeExceptionally(e);
+				}
+			}
+		}
+
+		synchronized CompletableFuture<ObjectWrapper> send(ObjectWrapper request) throws IOException {
+			CompletableFuture<ObjectWrapper> reply = new CompletableFuture<ObjectWrapper>();
+			request.setRequestId(nextRequestId.incrementAndGet());
+			pending.put(request.getRequestId(), reply);
+			WrapperCodec.writeFrame(out, request, WireFormat.BINARY);
+			return reply;
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+
+	@Test
+	@Timeout(value = 120, unit = TimeUnit.SECONDS)
+	public void sessionsBuyingOneItemSellExactlyItsStock() throws Exception {
+		int[] ids = sampleIds();
+		assumeTrue(ids != null, "shop database not reachable");
+		int itemId = ids[0];
+		int customerId = ids[1];
+
+		ServerController server = new ServerController(ExecutionMode.parse(System.getProperty(EXECUTION_MODE_PROPERTY)));
+		Thread serverThread = new Thread(server::runServer, "test-server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+		int sold = 0;
+		int left;
+		try {
+			try (Session admin = new Session()) {
+				int current = stockOf(admin, itemId);
+				if (current != STOCK) {
+					assertEquals(COMPLETE, change(admin, itemId, STOCK - current).getMessage()[1]);
+				}
+			}
+
+			ArrayList<Session> sessions = new ArrayList<Session>(SESSIONS);
+			ArrayList<CompletableFuture<ObjectWrapper>> replies = new ArrayList<CompletableFuture<ObjectWrapper>>();
+			try {
+				for (int s = 0; s < SESSIONS; s++) {
+					sessions.add(new Session());
+				}
+				// every session sends all of its purchases before any reply arrives
+				List<Thread> senders = new ArrayList<Thread>();
+				for (Session session : sessions) {
+					Thread sender = new Thread(() -> {
+						for (int p = 0; p < PURCHASES_PER_SESSION; p++) {
+							try {
+								CompletableFuture<ObjectWrapper> reply = session.send(purchase(itemId, customerId));
+								synchronized (replies) {
+									replies.add(reply);
+								}
+							} catch (IOException e) {
+								throw new IllegalStateException(e);
+							}
+						}
+					});
+					senders.add(sender);
+					sender.start();
+				}
+				for (Thread sender : senders) {
+					sender.join();
+				}
+				assertEquals(SESSIONS * PURCHASES_PER_SESSION, replies.size());
+				for (CompletableFuture<ObjectWrapper> reply : replies) {
+					String[] message = reply.get(60, TimeUnit.SECONDS).getMessage();
+					assertEquals(PURCHASE, message[0]);
+					if (PCOMPLETE.equals(message[1])) {
+						sold++;
+					}
+				}
+				left = stockOf(sessions.get(0), itemId);
+			} finally {
+				for (Session session : sessions) {
+					session.close();
+				}
+			}
+		} finally {
+			server.close(); // applies the journal
+		}
+
+		assertEquals(STOCK, sold, "purchases completed");
+		assertEquals(0, left, "stock left in the inventory");
+		assertEquals(0, storedStock(itemId), "stock left in the database");
+	}
+
+	/**
+	 * @return (int[]) ID of an item and of a customer in the shop database,
+	 *         null if it can not be reached.
+	 */
+	private static int[] sampleIds() {
+		try (Connection conn = DriverManager.getConnection(DB_URL, USERNAME, PASSWORD);
+				PreparedStatement items = conn.prepareStatement("SELECT MIN(itemId) FROM " + ITEMS);
+				PreparedStatement customers = conn.prepareStatement("SELECT MIN(customerId) FROM " + CUSTOMERS);
+				ResultSet item = items.executeQuery();
+				ResultSet customer = customers.executeQuery()) {
+			if (!item.next() || !customer.next() || item.getObject(1) == null || customer.getObject(1) == null) {
+				return null;
+			}
+			return new int[] { item.getInt(1), customer.getInt(1) };
+		} catch (SQLException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param itemId (int) ID of the item.
+	 * @return (int) stock of the item in the Items table.
+	 * @throws SQLException if the table could not be read.
+	 */
+	private static int storedStock(int itemId) throws SQLException {
+		try (Connection conn = DriverManager.getConnection(DB_URL, USERNAME, PASSWORD);
+				PreparedStatement pStat = conn.prepareStatement("SELECT itemQty FROM " + ITEMS + " WHERE itemId = ?")) {
+			pStat.setInt(1, itemId);
+			try (ResultSet results = pStat.executeQuery()) {
+				results.next();
+				return results.getInt(1);
+			}
+		}
+	}
+
+	private static ObjectWrapper purchase(int itemId, int customerId) {
+		ArrayList<Integer> line = new ArrayList<Integer>();
+		line.add(itemId);
+		line.add(1);
+		line.add(customerId);
+		ObjectWrapper request = new ObjectWrapper();
+		request.addPassedObj((Object) line);
+		request.setMessage(PURCHASE, ITEM_ELEC);
+		return request;
+	}
+
+	private static int stockOf(Session session, int itemId) throws Exception {
+		Item_Elec key = new Item_Elec();
+		key.setItemID(itemId);
+		ObjectWrapper request = new ObjectWrapper();
+		request.addPassedObj(key);
+		request.setMessage(SEARCH + ID, ITEM_ELEC);
+		return ((Item_Elec) session.send(request).get(10, TimeUnit.SECONDS).getPassedObj(0)).getQty();
+	}
+
+	private static ObjectWrapper change(Session session, int itemId, int change) throws Exception {
+		ArrayList<Integer> line = new ArrayList<Integer>();
+		line.add(itemId);
+		line.add(change);
+		ObjectWrapper request = new ObjectWrapper();
+		request.addPassedObj((Object) line);
+		request.setMessage(ADJUST, ITEM_ELEC);
+		return session.send(request).get(10, TimeUnit.SECONDS);
+	}
+}
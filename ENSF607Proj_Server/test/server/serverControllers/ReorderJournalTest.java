@@ -0,0 +1,143 @@
+package server.serverControllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import sharedModel.Item;
+
+/**
+ * Journaled purchases of one unit each that take an item's stock from above
+ * Item.ORDERQTYLIMIT to below it. As when every purchase updated the order on
+ * its own, an existing order line grows only by the purchases that left the
+ * stock below the limit, and a new line orders the item back up to the limit.
+ *
+ * Needs the database initialized by DbController's main method; the test is
+ * skipped when the database can not be reached.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class ReorderJournalTest implements DatabaseConstants, DatabaseTables {
+
+	private static final int ORDER_ID = 99999; // daily order used by the test only
+	private static final int LINE_QTY = 10; // quantity already ordered of the first item
+	private static final int PURCHASES = 5; // stock left: limit + 1 down to limit - 3
+
+	@Test
+	@Timeout(value = 60, unit = TimeUnit.SECONDS)
+	public void purchasesStraddlingTheLimitOnlyReorderBelowIt() throws Exception {
+		int[] ids = sampleIds();
+		assumeTrue(ids != null, "shop database not reachable");
+		int lined = ids[0]; // already on the order
+		int unlined = ids[1];
+		int customerId = ids[2];
+		try {
+			try (Connection conn = DriverManager.getConnection(DB_URL, USERNAME, PASSWORD)) {
+				deleteOrder(conn);
+				try (PreparedStatement pStat = conn.prepareStatement("INSERT INTO " + ORDERS + " VALUES (?,?)")) {
+					pStat.setInt(1, ORDER_ID);
+					pStat.setDate(2, Date.valueOf(LocalDate.now()));
+					pStat.executeUpdate();
+				}
+				try (PreparedStatement pStat = conn.prepareStatement("INSERT INTO " + ORDER_LINES + " VALUES (?,?,?)")) {
+					pStat.setInt(1, lined);
+					pStat.setInt(2, ORDER_ID);
+					pStat.setInt(3, LINE_QTY);
+					pStat.executeUpdate();
+				}
+			}
+
+			ConnectionPool pool = new ConnectionPool();
+			pool.start();
+			DbController db = new DbController(pool);
+			db.startJournal();
+			try {
+				for (int p = 0; p < PURCHASES; p++) {
+					int remaining = Item.ORDERQTYLIMIT + 1 - p;
+					assertTrue(db.executePurchase(lined, 1, remaining, customerId, ORDER_ID));
+					assertTrue(db.executePurchase(unlined, 1, remaining, customerId, ORDER_ID));
+				}
+			} finally {
+				// give the stock back through the journal, so the inventory snapshot agrees
+				for (int i = 0; i < 2; i++) {
+					db.executeAdjustment(ids[i], PURCHASES, Item.ORDERQTYLIMIT + 1);
+				}
+				db.close(); // applies the journal
+			}
+
+			int lowest = Item.ORDERQTYLIMIT + 1 - (PURCHASES - 1);
+			assertEquals(LINE_QTY + Item.ORDERQTYLIMIT - lowest, orderQty(lined), "existing order line");
+			assertEquals(Item.ORDERQTYLIMIT - lowest, orderQty(unlined), "new order line");
+		} finally {
+			try (Connection conn = DriverManager.getConnection(DB_URL, USERNAME, PASSWORD)) {
+				deleteOrder(conn);
+			}
+		}
+	}
+
+	/**
+	 * @return (int[]) IDs of two items and of a customer in the shop database,
+	 *         null if it can not be reached.
+	 */
+	private static int[] sampleIds() {
+		try (Connection conn = DriverManager.getConnection(DB_URL, USERNAME, PASSWORD);
+				PreparedStatement items = conn.prepareStatement("SELECT itemId FROM " + ITEMS + " ORDER BY itemId LIMIT 2");
+				PreparedStatement customers = conn.prepareStatement("SELECT MIN(customerId) FROM " + CUSTOMERS);
+				ResultSet item = items.executeQuery();
+				ResultSet customer = customers.executeQuery()) {
+			if (!customer.next() || customer.getObject(1) == null || !item.next()) {
+				return null;
+			}
+			int first = item.getInt(1);
+			if (!item.next()) {
+				return null;
+			}
+			return new int[] { first, item.getInt(1), customer.getInt(1) };
+		} catch (SQLException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Delete the test order; its lines are deleted with it.
+	 * @param conn (Connection) connection to the shop database.
+	 * @throws SQLException if the order could not be deleted.
+	 */
+	private static void deleteOrder(Connection conn) throws SQLException {
+		try (PreparedStatement pStat = conn.prepareStatement("DELETE FROM " + ORDERS + " WHERE orderId = ?")) {
+			pStat.setInt(1, ORDER_ID);
+			pStat.executeUpdate();
+		}
+	}
+
+	/**
+	 * @param itemId (int) ID of the item.
+	 * @return (int) quantity of the item's line in the test order, 0 without a line.
+	 * @throws SQLException if the table could not be read.
+	 */
+	private static int orderQty(int itemId) throws SQLException {
+		try (Connection conn = DriverManager.getConnection(DB_URL, USERNAME, PASSWORD);
+				PreparedStatement pStat = conn.prepareStatement("SELECT orderQty FROM " + ORDER_LINES
+						+ " WHERE itemId = ? AND orderId = ?")) {
+			pStat.setInt(1, itemId);
+			pStat.setInt(2, ORDER_ID);
+			try (ResultSet results = pStat.executeQuery()) {
+				return results.next() ? results.getInt(1) : 0;
+			}
+		}
+	}
+}
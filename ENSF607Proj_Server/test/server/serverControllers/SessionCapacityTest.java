@@ -0,0 +1,153 @@
+package server.serverControllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import sharedModel.Commands;
+import sharedModel.Customer;
+import sharedModel.Item_Elec;
+import sharedModel.ObjectWrapper;
+import sharedModel.WireFormat;
+import sharedModel.WrapperCodec;
+
+/**
+ * Many more client sessions than WORKER_THREADS open on one server at once,
+ * in each execution mode. Every session stays connected for the whole test
+ * and sends its requests while all the others send theirs: item searches
+ * answered from memory, and every fourth request a customer search that reads
+ * the database. Every request must be answered; the sessions served and the
+ * requests per second of each mode are printed.
+ *
+ * Needs the database initialized by DbController's main method; the test is
+ * skipped when the database can not be reached.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class SessionCapacityTest implements DatabaseConstants, DatabaseTables, ServerConstants, Commands {
+
+	private static final int SESSIONS = 500; // 50 times WORKER_THREADS
+	private static final int REQUESTS_PER_SESSION = 40;
+	private static final int DATABASE_EVERY = 4; // every fourth request reads the database
+
+	@ParameterizedTest
+	@EnumSource(ExecutionMode.class)
+	@Timeout(value = 180, unit = TimeUnit.SECONDS)
+	public void everySessionIsServedAtOnce(ExecutionMode mode) throws Exception {
+		int itemId = sampleItemId();
+		assumeTrue(itemId != 0, "shop database not reachable");
+
+		ServerController server = new ServerController(mode);
+		Thread serverThread = new Thread(server::runServer, "test-server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+		AtomicInteger answered = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		long elapsed;
+		ArrayList<Socket> sockets = new ArrayList<Socket>(SESSIONS);
+		try {
+			for (int s = 0; s < SESSIONS; s++) {
+				sockets.add(new Socket(SERVER_HOST, SERVER_PORT)); // every session connected before any request
+			}
+			CyclicBarrier ready = new CyclicBarrier(SESSIONS + 1);
+			ArrayList<Thread> clients = new ArrayList<Thread>(SESSIONS);
+			for (Socket socket : sockets) {
+				Thread client = new Thread(() -> {
+					try {
+						DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+						DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+						ready.await();
+						for (int r = 0; r < REQUESTS_PER_SESSION; r++) {
+							ObjectWrapper request = r % DATABASE_EVERY == 0 ? customerSearch() : itemSearch(itemId);
+							WrapperCodec.writeFrame(out, request, WireFormat.SERIALIZED);
+							ObjectWrapper reply = WrapperCodec.readFrame(in, WireFormat.SERIALIZED);
+							if (FAILED.equals(reply.getMessage()[0])) {
+								failed.incrementAndGet();
+							} else {
+								answered.incrementAndGet();
+							}
+						}
+					} catch (Exception e) {
+						failed.incrementAndGet();
+					}
+				});
+				clients.add(client);
+				client.start();
+			}
+			ready.await(60, TimeUnit.SECONDS);
+			long start = System.nanoTime();
+			for (Thread client : clients) {
+				client.join();
+			}
+			elapsed = System.nanoTime() - start;
+		} finally {
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+			server.close();
+		}
+
+		System.out.printf("%s mode: %d sessions open at once, %d requests answered in %d ms, %.0f requests/s%n", mode,
+				SESSIONS, answered.get(), elapsed / 1000000, answered.get() * 1e9 / elapsed);
+		assertEquals(0, failed.get(), "requests failed");
+		assertEquals(SESSIONS * REQUESTS_PER_SESSION, answered.get(), "requests answered");
+	}
+
+	/**
+	 * @return (int) ID of an item in the shop database, 0 if it can not be
+	 *         reached or holds no regular customer.
+	 */
+	private static int sampleItemId() {
+		try (Connection conn = DriverManager.getConnection(DB_URL, USERNAME, PASSWORD);
+				PreparedStatement items = conn.prepareStatement("SELECT MIN(itemId) FROM " + ITEMS);
+				PreparedStatement customers = conn.prepareStatement("SELECT COUNT(*) FROM " + CUSTOMERS
+						+ " WHERE customerType = 'R'");
+				ResultSet item = items.executeQuery();
+				ResultSet customer = customers.executeQuery()) {
+			if (!item.next() || !customer.next() || customer.getInt(1) == 0) {
+				return 0;
+			}
+			return item.getInt(1);
+		} catch (SQLException e) {
+			return 0;
+		}
+	}
+
+	private static ObjectWrapper itemSearch(int itemId) {
+		Item_Elec key = new Item_Elec();
+		key.setItemID(itemId);
+		ObjectWrapper request = new ObjectWrapper();
+		request.addPassedObj(key);
+		request.setMessage(SEARCH + ID, ITEM_ELEC);
+		return request;
+	}
+
+	private static ObjectWrapper customerSearch() {
+		Customer key = new Customer();
+		key.setCustomerType('R');
+		ObjectWrapper request = new ObjectWrapper();
+		request.addPassedObj(key);
+		request.setMessage(SEARCH + TYPE, CUSTOMER);
+		return request;
+	}
+}
@@ -0,0 +1,46 @@
+package server.serverModel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import sharedModel.Customer;
+
+/**
+ * Names longer than the index keeps are cut before the character that does
+ * not fit whole, so a cut never leaves part of a multi-byte UTF-8 character.
+ * Needs no database.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class CustomerIndexTest {
+
+	private static final int MAX_FIELD_BYTES = 254; // bytes of a field the index keeps
+
+	@Test
+	public void longNamesAreCutOnACharacterBoundary() {
+		String[] characters = { "\u00e9", "\u20ac", "\ud83d\udd27" }; // 2, 3 and 4 UTF-8 bytes
+		for (String character : characters) {
+			StringBuilder name = new StringBuilder("a");
+			while (name.toString().getBytes(StandardCharsets.UTF_8).length <= MAX_FIELD_BYTES) {
+				name.append(character); // the last character straddles the cut
+			}
+			CustomerIndex index = new CustomerIndex();
+			index.put(new Customer(1, "Jane", name.toString(), "12 Main St.", "T2N 1N4", "403-555-0100", 'R'));
+
+			ArrayList<Customer> found = index.search("a" + character);
+			assertEquals(1, found.size(), "customer found by prefix");
+			String kept = found.get(0).getLastName();
+			byte[] keptBytes = kept.getBytes(StandardCharsets.UTF_8);
+			assertEquals(name.substring(0, kept.length()), kept, "kept name is a prefix of whole characters");
+			assertEquals(true, keptBytes.length <= MAX_FIELD_BYTES, "kept name fits the field");
+			assertEquals(true, keptBytes.length > MAX_FIELD_BYTES - character.getBytes(StandardCharsets.UTF_8).length,
+					"only the character that does not fit is cut");
+		}
+	}
+}
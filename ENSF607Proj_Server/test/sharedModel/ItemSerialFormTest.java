@@ -0,0 +1,52 @@
+package sharedModel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Items keep the serialized form of version 2, with the price as a double, so
+ * that clients still using the serialized wire format can exchange them with
+ * the server. Prices held in cents survive a round trip exactly.
+ *
+ * @author NJack & JJoorisity
+ * @version 1.0
+ * @since 2020-11-26
+ */
+public class ItemSerialFormTest {
+
+	@Test
+	public void serializedFormIsVersionTwo() {
+		ObjectStreamClass form = ObjectStreamClass.lookup(Item.class);
+		assertEquals(2L, form.getSerialVersionUID());
+		assertEquals(double.class, form.getField("price").getType());
+		assertEquals(int.class, form.getField("ORDERQTYLIMIT").getType());
+		assertEquals(null, form.getField("priceCents"));
+	}
+
+	@Test
+	public void pricesRoundTripToTheCent() throws Exception {
+		long[] prices = { 0, 1, 3551, 99999, 123456789012L, -5 };
+		for (long priceCents : prices) {
+			Item_Elec item = new Item_Elec();
+			item.setItemID(7);
+			item.setItemDesc("Drill");
+			item.setPriceCents(priceCents);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+				out.writeObject(item);
+			}
+			try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+				Item_Elec read = (Item_Elec) in.readObject();
+				assertEquals(priceCents, read.getPriceCents());
+				assertEquals("Drill", read.getItemDesc());
+			}
+		}
+	}
+}